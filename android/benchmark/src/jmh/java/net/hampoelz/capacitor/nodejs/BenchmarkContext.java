@@ -0,0 +1,74 @@
+package net.hampoelz.capacitor.nodejs;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.content.res.AssetManager;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/** A context whose assets, files and cache live in a directory of the file system. */
+public class BenchmarkContext extends Context {
+
+    private final File assetsDir;
+    private final File filesDir;
+    private final File cacheDir;
+    private final PackageManager packageManager = new PackageManager();
+    private final Map<String, Long> preferences = new HashMap<>();
+
+    public BenchmarkContext(File rootDir) {
+        this.assetsDir = new File(rootDir, "assets");
+        this.filesDir = new File(rootDir, "files");
+        this.cacheDir = new File(rootDir, "cache");
+    }
+
+    @Override
+    public AssetManager getAssets() {
+        return new AssetManager(assetsDir);
+    }
+
+    @Override
+    public File getFilesDir() {
+        return filesDir;
+    }
+
+    @Override
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    @Override
+    public String getPackageName() {
+        return "net.hampoelz.capacitor.nodejs.benchmark";
+    }
+
+    @Override
+    public PackageManager getPackageManager() {
+        return packageManager;
+    }
+
+    @Override
+    public SharedPreferences getSharedPreferences(String name, int mode) {
+        return new SharedPreferences() {
+            @Override
+            public long getLong(String key, long defValue) {
+                return preferences.getOrDefault(key, defValue);
+            }
+
+            @Override
+            public Editor edit() {
+                return new Editor() {
+                    @Override
+                    public Editor putLong(String key, long value) {
+                        preferences.put(key, value);
+                        return this;
+                    }
+
+                    @Override
+                    public void apply() {}
+                };
+            }
+        };
+    }
+}
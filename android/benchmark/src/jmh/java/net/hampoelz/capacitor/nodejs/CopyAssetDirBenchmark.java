@@ -0,0 +1,67 @@
+package net.hampoelz.capacitor.nodejs;
+
+import android.content.res.AssetManager;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Extracts a generated Node.js project, similar to a project with a few dependencies in its node_modules. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CopyAssetDirBenchmark {
+
+    @Param({ "100", "1000" })
+    public int fileCount;
+
+    @Param({ "4096" })
+    public int fileSize;
+
+    private File rootDir;
+    private AssetManager assetManager;
+    private String destinationPath;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        rootDir = Files.createTempDirectory("capacitor-nodejs-benchmark").toFile();
+
+        final File assetsDir = new File(rootDir, "assets");
+        final byte[] content = new byte[fileSize];
+
+        for (int i = 0; i < fileCount; i++) {
+            // Ten files per module directory, ten module directories per scope directory.
+            final File file = new File(assetsDir, "nodejs/node_modules/scope" + i / 100 + "/module" + i / 10 + "/file" + i + ".js");
+            FileOperations.CreateDir(file.getParent());
+            Files.write(file.toPath(), content);
+        }
+
+        assetManager = new AssetManager(assetsDir);
+        destinationPath = new File(rootDir, "files/nodejs").getPath();
+    }
+
+    @Setup(Level.Invocation)
+    public void deleteDestination() {
+        FileOperations.DeleteDir(destinationPath);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileOperations.DeleteDir(rootDir);
+    }
+
+    @Benchmark
+    public boolean copyAssetDir() {
+        return FileOperations.CopyAssetDir(assetManager, "nodejs", destinationPath);
+    }
+}
@@ -0,0 +1,64 @@
+package net.hampoelz.capacitor.nodejs;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FileOperationsBenchmark {
+
+    @Param({ "1024", "65536", "4194304" })
+    public int fileSize;
+
+    private File rootDir;
+    private String filePath;
+    private byte[] data;
+
+    @Setup
+    public void setup() throws IOException {
+        rootDir = Files.createTempDirectory("capacitor-nodejs-benchmark").toFile();
+
+        final char[] content = new char[fileSize];
+        Arrays.fill(content, 'a');
+        data = new String(content).getBytes(StandardCharsets.UTF_8);
+
+        filePath = new File(rootDir, "file.txt").getPath();
+        Files.write(new File(filePath).toPath(), data);
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileOperations.DeleteDir(rootDir);
+    }
+
+    @Benchmark
+    public void copyStream() throws IOException {
+        FileOperations.CopyStream(new ByteArrayInputStream(data), OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public String readFileFromPath() throws IOException {
+        return FileOperations.ReadFileFromPath(filePath);
+    }
+
+    @Benchmark
+    public String combinePath() {
+        return FileOperations.CombinePath("public", "nodejs", "node_modules", "module", "index.js");
+    }
+}
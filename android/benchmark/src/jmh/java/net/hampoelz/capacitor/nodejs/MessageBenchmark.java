@@ -0,0 +1,117 @@
+package net.hampoelz.capacitor.nodejs;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Serializes messages for the Node.js process and delivers them back to the listeners,
+ * for every channel protocol and a range of message sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageBenchmark {
+
+    @Param({ "16", "1024", "65536" })
+    public int messageSize;
+
+    @Param({ "1", "2" })
+    public int protocol;
+
+    private static class CountingPlugin extends CapacitorNodeJSPlugin {
+
+        private final AtomicLong deliveredMessages = new AtomicLong();
+
+        @Override
+        protected void notifyListeners(String eventName, JSObject data) {
+            deliveredMessages.incrementAndGet();
+        }
+    }
+
+    private File rootDir;
+    private CountingPlugin plugin;
+    private CapacitorNodeJS implementation;
+    private JSArray args;
+    private long sentMessages = 0;
+    private final AtomicLong nativeDeliveredMessages = new AtomicLong();
+    private long nativeSentMessages = 0;
+
+    @Setup
+    public void setup() throws Exception {
+        rootDir = Files.createTempDirectory("capacitor-nodejs-benchmark").toFile();
+
+        plugin = new CountingPlugin();
+        implementation = new CapacitorNodeJS(new BenchmarkContext(rootDir), plugin.new PluginEventNotifier());
+
+        // The ready message of a bridge that supports the given protocol.
+        final JSArray protocols = new JSArray();
+        for (int i = 1; i <= protocol; i++) {
+            protocols.put(i);
+        }
+        final JSArray readyArgs = new JSArray();
+        readyArgs.put(new JSObject().put("protocols", protocols));
+        final JSObject readyMessage = new JSObject().put("eventName", "ready").put("eventMessage", readyArgs.toString());
+        implementation.receiveMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, readyMessage.toString(), System.nanoTime());
+        implementation.addMessageListener("nativeBenchmark", (eventName, messageArgs) -> nativeDeliveredMessages.incrementAndGet());
+
+        final char[] content = new char[messageSize];
+        Arrays.fill(content, 'a');
+
+        args = new JSArray();
+        args.put(new JSObject().put("id", 1).put("progress", 0.5));
+        args.put(new String(content));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        NodeProcess.echoMessages = false;
+        FileOperations.DeleteDir(rootDir);
+    }
+
+    @Benchmark
+    public boolean sendMessage() {
+        NodeProcess.echoMessages = false;
+        return implementation.sendMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT, "benchmark", args);
+    }
+
+    /** Sends a message that is echoed by the fake Node.js process and waits until it reached the listeners. */
+    @Benchmark
+    public long roundTrip() {
+        NodeProcess.echoMessages = true;
+        implementation.sendMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT, "benchmark", args);
+
+        sentMessages++;
+        while (plugin.deliveredMessages.get() < sentMessages) {
+            Thread.onSpinWait();
+        }
+        return sentMessages;
+    }
+
+    /** Like {@link #roundTrip()}, but waits until the message reached a native listener instead of the Capacitor listeners. */
+    @Benchmark
+    public long nativeRoundTrip() {
+        NodeProcess.echoMessages = true;
+        implementation.sendMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT, "nativeBenchmark", args);
+
+        nativeSentMessages++;
+        while (nativeDeliveredMessages.get() < nativeSentMessages) {
+            Thread.onSpinWait();
+        }
+        return nativeSentMessages;
+    }
+}
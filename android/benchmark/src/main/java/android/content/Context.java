@@ -0,0 +1,31 @@
+package android.content;
+
+import android.content.pm.PackageManager;
+import android.content.res.AssetManager;
+import java.io.File;
+
+/** Stand-in for the parts of the Android context used by the plugin. */
+public abstract class Context {
+
+    public static final int MODE_PRIVATE = 0;
+
+    public abstract AssetManager getAssets();
+
+    public abstract File getFilesDir();
+
+    public abstract File getCacheDir();
+
+    public abstract String getPackageName();
+
+    public abstract PackageManager getPackageManager();
+
+    public abstract SharedPreferences getSharedPreferences(String name, int mode);
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public void registerComponentCallbacks(ComponentCallbacks callback) {}
+
+    public void unregisterComponentCallbacks(ComponentCallbacks callback) {}
+}
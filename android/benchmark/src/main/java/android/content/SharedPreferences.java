@@ -0,0 +1,14 @@
+package android.content;
+
+/** Stand-in for the parts of the Android shared preferences used by the plugin. */
+public interface SharedPreferences {
+    long getLong(String key, long defValue);
+
+    Editor edit();
+
+    interface Editor {
+        Editor putLong(String key, long value);
+
+        void apply();
+    }
+}
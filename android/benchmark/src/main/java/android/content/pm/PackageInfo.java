@@ -0,0 +1,7 @@
+package android.content.pm;
+
+/** Stand-in for the Android package information. */
+public class PackageInfo {
+
+    public long lastUpdateTime;
+}
@@ -0,0 +1,13 @@
+package android.content.pm;
+
+/** Stand-in for the Android package manager, which knows a single package. */
+public class PackageManager {
+
+    public static class NameNotFoundException extends Exception {}
+
+    private final PackageInfo packageInfo = new PackageInfo();
+
+    public PackageInfo getPackageInfo(String packageName, int flags) throws NameNotFoundException {
+        return packageInfo;
+    }
+}
@@ -0,0 +1,40 @@
+package android.content.res;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Stand-in for the Android asset manager, which reads the assets from a directory of the file system. */
+public final class AssetManager {
+
+    public static final int ACCESS_STREAMING = 2;
+
+    private final File root;
+
+    public AssetManager(File root) {
+        this.root = root;
+    }
+
+    public String[] list(String path) throws IOException {
+        final String[] files = new File(root, path).list();
+        return files != null ? files : new String[0];
+    }
+
+    public InputStream open(String fileName) throws IOException {
+        return new FileInputStream(new File(root, fileName));
+    }
+
+    public InputStream open(String fileName, int accessMode) throws IOException {
+        return open(fileName);
+    }
+
+    public AssetFileDescriptor openFd(String fileName) throws IOException {
+        final File file = new File(root, fileName);
+        if (!file.isFile()) {
+            throw new FileNotFoundException(fileName);
+        }
+        return new AssetFileDescriptor(file);
+    }
+}
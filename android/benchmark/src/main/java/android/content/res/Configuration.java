@@ -0,0 +1,4 @@
+package android.content.res;
+
+/** Stand-in for the Android configuration. */
+public class Configuration {}
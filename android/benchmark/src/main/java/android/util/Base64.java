@@ -0,0 +1,16 @@
+package android.util;
+
+/** Stand-in for the Android Base64 utilities. */
+public class Base64 {
+
+    public static final int DEFAULT = 0;
+    public static final int NO_WRAP = 2;
+
+    public static String encodeToString(byte[] input, int flags) {
+        return java.util.Base64.getEncoder().encodeToString(input);
+    }
+
+    public static byte[] decode(String input, int flags) {
+        return java.util.Base64.getDecoder().decode(input);
+    }
+}
@@ -0,0 +1,16 @@
+package com.getcapacitor;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+/** Stand-in for the Capacitor JSON array. */
+public class JSArray extends JSONArray {
+
+    public JSArray() {
+        super();
+    }
+
+    public JSArray(String json) throws JSONException {
+        super(json);
+    }
+}
@@ -0,0 +1,68 @@
+package com.getcapacitor;
+
+import java.util.Iterator;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/** Stand-in for the Capacitor JSON object. */
+public class JSObject extends JSONObject {
+
+    public JSObject() {
+        super();
+    }
+
+    public JSObject(String json) throws JSONException {
+        super(json);
+    }
+
+    public static JSObject fromJSONObject(JSONObject object) throws JSONException {
+        final JSObject data = new JSObject();
+        final Iterator<String> keys = object.keys();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            data.put(key, object.get(key));
+        }
+        return data;
+    }
+
+    @Override
+    public String getString(String key) {
+        return optString(key, null);
+    }
+
+    public String getString(String key, String defaultValue) {
+        return optString(key, defaultValue);
+    }
+
+    @Override
+    public JSObject put(String key, Object value) {
+        try {
+            super.put(key, value);
+        } catch (JSONException ignored) {}
+        return this;
+    }
+
+    @Override
+    public JSObject put(String key, int value) {
+        return put(key, (Object) value);
+    }
+
+    @Override
+    public JSObject put(String key, long value) {
+        return put(key, (Object) value);
+    }
+
+    @Override
+    public JSObject put(String key, double value) {
+        return put(key, (Object) value);
+    }
+
+    @Override
+    public JSObject put(String key, boolean value) {
+        return put(key, (Object) value);
+    }
+
+    public JSObject put(String key, String value) {
+        return put(key, (Object) value);
+    }
+}
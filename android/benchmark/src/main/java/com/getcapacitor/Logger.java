@@ -0,0 +1,11 @@
+package com.getcapacitor;
+
+/** Stand-in for the Capacitor logger, which discards all messages. */
+public class Logger {
+
+    public static void debug(String tag, String message) {}
+
+    public static void warn(String tag, String message) {}
+
+    public static void error(String tag, String message, Throwable e) {}
+}
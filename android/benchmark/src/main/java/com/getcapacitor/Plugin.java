@@ -0,0 +1,42 @@
+package com.getcapacitor;
+
+import android.content.Context;
+
+/** Stand-in for the Capacitor plugin base class. */
+public class Plugin {
+
+    public void load() {}
+
+    public Context getContext() {
+        return null;
+    }
+
+    public PluginConfig getConfig() {
+        return new PluginConfig();
+    }
+
+    protected void handleOnResume() {}
+
+    protected void handleOnPause() {}
+
+    protected void handleOnDestroy() {}
+
+    @PluginMethod(returnType = PluginMethod.RETURN_NONE)
+    public void addListener(PluginCall call) {}
+
+    @PluginMethod(returnType = PluginMethod.RETURN_NONE)
+    public void removeListener(PluginCall call) {}
+
+    @PluginMethod
+    public void removeAllListeners(PluginCall call) {}
+
+    protected boolean hasListeners(String eventName) {
+        return false;
+    }
+
+    protected void notifyListeners(String eventName, JSObject data) {}
+
+    protected void notifyListeners(String eventName, JSObject data, boolean retainUntilConsumed) {
+        notifyListeners(eventName, data);
+    }
+}
@@ -0,0 +1,54 @@
+package com.getcapacitor;
+
+/** Stand-in for a Capacitor plugin call, which ignores its result. */
+public class PluginCall {
+
+    private final JSObject data;
+
+    public PluginCall(JSObject data) {
+        this.data = data;
+    }
+
+    public String getString(String name) {
+        return data.getString(name);
+    }
+
+    public String getString(String name, String defaultValue) {
+        return data.getString(name, defaultValue);
+    }
+
+    public JSArray getArray(String name) {
+        return getArray(name, null);
+    }
+
+    public JSArray getArray(String name, JSArray defaultValue) {
+        final Object value = data.opt(name);
+        return value instanceof JSArray ? (JSArray) value : defaultValue;
+    }
+
+    public Integer getInt(String name) {
+        return getInt(name, null);
+    }
+
+    public Integer getInt(String name, Integer defaultValue) {
+        final Object value = data.opt(name);
+        return value instanceof Integer ? (Integer) value : defaultValue;
+    }
+
+    public JSObject getObject(String name) {
+        final Object value = data.opt(name);
+        return value instanceof JSObject ? (JSObject) value : null;
+    }
+
+    public void resolve() {}
+
+    public void resolve(JSObject data) {}
+
+    public void reject(String message) {}
+
+    public void reject(String message, Exception e) {}
+
+    public void reject(String message, String code) {}
+
+    public void reject(String message, String code, JSObject data) {}
+}
@@ -0,0 +1,27 @@
+package com.getcapacitor;
+
+import org.json.JSONObject;
+
+/** Stand-in for the Capacitor plugin configuration, which always returns the default values. */
+public class PluginConfig {
+
+    public String getString(String configKey, String defaultValue) {
+        return defaultValue;
+    }
+
+    public int getInt(String configKey, int defaultValue) {
+        return defaultValue;
+    }
+
+    public boolean getBoolean(String configKey, boolean defaultValue) {
+        return defaultValue;
+    }
+
+    public String[] getArray(String configKey, String[] defaultValue) {
+        return defaultValue;
+    }
+
+    public JSONObject getObject(String configKey) {
+        return null;
+    }
+}
@@ -0,0 +1,13 @@
+package com.getcapacitor;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/** Stand-in for the Capacitor plugin method annotation. */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface PluginMethod {
+    String RETURN_PROMISE = "promise";
+    String RETURN_NONE = "none";
+
+    String returnType() default RETURN_PROMISE;
+}
@@ -0,0 +1,10 @@
+package com.getcapacitor.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/** Stand-in for the Capacitor plugin annotation. */
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CapacitorPlugin {
+    String name();
+}
@@ -0,0 +1,158 @@
+package net.hampoelz.capacitor.nodejs;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Fake of the Node.js process for the benchmarks, which does not load the native library.
+ * If enabled, every message sent to the process is echoed back on the same channel right away.
+ */
+public class NodeProcess {
+
+    protected static volatile boolean echoMessages = false;
+    protected static volatile String lastMessage;
+
+    protected static final int OVERFLOW_POLICY_BLOCK = 0;
+    protected static final int OVERFLOW_POLICY_DROP_OLDEST = 1;
+    protected static final int OVERFLOW_POLICY_REJECT = 2;
+
+    private final ReceiveCallback receiveCallback;
+
+    protected NodeProcess(ReceiveCallback receiveCallback) {
+        this.receiveCallback = receiveCallback;
+    }
+
+    protected int start(String modulePath, String[] options, String[] parameter, Map<String, String> env, String cachePath) {
+        return 0;
+    }
+
+    protected boolean stop() {
+        return false;
+    }
+
+    protected void setFileMaterializer(FileMaterializer fileMaterializer) {}
+
+    protected static final int OUTPUT_MODE_NONE = 0;
+    protected static final int OUTPUT_MODE_LOGCAT = 1;
+    protected static final int OUTPUT_MODE_EVENTS = 2;
+
+    protected static final int OUTPUT_LEVEL_INFO = 0;
+    protected static final int OUTPUT_LEVEL_WARN = 1;
+    protected static final int OUTPUT_LEVEL_ERROR = 2;
+
+    protected static final int DEFAULT_OUTPUT_BUFFER_SIZE = 256 * 1024;
+
+    protected void setOutputOptions(int mode, int bufferSize, int rateLimit) {}
+
+    protected interface ReceiveCallback {
+        void receive(String channelName, String message, long sentTime);
+
+        void receiveBinary(String channelName, String eventName, ByteBuffer data, long sentTime);
+
+        void receiveOutput(OutputLine[] lines, long droppedLines);
+    }
+
+    protected static class OutputLine {
+
+        protected final int level = OUTPUT_LEVEL_INFO;
+        protected final String message = "";
+        protected final long time = 0;
+    }
+
+    protected interface FileMaterializer {
+        boolean materialize(String[] pathPrefixes);
+    }
+
+    protected static class ChannelStats {
+
+        protected final long queuedMessages = 0;
+        protected final long queuedBytes = 0;
+        protected final long maxQueuedMessages = 0;
+        protected final long capacity = 0;
+        protected final long deliveredMessages = 0;
+        protected final long droppedMessages = 0;
+        protected final long rejectedMessages = 0;
+        protected final LatencyHistogram.Snapshot latency = new LatencyHistogram().getSnapshot();
+    }
+
+    /** The fake has no message queues. */
+    protected ChannelStats getChannelStats(String channelName) {
+        return null;
+    }
+
+    protected boolean send(String channelName, String message) {
+        lastMessage = message;
+        if (echoMessages) {
+            receiveCallback.receive(channelName, message, System.nanoTime());
+        }
+        return true;
+    }
+
+    protected int sendBatch(String channelName, String[] messages) {
+        for (String message : messages) {
+            send(channelName, message);
+        }
+        return messages.length;
+    }
+
+    protected void setMaxMessagesPerTick(int count) {}
+
+    protected void setMessageQueueOptions(int capacity, int overflowPolicy) {}
+
+    protected void setReceiveQueueOptions(int capacity, int overflowPolicy) {}
+
+    protected static class ReceiveQueueStats {
+
+        protected final long queuedMessages = 0;
+        protected final long queuedBytes = 0;
+        protected final long maxQueuedMessages = 0;
+        protected final long capacity = 0;
+        protected final long droppedMessages = 0;
+        protected final long rejectedMessages = 0;
+    }
+
+    protected ReceiveQueueStats getReceiveQueueStats() {
+        return new ReceiveQueueStats();
+    }
+
+    protected void setChannelPriority(String channelName, int priority) {}
+
+    protected boolean isChannelRegistered(String channelName) {
+        return true;
+    }
+
+    protected static final int MEMORY_PRESSURE_NONE = 0;
+    protected static final int MEMORY_PRESSURE_MODERATE = 1;
+    protected static final int MEMORY_PRESSURE_CRITICAL = 2;
+
+    protected void notifyMemoryPressure(int level) {}
+
+    protected void setChannelBackgroundDelivery(String channelName, boolean enabled) {}
+
+    protected static final int BACKGROUND_STATE_FOREGROUND = 0;
+    protected static final int BACKGROUND_STATE_THROTTLED = 1;
+    protected static final int BACKGROUND_STATE_SUSPENDED = 2;
+
+    protected void setBackgroundState(int state) {}
+
+    protected void setBackgroundTickInterval(int milliseconds) {}
+
+    protected SharedMemory createSharedMemory(int slotSize, int slotCount) {
+        return null;
+    }
+
+    protected int acquireSharedMemorySlot() {
+        return -1;
+    }
+
+    protected boolean releaseSharedMemorySlot(int slot) {
+        return false;
+    }
+
+    protected boolean sendBinary(String channelName, String eventName, ByteBuffer data) {
+        if (echoMessages) {
+            receiveCallback.receiveBinary(channelName, eventName, data.asReadOnlyBuffer(), System.nanoTime());
+        }
+        return true;
+    }
+}
@@ -4,20 +4,70 @@
  */
 
 #include <map>
+#include <set>
+#include <vector>
+#include <atomic>
+#include <algorithm>
+#include <chrono>
+#include <condition_variable>
+#include <memory>
 #include <mutex>
-#include <queue>
 #include <string>
 #include <cstring>
 #include <cstdlib>
 #include <utility>
 
+#include <android/log.h>
+
 #include "uv.h"
 #include "node.h"
 #include "bridge.h"
 #include "node_api.h"
+#include "message-ring.h"
+#include "latency-histogram.h"
+#include "shared-memory.h"
 
 // Forward declarations
+class Channel;
 void FlushMessageQueue(uv_async_t* handle);
+void FlushHigherPriorityChannels(const Channel* channel);
+bool HasHigherPriorityChannels(const Channel* channel);
+void WakeThrottledLoops();
+
+// Maximum number of messages delivered per channel and loop iteration, 0 for no limit.
+std::atomic<size_t> maxMessagesPerFlush(1000);
+
+// Options of the message rings of channels created from now on.
+std::atomic<size_t> queueCapacity(256 * 1024);
+std::atomic<int> queueOverflowPolicy((int)OverflowPolicy::Block);
+
+// How long a producer waits for room in a full queue with the block policy before the message is rejected.
+const std::chrono::milliseconds queueBlockTimeout(1000);
+
+// Number of messages delivered from a channel before channels with a higher priority are checked for messages.
+const size_t priorityCheckInterval = 16;
+
+// The channels set up in the environment of the current thread, the engine or one of its worker threads.
+// Channels are only set up and detached on the loop thread of their environment, so the channels of the
+// same environment are looked up by priority without taking a lock.
+thread_local std::vector<Channel*> environmentChannels;
+
+// While the app is in the background, the event loops are throttled or suspended and only the channels
+// delivered in the background are flushed. The waits of the loops end whenever the state changes.
+std::mutex backgroundMutex;
+std::condition_variable backgroundChanged;
+std::atomic<int> backgroundState((int)BackgroundState::Foreground);
+// Minimum time between two iterations of a throttled event loop in milliseconds, 0 for no limit.
+std::atomic<uint32_t> backgroundTickInterval(0);
+// Guarded by backgroundMutex, counts the messages that end the waits of throttled loops.
+uint64_t backgroundWakeups = 0;
+
+// The completion callback of a cleanup hook that waits for a libuv handle to be closed.
+struct ClosingHandle
+{
+  void (*done)(void*);
+  void* doneArg;
+};
 
 // Channel class
 class Channel
@@ -27,26 +77,44 @@ private:
   v8::Persistent<v8::Function> function_;
   uv_async_t* uvHandleQueue_ = nullptr;
   std::mutex uvHandleMutex_;
-  std::mutex queueMutex_;
-  std::queue<char*> messageQueue_;
+  // Messages are produced by any Java thread and consumed on the libuv loop thread.
+  MessageRing messageRing_;
   std::string name_;
-  bool initialized_ = false;
+  std::atomic<bool> initialized_{false};
+  // Channels with a higher priority are delivered first within the same environment.
+  std::atomic<int> priority_{0};
+  // Messages of other channels wait in the ring while the app is in the background.
+  std::atomic<bool> backgroundDelivery_{false};
+  LatencyHistogram latency_;
+  // Detaches the channel when the environment that set it up is freed.
+  node::AsyncCleanupHookHandle cleanupHook_;
 
 public:
-  explicit Channel(std::string name) : name_(std::move(name)) {};
+  explicit Channel(std::string name)
+    : messageRing_(
+        queueCapacity.load(std::memory_order_relaxed),
+        (OverflowPolicy)queueOverflowPolicy.load(std::memory_order_relaxed),
+        true,
+        queueBlockTimeout
+      ),
+      name_(std::move(name)) {};
 
-  // Set up the channel's V8 data. This method can be called only once per channel.
+  // Set up the channel's V8 data. This method can be called only once per channel and environment,
+  // which is the engine or one of its worker threads.
   void setV8Function(v8::Isolate* isolate, v8::Local<v8::Function> func)
   {
-    isolate_ = isolate;
-    function_.Reset(isolate, func);
     uvHandleMutex_.lock();
     if (uvHandleQueue_ == nullptr)
     {
+      isolate_ = isolate;
+      function_.Reset(isolate, func);
       uvHandleQueue_ = (uv_async_t*)malloc(sizeof(uv_async_t));
-      uv_async_init(uv_default_loop(), uvHandleQueue_, FlushMessageQueue);
+      // Every environment, the engine or one of its worker threads, runs its own event loop.
+      uv_async_init(node::GetCurrentEventLoop(isolate), uvHandleQueue_, FlushMessageQueue);
       uvHandleQueue_->data = (void*)this;
-      initialized_ = true;
+      cleanupHook_ = node::AddEnvironmentCleanupHook(isolate, Channel::detach, this);
+      initialized_.store(true, std::memory_order_release);
+      environmentChannels.push_back(this);
       uv_async_send(uvHandleQueue_);
     }
     else
@@ -58,60 +126,236 @@ public:
     uvHandleMutex_.unlock();
   };
 
-  // Add a new message to the channel's queue and notify libuv to
-  // call us back to do the actual message delivery.
-  void queueMessage(char* message)
+  // Notify libuv to call us back to do the actual message delivery.
+  void notify()
   {
-    queueMutex_.lock();
-    messageQueue_.push(message);
-    queueMutex_.unlock();
+    if (!initialized_.load(std::memory_order_acquire))
+      return;
 
-    if (initialized_)
+    // The handle may be closed concurrently when the environment is freed.
+    uvHandleMutex_.lock();
+    if (uvHandleQueue_ != nullptr)
       uv_async_send(uvHandleQueue_);
+    uvHandleMutex_.unlock();
+
+    // Throttled loops would otherwise wait for the end of their tick before delivering the message.
+    if (backgroundDelivery_.load(std::memory_order_relaxed) && backgroundState.load(std::memory_order_acquire) == (int)BackgroundState::Throttled)
+      WakeThrottledLoops();
+  };
+
+  // Release the V8 data and the libuv handle of the channel when its environment is freed, e.g. when the engine
+  // stops, so that it can be set up again. The environment waits until done() is called once the handle has been
+  // closed. Messages still queued are discarded.
+  static void detach(void* arg, void (*done)(void*), void* doneArg)
+  {
+    auto channel = (Channel*)arg;
+
+    channel->uvHandleMutex_.lock();
+    uv_async_t* handle = channel->uvHandleQueue_;
+    channel->initialized_.store(false, std::memory_order_release);
+    channel->uvHandleQueue_ = nullptr;
+    channel->isolate_ = nullptr;
+    channel->uvHandleMutex_.unlock();
+
+    channel->function_.Reset();
+    environmentChannels.erase(std::remove(environmentChannels.begin(), environmentChannels.end(), channel), environmentChannels.end());
+
+    channel->messageRing_.consume(0, [](const RingMessage& message) {
+      if (message.external)
+        free(message.data);
+    });
+
+    handle->data = new ClosingHandle{done, doneArg};
+    uv_close((uv_handle_t*)handle, [](uv_handle_t* closedHandle) {
+      auto closing = (ClosingHandle*)closedHandle->data;
+      closing->done(closing->doneArg);
+      delete closing;
+      free(closedHandle);
+    });
+  };
+
+  // Add a new message to the channel's ring and notify libuv.
+  // Returns false if the message has been rejected because the ring is full.
+  bool queueMessage(bool binary, const char* eventName, const char* data, size_t length)
+  {
+    const size_t eventNameLength = eventName != nullptr ? strlen(eventName) : 0;
+    const PushResult result = messageRing_.push(binary, eventName, eventNameLength, data, length);
+    if (result == PushResult::Rejected)
+      return false;
+
+    notify();
+    return true;
+  };
+
+  // Add several messages to the channel's ring under a single producer lock and notify libuv only once.
+  // Returns the number of queued messages.
+  size_t queueMessages(const char* const* messages, size_t count)
+  {
+    const size_t queued = messageRing_.pushTexts(messages, count);
+    if (queued > 0)
+      notify();
+    return queued;
+  };
+
+  // Whether the channel has been set up in an environment and its messages are delivered.
+  bool isRegistered() const
+  {
+    return initialized_.load(std::memory_order_acquire);
+  };
+
+  bool isQueueAllocated() const
+  {
+    return messageRing_.isAllocated();
+  };
+
+  int priority() const
+  {
+    return priority_.load(std::memory_order_relaxed);
+  };
+
+  void setPriority(int priority)
+  {
+    priority_.store(priority, std::memory_order_relaxed);
+  };
+
+  void setBackgroundDelivery(bool enabled)
+  {
+    backgroundDelivery_.store(enabled, std::memory_order_relaxed);
+    updatePaused();
   };
 
-  // Process one message at the time, to simplify synchronization between
-  // threads and minimize lock retention.
+  // Returns whether the delivery of the messages is paused by the background state.
+  bool isPaused() const
+  {
+    const int state = backgroundState.load(std::memory_order_acquire);
+    return state == (int)BackgroundState::Suspended ||
+      (state == (int)BackgroundState::Throttled && !backgroundDelivery_.load(std::memory_order_relaxed));
+  };
+
+  // Called whenever the background state changes, producers do not wait for room in the ring of a paused channel.
+  void updatePaused()
+  {
+    messageRing_.setConsumerPaused(isPaused());
+  };
+
+  // Notifies the isolate of the channel of the memory pressure, unless it is in `notifiedIsolates` already.
+  // The lock keeps the environment from being freed during the call.
+  void notifyMemoryPressure(v8::MemoryPressureLevel level, std::vector<v8::Isolate*>& notifiedIsolates)
+  {
+    std::lock_guard<std::mutex> lock(uvHandleMutex_);
+    if (!initialized_.load(std::memory_order_acquire) || isolate_ == nullptr)
+      return;
+
+    if (std::find(notifiedIsolates.begin(), notifiedIsolates.end(), isolate_) != notifiedIsolates.end())
+      return;
+
+    notifiedIsolates.push_back(isolate_);
+    isolate_->MemoryPressureNotification(level);
+  };
+
+  bool hasPendingMessages() const
+  {
+    return !messageRing_.empty() && !isPaused();
+  };
+
+  // Deliver the messages of the ring in batches. At most maxMessagesPerFlush messages
+  // are delivered per loop iteration, so that a burst of messages does not starve
+  // the other events of the loop. Pending messages of channels with a higher priority
+  // are delivered before and in between the batches. Paused channels keep their messages
+  // until they are notified again once the app has returned to the foreground.
   void flushQueue()
   {
-    char* message = nullptr;
-    bool empty = true;
+    if (messageRing_.empty() || isPaused())
+      return;
 
-    queueMutex_.lock();
-    if (!messageQueue_.empty())
-    {
-      message = messageQueue_.front();
-      messageQueue_.pop();
-      empty = messageQueue_.empty();
-    }
-    queueMutex_.unlock();
+    FlushHigherPriorityChannels(this);
+
+    v8::HandleScope scope(isolate_);
+
+    v8::Local<v8::Context> context = isolate_->GetCurrentContext();
+    v8::Local<v8::Function> nodeFunction = v8::Local<v8::Function>::New(isolate_, function_);
+    v8::Local<v8::Value> global = context->Global();
+
+    v8::Local<v8::String> channelName = v8::String::NewFromUtf8(isolate_, name_.c_str(), v8::NewStringType::kNormal).ToLocalChecked();
 
-    if (message != nullptr)
+    // Without channels of a higher priority in the environment, the messages are delivered in a single batch.
+    const size_t maxMessages = maxMessagesPerFlush.load(std::memory_order_relaxed);
+    const bool checkPriorities = HasHigherPriorityChannels(this);
+    size_t delivered = 0;
+    while (maxMessages == 0 || delivered < maxMessages)
     {
-      invokeNodeListener(message);
-      free(message);
+      size_t batchSize = checkPriorities ? priorityCheckInterval : maxMessages;
+      if (maxMessages != 0 && batchSize > maxMessages - delivered)
+        batchSize = maxMessages - delivered;
+
+      const size_t consumed = messageRing_.consume(batchSize, [&](const RingMessage& message) {
+        // Differences of the wrapping clock are valid as long as messages wait less than about 71 minutes.
+        latency_.record((uint32_t)(MessageRing::clockMicros() - message.queuedTime));
+        invokeNodeListener(context, nodeFunction, global, channelName, message);
+      });
+      if (consumed == 0 || messageRing_.empty())
+        break;
+
+      delivered += consumed;
+      if (checkPriorities)
+        FlushHigherPriorityChannels(this);
     }
 
-    if (!empty)
+    // Messages queued in the meantime have already signaled the handle.
+    if (!messageRing_.empty())
       uv_async_send(uvHandleQueue_);
   };
 
   // Calls into Node to execute the registered Node listener.
   // This method is always executed on the main libuv loop thread.
-  void invokeNodeListener(char* message)
+  void invokeNodeListener(
+    v8::Local<v8::Context> context,
+    v8::Local<v8::Function> nodeFunction,
+    v8::Local<v8::Value> global,
+    v8::Local<v8::String> channelName,
+    const RingMessage& message)
   {
-    v8::HandleScope scope(isolate_);
+    v8::MaybeLocal<v8::Value> result;
+    if (message.binary)
+    {
+      v8::Local<v8::String> eventName = v8::String::NewFromUtf8(isolate_, message.eventName, v8::NewStringType::kNormal, (int)message.eventNameLength).ToLocalChecked();
 
-    v8::Local<v8::Function> nodeFunction = v8::Local<v8::Function>::New(isolate_, function_);
-    v8::Local<v8::Value> global = isolate_->GetCurrentContext()->Global();
+      v8::Local<v8::ArrayBuffer> channelData;
+      if (message.external)
+      {
+        // The ArrayBuffer takes over large payloads, so they reach JavaScript without another copy.
+        std::unique_ptr<v8::BackingStore> backingStore = v8::ArrayBuffer::NewBackingStore(
+          message.data,
+          message.length,
+          [](void* data, size_t, void*) { free(data); },
+          nullptr
+        );
+        channelData = v8::ArrayBuffer::New(isolate_, std::move(backingStore));
+      }
+      else
+      {
+        // Small payloads are stored inline in the ring and copied out.
+        channelData = v8::ArrayBuffer::New(isolate_, message.length);
+        if (message.length > 0)
+          memcpy(channelData->GetBackingStore()->Data(), message.data, message.length);
+      }
 
-    v8::Local<v8::String> channelName = v8::String::NewFromUtf8(isolate_, name_.c_str(), v8::NewStringType::kNormal).ToLocalChecked();
-    v8::Local<v8::String> channelMessage = v8::String::NewFromUtf8(isolate_, message, v8::NewStringType::kNormal).ToLocalChecked();
+      const int argc = 3;
+      v8::Local<v8::Value> argv[argc] = { channelName, eventName, channelData };
 
-    const int argc = 2;
-    v8::Local<v8::Value> argv[argc] = { channelName, channelMessage };
+      result = nodeFunction->Call(context, global, argc, argv);
+    }
+    else
+    {
+      v8::Local<v8::String> channelMessage = v8::String::NewFromUtf8(isolate_, message.data, v8::NewStringType::kNormal, (int)message.length).ToLocalChecked();
+      if (message.external)
+        free(message.data);
 
-    v8::MaybeLocal<v8::Value> result = nodeFunction->Call(isolate_->GetCurrentContext(), global, argc, argv);
+      const int argc = 2;
+      v8::Local<v8::Value> argv[argc] = { channelName, channelMessage };
+
+      result = nodeFunction->Call(context, global, argc, argv);
+    }
 
     if (!result.IsEmpty())
     {
@@ -119,6 +363,18 @@ public:
       // Do something with the result if needed
     }
   };
+
+  void getStats(ChannelStats& stats) const
+  {
+    stats.queuedMessages = messageRing_.size();
+    stats.queuedBytes = messageRing_.usedBytes();
+    stats.maxQueuedMessages = messageRing_.maxSize();
+    stats.capacity = messageRing_.capacity();
+    stats.deliveredMessages = messageRing_.consumedCount();
+    stats.droppedMessages = messageRing_.droppedCount();
+    stats.rejectedMessages = messageRing_.rejectedCount();
+    stats.latency = latency_.snapshot();
+  };
 };
 
 // Flush the specific channel queue
@@ -131,8 +387,14 @@ void FlushMessageQueue(uv_async_t* handle)
 // Global variables
 std::mutex channelsMutex;
 std::map<std::string, Channel*> channels;
+// Priorities by the name of the channel without the id of a worker thread, so they apply to the channels of all workers.
+std::map<std::string, int> channelPriorities;
+// Names of the channels without the id of a worker thread, whose messages are delivered while the app is in the background.
+std::set<std::string> backgroundChannels;
 
 callbackFunction sendMessageToNative = nullptr;
+binaryCallbackFunction sendBinaryMessageToNative = nullptr;
+materializeCallbackFunction materializeFilesInNative = nullptr;
 
 /*
  * Called by the native Java code to register the callback
@@ -143,6 +405,39 @@ void RegisterCallback(callbackFunction function)
   sendMessageToNative = function;
 }
 
+/*
+ * Called by the native Java code to register the callback
+ * that receives the binary messages sent from Node.
+ */
+void RegisterBinaryCallback(binaryCallbackFunction function)
+{
+  sendBinaryMessageToNative = function;
+}
+
+/*
+ * Called by the native Java code to register the callback
+ * that materializes files of the Node project which have not been extracted yet.
+ */
+void RegisterMaterializeCallback(materializeCallbackFunction function)
+{
+  materializeFilesInNative = function;
+}
+
+// Returns the name of the channel without the id of a worker thread, e.g. "EVENT_CHANNEL" for "EVENT_CHANNEL@1".
+std::string GetBaseChannelName(const std::string& channelName)
+{
+  const size_t separatorIndex = channelName.rfind('@');
+  if (separatorIndex == std::string::npos || separatorIndex + 1 == channelName.size())
+    return channelName;
+
+  for (size_t i = separatorIndex + 1; i < channelName.size(); i++)
+  {
+    if (channelName[i] < '0' || channelName[i] > '9')
+      return channelName;
+  }
+  return channelName.substr(0, separatorIndex);
+}
+
 // Return an existing channel or create a new one if it doesn't exist already.
 Channel* GetOrCreateChannel(const std::string& channelName)
 {
@@ -154,21 +449,327 @@ Channel* GetOrCreateChannel(const std::string& channelName)
   else
   {
     channel = new Channel(channelName);
+    if (!channel->isQueueAllocated())
+    {
+      const std::string error = "Couldn't allocate the message queue of the channel '" + channelName + "', its messages will be rejected.";
+      __android_log_write(ANDROID_LOG_ERROR, "NodeJS-Engine", error.c_str());
+    }
+    const std::string baseChannelName = GetBaseChannelName(channelName);
+    auto priority = channelPriorities.find(baseChannelName);
+    if (priority != channelPriorities.end())
+      channel->setPriority(priority->second);
+    channel->setBackgroundDelivery(backgroundChannels.count(baseChannelName) != 0);
     channels[channelName] = channel;
   }
   channelsMutex.unlock();
   return channel;
 }
 
+// Sets the priority of a channel and of the channels of the same name of all worker threads
+void SetChannelPriority(const char* channelName, int priority)
+{
+  const std::string baseChannelName = GetBaseChannelName(std::string(channelName));
+
+  std::lock_guard<std::mutex> lock(channelsMutex);
+  channelPriorities[baseChannelName] = priority;
+  for (auto& entry : channels)
+  {
+    if (GetBaseChannelName(entry.first) == baseChannelName)
+      entry.second->setPriority(priority);
+  }
+}
+
+// Sets whether the messages of a channel and of the channels of the same name of all worker threads
+// are delivered while the app is in the background
+void SetChannelBackgroundDelivery(const char* channelName, bool enabled)
+{
+  const std::string baseChannelName = GetBaseChannelName(std::string(channelName));
+
+  std::lock_guard<std::mutex> lock(channelsMutex);
+  if (enabled)
+    backgroundChannels.insert(baseChannelName);
+  else
+    backgroundChannels.erase(baseChannelName);
+
+  for (auto& entry : channels)
+  {
+    if (GetBaseChannelName(entry.first) != baseChannelName)
+      continue;
+
+    entry.second->setBackgroundDelivery(enabled);
+    entry.second->notify();
+  }
+}
+
+// Throttles or suspends the event loop of an environment, the engine or one of its worker threads, while the app is
+// in the background. A check handle runs after every iteration of the loop and waits until the tick interval has
+// passed since the previous iteration or, while the loop is suspended, until the app returns to the foreground.
+// Timers that expire during the wait run together in the next iteration.
+class LoopControl
+{
+private:
+  uv_check_t* checkHandle_;
+  // Wakes the loop while it is polling for events, so that it is suspended right away.
+  uv_async_t* wakeupHandle_;
+  std::chrono::steady_clock::time_point lastIteration_;
+  node::AsyncCleanupHookHandle cleanupHook_;
+
+  static void onCheck(uv_check_t* handle)
+  {
+    ((LoopControl*)handle->data)->wait();
+  }
+
+  void wait()
+  {
+    if (backgroundState.load(std::memory_order_acquire) == (int)BackgroundState::Foreground)
+      return;
+
+    std::unique_lock<std::mutex> lock(backgroundMutex);
+    const uint64_t wakeups = backgroundWakeups;
+    while (backgroundWakeups == wakeups)
+    {
+      const int state = backgroundState.load(std::memory_order_acquire);
+      if (state == (int)BackgroundState::Suspended)
+      {
+        backgroundChanged.wait(lock);
+        continue;
+      }
+
+      const auto resumeTime = lastIteration_ + std::chrono::milliseconds(backgroundTickInterval.load(std::memory_order_relaxed));
+      if (state != (int)BackgroundState::Throttled || std::chrono::steady_clock::now() >= resumeTime)
+        break;
+
+      backgroundChanged.wait_until(lock, resumeTime);
+    }
+    lastIteration_ = std::chrono::steady_clock::now();
+  }
+
+public:
+  // Called on the loop thread of the environment of the isolate.
+  explicit LoopControl(v8::Isolate* isolate)
+  {
+    uv_loop_t* loop = node::GetCurrentEventLoop(isolate);
+
+    // Neither handle keeps the loop alive.
+    checkHandle_ = (uv_check_t*)malloc(sizeof(uv_check_t));
+    uv_check_init(loop, checkHandle_);
+    checkHandle_->data = (void*)this;
+    uv_check_start(checkHandle_, onCheck);
+    uv_unref((uv_handle_t*)checkHandle_);
+
+    wakeupHandle_ = (uv_async_t*)malloc(sizeof(uv_async_t));
+    uv_async_init(loop, wakeupHandle_, [](uv_async_t*) {});
+    uv_unref((uv_handle_t*)wakeupHandle_);
+
+    cleanupHook_ = node::AddEnvironmentCleanupHook(isolate, LoopControl::detach, this);
+  };
+
+  // Thread-safe, the control is only woken while it is registered.
+  void wakeup()
+  {
+    uv_async_send(wakeupHandle_);
+  };
+
+  // Unregisters the control when its environment is freed. The environment waits until both handles have been closed.
+  static void detach(void* arg, void (*done)(void*), void* doneArg);
+};
+
+std::mutex loopControlsMutex;
+std::map<v8::Isolate*, LoopControl*> loopControls;
+
+void LoopControl::detach(void* arg, void (*done)(void*), void* doneArg)
+{
+  auto control = (LoopControl*)arg;
+
+  loopControlsMutex.lock();
+  for (auto it = loopControls.begin(); it != loopControls.end(); ++it)
+  {
+    if (it->second == control)
+    {
+      loopControls.erase(it);
+      break;
+    }
+  }
+  loopControlsMutex.unlock();
+
+  uv_check_t* checkHandle = control->checkHandle_;
+  uv_async_t* wakeupHandle = control->wakeupHandle_;
+  delete control;
+
+  // The handles are closed one after the other, the second one completes the cleanup.
+  checkHandle->data = (void*)wakeupHandle;
+  wakeupHandle->data = new ClosingHandle{done, doneArg};
+  uv_close((uv_handle_t*)checkHandle, [](uv_handle_t* closedCheckHandle) {
+    auto nextHandle = (uv_handle_t*)closedCheckHandle->data;
+    free(closedCheckHandle);
+
+    uv_close(nextHandle, [](uv_handle_t* closedHandle) {
+      auto closing = (ClosingHandle*)closedHandle->data;
+      closing->done(closing->doneArg);
+      delete closing;
+      free(closedHandle);
+    });
+  });
+}
+
+// Sets up the loop control of the environment of the isolate once, called on the loop thread of the environment
+void EnsureLoopControl(v8::Isolate* isolate)
+{
+  std::lock_guard<std::mutex> lock(loopControlsMutex);
+  if (loopControls.find(isolate) == loopControls.end())
+    loopControls[isolate] = new LoopControl(isolate);
+}
+
+// Ends the waits of throttled loops, so that messages of channels delivered in the background are not delayed
+void WakeThrottledLoops()
+{
+  std::lock_guard<std::mutex> lock(backgroundMutex);
+  backgroundWakeups++;
+  backgroundChanged.notify_all();
+}
+
+// Throttles or suspends the event loops of Node and its worker threads and pauses the channels
+// which are not delivered in the background, or resumes them in the foreground
+void SetBackgroundState(BackgroundState state)
+{
+  {
+    std::lock_guard<std::mutex> lock(backgroundMutex);
+    if (backgroundState.exchange((int)state, std::memory_order_acq_rel) == (int)state)
+      return;
+    backgroundChanged.notify_all();
+  }
+
+  // Resumed channels deliver the messages queued in the meantime in batches.
+  channelsMutex.lock();
+  for (auto& entry : channels)
+  {
+    entry.second->updatePaused();
+    if (state == BackgroundState::Foreground)
+      entry.second->notify();
+  }
+  channelsMutex.unlock();
+
+  // Idle loops are woken, as they would only be suspended after their next event otherwise.
+  if (state == BackgroundState::Suspended)
+  {
+    std::lock_guard<std::mutex> lock(loopControlsMutex);
+    for (auto& entry : loopControls)
+      entry.second->wakeup();
+  }
+}
+
+// Sets the minimum time between two iterations of a throttled event loop
+void SetBackgroundTickInterval(uint32_t milliseconds)
+{
+  std::lock_guard<std::mutex> lock(backgroundMutex);
+  backgroundTickInterval.store(milliseconds, std::memory_order_relaxed);
+  backgroundChanged.notify_all();
+}
+
+// Notifies every isolate with a channel once, which are the isolates of the engine and of its worker threads
+void NotifyMemoryPressure(int level)
+{
+  if (level < (int)v8::MemoryPressureLevel::kNone || level > (int)v8::MemoryPressureLevel::kCritical)
+    return;
+
+  std::vector<v8::Isolate*> notifiedIsolates;
+  std::lock_guard<std::mutex> lock(channelsMutex);
+  for (auto& entry : channels)
+    entry.second->notifyMemoryPressure((v8::MemoryPressureLevel)level, notifiedIsolates);
+}
+
+// Delivers the pending messages of the channels of the same environment with a higher priority than the channel,
+// the highest priority first. Called on the loop thread of the environment while the channel is being flushed.
+void FlushHigherPriorityChannels(const Channel* channel)
+{
+  const int priority = channel->priority();
+
+  std::vector<Channel*> pendingChannels;
+  for (Channel* environmentChannel : environmentChannels)
+  {
+    if (environmentChannel->priority() > priority && environmentChannel->hasPendingMessages())
+      pendingChannels.push_back(environmentChannel);
+  }
+
+  // The list is copied, as the listeners may set up further channels. A flushed channel only flushes
+  // channels with an even higher priority, so no channel is flushed while it is already being flushed.
+  std::stable_sort(pendingChannels.begin(), pendingChannels.end(), [](const Channel* a, const Channel* b) {
+    return a->priority() > b->priority();
+  });
+  for (Channel* pendingChannel : pendingChannels)
+    pendingChannel->flushQueue();
+}
+
+// Returns whether a channel of the same environment has a higher priority than the channel.
+// Called on the loop thread of the environment.
+bool HasHigherPriorityChannels(const Channel* channel)
+{
+  const int priority = channel->priority();
+  for (Channel* environmentChannel : environmentChannels)
+  {
+    if (environmentChannel->priority() > priority)
+      return true;
+  }
+  return false;
+}
+
 // This method is the public API called by the native Java code
-void SendMessageToNode(const char* channelName, const char* channelMessage)
+bool SendMessageToNode(const char* channelName, const char* channelMessage)
 {
-  size_t messageLength = strlen(channelMessage);
-  char* message = (char*)calloc(sizeof(char), messageLength + 1);
-  strncpy(message, channelMessage, messageLength);
+  Channel* channel = GetOrCreateChannel(std::string(channelName));
+  return channel->queueMessage(false, nullptr, channelMessage, strlen(channelMessage));
+}
 
+// This method is the public API called by the native Java code to send several messages at once
+size_t SendMessagesToNode(const char* channelName, const char* const* channelMessages, size_t count)
+{
   Channel* channel = GetOrCreateChannel(std::string(channelName));
-  channel->queueMessage(message);
+  return channel->queueMessages(channelMessages, count);
+}
+
+// Sets the maximum number of messages delivered per channel and loop iteration
+void SetMaxMessagesPerFlush(size_t count)
+{
+  maxMessagesPerFlush.store(count, std::memory_order_relaxed);
+}
+
+// Sets the capacity in bytes and the overflow policy of the message rings of channels created from now on
+void SetMessageQueueOptions(size_t capacity, int overflowPolicy)
+{
+  queueCapacity.store(capacity, std::memory_order_relaxed);
+  queueOverflowPolicy.store(overflowPolicy, std::memory_order_relaxed);
+}
+
+// This method is the public API called by the native Java code to send raw bytes
+bool SendBinaryMessageToNode(const char* channelName, const char* eventName, const void* data, size_t length)
+{
+  Channel* channel = GetOrCreateChannel(std::string(channelName));
+  return channel->queueMessage(true, eventName, (const char*)data, length);
+}
+
+// Returns false if the channel does not exist, without creating it.
+bool IsChannelRegistered(const char* channelName)
+{
+  std::lock_guard<std::mutex> lock(channelsMutex);
+  auto it = channels.find(std::string(channelName));
+  return it != channels.end() && it->second->isRegistered();
+}
+
+bool GetChannelStats(const char* channelName, ChannelStats& stats)
+{
+  Channel* channel = nullptr;
+  channelsMutex.lock();
+  auto it = channels.find(std::string(channelName));
+  if (it != channels.end())
+    channel = it->second;
+  channelsMutex.unlock();
+
+  // Channels are never deleted, so the channel can be read without holding the lock.
+  if (channel == nullptr)
+    return false;
+
+  channel->getStats(stats);
+  return true;
 }
 
 // Send a message to the native Java code
@@ -193,6 +794,54 @@ void Method_SendMessage(const v8::FunctionCallbackInfo<v8::Value>& args)
     sendMessageToNative(channelNameStr.c_str(), channelMessageStr.c_str());
 }
 
+// Send a binary message to the native Java code
+void Method_SendBinaryMessage(const v8::FunctionCallbackInfo<v8::Value>& args)
+{
+  v8::Isolate* isolate = args.GetIsolate();
+  if (args.Length() != 3)
+  {
+    isolate->ThrowException(v8::Exception::TypeError(
+      v8::String::NewFromUtf8(isolate, "Wrong number of arguments.").ToLocalChecked()
+    ));
+    return;
+  }
+
+  const char* data = nullptr;
+  size_t length = 0;
+  std::shared_ptr<v8::BackingStore> backingStore;
+
+  if (args[2]->IsArrayBufferView())
+  {
+    v8::Local<v8::ArrayBufferView> view = args[2].As<v8::ArrayBufferView>();
+    backingStore = view->Buffer()->GetBackingStore();
+    data = (const char*)backingStore->Data() + view->ByteOffset();
+    length = view->ByteLength();
+  }
+  else if (args[2]->IsArrayBuffer())
+  {
+    backingStore = args[2].As<v8::ArrayBuffer>()->GetBackingStore();
+    data = (const char*)backingStore->Data();
+    length = backingStore->ByteLength();
+  }
+  else
+  {
+    isolate->ThrowException(v8::Exception::TypeError(
+      v8::String::NewFromUtf8(isolate, "Expected an ArrayBuffer or an ArrayBufferView.").ToLocalChecked()
+    ));
+    return;
+  }
+
+  v8::String::Utf8Value channelName(isolate, args[0]);
+  std::string channelNameStr(*channelName);
+
+  v8::String::Utf8Value eventName(isolate, args[1]);
+  std::string eventNameStr(*eventName);
+
+  // The payload is handed over without a copy, it stays valid until the callback returns.
+  if (sendBinaryMessageToNative)
+    sendBinaryMessageToNative(channelNameStr.c_str(), eventNameStr.c_str(), data, length);
+}
+
 // Register a channel and its listener
 void Method_RegisterChannel(const v8::FunctionCallbackInfo<v8::Value>& args)
 {
@@ -222,12 +871,201 @@ void Method_RegisterChannel(const v8::FunctionCallbackInfo<v8::Value>& args)
 
   Channel* channel = GetOrCreateChannel(channelNameStr);
   channel->setV8Function(isolate, listener); // ref_to_function
+
+  // Every environment registers its channels on its own loop thread.
+  EnsureLoopControl(isolate);
+}
+
+// Set the priority of a channel, channels with a higher priority are delivered first
+void Method_SetChannelPriority(const v8::FunctionCallbackInfo<v8::Value>& args)
+{
+  v8::Isolate* isolate = args.GetIsolate();
+  if (args.Length() != 2 || !args[1]->IsInt32())
+  {
+    isolate->ThrowException(v8::Exception::TypeError(
+      v8::String::NewFromUtf8(isolate, "Expected the name of a channel and an integer priority.").ToLocalChecked()
+    ));
+    return;
+  }
+
+  v8::String::Utf8Value channelName(isolate, args[0]);
+  std::string channelNameStr(*channelName);
+
+  SetChannelPriority(channelNameStr.c_str(), args[1].As<v8::Int32>()->Value());
+}
+
+// Sets a property of a stats object returned to JavaScript
+void SetStatsProperty(v8::Isolate* isolate, v8::Local<v8::Context> context, v8::Local<v8::Object> object, const char* name, double value)
+{
+  object->Set(context, v8::String::NewFromUtf8(isolate, name).ToLocalChecked(), v8::Number::New(isolate, value)).Check();
+}
+
+// Get the statistics of the message queue of a channel, or undefined if the channel does not exist
+void Method_GetChannelStats(const v8::FunctionCallbackInfo<v8::Value>& args)
+{
+  v8::Isolate* isolate = args.GetIsolate();
+  if (args.Length() != 1)
+  {
+    isolate->ThrowException(v8::Exception::TypeError(
+      v8::String::NewFromUtf8(isolate, "Wrong number of arguments.").ToLocalChecked()
+    ));
+    return;
+  }
+
+  v8::String::Utf8Value channelName(isolate, args[0]);
+  std::string channelNameStr(*channelName);
+
+  ChannelStats stats;
+  if (!GetChannelStats(channelNameStr.c_str(), stats))
+    return;
+
+  v8::Local<v8::Context> context = isolate->GetCurrentContext();
+
+  // Latencies are returned in milliseconds.
+  const LatencySnapshot& snapshot = stats.latency;
+  v8::Local<v8::Object> latency = v8::Object::New(isolate);
+  SetStatsProperty(isolate, context, latency, "count", (double)snapshot.count);
+  SetStatsProperty(isolate, context, latency, "average", snapshot.count > 0 ? (double)snapshot.sum / (double)snapshot.count / 1000.0 : 0);
+  SetStatsProperty(isolate, context, latency, "max", (double)snapshot.max / 1000.0);
+  SetStatsProperty(isolate, context, latency, "p50", (double)snapshot.percentile(50) / 1000.0);
+  SetStatsProperty(isolate, context, latency, "p90", (double)snapshot.percentile(90) / 1000.0);
+  SetStatsProperty(isolate, context, latency, "p99", (double)snapshot.percentile(99) / 1000.0);
+
+  v8::Local<v8::Object> queue = v8::Object::New(isolate);
+  SetStatsProperty(isolate, context, queue, "queuedMessages", (double)stats.queuedMessages);
+  SetStatsProperty(isolate, context, queue, "queuedBytes", (double)stats.queuedBytes);
+  SetStatsProperty(isolate, context, queue, "maxQueuedMessages", (double)stats.maxQueuedMessages);
+  SetStatsProperty(isolate, context, queue, "capacity", (double)stats.capacity);
+  SetStatsProperty(isolate, context, queue, "deliveredMessages", (double)stats.deliveredMessages);
+  SetStatsProperty(isolate, context, queue, "droppedMessages", (double)stats.droppedMessages);
+  SetStatsProperty(isolate, context, queue, "rejectedMessages", (double)stats.rejectedMessages);
+
+  v8::Local<v8::Object> result = v8::Object::New(isolate);
+  result->Set(context, v8::String::NewFromUtf8(isolate, "queue").ToLocalChecked(), queue).Check();
+  result->Set(context, v8::String::NewFromUtf8(isolate, "latency").ToLocalChecked(), latency).Check();
+
+  args.GetReturnValue().Set(result);
+}
+
+std::atomic<SharedMemoryRegion*> sharedMemory(nullptr);
+std::mutex sharedMemoryMutex;
+
+SharedMemoryRegion* CreateSharedMemory(size_t slotSize, size_t slotCount)
+{
+  std::lock_guard<std::mutex> lock(sharedMemoryMutex);
+
+  SharedMemoryRegion* region = sharedMemory.load(std::memory_order_acquire);
+  if (region == nullptr)
+  {
+    region = SharedMemoryRegion::create(slotSize, slotCount);
+    sharedMemory.store(region, std::memory_order_release);
+  }
+  return region;
+}
+
+SharedMemoryRegion* GetSharedMemory()
+{
+  return sharedMemory.load(std::memory_order_acquire);
+}
+
+// Get the region of memory shared with the native Java code, or undefined if it has not been created
+void Method_GetSharedMemory(const v8::FunctionCallbackInfo<v8::Value>& args)
+{
+  v8::Isolate* isolate = args.GetIsolate();
+
+  SharedMemoryRegion* region = GetSharedMemory();
+  if (region == nullptr)
+    return;
+
+  v8::Local<v8::Context> context = isolate->GetCurrentContext();
+
+  // The region is never unmapped, so the ArrayBuffer does not own its memory.
+  std::shared_ptr<v8::BackingStore> backingStore = v8::ArrayBuffer::NewBackingStore(
+    region->data(), region->size(), v8::BackingStore::EmptyDeleter, nullptr);
+  v8::Local<v8::ArrayBuffer> buffer = v8::ArrayBuffer::New(isolate, std::move(backingStore));
+
+  v8::Local<v8::Object> result = v8::Object::New(isolate);
+  result->Set(context, v8::String::NewFromUtf8(isolate, "buffer").ToLocalChecked(), buffer).Check();
+  SetStatsProperty(isolate, context, result, "slotSize", (double)region->slotSize());
+  SetStatsProperty(isolate, context, result, "slotCount", (double)region->slotCount());
+
+  args.GetReturnValue().Set(result);
+}
+
+// Acquire a free slot of the shared memory, returns its index or -1 if all slots are in use
+void Method_AcquireSharedMemorySlot(const v8::FunctionCallbackInfo<v8::Value>& args)
+{
+  v8::Isolate* isolate = args.GetIsolate();
+
+  SharedMemoryRegion* region = GetSharedMemory();
+  const int64_t slot = region != nullptr ? region->acquire() : -1;
+
+  args.GetReturnValue().Set(v8::Number::New(isolate, (double)slot));
+}
+
+// Release an acquired slot of the shared memory, returns false if the slot is not acquired
+void Method_ReleaseSharedMemorySlot(const v8::FunctionCallbackInfo<v8::Value>& args)
+{
+  v8::Isolate* isolate = args.GetIsolate();
+  if (args.Length() != 1 || !args[0]->IsNumber())
+  {
+    isolate->ThrowException(v8::Exception::TypeError(
+      v8::String::NewFromUtf8(isolate, "Expected the index of a slot.").ToLocalChecked()
+    ));
+    return;
+  }
+
+  const int64_t slot = (int64_t)args[0].As<v8::Number>()->Value();
+
+  SharedMemoryRegion* region = GetSharedMemory();
+  args.GetReturnValue().Set(region != nullptr && region->release(slot));
+}
+
+// Materialize the files of the Node project below the paths, returns false if they are not being extracted anymore
+void Method_MaterializeFiles(const v8::FunctionCallbackInfo<v8::Value>& args)
+{
+  v8::Isolate* isolate = args.GetIsolate();
+  if (args.Length() != 1 || !args[0]->IsArray())
+  {
+    isolate->ThrowException(v8::Exception::TypeError(
+      v8::String::NewFromUtf8(isolate, "Expected an array of paths.").ToLocalChecked()
+    ));
+    return;
+  }
+
+  v8::Local<v8::Context> context = isolate->GetCurrentContext();
+  v8::Local<v8::Array> pathArray = args[0].As<v8::Array>();
+
+  std::vector<std::string> paths;
+  for (uint32_t i = 0; i < pathArray->Length(); i++)
+  {
+    v8::Local<v8::Value> pathValue;
+    if (!pathArray->Get(context, i).ToLocal(&pathValue))
+      return;
+
+    v8::String::Utf8Value path(isolate, pathValue);
+    paths.emplace_back(*path);
+  }
+
+  std::vector<const char*> pathPointers;
+  for (const std::string& path : paths)
+    pathPointers.push_back(path.c_str());
+
+  const bool isExtracting = materializeFilesInNative != nullptr && materializeFilesInNative(pathPointers.data(), pathPointers.size());
+  args.GetReturnValue().Set(isExtracting);
 }
 
 void Init(v8::Local<v8::Object> exports)
 {
   NODE_SET_METHOD(exports, "emit", Method_SendMessage);
+  NODE_SET_METHOD(exports, "emitBinary", Method_SendBinaryMessage);
   NODE_SET_METHOD(exports, "registerChannel", Method_RegisterChannel);
+  NODE_SET_METHOD(exports, "setChannelPriority", Method_SetChannelPriority);
+  NODE_SET_METHOD(exports, "getChannelStats", Method_GetChannelStats);
+  NODE_SET_METHOD(exports, "getSharedMemory", Method_GetSharedMemory);
+  NODE_SET_METHOD(exports, "acquireSharedMemorySlot", Method_AcquireSharedMemorySlot);
+  NODE_SET_METHOD(exports, "releaseSharedMemorySlot", Method_ReleaseSharedMemorySlot);
+  NODE_SET_METHOD(exports, "materializeFiles", Method_MaterializeFiles);
 }
 
 // Register the bridge to the native Java code at libnode startup
@@ -6,8 +6,76 @@
 #ifndef ANDROID_BRIDGE_H
 #define ANDROID_BRIDGE_H
 
+#include <cstddef>
+#include <cstdint>
+
+#include "latency-histogram.h"
+#include "shared-memory.h"
+
 typedef void (*callbackFunction)(const char* channelName, const char* channelMessage);
 void RegisterCallback(callbackFunction);
-void SendMessageToNode(const char* channelName, const char* channelMessage);
+// The send functions return whether the message has been queued, or the number of queued messages.
+// Messages are rejected if the queue of the channel is full, depending on its overflow policy.
+bool SendMessageToNode(const char* channelName, const char* channelMessage);
+size_t SendMessagesToNode(const char* channelName, const char* const* channelMessages, size_t count);
+void SetMaxMessagesPerFlush(size_t count);
+// The overflow policy is 0 to block, 1 to drop the oldest messages or 2 to reject new messages.
+void SetMessageQueueOptions(size_t capacity, int overflowPolicy);
+// Pending messages of channels with a higher priority are delivered to Node before those of other channels.
+// The priority applies to the channels of the same name of all worker threads, the default priority is 0.
+void SetChannelPriority(const char* channelName, int priority);
+// Returns whether Node has set up a listener for the channel, messages of other channels are only queued.
+bool IsChannelRegistered(const char* channelName);
+// Whether the app runs in the foreground or in the background, where the event loops of Node and its worker threads
+// are throttled or suspended. The values match the background states of the native Java code.
+enum class BackgroundState : int
+{
+  Foreground = 0,
+  Throttled = 1,
+  Suspended = 2,
+};
+// While the app is in the background, only the messages of the channels delivered in the background are delivered,
+// the messages of other channels are kept in their queues and delivered in batches in the foreground.
+// Suspended loops deliver no messages at all.
+void SetBackgroundState(BackgroundState state);
+// Throttled loops iterate at most once per interval, unless a channel delivered in the background receives a message.
+void SetBackgroundTickInterval(uint32_t milliseconds);
+// Applies to the channels of the same name of all worker threads.
+void SetChannelBackgroundDelivery(const char* channelName, bool enabled);
+
+// Notifies the isolates of Node and its worker threads of the memory pressure, a level of v8::MemoryPressureLevel.
+// V8 collects garbage on the threads of the isolates, so this can be called from any thread.
+void NotifyMemoryPressure(int level);
+
+// The data passed to the binary callback is owned by Node and is only valid for the duration of the call.
+typedef void (*binaryCallbackFunction)(const char* channelName, const char* eventName, const void* data, size_t length);
+void RegisterBinaryCallback(binaryCallbackFunction);
+bool SendBinaryMessageToNode(const char* channelName, const char* eventName, const void* data, size_t length);
+
+// Called on the threads of Node, which are blocked until the files have been materialized by the native Java code.
+// Returns false if the files of the Node project are not being extracted anymore.
+typedef bool (*materializeCallbackFunction)(const char* const* pathPrefixes, size_t count);
+void RegisterMaterializeCallback(materializeCallbackFunction);
+
+// Statistics of the message queue of a channel and of the messages delivered from it to Node.
+struct ChannelStats
+{
+  uint64_t queuedMessages;
+  uint64_t queuedBytes;
+  uint64_t maxQueuedMessages;
+  uint64_t capacity;
+  uint64_t deliveredMessages;
+  uint64_t droppedMessages;
+  uint64_t rejectedMessages;
+  // Time from queueing a message until the Node listener has been invoked with it.
+  LatencySnapshot latency;
+};
+// Returns false if the channel does not exist.
+bool GetChannelStats(const char* channelName, ChannelStats& stats);
+
+// Creates the region of memory shared with Node on the first call, later calls return the existing region.
+// Returns nullptr if the region could not be created.
+SharedMemoryRegion* CreateSharedMemory(size_t slotSize, size_t slotCount);
+SharedMemoryRegion* GetSharedMemory();
 
 #endif //ANDROID_BRIDGE_H
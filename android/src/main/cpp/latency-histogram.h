@@ -0,0 +1,87 @@
+/*
+ * A lock-free histogram of latencies with logarithmic buckets.
+ *
+ * Bucket 0 counts latencies below one microsecond, bucket i counts latencies from 2^(i-1)
+ * up to 2^i microseconds and the last bucket counts everything above. The same layout is
+ * used by the Java side, so that snapshots can be passed through JNI as plain numbers.
+ */
+
+#ifndef ANDROID_LATENCY_HISTOGRAM_H
+#define ANDROID_LATENCY_HISTOGRAM_H
+
+#include <atomic>
+#include <cstddef>
+#include <cstdint>
+
+const size_t kLatencyBucketCount = 32;
+
+struct LatencySnapshot
+{
+  uint64_t count = 0;
+  // Sum and maximum of the latencies in microseconds.
+  uint64_t sum = 0;
+  uint64_t max = 0;
+  uint64_t buckets[kLatencyBucketCount] = {};
+
+  // Returns the upper bound in microseconds of the bucket containing the percentile, capped at the maximum.
+  uint64_t percentile(double percentile) const
+  {
+    if (count == 0)
+      return 0;
+
+    const double rank = percentile / 100.0 * (double)count;
+    uint64_t seen = 0;
+    for (size_t i = 0; i < kLatencyBucketCount; i++)
+    {
+      seen += buckets[i];
+      if ((double)seen >= rank && buckets[i] > 0)
+      {
+        const uint64_t upperBound = i + 1 < kLatencyBucketCount ? uint64_t(1) << i : max;
+        return upperBound < max ? upperBound : max;
+      }
+    }
+    return max;
+  }
+};
+
+class LatencyHistogram
+{
+private:
+  std::atomic<uint64_t> buckets_[kLatencyBucketCount] = {};
+  std::atomic<uint64_t> count_{0};
+  std::atomic<uint64_t> sum_{0};
+  std::atomic<uint64_t> max_{0};
+
+  static size_t bucketOf(uint64_t micros)
+  {
+    if (micros == 0)
+      return 0;
+    const size_t bucket = 64 - __builtin_clzll(micros);
+    return bucket < kLatencyBucketCount ? bucket : kLatencyBucketCount - 1;
+  }
+
+public:
+  void record(uint64_t micros)
+  {
+    buckets_[bucketOf(micros)].fetch_add(1, std::memory_order_relaxed);
+    count_.fetch_add(1, std::memory_order_relaxed);
+    sum_.fetch_add(micros, std::memory_order_relaxed);
+
+    uint64_t max = max_.load(std::memory_order_relaxed);
+    while (micros > max && !max_.compare_exchange_weak(max, micros, std::memory_order_relaxed)) {}
+  }
+
+  // The counters are read one by one, so a snapshot taken while recording may be off by a few latencies.
+  LatencySnapshot snapshot() const
+  {
+    LatencySnapshot snapshot;
+    snapshot.count = count_.load(std::memory_order_relaxed);
+    snapshot.sum = sum_.load(std::memory_order_relaxed);
+    snapshot.max = max_.load(std::memory_order_relaxed);
+    for (size_t i = 0; i < kLatencyBucketCount; i++)
+      snapshot.buckets[i] = buckets_[i].load(std::memory_order_relaxed);
+    return snapshot;
+  }
+};
+
+#endif //ANDROID_LATENCY_HISTOGRAM_H
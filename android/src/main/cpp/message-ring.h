@@ -0,0 +1,467 @@
+/*
+ * A bounded, preallocated ring buffer for the messages of a bridge channel.
+ *
+ * Messages are stored inline as length-prefixed records. Messages too large to be stored
+ * inline are allocated separately and only a pointer to them is stored in the ring.
+ * The ring has a single consumer (the libuv loop thread of the channel) and either a single
+ * producer or, if enabled, multiple producers that are serialized by a producer lock.
+ */
+
+#ifndef ANDROID_MESSAGE_RING_H
+#define ANDROID_MESSAGE_RING_H
+
+#include <atomic>
+#include <chrono>
+#include <condition_variable>
+#include <cstdint>
+#include <cstdlib>
+#include <cstring>
+#include <mutex>
+#include <string>
+
+// What to do when a message does not fit into the ring anymore.
+enum class OverflowPolicy : int
+{
+  // Wait until the consumer has made enough room, up to the block timeout.
+  Block = 0,
+  // Drop the oldest messages until the new message fits.
+  DropOldest = 1,
+  // Reject the new message.
+  Reject = 2,
+};
+
+enum class PushResult
+{
+  Queued,
+  QueuedAfterDrop,
+  Rejected,
+};
+
+// A message as seen by the consumer. Unless the message is external, the data
+// is only valid for the duration of the consumer callback.
+struct RingMessage
+{
+  bool binary = false;
+  const char* eventName = nullptr;
+  size_t eventNameLength = 0;
+  char* data = nullptr;
+  size_t length = 0;
+  // External messages are allocated with malloc() and owned by the consumer callback.
+  bool external = false;
+  // Time the message has been queued, in wrapping microseconds of MessageRing::clockMicros().
+  uint32_t queuedTime = 0;
+};
+
+class MessageRing
+{
+private:
+  static constexpr uint16_t kTypeText = 1;
+  static constexpr uint16_t kTypeBinary = 2;
+  static constexpr uint16_t kTypePadding = 3;
+  static constexpr uint16_t kFlagExternal = 0x8000;
+
+  struct RecordHeader
+  {
+    // Size of the record including this header, a multiple of the header size,
+    // so that there is always room for a padding record at the end of the buffer.
+    uint32_t size;
+    uint16_t type;
+    uint16_t eventNameLength;
+    uint32_t dataLength;
+    uint32_t queuedTime;
+  };
+
+  struct ExternalData
+  {
+    char* data;
+  };
+
+  char* buffer_ = nullptr;
+  const uint64_t capacity_;
+  const uint64_t inlineLimit_;
+  const OverflowPolicy policy_;
+  const bool multiProducer_;
+  const std::chrono::milliseconds blockTimeout_;
+
+  // Positions are monotonically increasing byte offsets, wrapped when accessing the buffer.
+  alignas(64) std::atomic<uint64_t> head_{0};
+  alignas(64) std::atomic<uint64_t> tail_{0};
+
+  std::atomic<size_t> messageCount_{0};
+  std::atomic<size_t> maxMessageCount_{0};
+  std::atomic<uint64_t> consumedCount_{0};
+  std::atomic<uint64_t> droppedCount_{0};
+  std::atomic<uint64_t> rejectedCount_{0};
+
+  std::mutex producerMutex_;
+  std::mutex spaceMutex_;
+  std::condition_variable spaceAvailable_;
+  std::atomic<int> waitingProducers_{0};
+  // While the consumer is paused, nobody makes room, so producers do not wait even with the block policy.
+  std::atomic<bool> consumerPaused_{false};
+
+  std::string scratch_;
+
+  static uint64_t alignRecord(uint64_t size)
+  {
+    return (size + sizeof(RecordHeader) - 1) & ~uint64_t(sizeof(RecordHeader) - 1);
+  }
+
+  RecordHeader* headerAt(uint64_t position) const
+  {
+    return (RecordHeader*)(buffer_ + position % capacity_);
+  }
+
+  // Releases the external data of a record that is dropped without being consumed.
+  void releaseRecord(const RecordHeader& header, uint64_t position) const
+  {
+    if ((header.type & kFlagExternal) != 0)
+    {
+      ExternalData external;
+      memcpy(&external, buffer_ + position % capacity_ + sizeof(RecordHeader) + header.eventNameLength, sizeof(ExternalData));
+      free(external.data);
+    }
+  }
+
+  // Makes sure that recordSize contiguous bytes are available at the head, inserting
+  // a padding record at the end of the buffer if needed. Returns false if there is no room.
+  bool reserve(uint64_t recordSize, uint64_t& head)
+  {
+    head = head_.load(std::memory_order_relaxed);
+    const uint64_t offset = head % capacity_;
+    const uint64_t padding = offset + recordSize > capacity_ ? capacity_ - offset : 0;
+
+    if (head + padding + recordSize - tail_.load(std::memory_order_acquire) > capacity_)
+      return false;
+
+    if (padding > 0)
+    {
+      RecordHeader* header = headerAt(head);
+      header->size = (uint32_t)padding;
+      header->type = kTypePadding;
+      header->eventNameLength = 0;
+      header->dataLength = 0;
+      header->queuedTime = 0;
+      head += padding;
+    }
+
+    return true;
+  }
+
+  // Drops the oldest record. Returns false if the ring is empty.
+  bool dropOldest()
+  {
+    uint64_t tail = tail_.load(std::memory_order_acquire);
+    while (tail != head_.load(std::memory_order_relaxed))
+    {
+      const RecordHeader header = *headerAt(tail);
+      if (tail_.compare_exchange_weak(tail, tail + header.size, std::memory_order_acq_rel))
+      {
+        if (header.type != kTypePadding)
+        {
+          releaseRecord(header, tail);
+          messageCount_.fetch_sub(1, std::memory_order_relaxed);
+          droppedCount_.fetch_add(1, std::memory_order_relaxed);
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  PushResult pushLocked(bool binary, const char* eventName, size_t eventNameLength, const char* data, size_t length)
+  {
+    // Records consist of the header, the event name and either the data or a pointer to it.
+    const uint64_t inlineSize = alignRecord(sizeof(RecordHeader) + eventNameLength + length);
+    const bool external = inlineSize > inlineLimit_;
+    const uint64_t recordSize = external ? alignRecord(sizeof(RecordHeader) + eventNameLength + sizeof(ExternalData)) : inlineSize;
+
+    // Records of up to half the capacity always fit into an empty ring, even if a padding record is needed.
+    if (buffer_ == nullptr || eventNameLength > UINT16_MAX || length > UINT32_MAX || recordSize > capacity_ / 2)
+    {
+      rejectedCount_.fetch_add(1, std::memory_order_relaxed);
+      return PushResult::Rejected;
+    }
+
+    bool dropped = false;
+    uint64_t head;
+    while (!reserve(recordSize, head))
+    {
+      if (policy_ == OverflowPolicy::DropOldest)
+      {
+        // The consumer may have emptied the ring in the meantime, so the head is reserved again either way.
+        dropped |= dropOldest();
+      }
+      else if (policy_ == OverflowPolicy::Block && waitForSpace(recordSize))
+      {
+        continue;
+      }
+      else
+      {
+        rejectedCount_.fetch_add(1, std::memory_order_relaxed);
+        return PushResult::Rejected;
+      }
+    }
+
+    char* record = buffer_ + head % capacity_;
+    RecordHeader* header = (RecordHeader*)record;
+    header->size = (uint32_t)recordSize;
+    header->type = (binary ? kTypeBinary : kTypeText) | (external ? kFlagExternal : 0);
+    header->eventNameLength = (uint16_t)eventNameLength;
+    header->dataLength = (uint32_t)length;
+    header->queuedTime = clockMicros();
+
+    if (eventNameLength > 0)
+      memcpy(record + sizeof(RecordHeader), eventName, eventNameLength);
+
+    char* payload = record + sizeof(RecordHeader) + eventNameLength;
+    if (external)
+    {
+      // Text messages are null-terminated for the consumer.
+      ExternalData externalData = { (char*)malloc(length + 1) };
+      memcpy(externalData.data, data, length);
+      externalData.data[length] = '\0';
+      memcpy(payload, &externalData, sizeof(ExternalData));
+    }
+    else if (length > 0)
+    {
+      memcpy(payload, data, length);
+    }
+
+    // Producers are serialized, so the maximum does not need a compare-and-swap loop.
+    const size_t messageCount = messageCount_.fetch_add(1, std::memory_order_relaxed) + 1;
+    if (messageCount > maxMessageCount_.load(std::memory_order_relaxed))
+      maxMessageCount_.store(messageCount, std::memory_order_relaxed);
+
+    head_.store(head + recordSize, std::memory_order_release);
+
+    return dropped ? PushResult::QueuedAfterDrop : PushResult::Queued;
+  }
+
+  bool waitForSpace(uint64_t recordSize)
+  {
+    std::unique_lock<std::mutex> lock(spaceMutex_);
+    waitingProducers_.fetch_add(1, std::memory_order_acq_rel);
+
+    // Room for the record and a possible padding record at the end of the buffer.
+    bool hasSpace = false;
+    spaceAvailable_.wait_for(lock, blockTimeout_, [&] {
+      const uint64_t used = head_.load(std::memory_order_relaxed) - tail_.load(std::memory_order_acquire);
+      hasSpace = used + 2 * recordSize <= capacity_ || used == 0;
+      return hasSpace || consumerPaused_.load(std::memory_order_acquire);
+    });
+
+    waitingProducers_.fetch_sub(1, std::memory_order_acq_rel);
+    return hasSpace;
+  }
+
+  void notifySpace()
+  {
+    if (waitingProducers_.load(std::memory_order_acquire) > 0)
+    {
+      std::lock_guard<std::mutex> lock(spaceMutex_);
+      spaceAvailable_.notify_all();
+    }
+  }
+
+public:
+  MessageRing(size_t capacity, OverflowPolicy policy, bool multiProducer, std::chrono::milliseconds blockTimeout)
+    : capacity_(alignRecord(capacity < 4096 ? 4096 : capacity)),
+      inlineLimit_(capacity_ / 16),
+      policy_(policy),
+      multiProducer_(multiProducer),
+      blockTimeout_(blockTimeout)
+  {
+    // posix_memalign() is available on all API levels, unlike aligned_alloc(), and allows any size.
+    void* buffer = nullptr;
+    if (posix_memalign(&buffer, 64, capacity_) == 0)
+      buffer_ = (char*)buffer;
+  }
+
+  ~MessageRing()
+  {
+    while (true)
+    {
+      const uint64_t tail = tail_.load(std::memory_order_acquire);
+      if (tail == head_.load(std::memory_order_acquire))
+        break;
+      const RecordHeader header = *headerAt(tail);
+      releaseRecord(header, tail);
+      tail_.store(tail + header.size, std::memory_order_release);
+    }
+    free(buffer_);
+  }
+
+  // A monotonic clock in microseconds, which wraps after about 71 minutes.
+  static uint32_t clockMicros()
+  {
+    const auto now = std::chrono::steady_clock::now().time_since_epoch();
+    return (uint32_t)std::chrono::duration_cast<std::chrono::microseconds>(now).count();
+  }
+
+  MessageRing(const MessageRing&) = delete;
+  MessageRing& operator=(const MessageRing&) = delete;
+
+  PushResult push(bool binary, const char* eventName, size_t eventNameLength, const char* data, size_t length)
+  {
+    if (!multiProducer_)
+      return pushLocked(binary, eventName, eventNameLength, data, length);
+
+    std::lock_guard<std::mutex> lock(producerMutex_);
+    return pushLocked(binary, eventName, eventNameLength, data, length);
+  }
+
+  // Returns false if the buffer could not be allocated, all messages are rejected then.
+  bool isAllocated() const
+  {
+    return buffer_ != nullptr;
+  }
+
+  // Pushes several text messages while holding the producer lock once.
+  // Returns the number of queued messages, which stops at the first rejected message.
+  size_t pushTexts(const char* const* messages, size_t count)
+  {
+    std::unique_lock<std::mutex> lock(producerMutex_, std::defer_lock);
+    if (multiProducer_)
+      lock.lock();
+
+    for (size_t i = 0; i < count; i++)
+    {
+      if (pushLocked(false, nullptr, 0, messages[i], strlen(messages[i])) == PushResult::Rejected)
+        return i;
+    }
+    return count;
+  }
+
+  // Producers waiting for room give up once the consumer is paused, and do not wait while it is paused.
+  void setConsumerPaused(bool paused)
+  {
+    if (consumerPaused_.exchange(paused, std::memory_order_acq_rel) == paused || !paused)
+      return;
+
+    std::lock_guard<std::mutex> lock(spaceMutex_);
+    spaceAvailable_.notify_all();
+  }
+
+  // Delivers up to maxMessages messages (0 for no limit) to the callback on the consumer thread.
+  // Returns the number of delivered messages.
+  template <typename Callback>
+  size_t consume(size_t maxMessages, Callback&& callback)
+  {
+    size_t delivered = 0;
+
+    while (maxMessages == 0 || delivered < maxMessages)
+    {
+      uint64_t tail = tail_.load(std::memory_order_acquire);
+      if (tail == head_.load(std::memory_order_acquire))
+        break;
+
+      const RecordHeader header = *headerAt(tail);
+      const uint16_t type = header.type & ~kFlagExternal;
+
+      if (policy_ == OverflowPolicy::DropOldest)
+      {
+        // The header is only valid if the record has not been dropped while reading it.
+        std::atomic_thread_fence(std::memory_order_acquire);
+        if (tail_.load(std::memory_order_relaxed) != tail)
+          continue;
+      }
+
+      if (type == kTypePadding)
+      {
+        if (tail_.compare_exchange_strong(tail, tail + header.size, std::memory_order_acq_rel))
+          notifySpace();
+        continue;
+      }
+
+      const char* record = buffer_ + tail % capacity_;
+      const bool external = (header.type & kFlagExternal) != 0;
+
+      RingMessage message;
+      message.binary = type == kTypeBinary;
+      message.eventNameLength = header.eventNameLength;
+      message.length = header.dataLength;
+      message.external = external;
+      message.queuedTime = header.queuedTime;
+
+      if (policy_ == OverflowPolicy::DropOldest)
+      {
+        // Producers may drop and overwrite the record while it is being read, so it is
+        // copied first and only delivered if it has not been dropped in the meantime.
+        scratch_.assign(record, header.size);
+        if (!tail_.compare_exchange_strong(tail, tail + header.size, std::memory_order_acq_rel))
+          continue;
+        record = scratch_.data();
+      }
+
+      message.eventName = record + sizeof(RecordHeader);
+      if (external)
+      {
+        ExternalData externalData;
+        memcpy(&externalData, record + sizeof(RecordHeader) + header.eventNameLength, sizeof(ExternalData));
+        message.data = externalData.data;
+      }
+      else
+      {
+        message.data = (char*)record + sizeof(RecordHeader) + header.eventNameLength;
+      }
+
+      callback(message);
+      delivered++;
+
+      if (policy_ != OverflowPolicy::DropOldest)
+        tail_.store(tail + header.size, std::memory_order_release);
+
+      messageCount_.fetch_sub(1, std::memory_order_relaxed);
+      consumedCount_.fetch_add(1, std::memory_order_relaxed);
+      notifySpace();
+    }
+
+    return delivered;
+  }
+
+  bool empty() const
+  {
+    return tail_.load(std::memory_order_acquire) == head_.load(std::memory_order_acquire);
+  }
+
+  size_t size() const
+  {
+    return messageCount_.load(std::memory_order_relaxed);
+  }
+
+  size_t maxSize() const
+  {
+    return maxMessageCount_.load(std::memory_order_relaxed);
+  }
+
+  // Bytes occupied by the queued records, including padding.
+  uint64_t usedBytes() const
+  {
+    // The tail is read first, as it never passes the head.
+    const uint64_t tail = tail_.load(std::memory_order_acquire);
+    return head_.load(std::memory_order_acquire) - tail;
+  }
+
+  uint64_t capacity() const
+  {
+    return capacity_;
+  }
+
+  uint64_t consumedCount() const
+  {
+    return consumedCount_.load(std::memory_order_relaxed);
+  }
+
+  uint64_t droppedCount() const
+  {
+    return droppedCount_.load(std::memory_order_relaxed);
+  }
+
+  uint64_t rejectedCount() const
+  {
+    return rejectedCount_.load(std::memory_order_relaxed);
+  }
+};
+
+#endif //ANDROID_MESSAGE_RING_H
@@ -3,56 +3,325 @@
  */
 
 #include <jni.h>
+#include <chrono>
+#include <deque>
+#include <memory>
 #include <string>
+#include <vector>
+#include <mutex>
+#include <condition_variable>
+#include <algorithm>
+#include <cerrno>
 #include <cstdlib>
+#include <fcntl.h>
+#include <poll.h>
 #include <pthread.h>
+#include <time.h>
 #include <unistd.h>
 #include <android/log.h>
 
+#include "uv.h"
 #include "node.h"
 #include "bridge.h"
+#include "message-ring.h"
+#include "output-pipeline.h"
 
 const char* AdbTag = "NodeJS-Engine";
 
 // Forward declaration.
 int startRedirectingStdoutStderr();
 
-// Cache the variables for the thread running node to call into Java.
-JNIEnv* cacheEnvPointer = nullptr;
-jobject cacheClassObject = nullptr;
+// The output of Node written to stdout and stderr.
+OutputPipeline outputPipeline;
 
-void receiveMessageFromNode(const char* channelName, const char* channelMessage)
+// Resolved once in JNI_OnLoad and valid for the lifetime of the library.
+JavaVM* javaVM = nullptr;
+jclass nodeProcessClass = nullptr;
+jmethodID nativeReceiveMethod = nullptr;
+jmethodID nativeReceiveBinaryMethod = nullptr;
+jmethodID nativeMaterializeMethod = nullptr;
+jmethodID nativeReceiveOutputMethod = nullptr;
+jclass stringClass = nullptr;
+jclass byteArrayClass = nullptr;
+
+// Global reference to the NodeProcess instance that started node.
+jobject nodeProcessObject = nullptr;
+
+// A message from Node waiting to be dispatched to Java.
+struct JavaMessage
 {
-    auto env = cacheEnvPointer;
-    auto object = cacheClassObject;
+    std::string channelName;
+    std::string eventName;
+    std::string data;
+    bool binary = false;
+    // Time the message has been sent by Node, on the clock of System.nanoTime().
+    jlong sentTime = 0;
+};
 
-    if (!env || !object)
-        return;
+// Messages from Node are handed over to a dispatcher thread attached to the JVM, so that the Node.js event
+// loop does not wait for the Java listeners. The queue is bounded by the bytes of its waiting messages and
+// applies the overflow policy of the message rings once it is full.
+std::mutex javaQueueMutex;
+std::condition_variable javaQueueCondition;
+std::condition_variable javaQueueSpaceCondition;
+std::deque<JavaMessage> javaQueue;
+pthread_t dispatcherThread;
+
+// Guarded by javaQueueMutex.
+size_t javaQueueCapacity = 1024 * 1024;
+OverflowPolicy javaQueuePolicy = OverflowPolicy::Block;
+size_t javaQueuedBytes = 0;
+uint64_t javaMaxQueuedMessages = 0;
+uint64_t javaDroppedMessages = 0;
+uint64_t javaRejectedMessages = 0;
+// Set once a message has been dropped or rejected, so that a full queue is only logged once until it drains.
+bool isJavaQueueOverflowing = false;
+
+// How long Node waits for room in a full queue with the block policy before the message is rejected.
+const std::chrono::milliseconds javaQueueBlockTimeout(1000);
+
+// The same clock as System.nanoTime() on Android.
+jlong monotonicNanos()
+{
+    timespec now = {};
+    clock_gettime(CLOCK_MONOTONIC, &now);
+    return (jlong)now.tv_sec * 1000000000 + now.tv_nsec;
+}
+
+size_t javaMessageSize(const JavaMessage& message)
+{
+    return message.channelName.size() + message.eventName.size() + message.data.size();
+}
 
-    // Try to find the class.
-    auto javaClass = env->GetObjectClass(object);
-    if (javaClass != nullptr)
+// A message larger than the whole queue is only accepted into an empty queue.
+bool hasJavaQueueSpace(size_t size)
+{
+    return javaQueuedBytes == 0 || javaQueuedBytes + size <= javaQueueCapacity;
+}
+
+void queueMessageForJava(JavaMessage&& message)
+{
+    const size_t size = javaMessageSize(message);
+
+    bool wasEmpty = false;
+    bool queued = false;
+    bool hasOverflowed = false;
     {
-        // Find the method.
-        auto javaSendMessageMethod = env->GetMethodID(javaClass, "nativeReceive", "(Ljava/lang/String;Ljava/lang/String;)V");
-        if (javaSendMessageMethod != nullptr)
+        std::unique_lock<std::mutex> lock(javaQueueMutex);
+
+        if (!hasJavaQueueSpace(size))
         {
-            auto javaChannel = env->NewStringUTF(channelName);
-            auto javaMessage = env->NewStringUTF(channelMessage);
+            if (javaQueuePolicy == OverflowPolicy::DropOldest)
+            {
+                while (!hasJavaQueueSpace(size))
+                {
+                    javaQueuedBytes -= javaMessageSize(javaQueue.front());
+                    javaQueue.pop_front();
+                    javaDroppedMessages++;
+                }
+            }
+            else if (javaQueuePolicy == OverflowPolicy::Block)
+            {
+                javaQueueSpaceCondition.wait_for(lock, javaQueueBlockTimeout, [size] { return hasJavaQueueSpace(size); });
+            }
 
-            // Call the method.
-            env->CallVoidMethod(object, javaSendMessageMethod, javaChannel, javaMessage);
+            hasOverflowed = !isJavaQueueOverflowing;
+            isJavaQueueOverflowing = true;
+        }
 
-            // Release the JNI references.
-            env->DeleteLocalRef(javaChannel);
-            env->DeleteLocalRef(javaMessage);
+        if (!hasJavaQueueSpace(size))
+        {
+            javaRejectedMessages++;
         }
+        else
+        {
+            wasEmpty = javaQueue.empty();
+            queued = true;
+            javaQueue.push_back(std::move(message));
+            javaQueuedBytes += size;
+            javaMaxQueuedMessages = std::max(javaMaxQueuedMessages, (uint64_t)javaQueue.size());
+        }
+    }
 
-        env->DeleteLocalRef(javaClass);
+    if (hasOverflowed)
+        __android_log_write(ANDROID_LOG_WARN, AdbTag, "The queue of messages to Java is full, the Java listeners can't keep up with Node.");
+
+    // The dispatcher only waits while the queue is empty.
+    if (queued && wasEmpty)
+        javaQueueCondition.notify_one();
+}
+
+void receiveMessageFromNode(const char* channelName, const char* channelMessage)
+{
+    JavaMessage message;
+    message.sentTime = monotonicNanos();
+    message.channelName = channelName;
+    message.data = channelMessage;
+    queueMessageForJava(std::move(message));
+}
+
+void receiveBinaryMessageFromNode(const char* channelName, const char* eventName, const void* data, size_t length)
+{
+    // The data is owned by Node and only valid during this call, so it is copied for the dispatcher.
+    JavaMessage message;
+    message.sentTime = monotonicNanos();
+    message.binary = true;
+    message.channelName = channelName;
+    message.eventName = eventName;
+    message.data.assign((const char*)data, length);
+    queueMessageForJava(std::move(message));
+}
+
+void dispatchMessageToJava(JNIEnv* env, JavaMessage& message)
+{
+    auto javaChannel = env->NewStringUTF(message.channelName.c_str());
+
+    if (message.binary)
+    {
+        static char emptyData;
+
+        auto javaEventName = env->NewStringUTF(message.eventName.c_str());
+        // Wraps the copied data, which is valid until this call returns.
+        auto javaData = env->NewDirectByteBuffer(message.data.empty() ? &emptyData : (void*)message.data.data(), (jlong)message.data.size());
+
+        env->CallVoidMethod(nodeProcessObject, nativeReceiveBinaryMethod, javaChannel, javaEventName, javaData, message.sentTime);
+
+        // Release the JNI references.
+        env->DeleteLocalRef(javaEventName);
+        env->DeleteLocalRef(javaData);
+    }
+    else
+    {
+        auto javaMessage = env->NewStringUTF(message.data.c_str());
+
+        env->CallVoidMethod(nodeProcessObject, nativeReceiveMethod, javaChannel, javaMessage, message.sentTime);
+
+        // Release the JNI references.
+        env->DeleteLocalRef(javaMessage);
+    }
+
+    env->DeleteLocalRef(javaChannel);
+
+    // An exception thrown by a Java listener must not end the dispatcher.
+    if (env->ExceptionCheck())
+    {
+        env->ExceptionDescribe();
+        env->ExceptionClear();
     }
 }
 
-extern "C" JNIEXPORT void JNICALL
+// Called on the main thread or a worker thread of Node, which waits until Java has extracted the files.
+bool materializeFilesForNode(const char* const* pathPrefixes, size_t count)
+{
+    JNIEnv* env = nullptr;
+    bool isAttached = false;
+    if (javaVM->GetEnv((void**)&env, JNI_VERSION_1_6) == JNI_EDETACHED)
+    {
+        // Worker threads of Node are only attached to the JVM for the duration of the call.
+        JavaVMAttachArgs attachArgs = { JNI_VERSION_1_6, "NodeJS-Worker", nullptr };
+        if (javaVM->AttachCurrentThread(&env, &attachArgs) != JNI_OK)
+            return false;
+        isAttached = true;
+    }
+
+    auto javaPathPrefixes = env->NewObjectArray((jsize)count, stringClass, nullptr);
+    for (size_t i = 0; i < count; i++)
+    {
+        auto javaPathPrefix = env->NewStringUTF(pathPrefixes[i]);
+        env->SetObjectArrayElement(javaPathPrefixes, (jsize)i, javaPathPrefix);
+        env->DeleteLocalRef(javaPathPrefix);
+    }
+
+    jboolean isExtracting = env->CallBooleanMethod(nodeProcessObject, nativeMaterializeMethod, javaPathPrefixes);
+    env->DeleteLocalRef(javaPathPrefixes);
+
+    if (env->ExceptionCheck())
+    {
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+        isExtracting = JNI_FALSE;
+    }
+
+    if (isAttached)
+        javaVM->DetachCurrentThread();
+
+    return isExtracting == JNI_TRUE;
+}
+
+void* dispatcherThreadFunc(void*)
+{
+    JNIEnv* env = nullptr;
+    JavaVMAttachArgs attachArgs = { JNI_VERSION_1_6, "NodeJS-Dispatcher", nullptr };
+    if (javaVM->AttachCurrentThread(&env, &attachArgs) != JNI_OK)
+    {
+        __android_log_write(ANDROID_LOG_ERROR, AdbTag, "Couldn't attach the message dispatcher to the JVM.");
+        return nullptr;
+    }
+
+    std::deque<JavaMessage> messages;
+    while (true)
+    {
+        {
+            std::unique_lock<std::mutex> lock(javaQueueMutex);
+            javaQueueCondition.wait(lock, [] { return !javaQueue.empty(); });
+            // Take all pending messages at once, the Node threads keep queueing into the empty queue.
+            messages.swap(javaQueue);
+            javaQueuedBytes = 0;
+            isJavaQueueOverflowing = false;
+        }
+        javaQueueSpaceCondition.notify_all();
+
+        for (JavaMessage& message : messages)
+            dispatchMessageToJava(env, message);
+
+        messages.clear();
+    }
+
+    // The dispatcher stays attached for the lifetime of the process, as it is shared by all starts of the engine.
+    return nullptr;
+}
+
+extern "C" JNIEXPORT jint JNICALL
+JNI_OnLoad(JavaVM* vm, void* /* reserved */)
+{
+    JNIEnv* env = nullptr;
+    if (vm->GetEnv((void**)&env, JNI_VERSION_1_6) != JNI_OK)
+        return JNI_ERR;
+
+    javaVM = vm;
+
+    auto javaClass = env->FindClass("net/hampoelz/capacitor/nodejs/NodeProcess");
+    if (javaClass == nullptr)
+        return JNI_ERR;
+
+    nodeProcessClass = (jclass)env->NewGlobalRef(javaClass);
+    env->DeleteLocalRef(javaClass);
+
+    nativeReceiveMethod = env->GetMethodID(nodeProcessClass, "nativeReceive", "(Ljava/lang/String;Ljava/lang/String;J)V");
+    nativeReceiveBinaryMethod = env->GetMethodID(nodeProcessClass, "nativeReceiveBinary", "(Ljava/lang/String;Ljava/lang/String;Ljava/nio/ByteBuffer;J)V");
+    nativeMaterializeMethod = env->GetMethodID(nodeProcessClass, "nativeMaterialize", "([Ljava/lang/String;)Z");
+    nativeReceiveOutputMethod = env->GetMethodID(nodeProcessClass, "nativeReceiveOutput", "([[B[I[JJ)V");
+    if (nativeReceiveMethod == nullptr || nativeReceiveBinaryMethod == nullptr || nativeMaterializeMethod == nullptr || nativeReceiveOutputMethod == nullptr)
+        return JNI_ERR;
+
+    auto javaStringClass = env->FindClass("java/lang/String");
+    if (javaStringClass == nullptr)
+        return JNI_ERR;
+
+    stringClass = (jclass)env->NewGlobalRef(javaStringClass);
+    env->DeleteLocalRef(javaStringClass);
+
+    auto javaByteArrayClass = env->FindClass("[B");
+    if (javaByteArrayClass == nullptr)
+        return JNI_ERR;
+
+    byteArrayClass = (jclass)env->NewGlobalRef(javaByteArrayClass);
+    env->DeleteLocalRef(javaByteArrayClass);
+
+    return JNI_VERSION_1_6;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
 Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeSend(
     JNIEnv* env,
     jobject /* this */,
@@ -62,11 +331,391 @@ Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeSend(
     const char* nativeChannel = env->GetStringUTFChars(channelName, nullptr);
     const char* nativeMessage = env->GetStringUTFChars(channelMessage, nullptr);
 
-    SendMessageToNode(nativeChannel, nativeMessage);
+    const bool queued = SendMessageToNode(nativeChannel, nativeMessage);
 
     // Release the JNI references.
     env->ReleaseStringUTFChars(channelName, nativeChannel);
     env->ReleaseStringUTFChars(channelMessage, nativeMessage);
+
+    return (jboolean)queued;
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeSendBatch(
+    JNIEnv* env,
+    jobject /* this */,
+    jstring channelName,
+    jobjectArray channelMessages)
+{
+    auto messageCount = env->GetArrayLength(channelMessages);
+    const char* nativeChannel = env->GetStringUTFChars(channelName, nullptr);
+
+    // Messages are queued in chunks to stay within the local reference limits of JNI.
+    const int chunkSize = 256;
+    std::vector<jstring> javaMessages;
+    std::vector<const char*> nativeMessages;
+    size_t queuedMessages = 0;
+    bool rejected = false;
+
+    for (int chunkStart = 0; chunkStart < messageCount && !rejected; chunkStart += chunkSize)
+    {
+        const int chunkEnd = std::min(chunkStart + chunkSize, (int)messageCount);
+
+        javaMessages.clear();
+        nativeMessages.clear();
+
+        for (int i = chunkStart; i < chunkEnd; i++)
+        {
+            auto javaMessage = (jstring)env->GetObjectArrayElement(channelMessages, i);
+            javaMessages.push_back(javaMessage);
+            nativeMessages.push_back(env->GetStringUTFChars(javaMessage, nullptr));
+        }
+
+        const size_t queued = SendMessagesToNode(nativeChannel, nativeMessages.data(), nativeMessages.size());
+        queuedMessages += queued;
+        rejected = queued < nativeMessages.size();
+
+        // Release the JNI references.
+        for (size_t i = 0; i < javaMessages.size(); i++)
+        {
+            env->ReleaseStringUTFChars(javaMessages[i], nativeMessages[i]);
+            env->DeleteLocalRef(javaMessages[i]);
+        }
+    }
+
+    env->ReleaseStringUTFChars(channelName, nativeChannel);
+
+    return (jint)queuedMessages;
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeSetOutputLimits(
+    JNIEnv* /* env */,
+    jobject /* this */,
+    jint bufferSize,
+    jint rateLimit)
+{
+    outputPipeline.setLimits(bufferSize > 0 ? (size_t)bufferSize : 0, rateLimit > 0 ? (uint32_t)rateLimit : 0);
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeSetMaxMessagesPerTick(
+    JNIEnv* /* env */,
+    jobject /* this */,
+    jint count)
+{
+    SetMaxMessagesPerFlush(count > 0 ? (size_t)count : 0);
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeSetMessageQueueOptions(
+    JNIEnv* /* env */,
+    jobject /* this */,
+    jint capacity,
+    jint overflowPolicy)
+{
+    SetMessageQueueOptions(capacity > 0 ? (size_t)capacity : 0, overflowPolicy);
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeSetReceiveQueueOptions(
+    JNIEnv* /* env */,
+    jobject /* this */,
+    jint capacity,
+    jint overflowPolicy)
+{
+    if (capacity <= 0 || overflowPolicy < (jint)OverflowPolicy::Block || overflowPolicy > (jint)OverflowPolicy::Reject)
+        return;
+
+    {
+        std::lock_guard<std::mutex> lock(javaQueueMutex);
+        javaQueueCapacity = (size_t)capacity;
+        javaQueuePolicy = (OverflowPolicy)overflowPolicy;
+    }
+
+    // Waiting senders re-check whether their message fits now.
+    javaQueueSpaceCondition.notify_all();
+}
+
+extern "C" JNIEXPORT jlongArray JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeGetReceiveQueueStats(
+    JNIEnv* env,
+    jobject /* this */)
+{
+    std::vector<jlong> values;
+    {
+        std::lock_guard<std::mutex> lock(javaQueueMutex);
+
+        // The layout is documented in NodeProcess.ReceiveQueueStats.
+        values = {
+            (jlong)javaQueue.size(),
+            (jlong)javaQueuedBytes,
+            (jlong)javaMaxQueuedMessages,
+            (jlong)javaQueueCapacity,
+            (jlong)javaDroppedMessages,
+            (jlong)javaRejectedMessages,
+        };
+    }
+
+    auto result = env->NewLongArray((jsize)values.size());
+    env->SetLongArrayRegion(result, 0, (jsize)values.size(), values.data());
+    return result;
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeSetChannelPriority(
+    JNIEnv* env,
+    jobject /* this */,
+    jstring channelName,
+    jint priority)
+{
+    const char* nativeChannelName = env->GetStringUTFChars(channelName, nullptr);
+    SetChannelPriority(nativeChannelName, priority);
+    env->ReleaseStringUTFChars(channelName, nativeChannelName);
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeIsChannelRegistered(
+    JNIEnv* env,
+    jobject /* this */,
+    jstring channelName)
+{
+    const char* nativeChannelName = env->GetStringUTFChars(channelName, nullptr);
+    const bool registered = IsChannelRegistered(nativeChannelName);
+    env->ReleaseStringUTFChars(channelName, nativeChannelName);
+    return (jboolean)registered;
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeSetChannelBackgroundDelivery(
+    JNIEnv* env,
+    jobject /* this */,
+    jstring channelName,
+    jboolean enabled)
+{
+    const char* nativeChannelName = env->GetStringUTFChars(channelName, nullptr);
+    SetChannelBackgroundDelivery(nativeChannelName, enabled == JNI_TRUE);
+    env->ReleaseStringUTFChars(channelName, nativeChannelName);
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeSetBackgroundState(
+    JNIEnv* env,
+    jobject /* this */,
+    jint state)
+{
+    if (state < (jint)BackgroundState::Foreground || state > (jint)BackgroundState::Suspended)
+        return;
+
+    SetBackgroundState((BackgroundState)state);
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeSetBackgroundTickInterval(
+    JNIEnv* env,
+    jobject /* this */,
+    jint milliseconds)
+{
+    SetBackgroundTickInterval(milliseconds > 0 ? (uint32_t)milliseconds : 0);
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeNotifyMemoryPressure(
+    JNIEnv* env,
+    jobject /* this */,
+    jint level)
+{
+    NotifyMemoryPressure(level);
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeSendBinary(
+    JNIEnv* env,
+    jobject /* this */,
+    jstring channelName,
+    jstring eventName,
+    jobject data,
+    jint offset,
+    jint length)
+{
+    auto address = (const char*)env->GetDirectBufferAddress(data);
+    if (address == nullptr)
+    {
+        auto exceptionClass = env->FindClass("java/lang/IllegalArgumentException");
+        env->ThrowNew(exceptionClass, "Expected a direct ByteBuffer.");
+        return JNI_FALSE;
+    }
+
+    const char* nativeChannel = env->GetStringUTFChars(channelName, nullptr);
+    const char* nativeEventName = env->GetStringUTFChars(eventName, nullptr);
+
+    // The payload is copied once into the message queue of the channel.
+    const bool queued = SendBinaryMessageToNode(nativeChannel, nativeEventName, address + offset, (size_t)length);
+
+    // Release the JNI references.
+    env->ReleaseStringUTFChars(channelName, nativeChannel);
+    env->ReleaseStringUTFChars(eventName, nativeEventName);
+
+    return (jboolean)queued;
+}
+
+extern "C" JNIEXPORT jlongArray JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeGetChannelStats(
+    JNIEnv* env,
+    jobject /* this */,
+    jstring channelName)
+{
+    const char* nativeChannel = env->GetStringUTFChars(channelName, nullptr);
+
+    ChannelStats stats = {};
+    const bool exists = GetChannelStats(nativeChannel, stats);
+
+    env->ReleaseStringUTFChars(channelName, nativeChannel);
+
+    if (!exists)
+        return nullptr;
+
+    // The layout is documented in NodeProcess.ChannelStats.
+    std::vector<jlong> values = {
+        (jlong)stats.queuedMessages,
+        (jlong)stats.queuedBytes,
+        (jlong)stats.maxQueuedMessages,
+        (jlong)stats.capacity,
+        (jlong)stats.deliveredMessages,
+        (jlong)stats.droppedMessages,
+        (jlong)stats.rejectedMessages,
+        (jlong)stats.latency.count,
+        (jlong)stats.latency.sum,
+        (jlong)stats.latency.max,
+    };
+    for (size_t i = 0; i < kLatencyBucketCount; i++)
+        values.push_back((jlong)stats.latency.buckets[i]);
+
+    auto result = env->NewLongArray((jsize)values.size());
+    env->SetLongArrayRegion(result, 0, (jsize)values.size(), values.data());
+    return result;
+}
+
+extern "C" JNIEXPORT jobject JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeCreateSharedMemory(
+    JNIEnv* env,
+    jobject /* this */,
+    jint slotSize,
+    jint slotCount)
+{
+    if (slotSize <= 0 || slotCount <= 0)
+        return nullptr;
+
+    SharedMemoryRegion* region = CreateSharedMemory((size_t)slotSize, (size_t)slotCount);
+    if (region == nullptr)
+        return nullptr;
+
+    // Java sees the same memory as Node, without a copy.
+    return env->NewDirectByteBuffer(region->data(), (jlong)region->size());
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeGetSharedMemorySlotSize(
+    JNIEnv* env,
+    jobject /* this */)
+{
+    SharedMemoryRegion* region = GetSharedMemory();
+    return region != nullptr ? (jint)region->slotSize() : 0;
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeAcquireSharedMemorySlot(
+    JNIEnv* env,
+    jobject /* this */)
+{
+    SharedMemoryRegion* region = GetSharedMemory();
+    return region != nullptr ? (jint)region->acquire() : -1;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeReleaseSharedMemorySlot(
+    JNIEnv* env,
+    jobject /* this */,
+    jint slot)
+{
+    SharedMemoryRegion* region = GetSharedMemory();
+    return (jboolean)(region != nullptr && region->release(slot));
+}
+
+// Node is initialized once per process and kept for later starts of the engine, as V8 cannot be
+// initialized again once it has been disposed.
+std::unique_ptr<node::InitializationResult> nodeInitialization;
+bool isStdoutStderrRedirected = false;
+
+// The environment of the running engine, used to stop it from other threads.
+std::mutex nodeEnvironmentMutex;
+node::Environment* nodeEnvironment = nullptr;
+
+// Runs an instance of Node on the calling thread until its event loop ends or it is stopped.
+int runNodeInstance(const std::vector<std::string>& args)
+{
+    std::vector<std::string> errors;
+    std::unique_ptr<node::CommonEnvironmentSetup> setup = node::CommonEnvironmentSetup::Create(
+        nodeInitialization->platform(), &errors, args, nodeInitialization->exec_args());
+
+    if (!setup)
+    {
+        for (const std::string& error : errors)
+            __android_log_write(ANDROID_LOG_ERROR, AdbTag, error.c_str());
+        return 1;
+    }
+
+    v8::Isolate* isolate = setup->isolate();
+    node::Environment* environment = setup->env();
+    int exitCode = 0;
+
+    {
+        v8::Locker locker(isolate);
+        v8::Isolate::Scope isolateScope(isolate);
+        v8::HandleScope handleScope(isolate);
+        v8::Context::Scope contextScope(setup->context());
+
+        // process.exit() stops the engine instead of terminating the app.
+        node::SetProcessExitHandler(environment, [&exitCode](node::Environment* env, int code) {
+            exitCode = code;
+            node::Stop(env);
+        });
+
+        nodeEnvironmentMutex.lock();
+        nodeEnvironment = environment;
+        nodeEnvironmentMutex.unlock();
+
+        // Runs the main script passed as the first argument.
+        if (!node::LoadEnvironment(environment, node::StartExecutionCallback{}).IsEmpty())
+            exitCode = node::SpinEventLoop(environment).FromMaybe(exitCode);
+        else
+            exitCode = 1;
+
+        nodeEnvironmentMutex.lock();
+        nodeEnvironment = nullptr;
+        nodeEnvironmentMutex.unlock();
+    }
+
+    // Freeing the environment terminates its workers and detaches the channels of the bridge.
+
+    return exitCode;
+}
+
+extern "C" JNIEXPORT jboolean JNICALL
+Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeStop(
+    JNIEnv* env,
+    jobject /* this */)
+{
+    std::lock_guard<std::mutex> lock(nodeEnvironmentMutex);
+    if (nodeEnvironment == nullptr)
+        return JNI_FALSE;
+
+    // Suspended loops would never notice that they have been stopped, neither would their workers.
+    SetBackgroundState(BackgroundState::Foreground);
+
+    // Thread-safe, the event loop ends as soon as the running JavaScript has been terminated.
+    node::Stop(nodeEnvironment);
+    return JNI_TRUE;
 }
 
 // Node's libUV requires all arguments being on contiguous memory.
@@ -76,7 +725,7 @@ Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeStart(
     jobject object /* this */,
     jobjectArray arguments,
     jobjectArray environmentVariables,
-    jboolean redirectOutputToLogcat)
+    jint outputMode)
 {
     auto environmentVariablesCount = env->GetArrayLength(environmentVariables);
     for (int i = 0; i < environmentVariablesCount; i++) {
@@ -150,80 +799,343 @@ Java_net_hampoelz_capacitor_nodejs_NodeProcess_nativeStart(
         currentArgsPosition += strlen(currentArgsPosition) + 1;
     }
 
-    if (redirectOutputToLogcat == true)
+    // The dispatcher and the callbacks are kept for later starts of the engine.
+    if (nodeProcessObject == nullptr)
+    {
+        nodeProcessObject = env->NewGlobalRef(object);
+        RegisterMaterializeCallback(&materializeFilesForNode);
+
+        if (pthread_create(&dispatcherThread, nullptr, dispatcherThreadFunc, nullptr) == 0)
+        {
+            pthread_detach(dispatcherThread);
+
+            RegisterCallback(&receiveMessageFromNode);
+            RegisterBinaryCallback(&receiveBinaryMessageFromNode);
+        }
+        else
+        {
+            __android_log_write(ANDROID_LOG_ERROR, AdbTag, "Couldn't start the message dispatcher, messages from Node won't reach Java.");
+        }
+    }
+
+    // The output is redirected once, later starts only change where it is written to.
+    outputPipeline.setMode(outputMode);
+    if (outputMode != OutputNone && !isStdoutStderrRedirected)
     {
-        // Start threads to show stdout and stderr in logcat.
+        // Start threads to show stdout and stderr in logcat or forward them to Java.
         if (startRedirectingStdoutStderr() == -1)
-            __android_log_write(ANDROID_LOG_ERROR, AdbTag, "Couldn't start redirecting stdout and stderr to logcat.");
+            __android_log_write(ANDROID_LOG_ERROR, AdbTag, "Couldn't start redirecting stdout and stderr.");
+        else
+            isStdoutStderrRedirected = true;
     }
 
-    RegisterCallback(&receiveMessageFromNode);
+    std::vector<std::string> args;
 
-    cacheEnvPointer = env;
-    cacheClassObject = object;
+    if (!nodeInitialization)
+    {
+        // libuv keeps a reference to the arguments of the first start, so its buffer is never freed.
+        char** processArgv = uv_setup_args(argumentCount, argv);
+        std::vector<std::string> processArgs(processArgv, processArgv + argumentCount);
 
-    // Start node, with argc and argv.
-    auto exitCode = node::Start(argumentCount, argv);
-    free(argsBuffer);
+        nodeInitialization = node::InitializeOncePerProcess(processArgs);
+
+        for (const std::string& error : nodeInitialization->errors())
+            __android_log_write(ANDROID_LOG_ERROR, AdbTag, error.c_str());
+
+        if (nodeInitialization->early_return())
+        {
+            auto exitCode = nodeInitialization->exit_code();
+            nodeInitialization.reset();
+            return jint(exitCode);
+        }
+
+        args = nodeInitialization->args();
+    }
+    else
+    {
+        // Options of Node are only parsed once per process, the arguments of later starts
+        // are the main script and its parameters.
+        args.assign(argv, argv + argumentCount);
+        free(argsBuffer);
+
+        // The options of the first start still apply, so they are not passed as arguments to the script.
+        const std::vector<std::string>& execArgs = nodeInitialization->exec_args();
+        if (args.size() > execArgs.size() && std::equal(execArgs.begin(), execArgs.end(), args.begin() + 1))
+            args.erase(args.begin() + 1, args.begin() + 1 + execArgs.size());
+    }
+
+    // Start node, with the parsed arguments.
+    auto exitCode = runNodeInstance(args);
 
     return jint(exitCode);
 }
 
-// Start threads to redirect stdout and stderr to logcat.
+// Start threads to redirect stdout and stderr to logcat or to Java.
 int stdoutPipe[2];
 int stderrPipe[2];
 pthread_t stdoutThread;
 pthread_t stderrThread;
+pthread_t outputThread;
+
+// Size of the pipes, so that bursts of output do not block Node until the reader threads have caught up.
+const int kOutputPipeSize = 1024 * 1024;
+const size_t kOutputReadSize = 64 * 1024;
+// Time after which an incomplete line is written anyway.
+const int kIncompleteLineTimeoutMillis = 100;
+// Time between two batches of output forwarded to Java.
+const useconds_t kOutputBatchIntervalMicros = 50 * 1000;
+
+struct OutputStream
+{
+    int fd;
+    OutputLevel level;
+};
+
+OutputStream stdoutStream = { -1, OutputLevel::Info };
+OutputStream stderrStream = { -1, OutputLevel::Error };
+
+OutputLevel getOutputLevel(OutputLevel streamLevel, const std::string& message)
+{
+    // Warnings of Node are written to stderr, e.g. "(node:1234) Warning: ..." or "(node:1234) [DEP0005] DeprecationWarning: ...".
+    if (streamLevel == OutputLevel::Error && message.compare(0, 6, "(node:") == 0 && message.find("Warning") != std::string::npos)
+        return OutputLevel::Warn;
+    return streamLevel;
+}
 
-void* stderrThreadFunc(void*)
+void* outputReaderThreadFunc(void* arg)
 {
-    ssize_t redirectSize;
-    char buf[2048];
-    while ((redirectSize = read(stderrPipe[0], buf, sizeof buf - 1)) > 0)
+    auto stream = (OutputStream*)arg;
+
+    LineAssembler assembler;
+    std::vector<std::string> messages;
+    std::vector<OutputLine> lines;
+    std::vector<char> buffer(kOutputReadSize);
+
+    pollfd pipeFd = { stream->fd, POLLIN, 0 };
+    while (true)
     {
-        // __android_log will add a new line anyway.
-        if (buf[redirectSize - 1] == '\n')
-            --redirectSize;
-        buf[redirectSize] = 0;
-        __android_log_write(ANDROID_LOG_ERROR, AdbTag, buf);
+        // Wait for more output, an incomplete line is written once the pipe has been idle for a while.
+        const int ready = poll(&pipeFd, 1, assembler.hasPending() ? kIncompleteLineTimeoutMillis : -1);
+        if (ready < 0)
+        {
+            if (errno == EINTR)
+                continue;
+            break;
+        }
+
+        if (ready == 0)
+        {
+            assembler.flush(messages);
+        }
+        else
+        {
+            const ssize_t size = read(stream->fd, buffer.data(), buffer.size());
+            if (size < 0 && errno == EINTR)
+                continue;
+            if (size <= 0)
+                break;
+
+            assembler.append(buffer.data(), (size_t)size, messages);
+        }
+
+        const int64_t time = std::chrono::duration_cast<std::chrono::milliseconds>(
+            std::chrono::system_clock::now().time_since_epoch()).count();
+
+        for (std::string& message : messages)
+        {
+            OutputLine line;
+            line.level = getOutputLevel(stream->level, message);
+            line.time = time;
+            line.message = std::move(message);
+            lines.push_back(std::move(line));
+        }
+        messages.clear();
+
+        outputPipeline.push(lines);
     }
+
+    // The pipe only ends if redirecting the output has failed and its write end has been closed.
+    close(stream->fd);
     return nullptr;
 }
 
-void* stdoutThreadFunc(void*)
+int getLogPriority(OutputLevel level)
+{
+    if (level == OutputLevel::Error)
+        return ANDROID_LOG_ERROR;
+    if (level == OutputLevel::Warn)
+        return ANDROID_LOG_WARN;
+    return ANDROID_LOG_INFO;
+}
+
+void forwardOutputToJava(JNIEnv* env, const std::vector<OutputLine>& lines, uint64_t droppedLines)
+{
+    const auto count = (jsize)lines.size();
+
+    // The output is passed as bytes, as it does not have to be valid modified UTF-8.
+    auto javaMessages = env->NewObjectArray(count, byteArrayClass, nullptr);
+    auto javaLevels = env->NewIntArray(count);
+    auto javaTimes = env->NewLongArray(count);
+
+    for (jsize i = 0; i < count; i++)
+    {
+        const OutputLine& line = lines[i];
+
+        auto javaMessage = env->NewByteArray((jsize)line.message.size());
+        env->SetByteArrayRegion(javaMessage, 0, (jsize)line.message.size(), (const jbyte*)line.message.data());
+        env->SetObjectArrayElement(javaMessages, i, javaMessage);
+        env->DeleteLocalRef(javaMessage);
+
+        const jint level = (jint)line.level;
+        const jlong time = (jlong)line.time;
+        env->SetIntArrayRegion(javaLevels, i, 1, &level);
+        env->SetLongArrayRegion(javaTimes, i, 1, &time);
+    }
+
+    env->CallVoidMethod(nodeProcessObject, nativeReceiveOutputMethod, javaMessages, javaLevels, javaTimes, (jlong)droppedLines);
+
+    // Release the JNI references.
+    env->DeleteLocalRef(javaMessages);
+    env->DeleteLocalRef(javaLevels);
+    env->DeleteLocalRef(javaTimes);
+
+    // An exception thrown by a Java listener must not end the output thread.
+    if (env->ExceptionCheck())
+    {
+        env->ExceptionDescribe();
+        env->ExceptionClear();
+    }
+}
+
+void* outputWriterThreadFunc(void*)
 {
-    ssize_t redirectSize;
-    char buf[2048];
-    while ((redirectSize = read(stdoutPipe[0], buf, sizeof buf - 1)) > 0)
+    JNIEnv* env = nullptr;
+    JavaVMAttachArgs attachArgs = { JNI_VERSION_1_6, "NodeJS-Output", nullptr };
+    if (javaVM->AttachCurrentThread(&env, &attachArgs) != JNI_OK)
+    {
+        __android_log_write(ANDROID_LOG_ERROR, AdbTag, "Couldn't attach the output thread to the JVM, output won't reach Java.");
+        env = nullptr;
+    }
+
+    std::vector<OutputLine> lines;
+    while (true)
     {
-        // __android_log will add a new line anyway.
-        if (buf[redirectSize - 1] == '\n')
-            --redirectSize;
-        buf[redirectSize] = 0;
-        __android_log_write(ANDROID_LOG_INFO, AdbTag, buf);
+        const uint64_t droppedLines = outputPipeline.take(lines);
+        const int mode = outputPipeline.mode();
+
+        if (mode & OutputLogcat)
+        {
+            for (const OutputLine& line : lines)
+                __android_log_write(getLogPriority(line.level), AdbTag, line.message.c_str());
+
+            if (droppedLines > 0)
+            {
+                const std::string message = "Dropped " + std::to_string(droppedLines) + " lines of output.";
+                __android_log_write(ANDROID_LOG_WARN, AdbTag, message.c_str());
+            }
+        }
+
+        if ((mode & OutputEvents) && env != nullptr && nodeProcessObject != nullptr)
+        {
+            forwardOutputToJava(env, lines, droppedLines);
+
+            // Node keeps writing in the meantime, so that the next batch is forwarded at once.
+            usleep(kOutputBatchIntervalMicros);
+        }
     }
+
+    // The output thread stays attached for the lifetime of the process, as the output is only redirected once.
     return nullptr;
 }
 
+int createOutputPipe(int outputPipe[2])
+{
+    if (pipe(outputPipe) == -1)
+        return -1;
+
+    // Larger pipes are only an optimization, the default size is used if the size is not allowed.
+    fcntl(outputPipe[1], F_SETPIPE_SZ, kOutputPipeSize);
+    return 0;
+}
+
+// Closes the pipes after redirecting the output has failed. Running reader threads close the read end of
+// their pipe themselves once they have read the end of the pipe.
+void closeOutputPipes(bool isStdoutReaderRunning, bool isStderrReaderRunning)
+{
+    close(stdoutPipe[1]);
+    close(stderrPipe[1]);
+    if (!isStdoutReaderRunning)
+        close(stdoutPipe[0]);
+    if (!isStderrReaderRunning)
+        close(stderrPipe[0]);
+}
+
+// The pipes and threads are set up before stdout and stderr are redirected, so that Node never writes into a pipe
+// without a reader, which would block Node once the pipe is full. If a step fails, stdout and stderr keep or get
+// back their original files.
 int startRedirectingStdoutStderr()
 {
-    // Set stdout as unbuffered.
-    setvbuf(stdout, nullptr, _IONBF, 0);
-    pipe(stdoutPipe);
-    dup2(stdoutPipe[1], STDOUT_FILENO);
+    // The writer thread waits for lines of any pipe, so it is started only once even if an attempt fails.
+    static bool isOutputWriterRunning = false;
+    if (!isOutputWriterRunning)
+    {
+        if (pthread_create(&outputThread, nullptr, outputWriterThreadFunc, nullptr) != 0)
+            return -1;
+        pthread_detach(outputThread);
+        isOutputWriterRunning = true;
+    }
 
-    // Set stderr as unbuffered.
-    setvbuf(stderr, nullptr, _IONBF, 0);
-    pipe(stderrPipe);
-    dup2(stderrPipe[1], STDERR_FILENO);
+    if (createOutputPipe(stdoutPipe) == -1)
+        return -1;
 
-    if (pthread_create(&stdoutThread, nullptr, stdoutThreadFunc, nullptr) != 0)
+    if (createOutputPipe(stderrPipe) == -1)
+    {
+        close(stdoutPipe[0]);
+        close(stdoutPipe[1]);
         return -1;
+    }
+
+    stdoutStream.fd = stdoutPipe[0];
+    stderrStream.fd = stderrPipe[0];
+
+    if (pthread_create(&stdoutThread, nullptr, outputReaderThreadFunc, &stdoutStream) != 0)
+    {
+        closeOutputPipes(false, false);
+        return -1;
+    }
     pthread_detach(stdoutThread);
 
-    if (pthread_create(&stderrThread, nullptr, stderrThreadFunc, nullptr) != 0)
+    if (pthread_create(&stderrThread, nullptr, outputReaderThreadFunc, &stderrStream) != 0)
+    {
+        closeOutputPipes(true, false);
         return -1;
+    }
     pthread_detach(stderrThread);
 
+    // Writes of the C library to stdout are flushed per line, stderr stays unbuffered so that no error is lost on a crash.
+    setvbuf(stdout, nullptr, _IOLBF, 0);
+    setvbuf(stderr, nullptr, _IONBF, 0);
+
+    const int originalStdout = dup(STDOUT_FILENO);
+    if (originalStdout == -1 || dup2(stdoutPipe[1], STDOUT_FILENO) == -1)
+    {
+        if (originalStdout != -1)
+            close(originalStdout);
+        closeOutputPipes(true, true);
+        return -1;
+    }
+
+    if (dup2(stderrPipe[1], STDERR_FILENO) == -1)
+    {
+        dup2(originalStdout, STDOUT_FILENO);
+        close(originalStdout);
+        closeOutputPipes(true, true);
+        return -1;
+    }
+
+    // stdout and stderr refer to the pipes now, so the original descriptors of their write ends are not needed anymore.
+    close(originalStdout);
+    close(stdoutPipe[1]);
+    close(stderrPipe[1]);
     return 0;
 }
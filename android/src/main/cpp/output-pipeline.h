@@ -0,0 +1,223 @@
+/*
+ * A buffered pipeline for the output that Node writes to stdout and stderr.
+ *
+ * Reader threads drain the pipes of stdout and stderr in large chunks and reassemble the chunks
+ * into lines, which are queued in a bounded buffer without ever waiting for the consumer. If the
+ * buffer is full, the oldest lines are dropped. A single consumer takes the queued lines in batches
+ * and writes them to logcat or forwards them to Java, limited to a number of lines per second.
+ */
+
+#ifndef ANDROID_OUTPUT_PIPELINE_H
+#define ANDROID_OUTPUT_PIPELINE_H
+
+#include <chrono>
+#include <condition_variable>
+#include <cstdint>
+#include <deque>
+#include <mutex>
+#include <string>
+#include <vector>
+
+// Where the output of Node is written to, the values can be combined.
+enum OutputMode : int
+{
+  OutputNone = 0,
+  OutputLogcat = 1,
+  OutputEvents = 2,
+};
+
+enum class OutputLevel : int
+{
+  Info = 0,
+  Warn = 1,
+  Error = 2,
+};
+
+struct OutputLine
+{
+  OutputLevel level = OutputLevel::Info;
+  // Time the line has been read, in milliseconds since the epoch.
+  int64_t time = 0;
+  std::string message;
+};
+
+// Reassembles the chunks read from a pipe into lines.
+class LineAssembler
+{
+public:
+  // Longer lines are split, logcat truncates messages at about 4 KB anyway.
+  static constexpr size_t kMaxLineLength = 4000;
+
+  // Appends a chunk and moves the completed lines to `lines`.
+  void append(const char* data, size_t length, std::vector<std::string>& lines)
+  {
+    for (size_t i = 0; i < length; i++)
+    {
+      const char c = data[i];
+      if (c == '\n')
+      {
+        lines.push_back(std::move(pending_));
+        pending_.clear();
+        continue;
+      }
+
+      pending_.push_back(c);
+      if (pending_.size() >= kMaxLineLength)
+      {
+        lines.push_back(std::move(pending_));
+        pending_.clear();
+      }
+    }
+  }
+
+  // Moves an incomplete line to `lines`, called once the pipe has been idle for a while.
+  void flush(std::vector<std::string>& lines)
+  {
+    if (pending_.empty())
+      return;
+
+    lines.push_back(std::move(pending_));
+    pending_.clear();
+  }
+
+  bool hasPending() const
+  {
+    return !pending_.empty();
+  }
+
+private:
+  std::string pending_;
+};
+
+// Allows `rate` lines per second with bursts of up to one second worth of lines.
+class RateLimiter
+{
+public:
+  void setRate(uint32_t rate)
+  {
+    rate_ = rate;
+    tokens_ = rate;
+    lastRefill_ = std::chrono::steady_clock::now();
+  }
+
+  // Returns false if the line exceeds the rate, a rate of 0 allows all lines.
+  bool tryAcquire()
+  {
+    if (rate_ == 0)
+      return true;
+
+    const auto now = std::chrono::steady_clock::now();
+    const double elapsedSeconds = std::chrono::duration<double>(now - lastRefill_).count();
+    lastRefill_ = now;
+
+    tokens_ += elapsedSeconds * rate_;
+    if (tokens_ > rate_)
+      tokens_ = rate_;
+
+    if (tokens_ < 1)
+      return false;
+
+    tokens_ -= 1;
+    return true;
+  }
+
+private:
+  uint32_t rate_ = 0;
+  double tokens_ = 0;
+  std::chrono::steady_clock::time_point lastRefill_ = std::chrono::steady_clock::now();
+};
+
+class OutputPipeline
+{
+public:
+  // Called by the reader threads, never waits for the consumer.
+  void push(std::vector<OutputLine>& lines)
+  {
+    if (lines.empty())
+      return;
+
+    bool wasEmpty;
+    {
+      std::lock_guard<std::mutex> lock(mutex_);
+      wasEmpty = lines_.empty();
+
+      for (OutputLine& line : lines)
+      {
+        queuedBytes_ += line.message.size();
+        lines_.push_back(std::move(line));
+      }
+
+      // Drop the oldest lines, but always keep the newest one.
+      while (queuedBytes_ > capacity_ && lines_.size() > 1)
+      {
+        queuedBytes_ -= lines_.front().message.size();
+        lines_.pop_front();
+        droppedLines_++;
+      }
+    }
+    lines.clear();
+
+    if (wasEmpty)
+      condition_.notify_one();
+  }
+
+  // Called by the consumer, waits until lines have been queued and takes all of them within the rate limit.
+  // Returns the number of lines dropped since the last call, either by the full buffer or by the rate limit.
+  uint64_t take(std::vector<OutputLine>& lines)
+  {
+    lines.clear();
+
+    std::unique_lock<std::mutex> lock(mutex_);
+    condition_.wait(lock, [this] { return !lines_.empty(); });
+
+    for (OutputLine& line : lines_)
+    {
+      if (rateLimiter_.tryAcquire())
+        lines.push_back(std::move(line));
+      else
+        droppedLines_++;
+    }
+    lines_.clear();
+    queuedBytes_ = 0;
+
+    const uint64_t droppedLines = droppedLines_;
+    droppedLines_ = 0;
+    return droppedLines;
+  }
+
+  // The mode is read by the consumer for every batch, so it can be changed at any time.
+  void setMode(int mode)
+  {
+    std::lock_guard<std::mutex> lock(mutex_);
+    mode_ = mode;
+  }
+
+  int mode()
+  {
+    std::lock_guard<std::mutex> lock(mutex_);
+    return mode_;
+  }
+
+  // Sets the size of the buffer in bytes, 0 keeps the current size, as a buffer without room would drop all
+  // but the newest line. Sets the maximum number of lines per second, 0 for no limit.
+  void setLimits(size_t capacity, uint32_t rateLimit)
+  {
+    std::lock_guard<std::mutex> lock(mutex_);
+    if (capacity > 0)
+      capacity_ = capacity;
+    rateLimiter_.setRate(rateLimit);
+  }
+
+private:
+  std::mutex mutex_;
+  std::condition_variable condition_;
+  std::deque<OutputLine> lines_;
+  size_t queuedBytes_ = 0;
+  uint64_t droppedLines_ = 0;
+
+  int mode_ = OutputLogcat;
+  size_t capacity_ = 256 * 1024;
+  RateLimiter rateLimiter_;
+};
+
+#endif //ANDROID_OUTPUT_PIPELINE_H
@@ -0,0 +1,87 @@
+/*
+ * A region of memory shared by the native Java code and the Node.js engine, for bulk data such as camera frames.
+ *
+ * Both run in the same process, so the region is a single anonymous mapping which is exposed as a direct ByteBuffer
+ * to Java and as an ArrayBuffer to Node. It is divided into slots of equal size. A slot is acquired by one side,
+ * filled, handed over by its index in a channel message and released by the other side once it is done with it.
+ * The region is never unmapped, as both sides may keep views of it until the process exits.
+ */
+
+#ifndef ANDROID_SHARED_MEMORY_H
+#define ANDROID_SHARED_MEMORY_H
+
+#include <atomic>
+#include <cstddef>
+#include <cstdint>
+#include <memory>
+#include <sys/mman.h>
+
+class SharedMemoryRegion
+{
+private:
+  uint8_t* data_;
+  size_t slotSize_;
+  size_t slotCount_;
+  std::unique_ptr<std::atomic<bool>[]> acquired_;
+  // Where the search for a free slot starts, so that slots are handed out round-robin.
+  std::atomic<size_t> nextSlot_{0};
+
+  SharedMemoryRegion(uint8_t* data, size_t slotSize, size_t slotCount)
+    : data_(data), slotSize_(slotSize), slotCount_(slotCount), acquired_(new std::atomic<bool>[slotCount])
+  {
+    for (size_t i = 0; i < slotCount; i++)
+      acquired_[i].store(false, std::memory_order_relaxed);
+  }
+
+public:
+  // Slots are aligned to cache lines.
+  static const size_t kSlotAlignment = 64;
+
+  // Returns nullptr if the region could not be mapped.
+  static SharedMemoryRegion* create(size_t slotSize, size_t slotCount)
+  {
+    if (slotSize == 0 || slotCount == 0)
+      return nullptr;
+
+    slotSize = (slotSize + kSlotAlignment - 1) / kSlotAlignment * kSlotAlignment;
+    if (slotSize > SIZE_MAX / slotCount)
+      return nullptr;
+
+    // Pages are only backed by memory once they are touched.
+    void* data = mmap(nullptr, slotSize * slotCount, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0);
+    if (data == MAP_FAILED)
+      return nullptr;
+
+    return new SharedMemoryRegion((uint8_t*)data, slotSize, slotCount);
+  }
+
+  // Returns the index of a free slot, which is then owned by the caller, or -1 if all slots are in use.
+  int64_t acquire()
+  {
+    const size_t start = nextSlot_.fetch_add(1, std::memory_order_relaxed);
+    for (size_t i = 0; i < slotCount_; i++)
+    {
+      const size_t slot = (start + i) % slotCount_;
+      bool expected = false;
+      // Pairs with the release of the slot, so that the previous owner is done with its content.
+      if (acquired_[slot].compare_exchange_strong(expected, true, std::memory_order_acquire, std::memory_order_relaxed))
+        return (int64_t)slot;
+    }
+    return -1;
+  }
+
+  // Returns false if the slot does not exist or is not acquired.
+  bool release(int64_t slot)
+  {
+    if (slot < 0 || (size_t)slot >= slotCount_)
+      return false;
+    return acquired_[slot].exchange(false, std::memory_order_release);
+  }
+
+  uint8_t* data() const { return data_; }
+  size_t size() const { return slotSize_ * slotCount_; }
+  size_t slotSize() const { return slotSize_; }
+  size_t slotCount() const { return slotCount_; }
+};
+
+#endif //ANDROID_SHARED_MEMORY_H
@@ -0,0 +1,140 @@
+package net.hampoelz.capacitor.nodejs;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import androidx.annotation.Nullable;
+import com.getcapacitor.Logger;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Node.js project and the builtin modules packed into a single, uncompressed asset
+ * by the {@code nodejs-assets.gradle} script when the {@code assetMode} is set to {@code archive}.
+ *
+ * <p>The archive is memory-mapped straight out of the APK, so extracting a file
+ * is a single write from the mapped region instead of opening an asset stream.
+ *
+ * <p>Format (big-endian): the magic {@code CNJSPACK}, the format version and the number of
+ * entries, followed by an index of (path length, UTF-8 path, data offset, data size) records
+ * and the file data.
+ */
+public class AssetArchive implements AssetSource {
+
+    protected static final String ASSET_NAME = "capacitor-nodejs.pack";
+
+    private static final byte[] MAGIC = "CNJSPACK".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+
+    private static final String[] NO_ENTRIES = new String[0];
+
+    private final MappedByteBuffer buffer;
+    private final Map<String, long[]> files = new HashMap<>();
+    private final Map<String, List<String>> directories = new HashMap<>();
+
+    private AssetArchive(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        readIndex();
+    }
+
+    /** Maps the archive bundled with the APK, or returns {@code null} if no archive has been bundled. */
+    @Nullable
+    public static AssetArchive OpenFromAsset(AssetManager assetManager) {
+        try (
+            AssetFileDescriptor descriptor = assetManager.openFd(ASSET_NAME);
+            FileInputStream in = descriptor.createInputStream();
+            FileChannel channel = in.getChannel()
+        ) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, descriptor.getStartOffset(), descriptor.getLength());
+            return new AssetArchive(buffer);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to map the archive of the Node.js project.", e);
+            return null;
+        }
+    }
+
+    @Override
+    public String[] list(String assetPath) {
+        final List<String> entries = directories.get(assetPath);
+        return entries != null ? entries.toArray(NO_ENTRIES) : NO_ENTRIES;
+    }
+
+    @Override
+    public long copy(String assetPath, FileOutputStream out, byte[] buffer) throws IOException {
+        final long[] file = files.get(assetPath);
+        if (file == null) {
+            throw new FileNotFoundException("No such entry in the archive: " + assetPath);
+        }
+
+        final ByteBuffer data = this.buffer.duplicate();
+        data.position((int) file[0]);
+        data.limit((int) (file[0] + file[1]));
+
+        final FileChannel channel = out.getChannel();
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+
+        return file[1];
+    }
+
+    private void readIndex() throws IOException {
+        final ByteBuffer index = buffer.duplicate();
+
+        final byte[] magic = new byte[MAGIC.length];
+        index.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || index.getInt() != VERSION) {
+            throw new IOException("Unsupported archive format.");
+        }
+
+        final int entryCount = index.getInt();
+        for (int i = 0; i < entryCount; i++) {
+            final byte[] pathBytes = new byte[index.getShort() & 0xFFFF];
+            index.get(pathBytes);
+
+            final String path = new String(pathBytes, StandardCharsets.UTF_8);
+            final long offset = index.getLong();
+            final long size = index.getLong();
+
+            if (offset < 0 || size < 0 || offset + size > buffer.capacity()) {
+                throw new IOException("Invalid archive entry '" + path + "'.");
+            }
+
+            files.put(path, new long[] { offset, size });
+            addToDirectories(path);
+        }
+    }
+
+    private void addToDirectories(String path) {
+        int separator = path.lastIndexOf('/');
+        while (separator > 0) {
+            final String parent = path.substring(0, separator);
+            final String name = path.substring(separator + 1);
+
+            List<String> entries = directories.get(parent);
+            final boolean isKnownParent = entries != null;
+            if (!isKnownParent) {
+                entries = new ArrayList<>();
+                directories.put(parent, entries);
+            }
+            entries.add(name);
+
+            if (isKnownParent) break;
+
+            path = parent;
+            separator = path.lastIndexOf('/');
+        }
+    }
+}
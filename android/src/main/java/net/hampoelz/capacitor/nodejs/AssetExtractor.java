@@ -0,0 +1,232 @@
+package net.hampoelz.capacitor.nodejs;
+
+import android.content.res.AssetManager;
+import androidx.annotation.Nullable;
+import com.getcapacitor.Logger;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Extracts directories of an {@link AssetSource} to the file system.
+ *
+ * <p>The calling thread lists the asset directories and hands every file over to a bounded pool of
+ * workers, which copy the files in parallel using a reusable buffer per worker. If the workers fall
+ * behind, the listing thread copies files itself until the queue has drained.
+ */
+public class AssetExtractor {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int QUEUE_CAPACITY = 256;
+
+    // Not ThreadLocal.withInitial(...), which requires API 26.
+    private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    public interface ProgressListener {
+        /**
+         * Called from the extracting threads whenever a file has been copied.
+         * The number of discovered files keeps growing while the asset directories are being listed.
+         */
+        void onProgress(int extractedFiles, int discoveredFiles, long extractedBytes);
+    }
+
+    public static class Result {
+
+        public final boolean success;
+        public final int fileCount;
+        public final long byteCount;
+        /** Time in nanoseconds spent listing the asset directories. */
+        public final long listingTime;
+        /** Time in nanoseconds between the first file being queued and the last file being copied. */
+        public final long copyTime;
+        /** Time in nanoseconds of the whole extraction. */
+        public final long totalTime;
+
+        protected Result(boolean success, int fileCount, long byteCount, long listingTime, long copyTime, long totalTime) {
+            this.success = success;
+            this.fileCount = fileCount;
+            this.byteCount = byteCount;
+            this.listingTime = listingTime;
+            this.copyTime = copyTime;
+            this.totalTime = totalTime;
+        }
+    }
+
+    private final AssetSource assetSource;
+    private final int threadCount;
+
+    @Nullable
+    private ProgressListener progressListener;
+
+    public AssetExtractor(AssetManager assetManager) {
+        this(new AssetSource.Assets(assetManager));
+    }
+
+    public AssetExtractor(AssetSource assetSource) {
+        this(assetSource, Runtime.getRuntime().availableProcessors());
+    }
+
+    public AssetExtractor(AssetSource assetSource, int threadCount) {
+        this.assetSource = assetSource;
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    public void setProgressListener(@Nullable ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /** Extracts the whole asset directory {@code assetDir} to {@code destinationPath}. */
+    public Result extractDir(String assetDir, String destinationPath) {
+        final Job job = new Job();
+        final Deque<String> pendingDirs = new ArrayDeque<>();
+        pendingDirs.push("");
+
+        while (!pendingDirs.isEmpty()) {
+            final String relativePath = pendingDirs.pop();
+            final String assetPath = relativePath.isEmpty() ? assetDir : FileOperations.CombinePath(assetDir, relativePath);
+            final String filePath = relativePath.isEmpty() ? destinationPath : FileOperations.CombinePath(destinationPath, relativePath);
+
+            final long listStart = System.nanoTime();
+            final String[] files;
+            try {
+                files = assetSource.list(assetPath);
+            } catch (IOException e) {
+                Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to list the assets of '" + assetPath + "'.", e);
+                job.failed.set(true);
+                continue;
+            } finally {
+                job.listingTime += System.nanoTime() - listStart;
+            }
+
+            if (files.length == 0) {
+                // AssetSource.list() returns an empty array for files and empty directories.
+                job.submit(assetPath, filePath);
+            } else {
+                FileOperations.CreateDir(filePath);
+                for (String file : files) {
+                    pendingDirs.push(relativePath.isEmpty() ? file : FileOperations.CombinePath(relativePath, file));
+                }
+            }
+        }
+
+        return job.finish();
+    }
+
+    /** Extracts the files at the {@code relativePaths} of the asset directory {@code assetDir} to {@code destinationPath}. */
+    public Result extractFiles(String assetDir, String destinationPath, Collection<String> relativePaths) {
+        final Job job = new Job();
+
+        for (String relativePath : relativePaths) {
+            job.submit(FileOperations.CombinePath(assetDir, relativePath), FileOperations.CombinePath(destinationPath, relativePath));
+        }
+
+        return job.finish();
+    }
+
+    /**
+     * Extracts a single file on the calling thread via a temporary file, so that the file never exists partially.
+     * Returns the number of copied bytes, or {@code -1} if the asset could not be copied.
+     */
+    public long extractFile(String assetPath, String destinationPath) {
+        final String temporaryPath = destinationPath + ".tmp";
+        final long size = copyAsset(assetPath, temporaryPath);
+        if (size < 0) return -1;
+
+        if (!new File(temporaryPath).renameTo(new File(destinationPath))) {
+            Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to move the extracted asset '" + assetPath + "' to '" + destinationPath + "'.", null);
+            return -1;
+        }
+        return size;
+    }
+
+    private class Job {
+
+        private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            threadCount,
+            threadCount,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+
+        private final AtomicBoolean failed = new AtomicBoolean(false);
+        private final AtomicInteger discoveredFiles = new AtomicInteger();
+        private final AtomicInteger extractedFiles = new AtomicInteger();
+        private final AtomicLong extractedBytes = new AtomicLong();
+
+        private final long start = System.nanoTime();
+        private long listingTime = 0;
+        private long copyStart = 0;
+
+        private void submit(String assetPath, String destinationPath) {
+            if (copyStart == 0) {
+                copyStart = System.nanoTime();
+            }
+
+            discoveredFiles.incrementAndGet();
+            executor.execute(() -> {
+                final long size = copyAsset(assetPath, destinationPath);
+                if (size < 0) {
+                    failed.set(true);
+                    return;
+                }
+
+                final int extracted = extractedFiles.incrementAndGet();
+                final long bytes = extractedBytes.addAndGet(size);
+
+                final ProgressListener listener = progressListener;
+                if (listener != null) {
+                    listener.onProgress(extracted, discoveredFiles.get(), bytes);
+                }
+            });
+        }
+
+        private Result finish() {
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    Logger.debug(CapacitorNodeJSPlugin.LOGGER_TAG, "Still extracting assets of the Node.js project...");
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                failed.set(true);
+            }
+
+            final long end = System.nanoTime();
+            final long copyTime = copyStart != 0 ? end - copyStart : 0;
+
+            return new Result(!failed.get(), extractedFiles.get(), extractedBytes.get(), listingTime, copyTime, end - start);
+        }
+    }
+
+    /** Returns the number of copied bytes, or {@code -1} if the asset could not be copied. */
+    private long copyAsset(String assetPath, String destinationPath) {
+        final File destinationDir = new File(destinationPath).getParentFile();
+        if (destinationDir != null) {
+            FileOperations.CreateDir(destinationDir.getPath());
+        }
+
+        try (FileOutputStream out = new FileOutputStream(destinationPath)) {
+            return assetSource.copy(assetPath, out, buffers.get());
+        } catch (IOException e) {
+            Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to copy the asset '" + assetPath + "' to '" + destinationPath + "'.", e);
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package net.hampoelz.capacitor.nodejs;
+
+import android.content.res.AssetManager;
+import androidx.annotation.Nullable;
+import com.getcapacitor.Logger;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The manifest of an asset directory, as generated at build time by the {@code nodejs-assets.gradle} script.
+ *
+ * <p>The first line holds the format version and a digest over all entries, every following line describes
+ * one file with its content hash, size and relative path.
+ */
+public class AssetManifest {
+
+    protected static final String FILE_EXTENSION = ".manifest";
+    private static final String HEADER = "capacitor-nodejs-manifest 1 ";
+
+    protected static class Entry {
+
+        protected final String hash;
+        protected final long size;
+        protected final String path;
+
+        protected Entry(String hash, long size, String path) {
+            this.hash = hash;
+            this.size = size;
+            this.path = path;
+        }
+
+        protected boolean equalsContent(Entry entry) {
+            return entry != null && size == entry.size && Objects.equals(hash, entry.hash);
+        }
+    }
+
+    protected static class Changes {
+
+        protected final List<Entry> changedEntries = new ArrayList<>();
+        protected final List<Entry> removedEntries = new ArrayList<>();
+    }
+
+    private final String digest;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private AssetManifest(String digest) {
+        this.digest = digest;
+    }
+
+    protected String getDigest() {
+        return digest;
+    }
+
+    protected Collection<Entry> getEntries() {
+        return entries.values();
+    }
+
+    /**
+     * Returns the entries that have to be copied and removed to turn a directory described
+     * by the {@code installedManifest} into one described by this manifest.
+     */
+    protected Changes diff(@Nullable AssetManifest installedManifest) {
+        final Changes changes = new Changes();
+
+        for (Entry entry : entries.values()) {
+            final Entry installedEntry = installedManifest != null ? installedManifest.entries.get(entry.path) : null;
+            if (!entry.equalsContent(installedEntry)) {
+                changes.changedEntries.add(entry);
+            }
+        }
+
+        if (installedManifest != null) {
+            for (Entry installedEntry : installedManifest.entries.values()) {
+                if (!entries.containsKey(installedEntry.path)) {
+                    changes.removedEntries.add(installedEntry);
+                }
+            }
+        }
+
+        return changes;
+    }
+
+    /** Returns the manifest of the asset directory, or {@code null} if no manifest has been bundled. */
+    @Nullable
+    public static AssetManifest ReadFromAsset(AssetManager assetManager, String assetDir) {
+        try (InputStream in = assetManager.open(assetDir + FILE_EXTENSION)) {
+            return Read(in);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to read the asset manifest of '" + assetDir + "'.", e);
+            return null;
+        }
+    }
+
+    /** Returns the digest of the bundled manifest without parsing its entries. */
+    @Nullable
+    public static String ReadDigestFromAsset(AssetManager assetManager, String assetDir) {
+        try (InputStream in = assetManager.open(assetDir + FILE_EXTENSION)) {
+            return ReadDigest(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Returns the manifest of the installed directory, or {@code null} if no manifest has been installed. */
+    @Nullable
+    public static AssetManifest ReadFromPath(String dirPath) {
+        final File manifestFile = new File(dirPath + FILE_EXTENSION);
+        if (!manifestFile.exists()) return null;
+
+        try (InputStream in = new FileInputStream(manifestFile)) {
+            return Read(in);
+        } catch (IOException e) {
+            Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to read the installed manifest of '" + dirPath + "'.", e);
+            return null;
+        }
+    }
+
+    /** Returns the digest of the installed manifest without parsing its entries. */
+    @Nullable
+    public static String ReadDigestFromPath(String dirPath) {
+        final File manifestFile = new File(dirPath + FILE_EXTENSION);
+        if (!manifestFile.exists()) return null;
+
+        try (InputStream in = new FileInputStream(manifestFile)) {
+            return ReadDigest(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Installs the manifest next to the directory it describes, replacing the previous one atomically. */
+    public static boolean WriteToPath(AssetManifest manifest, String dirPath) {
+        final File manifestFile = new File(dirPath + FILE_EXTENSION);
+        final File temporaryFile = new File(dirPath + FILE_EXTENSION + ".tmp");
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temporaryFile), StandardCharsets.UTF_8)) {
+            writer.write(HEADER + manifest.digest + "\n");
+            for (Entry entry : manifest.entries.values()) {
+                writer.write(entry.hash + " " + entry.size + " " + entry.path + "\n");
+            }
+        } catch (IOException e) {
+            Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to write the installed manifest of '" + dirPath + "'.", e);
+            //noinspection ResultOfMethodCallIgnored
+            temporaryFile.delete();
+            return false;
+        }
+
+        return temporaryFile.renameTo(manifestFile);
+    }
+
+    public static boolean DeleteFromPath(String dirPath) {
+        final File manifestFile = new File(dirPath + FILE_EXTENSION);
+        return !manifestFile.exists() || manifestFile.delete();
+    }
+
+    private static String ReadDigest(InputStream in) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        return ParseHeader(reader.readLine());
+    }
+
+    private static AssetManifest Read(InputStream in) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        final AssetManifest manifest = new AssetManifest(ParseHeader(reader.readLine()));
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) continue;
+
+            final String[] fields = line.split(" ", 3);
+            if (fields.length != 3) {
+                throw new IOException("Invalid manifest entry '" + line + "'.");
+            }
+
+            try {
+                final Entry entry = new Entry(fields[0], Long.parseLong(fields[1]), fields[2]);
+                manifest.entries.put(entry.path, entry);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid manifest entry '" + line + "'.", e);
+            }
+        }
+
+        return manifest;
+    }
+
+    private static String ParseHeader(String header) throws IOException {
+        if (header == null || !header.startsWith(HEADER)) {
+            throw new IOException("Unsupported manifest format.");
+        }
+
+        return header.substring(HEADER.length());
+    }
+}
@@ -0,0 +1,41 @@
+package net.hampoelz.capacitor.nodejs;
+
+import android.content.res.AssetManager;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** A read-only tree of files that can be extracted by the {@link AssetExtractor}. */
+public interface AssetSource {
+    /**
+     * Returns the names of the entries of the directory at {@code assetPath},
+     * or an empty array if {@code assetPath} is a file or does not exist.
+     */
+    String[] list(String assetPath) throws IOException;
+
+    /** Copies the file at {@code assetPath} to {@code out} and returns the number of copied bytes. */
+    long copy(String assetPath, FileOutputStream out, byte[] buffer) throws IOException;
+
+    /** The files bundled as regular assets of the APK. */
+    class Assets implements AssetSource {
+
+        private final AssetManager assetManager;
+
+        public Assets(AssetManager assetManager) {
+            this.assetManager = assetManager;
+        }
+
+        @Override
+        public String[] list(String assetPath) throws IOException {
+            final String[] files = assetManager.list(assetPath);
+            return files != null ? files : new String[0];
+        }
+
+        @Override
+        public long copy(String assetPath, FileOutputStream out, byte[] buffer) throws IOException {
+            try (InputStream in = assetManager.open(assetPath, AssetManager.ACCESS_STREAMING)) {
+                return FileOperations.CopyStream(in, out, buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package net.hampoelz.capacitor.nodejs;
+
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reduces the work of the Node.js process while the app is in the background.
+ *
+ * <p>With the {@code throttle} mode, the event loops of the Node.js process and its workers iterate at most once
+ * per tick interval, so that timers and polling loops wake the CPU less often. Only the channels delivered in the
+ * background, like the app channel, are flushed. The messages of all other channels are kept in their bounded
+ * queues and delivered in batches once the app returns to the foreground. The {@code suspend} mode additionally
+ * suspends the event loops once the app has been in the background for the grace period.
+ */
+public class BackgroundPolicy {
+
+    protected static final String MODE_NONE = "none";
+    protected static final String MODE_THROTTLE = "throttle";
+    protected static final String MODE_SUSPEND = "suspend";
+
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        final Thread thread = new Thread(runnable, "NodeJS-Background");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final NodeProcess nodeProcess;
+
+    // Guarded by this.
+    private String mode = MODE_NONE;
+    private long gracePeriod = 30000;
+    private boolean isInBackground = false;
+    private boolean isSuspended = false;
+    private ScheduledFuture<?> suspension;
+
+    protected BackgroundPolicy(NodeProcess nodeProcess) {
+        this.nodeProcess = nodeProcess;
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /** Sets the mode, the minimum time between two iterations of a throttled event loop and the grace period in milliseconds. */
+    protected synchronized void setOptions(String mode, int tickInterval, int gracePeriod) {
+        this.mode = mode;
+        this.gracePeriod = Math.max(0, gracePeriod);
+        nodeProcess.setBackgroundTickInterval(Math.max(0, tickInterval));
+    }
+
+    protected synchronized void enterBackground() {
+        if (isInBackground || Objects.equals(mode, MODE_NONE)) return;
+        isInBackground = true;
+
+        nodeProcess.setBackgroundState(NodeProcess.BACKGROUND_STATE_THROTTLED);
+        if (Objects.equals(mode, MODE_SUSPEND)) {
+            suspension = timer.schedule(this::suspend, gracePeriod, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void suspend() {
+        if (!isInBackground || isSuspended) return;
+        isSuspended = true;
+        suspension = null;
+
+        nodeProcess.setBackgroundState(NodeProcess.BACKGROUND_STATE_SUSPENDED);
+    }
+
+    /** Resumes the event loops, the messages queued in the meantime are delivered in batches. */
+    protected synchronized void enterForeground() {
+        if (!isInBackground) return;
+        isInBackground = false;
+        isSuspended = false;
+
+        if (suspension != null) {
+            suspension.cancel(false);
+            suspension = null;
+        }
+        nodeProcess.setBackgroundState(NodeProcess.BACKGROUND_STATE_FOREGROUND);
+    }
+
+    /** Applies the state again before the engine starts, as stopping the engine resumes its event loops. */
+    protected synchronized void restoreState() {
+        if (!isInBackground) return;
+
+        nodeProcess.setBackgroundState(isSuspended ? NodeProcess.BACKGROUND_STATE_SUSPENDED : NodeProcess.BACKGROUND_STATE_THROTTLED);
+    }
+}
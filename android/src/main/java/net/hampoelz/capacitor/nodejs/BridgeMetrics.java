@@ -0,0 +1,101 @@
+package net.hampoelz.capacitor.nodejs;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the messages and bytes exchanged with the Node.js process per channel and event,
+ * and the latencies of messages from the Node.js process to the listeners.
+ *
+ * <p>All counters are lock-free atomics, so recording never blocks the threads sending
+ * and receiving messages. Text messages are measured by the length of their serialized form.
+ */
+public class BridgeMetrics {
+
+    /** Events beyond this number are only counted for their channel, to bound the memory of the counters. */
+    protected static final int MAX_EVENTS_PER_CHANNEL = 256;
+
+    public static class Counters {
+
+        public final AtomicLong sentMessages = new AtomicLong();
+        public final AtomicLong sentBytes = new AtomicLong();
+        public final AtomicLong receivedMessages = new AtomicLong();
+        public final AtomicLong receivedBytes = new AtomicLong();
+
+        protected void recordSent(long bytes) {
+            sentMessages.incrementAndGet();
+            sentBytes.addAndGet(bytes);
+        }
+
+        protected void recordReceived(long bytes) {
+            receivedMessages.incrementAndGet();
+            receivedBytes.addAndGet(bytes);
+        }
+    }
+
+    public static class ChannelCounters extends Counters {
+
+        /** Time from the Node.js process sending a message until it has been delivered to the listeners. */
+        public final LatencyHistogram receiveLatency = new LatencyHistogram();
+        private final ConcurrentMap<String, Counters> events = new ConcurrentHashMap<>();
+
+        public Map<String, Counters> getEvents() {
+            return Collections.unmodifiableMap(events);
+        }
+
+        private Counters getEvent(String eventName) {
+            final Counters counters = events.get(eventName);
+            if (counters != null || events.size() >= MAX_EVENTS_PER_CHANNEL) {
+                return counters;
+            }
+            final Counters newCounters = new Counters();
+            final Counters previousCounters = events.putIfAbsent(eventName, newCounters);
+            return previousCounters != null ? previousCounters : newCounters;
+        }
+    }
+
+    private final ConcurrentMap<String, ChannelCounters> channels = new ConcurrentHashMap<>();
+
+    public void recordSent(String channelName, String eventName, long bytes) {
+        final ChannelCounters channel = getChannel(channelName);
+        channel.recordSent(bytes);
+
+        final Counters event = channel.getEvent(eventName);
+        if (event != null) {
+            event.recordSent(bytes);
+        }
+    }
+
+    public void recordReceived(String channelName, String eventName, long bytes) {
+        final ChannelCounters channel = getChannel(channelName);
+        channel.recordReceived(bytes);
+
+        final Counters event = channel.getEvent(eventName);
+        if (event != null) {
+            event.recordReceived(bytes);
+        }
+    }
+
+    /** Records the delivery of a message sent by the Node.js process at {@code sentTime} of {@link System#nanoTime()}. */
+    public void recordDelivered(String channelName, long sentTime) {
+        getChannel(channelName).receiveLatency.record(System.nanoTime() - sentTime, TimeUnit.NANOSECONDS);
+    }
+
+    public Map<String, ChannelCounters> getChannels() {
+        return Collections.unmodifiableMap(channels);
+    }
+
+    private ChannelCounters getChannel(String channelName) {
+        final ChannelCounters counters = channels.get(channelName);
+        if (counters != null) {
+            return counters;
+        }
+        final ChannelCounters newCounters = new ChannelCounters();
+        final ChannelCounters previousCounters = channels.putIfAbsent(channelName, newCounters);
+        return previousCounters != null ? previousCounters : newCounters;
+    }
+}
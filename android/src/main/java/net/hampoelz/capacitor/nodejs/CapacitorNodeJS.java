@@ -1,5 +1,6 @@
 package net.hampoelz.capacitor.nodejs;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
@@ -10,11 +11,23 @@ import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Logger;
 import com.getcapacitor.PluginCall;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -26,6 +39,48 @@ public class CapacitorNodeJS {
     private final CapacitorNodeJSPlugin.PluginEventNotifier eventNotifier;
     private final EngineStatus engineStatus = new EngineStatus();
     private final NodeProcess nodeProcess = new NodeProcess(new ReceiveCallback());
+    private final MessageDispatcher messageDispatcher = new MessageDispatcher();
+    private final BridgeMetrics bridgeMetrics = new BridgeMetrics();
+    private final PendingInvocations pendingInvocations = new PendingInvocations(this::timeoutInvocation);
+    private final ChannelStreams channelStreams = new ChannelStreams(new StreamTransport());
+    private final WorkerScheduler workerScheduler = new WorkerScheduler(this::getQueuedMessages);
+    private final NodeEventListeners nodeEventListeners = new NodeEventListeners();
+    private final BackgroundPolicy backgroundPolicy = new BackgroundPolicy(nodeProcess);
+    private final PendingInvocations heapStatisticsRequests = new PendingInvocations((requestId, call) ->
+        call.reject("The Node.js process did not report its heap statistics in time.", "TIMEOUT")
+    );
+
+    // Timeout in milliseconds of invocations that do not specify one.
+    private static final int DEFAULT_INVOKE_TIMEOUT = 30000;
+
+    // User-defined channels are event channels named after the event channel, the separator and their name.
+    private static final String CHANNEL_SEPARATOR = ":";
+    // Control messages of the app channel, like invocations, pause and resume, are delivered before pending events.
+    private static final int APP_CHANNEL_PRIORITY = 1;
+
+    // Protocol 1 wraps the serialized arguments as a string into a JSON object, protocol 2 prefixes them
+    // with the length of the event name and the event name. Both sides start with protocol 1 and switch
+    // after the ready handshake, received messages are decoded independently of the negotiated protocol.
+    private static final int CHANNEL_PROTOCOL_MAX = 2;
+    private volatile int channelProtocol = 1;
+
+    private volatile StartupMetrics startupMetrics;
+    // Starts the engine again with the options of its last start.
+    private volatile Runnable restartAction;
+    private volatile boolean hasEngineRun = false;
+    private volatile SharedMemory sharedMemory;
+    // Path of the script of the worker threads, relative to the Node.js project.
+    private volatile String workerScript;
+    private volatile boolean isCodeCacheEnabled = false;
+    private volatile boolean isDeferredExtractionEnabled = false;
+    // Maximum size of the old generation of the V8 heap in megabytes, 0 for the default of V8.
+    private volatile int maxOldSpaceSize = 0;
+    // The extraction of the Node.js project that continues while the engine is running.
+    private volatile DeferredExtraction deferredExtraction;
+    // Names of the events with Capacitor listeners.
+    private volatile Set<String> listenedEvents = Collections.emptySet();
+    // Names of the events with Capacitor or native listeners, the Node.js process skips messages of all other events.
+    private volatile Set<String> subscribedEvents = Collections.emptySet();
 
     protected CapacitorNodeJS(Context context, CapacitorNodeJSPlugin.PluginEventNotifier eventNotifier) {
         this.context = context;
@@ -37,14 +92,22 @@ public class CapacitorNodeJS {
         } catch (PackageManager.NameNotFoundException e) {
             Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to get the application's package information.", e);
         }
+
+        nodeProcess.setFileMaterializer(pathPrefixes -> {
+            final DeferredExtraction extraction = deferredExtraction;
+            return extraction != null && extraction.materialize(pathPrefixes);
+        });
+        nodeProcess.setChannelPriority(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, APP_CHANNEL_PRIORITY);
+        nodeProcess.setChannelBackgroundDelivery(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, true);
     }
 
     /** @noinspection InnerClassMayBeStatic*/
     private class EngineStatus {
 
         private final ArrayList<PluginCall> whenEngineReadyListeners = new ArrayList<>();
-        private boolean isEngineStarted = false;
-        private boolean isEngineReady = false;
+        private final ArrayList<Runnable> whenEngineStoppedListeners = new ArrayList<>();
+        private volatile boolean isEngineStarted = false;
+        private volatile boolean isEngineReady = false;
 
         protected void setStarted() {
             isEngineStarted = true;
@@ -54,7 +117,39 @@ public class CapacitorNodeJS {
             return isEngineStarted;
         }
 
-        protected void setReady() {
+        /** Resets the status once the engine has stopped, so that it can be started again. */
+        protected void setStopped() {
+            final ArrayList<Runnable> stoppedListeners;
+            synchronized (this) {
+                isEngineStarted = false;
+                isEngineReady = false;
+
+                while (!whenEngineReadyListeners.isEmpty()) {
+                    final PluginCall whenEngineReadyListener = whenEngineReadyListeners.get(0);
+                    whenEngineReadyListeners.remove(0);
+                    whenEngineReadyListener.reject("The Node.js engine has been stopped.");
+                }
+
+                stoppedListeners = new ArrayList<>(whenEngineStoppedListeners);
+                whenEngineStoppedListeners.clear();
+            }
+
+            // Listeners may start the engine again.
+            for (Runnable stoppedListener : stoppedListeners) {
+                stoppedListener.run();
+            }
+        }
+
+        protected synchronized void addStoppedListener(Runnable listener) {
+            whenEngineStoppedListeners.add(listener);
+        }
+
+        /** Returns {@code false} if the listener has already been called. */
+        protected synchronized boolean removeStoppedListener(Runnable listener) {
+            return whenEngineStoppedListeners.remove(listener);
+        }
+
+        protected synchronized void setReady() {
             isEngineReady = true;
 
             while (!whenEngineReadyListeners.isEmpty()) {
@@ -68,7 +163,7 @@ public class CapacitorNodeJS {
             return isEngineReady;
         }
 
-        protected void resolveWhenReady(PluginCall call) {
+        protected synchronized void resolveWhenReady(PluginCall call) {
             if (this.isReady()) {
                 call.resolve();
             } else {
@@ -113,71 +208,168 @@ public class CapacitorNodeJS {
             return;
         }
         engineStatus.setStarted();
+        startupMetrics = new StartupMetrics(hasEngineRun);
+        restartAction = () -> startEngine(null, projectDir, mainFile, args, env);
 
         Thread engine = new Thread(() -> {
-            final String filesPath = context.getFilesDir().getAbsolutePath();
-            final String cachePath = context.getCacheDir().getAbsolutePath();
-
-            final String basePath = FileOperations.CombinePath(filesPath, "nodejs");
-            final String projectPath = FileOperations.CombinePath(basePath, "public");
-            final String modulesPath = FileOperations.CombinePath(basePath, "builtin_modules");
-            final String dataPath = FileOperations.CombinePath(basePath, "data");
-
-            final boolean copyNodeProjectSuccess = copyNodeProjectFromAPK(projectDir, projectPath, modulesPath);
-            if (!copyNodeProjectSuccess) {
-                callWrapper.reject("Unable to copy the Node.js project from APK.");
-                return;
-            }
+            try {
+                final String filesPath = context.getFilesDir().getAbsolutePath();
+                final String cachePath = context.getCacheDir().getAbsolutePath();
 
-            if (!FileOperations.ExistsPath(projectPath)) {
-                callWrapper.reject("Unable to access the Node.js project. (No such directory)");
-                return;
-            }
+                final String basePath = FileOperations.CombinePath(filesPath, "nodejs");
+                final String projectPath = FileOperations.CombinePath(basePath, "public");
+                final String modulesPath = FileOperations.CombinePath(basePath, "builtin_modules");
+                final String dataPath = FileOperations.CombinePath(basePath, "data");
 
-            final boolean createDataDirSuccess = FileOperations.CreateDir(dataPath);
-            if (!createDataDirSuccess) {
-                Logger.debug(CapacitorNodeJSPlugin.LOGGER_TAG, "Unable to create a directory for persistent data storage.");
-            }
+                startupMetrics.beginPhase(StartupMetrics.PHASE_EXTRACTION);
+                final boolean copyNodeProjectSuccess = copyNodeProjectFromAPK(projectDir, projectPath, modulesPath);
+                if (!copyNodeProjectSuccess) {
+                    callWrapper.reject("Unable to copy the Node.js project from APK.");
+                    return;
+                }
+
+                if (!FileOperations.ExistsPath(projectPath)) {
+                    callWrapper.reject("Unable to access the Node.js project. (No such directory)");
+                    return;
+                }
 
-            final String projectPackageJsonPath = FileOperations.CombinePath(projectPath, "package.json");
+                final boolean createDataDirSuccess = FileOperations.CreateDir(dataPath);
+                if (!createDataDirSuccess) {
+                    Logger.debug(CapacitorNodeJSPlugin.LOGGER_TAG, "Unable to create a directory for persistent data storage.");
+                }
 
-            String projectMainFile = "index.js";
-            if (mainFile != null && !mainFile.isEmpty()) {
-                projectMainFile = mainFile;
-            } else if (FileOperations.ExistsPath(projectPackageJsonPath)) {
-                try {
-                    final String projectPackageJsonData = FileOperations.ReadFileFromPath(projectPackageJsonPath);
-                    final JSONObject projectPackageJson = new JSONObject(projectPackageJsonData);
-                    final String projectPackageJsonMainFile = projectPackageJson.getString("main");
+                // The package.json files are needed right away, the remaining files are extracted while the engine is running.
+                final DeferredExtraction projectExtraction = deferredExtraction;
+                if (projectExtraction != null && !projectExtraction.extractPackageFiles()) {
+                    callWrapper.reject("Unable to copy the Node.js project from APK.");
+                    return;
+                }
+
+                startupMetrics.beginPhase(StartupMetrics.PHASE_PACKAGE_JSON);
+                final String projectPackageJsonPath = FileOperations.CombinePath(projectPath, "package.json");
+
+                String projectMainFile = "index.js";
+                if (mainFile != null && !mainFile.isEmpty()) {
+                    projectMainFile = mainFile;
+                } else if (FileOperations.ExistsPath(projectPackageJsonPath)) {
+                    try {
+                        final String projectPackageJsonData = FileOperations.ReadFileFromPath(projectPackageJsonPath);
+                        final JSONObject projectPackageJson = new JSONObject(projectPackageJsonData);
+                        final String projectPackageJsonMainFile = projectPackageJson.getString("main");
 
-                    if (!projectPackageJsonMainFile.isEmpty()) {
-                        projectMainFile = projectPackageJsonMainFile;
+                        if (!projectPackageJsonMainFile.isEmpty()) {
+                            projectMainFile = projectPackageJsonMainFile;
+                        }
+                    } catch (JSONException | IOException e) {
+                        callWrapper.reject("Failed to read the package.json file of the Node.js project.", e);
+                        return;
                     }
-                } catch (JSONException | IOException e) {
-                    callWrapper.reject("Failed to read the package.json file of the Node.js project.", e);
+                }
+
+                final String projectMainPath = FileOperations.CombinePath(projectPath, projectMainFile);
+
+                if (projectExtraction != null) {
+                    startupMetrics.beginPhase(StartupMetrics.PHASE_STARTUP_FILES);
+                    if (!projectExtraction.extractScriptWithDependencies(projectMainPath)) {
+                        callWrapper.reject("Unable to copy the Node.js project from APK.");
+                        return;
+                    }
+                    projectExtraction.start();
+                }
+
+                if (!FileOperations.ExistsPath(projectMainPath)) {
+                    callWrapper.reject("Unable to access main script of the Node.js project. (No such file)");
                     return;
                 }
+
+                startupMetrics.beginPhase(StartupMetrics.PHASE_ENVIRONMENT);
+                final String modulesPaths = FileOperations.CombineEnv(projectPath, modulesPath);
+
+                final Map<String, String> nodeEnv = new HashMap<>();
+                nodeEnv.put("DATADIR", dataPath);
+                nodeEnv.put("NODE_PATH", modulesPaths);
+                putWorkerEnv(nodeEnv, projectPath);
+
+                final List<String> nodeOptions = new ArrayList<>();
+                if (isDeferredExtractionEnabled) {
+                    final String resolverScriptPath = FileOperations.CombinePath(modulesPath, "bridge", "dist", "deferred-extraction.cjs");
+                    nodeEnv.put("CAPACITOR_NODEJS_DEFERRED_EXTRACTION", "1");
+                    nodeOptions.add("--require");
+                    nodeOptions.add(resolverScriptPath);
+                }
+                if (isCodeCacheEnabled) {
+                    final String codeCacheScriptPath = FileOperations.CombinePath(modulesPath, "bridge", "dist", "code-cache.cjs");
+                    nodeEnv.put("CAPACITOR_NODEJS_CODE_CACHE", prepareCodeCache(cachePath));
+                    nodeOptions.add("--require");
+                    nodeOptions.add(codeCacheScriptPath);
+                }
+                if (maxOldSpaceSize > 0) {
+                    nodeOptions.add("--max-old-space-size=" + maxOldSpaceSize);
+                }
+                nodeEnv.putAll(env);
+
+                // The engine phase lasts until the Node.js process reports to be ready.
+                startupMetrics.beginPhase(StartupMetrics.PHASE_ENGINE);
+                hasEngineRun = true;
+                backgroundPolicy.restoreState();
+                final int exitCode = nodeProcess.start(projectMainPath, nodeOptions.toArray(new String[0]), args, nodeEnv, cachePath);
+                Logger.debug(CapacitorNodeJSPlugin.LOGGER_TAG, "The Node.js engine has exited with code " + exitCode + ".");
+                callWrapper.resolve();
+            } finally {
+                engineStopped();
             }
+        });
+
+        engine.start();
+    }
 
-            final String projectMainPath = FileOperations.CombinePath(projectPath, projectMainFile);
+    protected void stopEngine(PluginCall call) {
+        stopEngine(call, call::resolve);
+    }
 
-            if (!FileOperations.ExistsPath(projectMainPath)) {
-                callWrapper.reject("Unable to access main script of the Node.js project. (No such file)");
-                return;
+    /** Stops the engine and starts it again with the options of its last start. */
+    protected void restartEngine(PluginCall call) {
+        final Runnable restart = restartAction;
+        stopEngine(
+            call,
+            () -> {
+                restart.run();
+                call.resolve();
             }
+        );
+    }
+
+    private void stopEngine(PluginCall call, Runnable onStopped) {
+        if (!engineStatus.isStarted()) {
+            call.reject("The Node.js engine has not been started yet.");
+            return;
+        }
 
-            final String modulesPaths = FileOperations.CombineEnv(projectPath, modulesPath);
+        // The listener is added first, as the engine may stop right away.
+        engineStatus.addStoppedListener(onStopped);
+        if (!nodeProcess.stop() && engineStatus.removeStoppedListener(onStopped)) {
+            call.reject("The Node.js engine is not running yet.");
+        }
+    }
 
-            final Map<String, String> nodeEnv = new HashMap<>();
-            nodeEnv.put("DATADIR", dataPath);
-            nodeEnv.put("NODE_PATH", modulesPaths);
-            nodeEnv.putAll(env);
+    // Called on the engine thread once the Node.js process has exited or failed to start.
+    private void engineStopped() {
+        channelProtocol = 1;
+        workerScheduler.reset();
 
-            nodeProcess.start(projectMainPath, args, nodeEnv, cachePath);
-            callWrapper.resolve();
-        });
+        for (PluginCall call : pendingInvocations.removeAll()) {
+            call.reject("The Node.js engine has been stopped.", "CANCELLED");
+        }
 
-        engine.start();
+        for (PluginCall call : heapStatisticsRequests.removeAll()) {
+            call.reject("The Node.js engine has been stopped.", "CANCELLED");
+        }
+
+        for (String streamId : channelStreams.closeAll("The Node.js engine has been stopped.")) {
+            eventNotifier.streamAbort(streamId, "The Node.js engine has been stopped.");
+        }
+
+        engineStatus.setStopped();
     }
 
     protected void resolveWhenReady(PluginCall call) {
@@ -201,54 +393,1081 @@ public class CapacitorNodeJS {
 
         final String eventName = call.getString("eventName");
         final JSArray args = call.getArray("args", new JSArray());
+        final Integer workerId = call.getInt("workerId");
+        final String channel = call.getString("channel");
+
+        if (workerId != null && workerId != 0 && !workerScheduler.isWorker(workerId)) {
+            call.reject("The Node.js engine has no worker " + workerId + ".");
+            return;
+        }
+
+        if (workerId != null && workerScheduler.hasExited(workerId)) {
+            call.reject("The Node.js worker " + workerId + " has exited.");
+            return;
+        }
 
-        sendMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT, eventName, args);
+        if (!isValidChannel(channel)) {
+            call.reject("The channel name '" + channel + "' is not valid.");
+            return;
+        }
+
+        final int targetWorker = workerId != null ? workerId : workerScheduler.selectWorker(CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT, eventName);
+        final String channelName = WorkerScheduler.getChannelName(getEventChannelName(channel), targetWorker);
+
+        if (channel != null && !nodeProcess.isChannelRegistered(channelName)) {
+            call.reject(getUnregisteredChannelMessage(channel, targetWorker));
+            return;
+        }
+
+        if (!sendMessage(channelName, eventName, args)) {
+            call.reject("The message queue of the Node.js engine is full.");
+            return;
+        }
 
         call.resolve();
     }
 
-    protected void sendMessage(String channelName, String eventName, JSArray args) {
-        if (eventName == null || args == null) return;
+    /** Returns {@code false} if the message could not be queued. */
+    protected boolean sendMessage(String channelName, String eventName, JSONArray args) {
+        if (eventName == null || args == null) return false;
+
+        final String channelMessage = serializeMessage(eventName, args);
+
+        if (!nodeProcess.send(channelName, channelMessage)) return false;
+
+        bridgeMetrics.recordSent(channelName, eventName, channelMessage.length());
+        return true;
+    }
+
+    /** Returns whether the Node.js engine is ready to receive messages. */
+    public boolean isReady() {
+        return engineStatus.isReady();
+    }
+
+    /**
+     * Sends a message to the Node.js process without passing it through the WebView, routed to a worker like the
+     * messages of the Capacitor layer. Returns {@code false} if the engine is not ready or the message queue is full.
+     */
+    public boolean send(String eventName, JSONArray args) {
+        return send(null, eventName, args);
+    }
+
+    /**
+     * Sends a message via a channel created with {@code createChannel(...)} of the {@code bridge} module, {@code null}
+     * for the default channel. Returns {@code false} if the thread the message is routed to has not created the channel.
+     */
+    public boolean send(@Nullable String channel, String eventName, JSONArray args) {
+        if (!engineStatus.isReady() || eventName == null || eventName.isEmpty() || !isValidChannel(channel)) return false;
+
+        final int workerId = workerScheduler.selectWorker(CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT, eventName);
+        final String channelName = WorkerScheduler.getChannelName(getEventChannelName(channel), workerId);
+        if (!isRegisteredChannel(channel, channelName, workerId)) return false;
+
+        return sendMessage(channelName, eventName, args);
+    }
+
+    /**
+     * Sends the remaining bytes of {@code data} to the Node.js process, where they are received as a {@code Buffer}.
+     * Returns {@code false} if the engine is not ready or the message queue is full.
+     */
+    public boolean sendBinary(String eventName, ByteBuffer data) {
+        return sendBinary(null, eventName, data);
+    }
+
+    /**
+     * Sends the bytes via a channel created with {@code createChannel(...)} of the {@code bridge} module, {@code null}
+     * for the default channel. Returns {@code false} if the thread the message is routed to has not created the channel.
+     */
+    public boolean sendBinary(@Nullable String channel, String eventName, ByteBuffer data) {
+        if (!engineStatus.isReady() || eventName == null || eventName.isEmpty() || !isValidChannel(channel)) return false;
+
+        final int workerId = workerScheduler.selectWorker(CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT, eventName);
+        final String channelName = WorkerScheduler.getChannelName(getEventChannelName(channel), workerId);
+        if (!isRegisteredChannel(channel, channelName, workerId)) return false;
+
+        return sendBinaryMessage(channelName, eventName, data);
+    }
+
+    /**
+     * Sets the priority of a channel created with {@code createChannel(...)} of the {@code bridge} module, or of the
+     * default channel for {@code null}. Pending messages of channels with a higher priority are delivered to the
+     * Node.js process first, the default priority is 0.
+     */
+    public void setChannelPriority(@Nullable String channel, int priority) {
+        if (!isValidChannel(channel)) {
+            Logger.warn(CapacitorNodeJSPlugin.LOGGER_TAG, "The channel name '" + channel + "' is not valid.");
+            return;
+        }
+
+        nodeProcess.setChannelPriority(getEventChannelName(channel), priority);
+    }
+
+    // Messages of user-defined channels that the Node.js process has not created would wait in their queue forever.
+    private boolean isRegisteredChannel(@Nullable String channel, String channelName, int workerId) {
+        if (channel == null || nodeProcess.isChannelRegistered(channelName)) return true;
+
+        Logger.warn(CapacitorNodeJSPlugin.LOGGER_TAG, getUnregisteredChannelMessage(channel, workerId));
+        return false;
+    }
+
+    private static String getUnregisteredChannelMessage(String channel, int workerId) {
+        final String thread = workerId == 0 ? "the Node.js process" : "the Node.js worker " + workerId;
+        return "The channel '" + channel + "' has not been created by " + thread + " via createChannel(...).";
+    }
+
+    // Channel names must not contain the worker separator, as the channels of workers are suffixed with their id.
+    private static boolean isValidChannel(@Nullable String channel) {
+        return channel == null || (!channel.isEmpty() && channel.indexOf(WorkerScheduler.WORKER_SEPARATOR) < 0);
+    }
+
+    /** Returns the name of the event channel of a user-defined channel, or of the default event channel for {@code null}. */
+    private static String getEventChannelName(@Nullable String channel) {
+        if (channel == null) return CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT;
+        return CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT + CHANNEL_SEPARATOR + channel;
+    }
+
+    /** Returns whether messages of the channel are delivered to the listeners of their event. */
+    private static boolean isEventChannel(String baseChannelName) {
+        return (
+            Objects.equals(baseChannelName, CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT) ||
+            baseChannelName.startsWith(CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT + CHANNEL_SEPARATOR)
+        );
+    }
+
+    /**
+     * Adds a listener for the messages of {@code eventName} sent by the Node.js process via {@code channel.send(...)}.
+     * Native listeners are called on the thread delivering the messages, before the Capacitor listeners.
+     */
+    public void addMessageListener(String eventName, NodeEventListeners.MessageListener listener) {
+        if (nodeEventListeners.addMessageListener(eventName, listener)) {
+            updateSubscribedEvents();
+        }
+    }
+
+    public void removeMessageListener(String eventName, NodeEventListeners.MessageListener listener) {
+        if (nodeEventListeners.removeMessageListener(eventName, listener)) {
+            updateSubscribedEvents();
+        }
+    }
+
+    /** Adds a listener for the messages of {@code eventName} sent by the Node.js process via {@code channel.sendBinary(...)}. */
+    public void addBinaryMessageListener(String eventName, NodeEventListeners.BinaryMessageListener listener) {
+        if (nodeEventListeners.addBinaryMessageListener(eventName, listener)) {
+            updateSubscribedEvents();
+        }
+    }
+
+    public void removeBinaryMessageListener(String eventName, NodeEventListeners.BinaryMessageListener listener) {
+        if (nodeEventListeners.removeBinaryMessageListener(eventName, listener)) {
+            updateSubscribedEvents();
+        }
+    }
+
+    protected void sendMessages(PluginCall call) {
+        if (!engineStatus.isStarted()) {
+            call.reject("The Node.js engine has not been started yet.");
+            return;
+        }
+
+        if (!engineStatus.isReady()) {
+            call.reject("The Node.js engine is not ready yet.");
+            return;
+        }
+
+        final JSArray messages = call.getArray("messages", new JSArray());
+        // Messages are routed to the workers like single messages and sent in one batch per channel in their order.
+        final Map<String, List<String>> eventNames = new LinkedHashMap<>();
+        final Map<String, List<String>> channelMessages = new LinkedHashMap<>();
+
+        try {
+            for (int i = 0; i < messages.length(); i++) {
+                final JSONObject message = messages.getJSONObject(i);
+
+                final String eventName = message.optString("eventName", "");
+                if (eventName.isEmpty()) {
+                    call.reject("Required parameter 'eventName' was not specified for message " + i + ".");
+                    return;
+                }
+
+                final JSONArray args = message.optJSONArray("args");
+                final int workerId = workerScheduler.selectWorker(CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT, eventName);
+                final String channelName = WorkerScheduler.getChannelName(CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT, workerId);
+
+                if (!channelMessages.containsKey(channelName)) {
+                    eventNames.put(channelName, new ArrayList<String>());
+                    channelMessages.put(channelName, new ArrayList<String>());
+                }
+                eventNames.get(channelName).add(eventName);
+                channelMessages.get(channelName).add(serializeMessage(eventName, args != null ? args : new JSONArray()));
+            }
+        } catch (JSONException e) {
+            call.reject("Parameter 'messages' is not valid.", e);
+            return;
+        }
+
+        int queuedMessages = 0;
+        for (Map.Entry<String, List<String>> entry : channelMessages.entrySet()) {
+            final String channelName = entry.getKey();
+            final List<String> batch = entry.getValue();
+
+            final int queuedBatchMessages = nodeProcess.sendBatch(channelName, batch.toArray(new String[0]));
+            for (int i = 0; i < queuedBatchMessages; i++) {
+                bridgeMetrics.recordSent(channelName, eventNames.get(channelName).get(i), batch.get(i).length());
+            }
+            queuedMessages += queuedBatchMessages;
+        }
+
+        if (queuedMessages < messages.length()) {
+            call.reject("The message queue of the Node.js engine is full, only " + queuedMessages + " of " + messages.length() + " messages have been sent.");
+            return;
+        }
+
+        call.resolve();
+    }
+
+    protected void invoke(PluginCall call) {
+        if (!engineStatus.isStarted()) {
+            call.reject("The Node.js engine has not been started yet.");
+            return;
+        }
+
+        if (!engineStatus.isReady()) {
+            call.reject("The Node.js engine is not ready yet.");
+            return;
+        }
+
+        final String invokeId = call.getString("invokeId");
+        final String eventName = call.getString("eventName");
+        final JSArray args = call.getArray("args", new JSArray());
+        final int timeout = call.getInt("timeout", DEFAULT_INVOKE_TIMEOUT);
+
+        try {
+            pendingInvocations.add(invokeId, call, timeout);
+        } catch (IllegalStateException e) {
+            call.reject(e.getMessage());
+            return;
+        }
+
+        // All invocations are multiplexed over the app channel and matched by their id.
+        final JSArray invokeArgs = new JSArray();
+        invokeArgs.put(invokeId);
+        invokeArgs.put(eventName);
+        invokeArgs.put(args);
+
+        if (!sendMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, "invoke", invokeArgs)) {
+            pendingInvocations.remove(invokeId);
+            call.reject("The message queue of the Node.js engine is full.");
+        }
+    }
+
+    protected void cancelInvoke(PluginCall call) {
+        final String invokeId = call.getString("invokeId");
+
+        final PluginCall invokeCall = pendingInvocations.remove(invokeId);
+        if (invokeCall != null) {
+            sendCancelInvoke(invokeId);
+            invokeCall.reject("The invocation has been cancelled.", "CANCELLED");
+        }
+
+        call.resolve();
+    }
+
+    protected void setMaxPendingInvocations(int count) {
+        pendingInvocations.setMaxPendingInvocations(count);
+    }
+
+    private void timeoutInvocation(String invokeId, PluginCall call) {
+        sendCancelInvoke(invokeId);
+        call.reject("The invocation timed out.", "TIMEOUT");
+    }
+
+    /** Tells the Node.js process that the result of the invocation is not needed anymore. */
+    private void sendCancelInvoke(String invokeId) {
+        final JSArray args = new JSArray();
+        args.put(invokeId);
+        sendMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, "cancelInvoke", args);
+    }
+
+    /** Settles the pending invocation with the result sent by the Node.js process as {@code [invokeId, error, result]}. */
+    private void completeInvocation(String eventMessage) {
+        final String invokeId;
+        final JSONObject error;
+        final Object result;
+        try {
+            final JSONArray args = new JSONArray(eventMessage);
+            invokeId = args.getString(0);
+            error = args.optJSONObject(1);
+            result = args.length() > 2 ? args.get(2) : JSONObject.NULL;
+        } catch (JSONException e) {
+            Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to deserialize the result of an invocation.", e);
+            return;
+        }
+
+        // The invocation may have timed out or been cancelled in the meantime.
+        final PluginCall call = pendingInvocations.remove(invokeId);
+        if (call == null) return;
+
+        if (error != null) {
+            // The name of the JavaScript error is passed as data, so that it cannot be mistaken for a code of the plugin.
+            final JSObject errorData = new JSObject();
+            errorData.put("name", error.optString("name", "Error"));
+            call.reject(error.optString("message", "The handler of the Node.js process failed."), "HANDLER_ERROR", errorData);
+            return;
+        }
+
+        final JSObject data = new JSObject();
+        data.put("result", result);
+        call.resolve(data);
+    }
+
+    protected void openStream(PluginCall call) {
+        if (!engineStatus.isStarted()) {
+            call.reject("The Node.js engine has not been started yet.");
+            return;
+        }
+
+        if (!engineStatus.isReady()) {
+            call.reject("The Node.js engine is not ready yet.");
+            return;
+        }
+
+        final String eventName = call.getString("eventName");
+        final JSArray args = call.getArray("args", new JSArray());
+
+        final String streamId = channelStreams.open(eventName, args);
+        if (streamId == null) {
+            call.reject("The message queue of the Node.js engine is full.");
+            return;
+        }
+
+        final JSObject result = new JSObject();
+        result.put("streamId", streamId);
+        call.resolve(result);
+    }
+
+    protected void writeStream(PluginCall call, byte[] data) {
+        channelStreams.write(call, call.getString("streamId"), data);
+    }
+
+    protected void endStream(PluginCall call) {
+        channelStreams.end(call, call.getString("streamId"));
+    }
+
+    protected void abortStream(PluginCall call) {
+        final String streamId = call.getString("streamId");
+        if (!channelStreams.abort(streamId, call.getString("reason"))) {
+            call.reject("The stream '" + streamId + "' is not open.");
+            return;
+        }
+
+        call.resolve();
+    }
+
+    protected void ackStream(PluginCall call) {
+        final String streamId = call.getString("streamId");
+        final Integer bytes = call.getInt("bytes", 0);
+
+        // Only streams from the Node.js process are acknowledged by the web page.
+        if (channelStreams.isOpen(streamId) && bytes > 0) {
+            channelStreams.sendAcknowledgement(streamId, bytes);
+        }
+
+        call.resolve();
+    }
+
+    private class StreamTransport implements ChannelStreams.Transport {
+
+        @Override
+        public boolean sendMessage(String eventName, JSArray args) {
+            return CapacitorNodeJS.this.sendMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, eventName, args);
+        }
+
+        @Override
+        public boolean sendChunk(String streamId, ByteBuffer chunk) {
+            return sendBinaryMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, streamId, chunk);
+        }
+    }
+
+    /** Handles the control messages of streams, which are sent as {@code [streamId, ...]}. */
+    private void receiveStreamMessage(String eventName, String eventMessage) {
+        final JSONArray args;
+        final String streamId;
+        try {
+            args = new JSONArray(eventMessage);
+            streamId = args.getString(0);
+        } catch (JSONException e) {
+            Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to deserialize a stream message of the Node.js process.", e);
+            return;
+        }
+
+        if (Objects.equals(eventName, "streamOpen")) {
+            channelStreams.opened(streamId);
+            if (!eventNotifier.streamOpen(streamId, args.optString(1), args.optJSONArray(2))) {
+                channelStreams.abort(streamId, "No stream handler registered for event '" + args.optString(1) + "'");
+            }
+        } else if (Objects.equals(eventName, "streamEnd")) {
+            if (channelStreams.closed(streamId)) {
+                eventNotifier.streamEnd(streamId);
+            }
+        } else if (Objects.equals(eventName, "streamAbort")) {
+            if (channelStreams.closed(streamId)) {
+                eventNotifier.streamAbort(streamId, args.optString(1, "The stream has been aborted by the Node.js process."));
+            }
+        } else if (Objects.equals(eventName, "streamAck")) {
+            channelStreams.acknowledge(streamId, args.optLong(1));
+        } else if (Objects.equals(eventName, "streamCancel")) {
+            channelStreams.cancel(streamId, args.optString(1, null));
+        }
+    }
+
+    protected void setMaxMessagesPerTick(int count) {
+        nodeProcess.setMaxMessagesPerTick(count);
+    }
+
+    protected void setOutputOptions(String outputMode, int bufferSize, int rateLimit) {
+        // A buffer without room would drop all but the newest line.
+        if (bufferSize <= 0) {
+            Logger.warn(CapacitorNodeJSPlugin.LOGGER_TAG, "The output buffer size must be positive, the default size is used.");
+            bufferSize = NodeProcess.DEFAULT_OUTPUT_BUFFER_SIZE;
+        }
+
+        int mode = NodeProcess.OUTPUT_MODE_LOGCAT;
+        if (outputMode.equals("event")) {
+            mode = NodeProcess.OUTPUT_MODE_EVENTS;
+        } else if (outputMode.equals("all")) {
+            mode = NodeProcess.OUTPUT_MODE_LOGCAT | NodeProcess.OUTPUT_MODE_EVENTS;
+        } else if (outputMode.equals("none")) {
+            mode = NodeProcess.OUTPUT_MODE_NONE;
+        }
+
+        nodeProcess.setOutputOptions(mode, bufferSize, rateLimit);
+    }
+
+    protected void setMessageQueueOptions(int capacity, String overflowPolicy) {
+        nodeProcess.setMessageQueueOptions(capacity, getOverflowPolicy(overflowPolicy));
+    }
+
+    /** Sets the size in bytes and the overflow policy of the queue of messages from the Node.js process. */
+    protected void setReceiveQueueOptions(int capacity, String overflowPolicy) {
+        nodeProcess.setReceiveQueueOptions(capacity, getOverflowPolicy(overflowPolicy));
+    }
+
+    private static int getOverflowPolicy(String overflowPolicy) {
+        if (overflowPolicy.equals("dropOldest")) {
+            return NodeProcess.OVERFLOW_POLICY_DROP_OLDEST;
+        } else if (overflowPolicy.equals("reject")) {
+            return NodeProcess.OVERFLOW_POLICY_REJECT;
+        }
+        return NodeProcess.OVERFLOW_POLICY_BLOCK;
+    }
 
+    private String serializeMessage(String eventName, JSONArray args) {
         final String eventMessage = args.toString();
 
+        if (channelProtocol >= 2) {
+            return eventName.length() + ":" + eventName + eventMessage;
+        }
+
         final JSObject data = new JSObject();
         data.put("eventName", eventName);
         data.put("eventMessage", eventMessage);
 
-        final String channelMessage = data.toString();
+        return data.toString();
+    }
+
+    /** Returns {@code false} if the message could not be queued. */
+    protected boolean sendBinaryMessage(String channelName, String eventName, ByteBuffer data) {
+        if (eventName == null || data == null) return false;
 
-        nodeProcess.send(channelName, channelMessage);
+        final int length = data.remaining();
+        if (!nodeProcess.sendBinary(channelName, eventName, data)) return false;
+
+        bridgeMetrics.recordSent(channelName, eventName, length);
+        return true;
     }
 
     class ReceiveCallback implements NodeProcess.ReceiveCallback {
 
         @Override
-        public void receive(String channelName, String message) {
-            receiveMessage(channelName, message);
+        public void receive(String channelName, String message, long sentTime) {
+            receiveMessage(channelName, message, sentTime);
+        }
+
+        @Override
+        public void receiveBinary(String channelName, String eventName, ByteBuffer data, long sentTime) {
+            receiveBinaryMessage(channelName, eventName, data, sentTime);
+        }
+
+        @Override
+        public void receiveOutput(NodeProcess.OutputLine[] lines, long droppedLines) {
+            receiveProcessOutput(lines, droppedLines);
+        }
+    }
+
+    private void receiveProcessOutput(NodeProcess.OutputLine[] lines, long droppedLines) {
+        final JSArray entries = new JSArray();
+        for (NodeProcess.OutputLine line : lines) {
+            String level = "info";
+            if (line.level == NodeProcess.OUTPUT_LEVEL_WARN) {
+                level = "warn";
+            } else if (line.level == NodeProcess.OUTPUT_LEVEL_ERROR) {
+                level = "error";
+            }
+
+            final JSObject entry = new JSObject();
+            entry.put("level", level);
+            entry.put("message", line.message);
+            entry.put("time", line.time);
+            entries.put(entry);
         }
+
+        final JSObject data = new JSObject();
+        data.put("entries", entries);
+        data.put("droppedEntries", droppedLines);
+
+        eventNotifier.processOutput(data);
     }
 
-    protected void receiveMessage(String channelName, String channelMessage) {
+    protected void receiveMessage(String channelName, String channelMessage, long sentTime) {
+        final String eventName;
+        final String eventMessage;
         try {
-            final JSObject payload = new JSObject(channelMessage);
+            if (channelMessage.startsWith("{")) {
+                final JSObject payload = new JSObject(channelMessage);
+
+                eventName = payload.getString("eventName");
+                eventMessage = payload.getString("eventMessage");
+            } else {
+                final int separatorIndex = channelMessage.indexOf(':');
+                final int eventNameEnd = separatorIndex + 1 + Integer.parseInt(channelMessage.substring(0, separatorIndex));
+
+                eventName = channelMessage.substring(separatorIndex + 1, eventNameEnd);
+                eventMessage = channelMessage.substring(eventNameEnd);
+            }
+        } catch (JSONException e) {
+            Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to deserialize received data from the Node.js process.", e);
+            return;
+        } catch (RuntimeException e) {
+            // Not a multi-catch, as JSONException extends RuntimeException in the org.json library of the benchmarks.
+            Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to deserialize received data from the Node.js process.", e);
+            return;
+        }
+
+        bridgeMetrics.recordReceived(channelName, eventName, channelMessage.length());
 
-            final String eventName = payload.getString("eventName");
-            final String eventMessage = payload.getString("eventMessage");
+        final int workerId = WorkerScheduler.getWorkerId(channelName);
+        final String baseChannelName = WorkerScheduler.getBaseChannelName(channelName);
 
-            JSArray args = new JSArray();
-            if (eventMessage != null && !eventMessage.isEmpty()) {
-                args = new JSArray(eventMessage);
+        if (workerId != 0 && Objects.equals(baseChannelName, CapacitorNodeJSPlugin.CHANNEL_NAME_APP)) {
+            bridgeMetrics.recordDelivered(channelName, sentTime);
+            receiveWorkerMessage(workerId, eventName);
+        } else if (Objects.equals(channelName, CapacitorNodeJSPlugin.CHANNEL_NAME_APP) && Objects.equals(eventName, "workerExit")) {
+            bridgeMetrics.recordDelivered(channelName, sentTime);
+            try {
+                final JSONArray args = new JSONArray(eventMessage);
+                Logger.warn(CapacitorNodeJSPlugin.LOGGER_TAG, "The Node.js worker " + args.optInt(0) + " has exited with code " + args.optInt(1) + ".");
+                workerScheduler.setExited(args.optInt(0));
+            } catch (JSONException e) {
+                Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to deserialize received data from the Node.js process.", e);
             }
+        } else if (Objects.equals(channelName, CapacitorNodeJSPlugin.CHANNEL_NAME_APP) && Objects.equals(eventName, "ready")) {
+            bridgeMetrics.recordDelivered(channelName, sentTime);
+            negotiateChannelProtocol(eventMessage);
+            sendSubscribedEvents(CapacitorNodeJSPlugin.CHANNEL_NAME_APP);
+            engineStatus.setReady();
+
+            final StartupMetrics metrics = startupMetrics;
+            if (metrics != null && metrics.setReady()) {
+                eventNotifier.startupMetrics(serializeStartupMetrics(metrics));
+            }
+        } else if (Objects.equals(channelName, CapacitorNodeJSPlugin.CHANNEL_NAME_APP) && Objects.equals(eventName, "invokeResult")) {
+            bridgeMetrics.recordDelivered(channelName, sentTime);
+            completeInvocation(eventMessage);
+        } else if (Objects.equals(channelName, CapacitorNodeJSPlugin.CHANNEL_NAME_APP) && Objects.equals(eventName, "heapStatistics")) {
+            bridgeMetrics.recordDelivered(channelName, sentTime);
+            completeHeapStatistics(eventMessage);
+        } else if (Objects.equals(channelName, CapacitorNodeJSPlugin.CHANNEL_NAME_APP) && eventName.startsWith("stream")) {
+            bridgeMetrics.recordDelivered(channelName, sentTime);
+            receiveStreamMessage(eventName, eventMessage);
+        } else if (isEventChannel(baseChannelName)) {
+            // The arguments are only deserialized when the message is delivered, which coalesced messages never are.
+            messageDispatcher.dispatch(eventName, () -> {
+                try {
+                    JSArray args = new JSArray();
+                    if (eventMessage != null && !eventMessage.isEmpty()) {
+                        args = new JSArray(eventMessage);
+                    }
+
+                    bridgeMetrics.recordDelivered(channelName, sentTime);
+                    nodeEventListeners.notifyMessage(eventName, args);
+                    eventNotifier.channelReceive(eventName, args);
+                } catch (JSONException e) {
+                    Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to deserialize received data from the Node.js process.", e);
+                }
+            });
+        }
+    }
+
+    protected void receiveBinaryMessage(String channelName, String eventName, ByteBuffer data, long sentTime) {
+        bridgeMetrics.recordReceived(channelName, eventName, data.remaining());
+
+        if (isEventChannel(WorkerScheduler.getBaseChannelName(channelName))) {
+            // The data is only valid during this call, so it is copied before being queued.
+            final byte[] payload = new byte[data.remaining()];
+            data.duplicate().get(payload);
+
+            messageDispatcher.dispatch(eventName, () -> {
+                bridgeMetrics.recordDelivered(channelName, sentTime);
+                nodeEventListeners.notifyBinaryMessage(eventName, ByteBuffer.wrap(payload));
+                eventNotifier.channelReceiveBinary(eventName, ByteBuffer.wrap(payload));
+            });
+        } else if (Objects.equals(channelName, CapacitorNodeJSPlugin.CHANNEL_NAME_APP) && channelStreams.isOpen(eventName)) {
+            // Binary messages of the app channel are the chunks of the stream they are named after.
+            bridgeMetrics.recordDelivered(channelName, sentTime);
+            eventNotifier.streamData(eventName, data);
+        }
+    }
+
+    // Workers only use their app channel for the ready handshake, invocations and streams are handled by the main thread.
+    private void receiveWorkerMessage(int workerId, String eventName) {
+        if (!Objects.equals(eventName, "ready")) return;
+
+        // Workers run the same bridge module as the main thread, so the protocol negotiated with it is used.
+        if (channelProtocol > 1) {
+            final JSArray args = new JSArray();
+            args.put(channelProtocol);
+            sendMessage(WorkerScheduler.getChannelName(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, workerId), "protocol", args);
+        }
 
-            if (Objects.equals(channelName, CapacitorNodeJSPlugin.CHANNEL_NAME_APP) && Objects.equals(eventName, "ready")) {
-                engineStatus.setReady();
-            } else if (Objects.equals(channelName, CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT)) {
-                eventNotifier.channelReceive(eventName, args);
+        sendSubscribedEvents(WorkerScheduler.getChannelName(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, workerId));
+        workerScheduler.setReady(workerId);
+    }
+
+    /** Replies to the protocols announced with the ready message of the Node.js process with the protocol to use. */
+    private void negotiateChannelProtocol(String eventMessage) {
+        int protocol = 1;
+        try {
+            final JSONObject readyData = eventMessage != null && !eventMessage.isEmpty() ? new JSONArray(eventMessage).optJSONObject(0) : null;
+            final JSONArray protocols = readyData != null ? readyData.optJSONArray("protocols") : null;
+
+            for (int i = 0; protocols != null && i < protocols.length(); i++) {
+                final int announcedProtocol = protocols.optInt(i, 1);
+                if (announcedProtocol > protocol && announcedProtocol <= CHANNEL_PROTOCOL_MAX) {
+                    protocol = announcedProtocol;
+                }
             }
         } catch (JSONException e) {
-            Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to deserialize received data from the Node.js process.", e);
+            Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to read the protocols announced by the Node.js process.", e);
+        }
+
+        if (protocol == 1) return;
+
+        // The reply is still encoded with protocol 1, the Node.js process decodes both.
+        final JSArray args = new JSArray();
+        args.put(protocol);
+        sendMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, "protocol", args);
+
+        channelProtocol = protocol;
+    }
+
+    /** Sets the names of the events with Capacitor listeners. */
+    protected void setListenedEvents(Set<String> eventNames) {
+        listenedEvents = Collections.unmodifiableSet(eventNames);
+        updateSubscribedEvents();
+    }
+
+    /** Sends the names of the events with Capacitor or native listeners to the Node.js process and its workers if they changed. */
+    private synchronized void updateSubscribedEvents() {
+        final Set<String> eventNames = new HashSet<>(listenedEvents);
+        eventNames.addAll(nodeEventListeners.getEventNames());
+        if (eventNames.equals(subscribedEvents)) return;
+
+        subscribedEvents = Collections.unmodifiableSet(eventNames);
+        if (!engineStatus.isReady()) return;
+
+        sendSubscribedEvents(CapacitorNodeJSPlugin.CHANNEL_NAME_APP);
+        for (int workerId = 1; workerId <= workerScheduler.getWorkerCount(); workerId++) {
+            sendSubscribedEvents(WorkerScheduler.getChannelName(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, workerId));
+        }
+    }
+
+    // Synchronized so that an outdated set never overtakes a newer one on the same channel.
+    private synchronized void sendSubscribedEvents(String channelName) {
+        final JSArray args = new JSArray();
+        args.put(new JSONArray(subscribedEvents));
+        sendMessage(channelName, "subscriptions", args);
+    }
+
+    protected void setCoalescedEvents(String[] eventNames) {
+        messageDispatcher.setCoalescedEvents(eventNames);
+    }
+
+    /** Configures the worker threads started by the {@code bridge} module, a count of 0 disables them. */
+    protected void setWorkerOptions(int count, @Nullable String script, String scheduling, String[] eventNames) {
+        if (count > 0 && (script == null || script.isEmpty())) {
+            Logger.warn(CapacitorNodeJSPlugin.LOGGER_TAG, "No script has been configured for the Node.js workers, they are disabled.");
+            count = 0;
+        }
+
+        if (!Objects.equals(scheduling, WorkerScheduler.SCHEDULING_ROUND_ROBIN) && !Objects.equals(scheduling, WorkerScheduler.SCHEDULING_LEAST_LOADED)) {
+            Logger.warn(CapacitorNodeJSPlugin.LOGGER_TAG, "Unknown scheduling '" + scheduling + "' of the Node.js workers, falling back to round-robin.");
+        }
+
+        workerScript = script;
+        workerScheduler.setOptions(count, scheduling, eventNames);
+    }
+
+    protected void setDeferredExtractionEnabled(boolean isEnabled) {
+        isDeferredExtractionEnabled = isEnabled;
+    }
+
+    protected void setCodeCacheEnabled(boolean isEnabled) {
+        isCodeCacheEnabled = isEnabled;
+    }
+
+    /**
+     * Configures what happens to the Node.js process while the app is in the background. Only the app channel and
+     * the given {@code channels} created with {@code createChannel(...)} of the {@code bridge} module are delivered
+     * in the background.
+     */
+    protected void setBackgroundOptions(String mode, int tickInterval, int gracePeriod, String[] channels) {
+        if (
+            !Objects.equals(mode, BackgroundPolicy.MODE_NONE) &&
+            !Objects.equals(mode, BackgroundPolicy.MODE_THROTTLE) &&
+            !Objects.equals(mode, BackgroundPolicy.MODE_SUSPEND)
+        ) {
+            Logger.warn(CapacitorNodeJSPlugin.LOGGER_TAG, "Unknown background mode '" + mode + "', the Node.js process is not throttled.");
+            mode = BackgroundPolicy.MODE_NONE;
+        }
+
+        for (String channel : channels) {
+            if (channel == null || !isValidChannel(channel)) {
+                Logger.warn(CapacitorNodeJSPlugin.LOGGER_TAG, "The channel name '" + channel + "' is not valid.");
+                continue;
+            }
+            nodeProcess.setChannelBackgroundDelivery(getEventChannelName(channel), true);
+        }
+
+        backgroundPolicy.setOptions(mode, tickInterval, gracePeriod);
+    }
+
+    /** Called when the app has been paused, after the {@code pause} event has been sent. */
+    protected void enterBackground() {
+        backgroundPolicy.enterBackground();
+    }
+
+    /** Called when the app has been resumed, after the {@code resume} event has been sent. */
+    protected void enterForeground() {
+        backgroundPolicy.enterForeground();
+    }
+
+    /** Limits the old generation of the V8 heap, which is only applied on the first start of the engine in the process. */
+    protected void setMaxOldSpaceSize(int megabytes) {
+        maxOldSpaceSize = Math.max(0, megabytes);
+    }
+
+    /**
+     * Handles a trim level of {@link ComponentCallbacks2#onTrimMemory(int)}. The isolates of the Node.js process
+     * are notified of the memory pressure, which makes V8 collect garbage and release memory, and the level is
+     * emitted as {@code trimMemory} event of the app channel.
+     */
+    protected void trimMemory(int level) {
+        String levelName = null;
+        int pressure = NodeProcess.MEMORY_PRESSURE_NONE;
+        if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            levelName = "running-moderate";
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            levelName = "running-low";
+            pressure = NodeProcess.MEMORY_PRESSURE_MODERATE;
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            levelName = "running-critical";
+            pressure = NodeProcess.MEMORY_PRESSURE_CRITICAL;
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            levelName = "ui-hidden";
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            levelName = "background";
+            pressure = NodeProcess.MEMORY_PRESSURE_MODERATE;
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            levelName = "moderate";
+            pressure = NodeProcess.MEMORY_PRESSURE_MODERATE;
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            levelName = "complete";
+            pressure = NodeProcess.MEMORY_PRESSURE_CRITICAL;
+        }
+        if (levelName == null) return;
+
+        if (engineStatus.isStarted() && pressure != NodeProcess.MEMORY_PRESSURE_NONE) {
+            nodeProcess.notifyMemoryPressure(pressure);
         }
+
+        if (!engineStatus.isReady()) return;
+
+        final JSArray args = new JSArray();
+        args.put(levelName);
+        sendMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, "trimMemory", args);
+        for (int workerId = 1; workerId <= workerScheduler.getWorkerCount(); workerId++) {
+            sendMessage(WorkerScheduler.getChannelName(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, workerId), "trimMemory", args);
+        }
+    }
+
+    /**
+     * Returns the directory of the V8 code cache of the installed version of the app and removes the caches
+     * of previous versions. The caches of single modules are validated by their content on their own.
+     */
+    private String prepareCodeCache(String cachePath) {
+        final String codeCachesPath = FileOperations.CombinePath(cachePath, "nodejs", "code-cache");
+        final String version = packageInfo != null ? String.valueOf(packageInfo.lastUpdateTime) : "0";
+
+        final File[] codeCaches = new File(codeCachesPath).listFiles();
+        if (codeCaches != null) {
+            for (File codeCache : codeCaches) {
+                if (!codeCache.getName().equals(version)) {
+                    FileOperations.DeleteDir(codeCache);
+                }
+            }
+        }
+
+        return FileOperations.CombinePath(codeCachesPath, version);
+    }
+
+    // Tells the bridge module which workers to start.
+    private void putWorkerEnv(Map<String, String> nodeEnv, String projectPath) {
+        final int workerCount = workerScheduler.getWorkerCount();
+        if (workerCount == 0) return;
+
+        final String workerScriptPath = FileOperations.CombinePath(projectPath, workerScript);
+        if (!FileOperations.ExistsPath(workerScriptPath)) {
+            Logger.warn(CapacitorNodeJSPlugin.LOGGER_TAG, "Unable to access the script of the Node.js workers. (No such file)");
+            return;
+        }
+
+        nodeEnv.put("CAPACITOR_NODEJS_WORKERS", String.valueOf(workerCount));
+        nodeEnv.put("CAPACITOR_NODEJS_WORKER_SCRIPT", workerScriptPath);
+    }
+
+    private long getQueuedMessages(String channelName) {
+        final NodeProcess.ChannelStats stats = nodeProcess.getChannelStats(channelName);
+        return stats != null ? stats.queuedMessages : 0;
+    }
+
+    /** Creates the region of memory shared with the Node.js process, a slot count of 0 disables it. */
+    protected void setSharedMemoryOptions(int slotSize, int slotCount) {
+        if (slotCount <= 0) return;
+
+        // The region is exposed to Java as a single ByteBuffer, whose size is limited to an int.
+        if (slotSize <= 0 || (long) slotSize * slotCount > Integer.MAX_VALUE - (long) slotCount * 64) {
+            Logger.warn(CapacitorNodeJSPlugin.LOGGER_TAG, "The shared memory with " + slotCount + " slots of " + slotSize + " bytes is too large.");
+            return;
+        }
+
+        sharedMemory = nodeProcess.createSharedMemory(slotSize, slotCount);
+        if (sharedMemory == null) {
+            Logger.warn(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to create the shared memory with " + slotCount + " slots of " + slotSize + " bytes.");
+        }
+    }
+
+    @Nullable
+    protected SharedMemory getSharedMemory() {
+        return sharedMemory;
+    }
+
+    /**
+     * Hands the acquired slot of the shared memory over to the listeners of {@code eventName} in the Node.js process,
+     * which receive {@code { slot, length }}. Returns {@code false} if the message could not be sent, the slot is
+     * still owned by the caller then.
+     */
+    protected boolean sendSharedMemorySlot(String eventName, int slot, int length) {
+        if (!engineStatus.isReady() || sharedMemory == null) return false;
+
+        final JSObject handle = new JSObject();
+        handle.put("slot", slot);
+        handle.put("length", length);
+
+        final JSArray args = new JSArray();
+        args.put(handle);
+
+        return sendMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT, eventName, args);
+    }
+
+    protected void getBridgeStats(PluginCall call) {
+        final MessageDispatcher.Stats dispatchStats = messageDispatcher.getStats();
+
+        final JSObject dispatch = new JSObject();
+        dispatch.put("receivedMessages", dispatchStats.receivedMessages);
+        dispatch.put("deliveredMessages", dispatchStats.deliveredMessages);
+        dispatch.put("coalescedMessages", dispatchStats.coalescedMessages);
+        dispatch.put("pendingMessages", dispatchStats.pendingMessages);
+        dispatch.put("maxPendingMessages", dispatchStats.maxPendingMessages);
+        dispatch.put("droppedMessages", dispatchStats.droppedMessages);
+        dispatch.put("averageDelay", TimeUnit.NANOSECONDS.toMicros(dispatchStats.averageDelay) / 1000.0);
+        dispatch.put("maxDelay", TimeUnit.NANOSECONDS.toMicros(dispatchStats.maxDelay) / 1000.0);
+
+        final NodeProcess.ReceiveQueueStats receiveQueueStats = nodeProcess.getReceiveQueueStats();
+        final JSObject receiveQueue = new JSObject();
+        receiveQueue.put("queuedMessages", receiveQueueStats.queuedMessages);
+        receiveQueue.put("queuedBytes", receiveQueueStats.queuedBytes);
+        receiveQueue.put("maxQueuedMessages", receiveQueueStats.maxQueuedMessages);
+        receiveQueue.put("capacity", receiveQueueStats.capacity);
+        receiveQueue.put("droppedMessages", receiveQueueStats.droppedMessages);
+        receiveQueue.put("rejectedMessages", receiveQueueStats.rejectedMessages);
+        dispatch.put("queue", receiveQueue);
+
+        final Map<String, BridgeMetrics.ChannelCounters> channelCounters = bridgeMetrics.getChannels();
+
+        final Set<String> channelNames = new LinkedHashSet<>();
+        channelNames.add(CapacitorNodeJSPlugin.CHANNEL_NAME_APP);
+        channelNames.add(CapacitorNodeJSPlugin.CHANNEL_NAME_EVENT);
+        channelNames.addAll(channelCounters.keySet());
+
+        final JSObject channels = new JSObject();
+        for (String channelName : channelNames) {
+            // The native message queue of a channel only exists once the engine has been started.
+            final NodeProcess.ChannelStats queueStats = engineStatus.isStarted() ? nodeProcess.getChannelStats(channelName) : null;
+            if (!channelCounters.containsKey(channelName) && queueStats == null) continue;
+
+            BridgeMetrics.ChannelCounters counters = channelCounters.get(channelName);
+            if (counters == null) {
+                counters = new BridgeMetrics.ChannelCounters();
+            }
+
+            final JSObject events = new JSObject();
+            for (Map.Entry<String, BridgeMetrics.Counters> event : counters.getEvents().entrySet()) {
+                events.put(event.getKey(), serializeCounters(event.getValue()));
+            }
+
+            final JSObject channel = serializeCounters(counters);
+            channel.put("receiveLatency", serializeLatency(counters.receiveLatency.getSnapshot()));
+            channel.put("events", events);
+
+            if (queueStats != null) {
+                final JSObject queue = new JSObject();
+                queue.put("queuedMessages", queueStats.queuedMessages);
+                queue.put("queuedBytes", queueStats.queuedBytes);
+                queue.put("maxQueuedMessages", queueStats.maxQueuedMessages);
+                queue.put("capacity", queueStats.capacity);
+                queue.put("deliveredMessages", queueStats.deliveredMessages);
+                queue.put("droppedMessages", queueStats.droppedMessages);
+                queue.put("rejectedMessages", queueStats.rejectedMessages);
+
+                channel.put("queue", queue);
+                channel.put("sendLatency", serializeLatency(queueStats.latency));
+            }
+
+            channels.put(channelName, channel);
+        }
+
+        final JSObject stats = new JSObject();
+        stats.put("dispatch", dispatch);
+        stats.put("channels", channels);
+
+        call.resolve(stats);
+    }
+
+    private JSObject serializeCounters(BridgeMetrics.Counters counters) {
+        final JSObject data = new JSObject();
+        data.put("sentMessages", counters.sentMessages.get());
+        data.put("sentBytes", counters.sentBytes.get());
+        data.put("receivedMessages", counters.receivedMessages.get());
+        data.put("receivedBytes", counters.receivedBytes.get());
+        return data;
+    }
+
+    private JSObject serializeLatency(LatencyHistogram.Snapshot snapshot) {
+        final JSObject data = new JSObject();
+        data.put("count", snapshot.count);
+        data.put("average", snapshot.getAverage() / 1000.0);
+        data.put("max", snapshot.max / 1000.0);
+        data.put("p50", snapshot.getPercentile(50) / 1000.0);
+        data.put("p90", snapshot.getPercentile(90) / 1000.0);
+        data.put("p99", snapshot.getPercentile(99) / 1000.0);
+        return data;
+    }
+
+    protected void getStartupMetrics(PluginCall call) {
+        final StartupMetrics metrics = startupMetrics;
+        if (metrics == null) {
+            call.reject("The Node.js engine has not been started yet.");
+            return;
+        }
+
+        if (!metrics.isReady()) {
+            call.reject("The Node.js engine is not ready yet.");
+            return;
+        }
+
+        call.resolve(serializeStartupMetrics(metrics));
+    }
+
+    /** Requests the statistics of the V8 heap of the main thread from the Node.js process. */
+    protected void getHeapStatistics(PluginCall call) {
+        if (!engineStatus.isStarted()) {
+            call.reject("The Node.js engine has not been started yet.");
+            return;
+        }
+
+        if (!engineStatus.isReady()) {
+            call.reject("The Node.js engine is not ready yet.");
+            return;
+        }
+
+        final String requestId = UUID.randomUUID().toString();
+        try {
+            heapStatisticsRequests.add(requestId, call, DEFAULT_INVOKE_TIMEOUT);
+        } catch (IllegalStateException e) {
+            call.reject(e.getMessage());
+            return;
+        }
+
+        final JSArray args = new JSArray();
+        args.put(requestId);
+
+        if (!sendMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, "getHeapStatistics", args)) {
+            heapStatisticsRequests.remove(requestId);
+            call.reject("The message queue of the Node.js engine is full.");
+        }
+    }
+
+    /** Resolves the pending request with the heap statistics sent by the Node.js process as {@code [requestId, stats]}. */
+    private void completeHeapStatistics(String eventMessage) {
+        final String requestId;
+        final JSONObject stats;
+        try {
+            final JSONArray args = new JSONArray(eventMessage);
+            requestId = args.getString(0);
+            stats = args.getJSONObject(1);
+        } catch (JSONException e) {
+            Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to deserialize the heap statistics of the Node.js process.", e);
+            return;
+        }
+
+        final PluginCall call = heapStatisticsRequests.remove(requestId);
+        if (call == null) return;
+
+        try {
+            call.resolve(JSObject.fromJSONObject(stats));
+        } catch (JSONException e) {
+            call.reject("Failed to deserialize the heap statistics of the Node.js process.", e);
+        }
+    }
+
+    private JSObject serializeStartupMetrics(StartupMetrics metrics) {
+        final JSObject phases = new JSObject();
+        for (Map.Entry<String, StartupMetrics.Phase> entry : metrics.getPhases().entrySet()) {
+            final JSObject phase = new JSObject();
+            phase.put("startTime", TimeUnit.NANOSECONDS.toMicros(entry.getValue().startTime) / 1000.0);
+            phase.put("duration", TimeUnit.NANOSECONDS.toMicros(entry.getValue().duration) / 1000.0);
+            phases.put(entry.getKey(), phase);
+        }
+
+        final JSObject data = new JSObject();
+        data.put("coldStart", metrics.isColdStart());
+        data.put("warmStart", metrics.isWarmStart());
+        data.put("extractedFiles", metrics.getExtractedFiles());
+        data.put("extractedBytes", metrics.getExtractedBytes());
+        data.put("readyTime", TimeUnit.NANOSECONDS.toMicros(metrics.getReadyTime()) / 1000.0);
+        data.put("phases", phases);
+
+        return data;
     }
 
     private boolean copyNodeProjectFromAPK(String projectDir, String projectPath, String modulesPath) {
@@ -256,21 +1475,141 @@ public class CapacitorNodeJS {
         final String modulesAssetDir = FileOperations.CombinePath("builtin_modules");
         final AssetManager assetManager = context.getAssets();
 
-        boolean success = true;
-        if (FileOperations.ExistsPath(projectPath) && isAppUpdated()) {
-            success = FileOperations.DeleteDir(projectPath);
-        }
-        success &= FileOperations.CopyAssetDir(assetManager, nodeAssetDir, projectPath);
+        final LazyAssetExtractor assetExtractor = new LazyAssetExtractor(assetManager);
+        final boolean isAppUpdated = isAppUpdated();
 
-        if (FileOperations.ExistsPath(modulesPath) && isAppUpdated()) {
-            success = FileOperations.DeleteDir(modulesPath);
+        // The files of a previous start may still be extracted in the background.
+        final DeferredExtraction previousExtraction = deferredExtraction;
+        if (previousExtraction != null) {
+            previousExtraction.awaitCompletion();
+            deferredExtraction = null;
         }
-        success &= FileOperations.CopyAssetDir(assetManager, modulesAssetDir, modulesPath);
+
+        // The builtin modules are always extracted before the engine starts, as the resolver hook is one of them.
+        boolean success = extractAssetDir(assetManager, assetExtractor, nodeAssetDir, projectPath, isAppUpdated, isDeferredExtractionEnabled);
+        success &= extractAssetDir(assetManager, assetExtractor, modulesAssetDir, modulesPath, isAppUpdated, false);
 
         saveAppUpdateTime();
         return success;
     }
 
+    /** Creates the extractor only if files need to be extracted, as mapping the archive reads its whole index. */
+    private static class LazyAssetExtractor {
+
+        private final AssetManager assetManager;
+        private AssetExtractor extractor;
+
+        private LazyAssetExtractor(AssetManager assetManager) {
+            this.assetManager = assetManager;
+        }
+
+        private AssetExtractor get() {
+            if (extractor == null) {
+                final AssetArchive assetArchive = AssetArchive.OpenFromAsset(assetManager);
+                final AssetSource assetSource = assetArchive != null ? assetArchive : new AssetSource.Assets(assetManager);
+                extractor = new AssetExtractor(assetSource);
+            }
+            return extractor;
+        }
+    }
+
+    private boolean extractAssetDir(
+        AssetManager assetManager,
+        LazyAssetExtractor assetExtractor,
+        String assetDir,
+        String destinationPath,
+        boolean isAppUpdated,
+        boolean isDeferred
+    ) {
+        final String bundledDigest = AssetManifest.ReadDigestFromAsset(assetManager, assetDir);
+
+        if (bundledDigest == null) {
+            // Without a bundled manifest the whole directory has to be copied again.
+            boolean success = true;
+            if (FileOperations.ExistsPath(destinationPath) && isAppUpdated) {
+                success = FileOperations.DeleteDir(destinationPath);
+            }
+            success &= AssetManifest.DeleteFromPath(destinationPath);
+
+            final AssetExtractor.Result result = assetExtractor.get().extractDir(assetDir, destinationPath);
+            logExtractionResult(assetDir, result);
+            startupMetrics.addExtractedFiles(result.fileCount, result.byteCount);
+            return success && result.success;
+        }
+
+        final String installedDigest = AssetManifest.ReadDigestFromPath(destinationPath);
+        if (bundledDigest.equals(installedDigest) && FileOperations.ExistsPath(destinationPath)) {
+            return true;
+        }
+
+        final AssetManifest bundledManifest = AssetManifest.ReadFromAsset(assetManager, assetDir);
+        if (bundledManifest == null) {
+            return false;
+        }
+
+        final AssetManifest installedManifest = installedDigest != null ? AssetManifest.ReadFromPath(destinationPath) : null;
+        if (installedManifest == null && FileOperations.ExistsPath(destinationPath)) {
+            // The content of the directory is unknown, start over with an empty one.
+            FileOperations.DeleteDir(destinationPath);
+        }
+
+        final AssetManifest.Changes changes = bundledManifest.diff(installedManifest);
+
+        boolean success = FileOperations.CreateDir(destinationPath);
+        for (AssetManifest.Entry entry : changes.removedEntries) {
+            success &= FileOperations.DeleteFile(destinationPath, entry.path);
+        }
+
+        final List<String> changedPaths = new ArrayList<>();
+        for (AssetManifest.Entry entry : changes.changedEntries) {
+            changedPaths.add(entry.path);
+        }
+
+        if (isDeferred && !changedPaths.isEmpty()) {
+            // Outdated versions of the changed files must not be loaded before they have been extracted.
+            for (String changedPath : changedPaths) {
+                success &= FileOperations.DeleteFile(destinationPath, changedPath);
+            }
+
+            final StartupMetrics metrics = startupMetrics;
+            deferredExtraction = new DeferredExtraction(assetExtractor.get(), assetDir, destinationPath, changedPaths, result -> {
+                logExtractionResult(assetDir, result);
+                metrics.addExtractedFiles(result.fileCount, result.byteCount);
+
+                // Without the manifest, the next start extracts the whole directory again.
+                if (result.success) {
+                    AssetManifest.WriteToPath(bundledManifest, destinationPath);
+                }
+            });
+            return success;
+        }
+
+        final AssetExtractor.Result result = assetExtractor.get().extractFiles(assetDir, destinationPath, changedPaths);
+        logExtractionResult(assetDir, result);
+        startupMetrics.addExtractedFiles(result.fileCount, result.byteCount);
+        success &= result.success;
+
+        if (success) {
+            success = AssetManifest.WriteToPath(bundledManifest, destinationPath);
+        }
+
+        return success;
+    }
+
+    private void logExtractionResult(String assetDir, AssetExtractor.Result result) {
+        final String message = String.format(
+            Locale.ROOT,
+            "Extracted %d files (%d bytes) of '%s' in %d ms (listing: %d ms, copying: %d ms).",
+            result.fileCount,
+            result.byteCount,
+            assetDir,
+            TimeUnit.NANOSECONDS.toMillis(result.totalTime),
+            TimeUnit.NANOSECONDS.toMillis(result.listingTime),
+            TimeUnit.NANOSECONDS.toMillis(result.copyTime)
+        );
+        Logger.debug(CapacitorNodeJSPlugin.LOGGER_TAG, message);
+    }
+
     private boolean isAppUpdated() {
         final long previousLastUpdateTime = preferences.getLong(CapacitorNodeJSPlugin.PREFS_APP_UPDATED_TIME, 0);
         final long lastUpdateTime = packageInfo.lastUpdateTime;
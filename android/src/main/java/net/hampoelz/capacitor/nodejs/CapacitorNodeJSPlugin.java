@@ -1,6 +1,11 @@
 package net.hampoelz.capacitor.nodejs;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Base64;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
@@ -8,10 +13,15 @@ import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginConfig;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 
 @CapacitorPlugin(name = "CapacitorNodeJS")
 public class CapacitorNodeJSPlugin extends Plugin {
@@ -24,22 +34,100 @@ public class CapacitorNodeJSPlugin extends Plugin {
 
     private final PluginEventNotifier eventNotifier = new PluginEventNotifier();
     private CapacitorNodeJS implementation;
+    // Guarded by this, names of the events that have at least one listener.
+    private final Set<String> listenedEvents = new HashSet<>();
+
+    // Forwards the memory signals of the system to the Node.js engine.
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            implementation.trimMemory(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            implementation.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {}
+    };
 
     public void load() {
         final Context context = getContext();
         implementation = new CapacitorNodeJS(context, eventNotifier);
 
         final PluginSettings pluginSettings = readPluginSettings();
+        implementation.setMaxMessagesPerTick(pluginSettings.maxMessagesPerTick);
+        implementation.setMessageQueueOptions(pluginSettings.messageQueueSize, pluginSettings.messageQueueOverflow);
+        implementation.setReceiveQueueOptions(pluginSettings.receiveQueueSize, pluginSettings.receiveQueueOverflow);
+        implementation.setCoalescedEvents(pluginSettings.coalescedEvents);
+        implementation.setMaxPendingInvocations(pluginSettings.maxPendingInvocations);
+        implementation.setSharedMemoryOptions(pluginSettings.sharedMemorySlotSize, pluginSettings.sharedMemorySlotCount);
+        implementation.setDeferredExtractionEnabled(pluginSettings.extractionMode.equals("deferred"));
+        implementation.setCodeCacheEnabled(pluginSettings.codeCache);
+        implementation.setOutputOptions(pluginSettings.outputMode, pluginSettings.outputBufferSize, pluginSettings.outputRateLimit);
+        implementation.setMaxOldSpaceSize(pluginSettings.maxOldSpaceSize);
+        implementation.setBackgroundOptions(
+            pluginSettings.backgroundMode,
+            pluginSettings.backgroundTickInterval,
+            pluginSettings.backgroundGracePeriod,
+            pluginSettings.backgroundChannels
+        );
+        for (Map.Entry<String, Integer> channel : pluginSettings.channels.entrySet()) {
+            implementation.setChannelPriority(channel.getKey(), channel.getValue());
+        }
+        implementation.setWorkerOptions(
+            pluginSettings.workerCount,
+            pluginSettings.workerScript,
+            pluginSettings.workerScheduling,
+            pluginSettings.workerEvents
+        );
+
+        context.getApplicationContext().registerComponentCallbacks(memoryCallbacks);
+
         if (pluginSettings.startMode.equals("auto")) {
             implementation.startEngine(null, pluginSettings.nodeDir, null, new String[] {}, new HashMap<>());
         }
     }
 
+    /**
+     * Returns the Node.js engine of this plugin. Other Android components, like services or plugins, can use it to
+     * send and receive messages directly, without passing them through the WebView.
+     */
+    public CapacitorNodeJS getEngine() {
+        return implementation;
+    }
+
     /** @noinspection InnerClassMayBeStatic*/
     private class PluginSettings {
 
         protected String nodeDir = "nodejs";
         protected String startMode = "auto";
+        protected int maxMessagesPerTick = 1000;
+        protected int messageQueueSize = 256 * 1024;
+        protected String messageQueueOverflow = "block";
+        protected int receiveQueueSize = 1024 * 1024;
+        protected String receiveQueueOverflow = "block";
+        protected String[] coalescedEvents = new String[] {};
+        protected int maxPendingInvocations = 1000;
+        protected int sharedMemorySlotSize = 1024 * 1024;
+        protected int sharedMemorySlotCount = 0;
+        protected int workerCount = 0;
+        protected String workerScript = null;
+        protected String workerScheduling = "round-robin";
+        protected String[] workerEvents = new String[] {};
+        protected boolean codeCache = false;
+        protected String extractionMode = "blocking";
+        protected String outputMode = "logcat";
+        protected int outputBufferSize = NodeProcess.DEFAULT_OUTPUT_BUFFER_SIZE;
+        protected int outputRateLimit = 1000;
+        protected Map<String, Integer> channels = new HashMap<>();
+        protected int maxOldSpaceSize = 0;
+        protected String backgroundMode = "none";
+        protected int backgroundTickInterval = 1000;
+        protected int backgroundGracePeriod = 30000;
+        protected String[] backgroundChannels = new String[] {};
     }
 
     private PluginSettings readPluginSettings() {
@@ -48,6 +136,38 @@ public class CapacitorNodeJSPlugin extends Plugin {
 
         settings.nodeDir = config.getString("nodeDir", settings.nodeDir);
         settings.startMode = config.getString("startMode", settings.startMode);
+        settings.maxMessagesPerTick = config.getInt("maxMessagesPerTick", settings.maxMessagesPerTick);
+        settings.messageQueueSize = config.getInt("messageQueueSize", settings.messageQueueSize);
+        settings.messageQueueOverflow = config.getString("messageQueueOverflow", settings.messageQueueOverflow);
+        settings.receiveQueueSize = config.getInt("receiveQueueSize", settings.receiveQueueSize);
+        settings.receiveQueueOverflow = config.getString("receiveQueueOverflow", settings.receiveQueueOverflow);
+        settings.coalescedEvents = config.getArray("coalescedEvents", settings.coalescedEvents);
+        settings.maxPendingInvocations = config.getInt("maxPendingInvocations", settings.maxPendingInvocations);
+        settings.sharedMemorySlotSize = config.getInt("sharedMemorySlotSize", settings.sharedMemorySlotSize);
+        settings.sharedMemorySlotCount = config.getInt("sharedMemorySlotCount", settings.sharedMemorySlotCount);
+        settings.workerCount = config.getInt("workerCount", settings.workerCount);
+        settings.workerScript = config.getString("workerScript", settings.workerScript);
+        settings.workerScheduling = config.getString("workerScheduling", settings.workerScheduling);
+        settings.workerEvents = config.getArray("workerEvents", settings.workerEvents);
+        settings.codeCache = config.getBoolean("codeCache", settings.codeCache);
+        settings.extractionMode = config.getString("extractionMode", settings.extractionMode);
+        settings.outputMode = config.getString("outputMode", settings.outputMode);
+        settings.outputBufferSize = config.getInt("outputBufferSize", settings.outputBufferSize);
+        settings.outputRateLimit = config.getInt("outputRateLimit", settings.outputRateLimit);
+        settings.maxOldSpaceSize = config.getInt("maxOldSpaceSize", settings.maxOldSpaceSize);
+        settings.backgroundMode = config.getString("backgroundMode", settings.backgroundMode);
+        settings.backgroundTickInterval = config.getInt("backgroundTickInterval", settings.backgroundTickInterval);
+        settings.backgroundGracePeriod = config.getInt("backgroundGracePeriod", settings.backgroundGracePeriod);
+        settings.backgroundChannels = config.getArray("backgroundChannels", settings.backgroundChannels);
+
+        final JSONObject channels = config.getObject("channels");
+        if (channels != null) {
+            final Iterator<String> channelNames = channels.keys();
+            while (channelNames.hasNext()) {
+                final String channelName = channelNames.next();
+                settings.channels.put(channelName, channels.optInt(channelName, 0));
+            }
+        }
 
         return settings;
     }
@@ -55,13 +175,41 @@ public class CapacitorNodeJSPlugin extends Plugin {
     @Override
     protected void handleOnResume() {
         super.handleOnResume();
+        // The resume event is delivered before the messages kept while the app was in the background.
         implementation.sendMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, "resume", new JSArray());
+        implementation.enterForeground();
     }
 
     @Override
     protected void handleOnPause() {
         super.handleOnPause();
         implementation.sendMessage(CapacitorNodeJSPlugin.CHANNEL_NAME_APP, "pause", new JSArray());
+        implementation.enterBackground();
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        super.handleOnDestroy();
+        getContext().getApplicationContext().unregisterComponentCallbacks(memoryCallbacks);
+    }
+
+    /**
+     * Returns the region of memory shared with the Node.js process,
+     * or {@code null} if it has not been enabled via the {@code sharedMemorySlotCount} plugin configuration.
+     */
+    @Nullable
+    public SharedMemory getSharedMemory() {
+        return implementation.getSharedMemory();
+    }
+
+    /**
+     * Hands the acquired slot of the shared memory over to the listeners of {@code eventName} in the Node.js process,
+     * which receive {@code { slot, length }} and release the slot once they are done with it.
+     *
+     * @return {@code false} if the slot could not be handed over, it is still owned by the caller then.
+     */
+    public boolean sendSharedMemorySlot(String eventName, int slot, int length) {
+        return implementation.sendSharedMemorySlot(eventName, slot, length);
     }
 
     //region PluginMethods
@@ -113,6 +261,16 @@ public class CapacitorNodeJSPlugin extends Plugin {
         implementation.startEngine(call, projectDir, nodeMain, nodeArgsArray, nodeEnvMap);
     }
 
+    @PluginMethod
+    public void stop(PluginCall call) {
+        implementation.stopEngine(call);
+    }
+
+    @PluginMethod
+    public void restart(PluginCall call) {
+        implementation.restartEngine(call);
+    }
+
     @PluginMethod
     public void send(PluginCall call) {
         final String eventName = call.getString("eventName");
@@ -124,11 +282,176 @@ public class CapacitorNodeJSPlugin extends Plugin {
         implementation.sendMessage(call);
     }
 
+    @PluginMethod
+    public void sendBatch(PluginCall call) {
+        final JSArray messages = call.getArray("messages");
+        if (messages == null) {
+            call.reject("Required parameter 'messages' was not specified.");
+            return;
+        }
+
+        implementation.sendMessages(call);
+    }
+
+    @PluginMethod
+    public void invoke(PluginCall call) {
+        final String invokeId = call.getString("invokeId");
+        if (invokeId == null || invokeId.isEmpty()) {
+            call.reject("Required parameter 'invokeId' was not specified.");
+            return;
+        }
+
+        final String eventName = call.getString("eventName");
+        if (eventName == null || eventName.isEmpty()) {
+            call.reject("Required parameter 'eventName' was not specified.");
+            return;
+        }
+
+        final Integer timeout = call.getInt("timeout");
+        if (timeout != null && timeout < 0) {
+            call.reject("Parameter 'timeout' must not be negative.");
+            return;
+        }
+
+        implementation.invoke(call);
+    }
+
+    @PluginMethod
+    public void cancelInvoke(PluginCall call) {
+        final String invokeId = call.getString("invokeId");
+        if (invokeId == null || invokeId.isEmpty()) {
+            call.reject("Required parameter 'invokeId' was not specified.");
+            return;
+        }
+
+        implementation.cancelInvoke(call);
+    }
+
+    @PluginMethod
+    public void openStream(PluginCall call) {
+        final String eventName = call.getString("eventName");
+        if (eventName == null || eventName.isEmpty()) {
+            call.reject("Required parameter 'eventName' was not specified.");
+            return;
+        }
+
+        implementation.openStream(call);
+    }
+
+    @PluginMethod
+    public void writeStream(PluginCall call) {
+        final String streamId = call.getString("streamId");
+        if (streamId == null || streamId.isEmpty()) {
+            call.reject("Required parameter 'streamId' was not specified.");
+            return;
+        }
+
+        final String data = call.getString("data");
+        if (data == null) {
+            call.reject("Required parameter 'data' was not specified.");
+            return;
+        }
+
+        final byte[] bytes;
+        try {
+            bytes = Base64.decode(data, Base64.DEFAULT);
+        } catch (IllegalArgumentException e) {
+            call.reject("Parameter 'data' is not valid base64.", e);
+            return;
+        }
+
+        implementation.writeStream(call, bytes);
+    }
+
+    @PluginMethod
+    public void endStream(PluginCall call) {
+        final String streamId = call.getString("streamId");
+        if (streamId == null || streamId.isEmpty()) {
+            call.reject("Required parameter 'streamId' was not specified.");
+            return;
+        }
+
+        implementation.endStream(call);
+    }
+
+    @PluginMethod
+    public void abortStream(PluginCall call) {
+        final String streamId = call.getString("streamId");
+        if (streamId == null || streamId.isEmpty()) {
+            call.reject("Required parameter 'streamId' was not specified.");
+            return;
+        }
+
+        implementation.abortStream(call);
+    }
+
+    @PluginMethod
+    public void ackStream(PluginCall call) {
+        final String streamId = call.getString("streamId");
+        if (streamId == null || streamId.isEmpty()) {
+            call.reject("Required parameter 'streamId' was not specified.");
+            return;
+        }
+
+        implementation.ackStream(call);
+    }
+
+    @Override
+    @PluginMethod(returnType = PluginMethod.RETURN_NONE)
+    public void addListener(PluginCall call) {
+        super.addListener(call);
+        updateListenedEvent(call.getString("eventName"));
+    }
+
+    @Override
+    @PluginMethod(returnType = PluginMethod.RETURN_NONE)
+    public void removeListener(PluginCall call) {
+        super.removeListener(call);
+        updateListenedEvent(call.getString("eventName"));
+    }
+
+    @Override
+    @PluginMethod
+    public void removeAllListeners(PluginCall call) {
+        super.removeAllListeners(call);
+
+        synchronized (this) {
+            if (listenedEvents.isEmpty()) return;
+            listenedEvents.clear();
+            implementation.setListenedEvents(new HashSet<>());
+        }
+    }
+
+    // Tells the Node.js process which events have listeners, so that it can skip the messages of all other events.
+    private synchronized void updateListenedEvent(String eventName) {
+        if (eventName == null || implementation == null) return;
+
+        final boolean isChanged = hasListeners(eventName) ? listenedEvents.add(eventName) : listenedEvents.remove(eventName);
+        if (isChanged) {
+            implementation.setListenedEvents(new HashSet<>(listenedEvents));
+        }
+    }
+
     @PluginMethod
     public void whenReady(PluginCall call) {
         implementation.resolveWhenReady(call);
     }
 
+    @PluginMethod
+    public void getBridgeStats(PluginCall call) {
+        implementation.getBridgeStats(call);
+    }
+
+    @PluginMethod
+    public void getStartupMetrics(PluginCall call) {
+        implementation.getStartupMetrics(call);
+    }
+
+    @PluginMethod
+    public void getHeapStatistics(PluginCall call) {
+        implementation.getHeapStatistics(call);
+    }
+
     //---------------------------------------------------------------------------------------
     //endregion
 
@@ -142,6 +465,63 @@ public class CapacitorNodeJSPlugin extends Plugin {
         protected void channelReceive(String eventName, JSArray payloadArray) {
             notifyChannelListeners(eventName, payloadArray);
         }
+
+        protected void channelReceiveBinary(String eventName, ByteBuffer payloadData) {
+            notifyChannelListeners(eventName, payloadData);
+        }
+
+        // Streams ------------------------------------------------------------------------------
+
+        /** Returns {@code false} if nobody listens for streams, which are then cancelled right away. */
+        protected boolean streamOpen(String streamId, String eventName, JSONArray args) {
+            if (!hasListeners("streamOpen")) return false;
+
+            final JSObject data = new JSObject();
+            data.put("streamId", streamId);
+            data.put("eventName", eventName);
+            data.put("args", args != null ? args : new JSArray());
+
+            notifyListeners("streamOpen", data);
+            return true;
+        }
+
+        protected void streamData(String streamId, ByteBuffer payloadData) {
+            // The payload is only valid during this call, so it is encoded right away.
+            final byte[] bytes = new byte[payloadData.remaining()];
+            payloadData.duplicate().get(bytes);
+
+            final JSObject data = new JSObject();
+            data.put("streamId", streamId);
+            data.put("data", Base64.encodeToString(bytes, Base64.NO_WRAP));
+
+            notifyListeners("streamData", data);
+        }
+
+        protected void streamEnd(String streamId) {
+            final JSObject data = new JSObject();
+            data.put("streamId", streamId);
+
+            notifyListeners("streamEnd", data);
+        }
+
+        protected void streamAbort(String streamId, String message) {
+            final JSObject data = new JSObject();
+            data.put("streamId", streamId);
+            data.put("message", message);
+
+            notifyListeners("streamAbort", data);
+        }
+
+        // Engine -------------------------------------------------------------------------------
+
+        protected void startupMetrics(JSObject metrics) {
+            // Retained until the first listener is added, as the event is only emitted once.
+            notifyListeners("startupMetrics", metrics, true);
+        }
+
+        protected void processOutput(JSObject output) {
+            notifyListeners("processOutput", output);
+        }
     }
 
     //---------------------------------------------------------------------------------------
@@ -156,6 +536,20 @@ public class CapacitorNodeJSPlugin extends Plugin {
 
         notifyListeners(eventName, args);
     }
+
+    private void notifyChannelListeners(String eventName, ByteBuffer payloadData) {
+        // Encoding the payload for the WebView is only worth it if the WebView listens to the event.
+        if (!hasListeners(eventName)) return;
+
+        final byte[] data = new byte[payloadData.remaining()];
+        payloadData.duplicate().get(data);
+
+        final JSObject args = new JSObject();
+        args.put("args", new JSArray());
+        args.put("data", Base64.encodeToString(data, Base64.NO_WRAP));
+
+        notifyListeners(eventName, args);
+    }
     //---------------------------------------------------------------------------------------
     //endregion
 }
@@ -0,0 +1,229 @@
+package net.hampoelz.capacitor.nodejs;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.PluginCall;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streams of bytes between the web page and the Node.js process, multiplexed over the app channel.
+ *
+ * <p>Chunks are sent as binary messages of the app channel named by the id of their stream, everything else as
+ * regular messages. The flow is controlled with credits: a sender may only have {@link #WINDOW_SIZE} bytes in
+ * flight that have not been acknowledged by the receiver with a {@code streamAck} message. This keeps the memory
+ * used by a stream bounded regardless of its size.
+ */
+public class ChannelStreams {
+
+    protected static final int CHUNK_SIZE = 64 * 1024;
+    protected static final int WINDOW_SIZE = 16 * CHUNK_SIZE;
+
+    protected interface Transport {
+        boolean sendMessage(String eventName, JSArray args);
+
+        boolean sendChunk(String streamId, ByteBuffer chunk);
+    }
+
+    /** A stream from the web page to the Node.js process. */
+    private static class OutgoingStream {
+
+        private final String streamId;
+        // Chunks are copied into the queue of the channel, so a single buffer is reused for all of them.
+        private final ByteBuffer chunkBuffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        private long credit = WINDOW_SIZE;
+
+        private PluginCall pendingWrite;
+        private byte[] pendingData;
+        private int pendingOffset;
+
+        private OutgoingStream(String streamId) {
+            this.streamId = streamId;
+        }
+    }
+
+    private final Transport transport;
+    private final Map<String, OutgoingStream> outgoingStreams = new HashMap<>();
+    // Streams from the Node.js process to the web page, whose credits are granted by the web page itself.
+    private final Set<String> incomingStreams = new HashSet<>();
+    private long streamCount = 0;
+
+    protected ChannelStreams(Transport transport) {
+        this.transport = transport;
+    }
+
+    // Outgoing ---------------------------------------------------------------------------------
+
+    /** Opens a stream to the handler of {@code eventName} and returns its id, or {@code null} if it could not be opened. */
+    protected synchronized String open(String eventName, JSArray args) {
+        final String streamId = "stream:" + ++streamCount;
+
+        final JSArray openArgs = new JSArray();
+        openArgs.put(streamId);
+        openArgs.put(eventName);
+        openArgs.put(args);
+
+        if (!transport.sendMessage("streamOpen", openArgs)) return null;
+
+        outgoingStreams.put(streamId, new OutgoingStream(streamId));
+        return streamId;
+    }
+
+    /** Sends the data as far as the credit allows, the call is resolved once all of it has been sent. */
+    protected synchronized void write(PluginCall call, String streamId, byte[] data) {
+        final OutgoingStream stream = outgoingStreams.get(streamId);
+        if (stream == null) {
+            call.reject("The stream '" + streamId + "' is not open.");
+            return;
+        }
+
+        if (stream.pendingWrite != null) {
+            call.reject("A write to the stream '" + streamId + "' is already pending.");
+            return;
+        }
+
+        stream.pendingWrite = call;
+        stream.pendingData = data;
+        stream.pendingOffset = 0;
+        flush(stream);
+    }
+
+    protected synchronized void end(PluginCall call, String streamId) {
+        final OutgoingStream stream = outgoingStreams.get(streamId);
+        if (stream == null) {
+            call.reject("The stream '" + streamId + "' is not open.");
+            return;
+        }
+
+        if (stream.pendingWrite != null) {
+            call.reject("A write to the stream '" + streamId + "' is still pending.");
+            return;
+        }
+
+        outgoingStreams.remove(streamId);
+        sendControlMessage("streamEnd", streamId, null);
+        call.resolve();
+    }
+
+    /** Aborts a stream in either direction, returns {@code false} if the stream is not open. */
+    protected synchronized boolean abort(String streamId, String reason) {
+        final OutgoingStream stream = outgoingStreams.remove(streamId);
+        if (stream != null) {
+            sendControlMessage("streamAbort", streamId, reason);
+            rejectPendingWrite(stream, "The stream has been aborted.");
+            return true;
+        }
+
+        if (incomingStreams.remove(streamId)) {
+            sendControlMessage("streamCancel", streamId, reason);
+            return true;
+        }
+
+        return false;
+    }
+
+    /** Grants the sender of the stream credit for {@code bytes} more bytes, as the receiver has consumed them. */
+    protected synchronized void acknowledge(String streamId, long bytes) {
+        final OutgoingStream stream = outgoingStreams.get(streamId);
+        if (stream == null || bytes <= 0) return;
+
+        stream.credit += bytes;
+        flush(stream);
+    }
+
+    /** Closes the stream, as the Node.js process is not going to read it any further. */
+    protected synchronized void cancel(String streamId, String message) {
+        final OutgoingStream stream = outgoingStreams.remove(streamId);
+        if (stream == null) return;
+
+        rejectPendingWrite(stream, message != null ? message : "The stream has been cancelled by the Node.js process.");
+    }
+
+    /** Closes the streams in both directions without notifying the Node.js process, which has stopped. */
+    protected synchronized List<String> closeAll(String message) {
+        for (OutgoingStream stream : outgoingStreams.values()) {
+            rejectPendingWrite(stream, message);
+        }
+        outgoingStreams.clear();
+
+        // The web page is notified about its incoming streams by the caller.
+        final List<String> streamIds = new ArrayList<>(incomingStreams);
+        incomingStreams.clear();
+        return streamIds;
+    }
+
+    private void flush(OutgoingStream stream) {
+        if (stream.pendingWrite == null) return;
+
+        final byte[] data = stream.pendingData;
+        while (stream.pendingOffset < data.length && stream.credit > 0) {
+            final int length = (int) Math.min(Math.min(CHUNK_SIZE, stream.credit), data.length - stream.pendingOffset);
+
+            stream.chunkBuffer.clear();
+            stream.chunkBuffer.put(data, stream.pendingOffset, length);
+            stream.chunkBuffer.flip();
+
+            if (!transport.sendChunk(stream.streamId, stream.chunkBuffer)) {
+                // The receiver cannot make sense of a stream with a gap, so it is aborted.
+                outgoingStreams.remove(stream.streamId);
+                sendControlMessage("streamAbort", stream.streamId, "The message queue of the Node.js engine is full.");
+                rejectPendingWrite(stream, "The message queue of the Node.js engine is full.");
+                return;
+            }
+
+            stream.pendingOffset += length;
+            stream.credit -= length;
+        }
+
+        if (stream.pendingOffset < data.length) return;
+
+        final PluginCall call = stream.pendingWrite;
+        stream.pendingWrite = null;
+        stream.pendingData = null;
+        call.resolve();
+    }
+
+    private void rejectPendingWrite(OutgoingStream stream, String message) {
+        final PluginCall call = stream.pendingWrite;
+        if (call == null) return;
+
+        stream.pendingWrite = null;
+        stream.pendingData = null;
+        call.reject(message, "CANCELLED");
+    }
+
+    // Incoming ---------------------------------------------------------------------------------
+
+    protected synchronized void opened(String streamId) {
+        incomingStreams.add(streamId);
+    }
+
+    protected synchronized boolean isOpen(String streamId) {
+        return incomingStreams.contains(streamId);
+    }
+
+    /** Returns {@code false} if the stream has already been closed, e.g. by the web page. */
+    protected synchronized boolean closed(String streamId) {
+        return incomingStreams.remove(streamId);
+    }
+
+    protected void sendAcknowledgement(String streamId, long bytes) {
+        final JSArray args = new JSArray();
+        args.put(streamId);
+        args.put(bytes);
+        transport.sendMessage("streamAck", args);
+    }
+
+    private void sendControlMessage(String eventName, String streamId, String reason) {
+        final JSArray args = new JSArray();
+        args.put(streamId);
+        if (reason != null) {
+            args.put(reason);
+        }
+        transport.sendMessage(eventName, args);
+    }
+}
@@ -0,0 +1,321 @@
+package net.hampoelz.capacitor.nodejs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts the files of an asset directory while the Node.js process is already running.
+ *
+ * <p>All {@code package.json} files, the main script and the scripts it requires by relative paths are
+ * extracted before the process starts. Background threads extract the remaining files in priority order,
+ * scripts of the project first, then scripts of its dependencies and finally all other files. If the
+ * Node.js process requires a module that has not been extracted yet, the resolver hook of the
+ * {@code bridge} module blocks until the files it could be resolved from have been materialized.
+ */
+public class DeferredExtraction {
+
+    public interface CompletionListener {
+        /** Called once on an extracting thread after the last file has been extracted. */
+        void onComplete(AssetExtractor.Result result);
+    }
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_EXTRACTING = 1;
+    private static final int STATE_EXTRACTED = 2;
+
+    // Relative specifiers of require() calls, dynamic imports and import or export statements.
+    private static final Pattern RELATIVE_SPECIFIER_PATTERN = Pattern.compile(
+        "(?:\\brequire\\s*\\(\\s*|\\bimport\\s*\\(\\s*|\\bfrom\\s*|\\bimport\\s+)['\"](\\.{1,2}/[^'\"]+)['\"]"
+    );
+    private static final String[] RESOLVE_SUFFIXES = { "", ".js", ".cjs", ".mjs", ".json", "/index.js", "/index.cjs", "/index.json" };
+
+    private final AssetExtractor assetExtractor;
+    private final String assetDir;
+    private final String destinationPath;
+    private final CompletionListener completionListener;
+    private final int threadCount;
+
+    // Guarded by this, the keys are sorted so that the files below a path can be looked up by prefix.
+    private final TreeMap<String, Integer> states = new TreeMap<>();
+    private final Deque<String> queue = new ArrayDeque<>();
+    private int runningThreads = 0;
+    private boolean isComplete = false;
+    private boolean isFailed = false;
+    private int fileCount = 0;
+    private long byteCount = 0;
+    private long startTime = 0;
+
+    protected DeferredExtraction(
+        AssetExtractor assetExtractor,
+        String assetDir,
+        String destinationPath,
+        Collection<String> relativePaths,
+        CompletionListener completionListener
+    ) {
+        this.assetExtractor = assetExtractor;
+        this.assetDir = assetDir;
+        this.destinationPath = destinationPath;
+        this.completionListener = completionListener;
+        this.threadCount = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+        final List<String> sortedPaths = new ArrayList<>(relativePaths);
+        Collections.sort(sortedPaths, (a, b) -> Integer.compare(getPriority(a), getPriority(b)));
+        for (String relativePath : sortedPaths) {
+            states.put(relativePath, STATE_PENDING);
+            queue.add(relativePath);
+        }
+    }
+
+    // Lower values are extracted first.
+    private static int getPriority(String relativePath) {
+        final boolean isScript =
+            relativePath.endsWith(".js") ||
+            relativePath.endsWith(".cjs") ||
+            relativePath.endsWith(".mjs") ||
+            relativePath.endsWith(".json") ||
+            relativePath.endsWith(".node");
+        if (!isScript) return 2;
+
+        final boolean isDependency = relativePath.startsWith("node_modules/") || relativePath.contains("/node_modules/");
+        return isDependency ? 1 : 0;
+    }
+
+    /**
+     * Extracts all {@code package.json} files on the calling thread. The Node.js loader remembers
+     * missing {@code package.json} files, so they must exist before the process starts.
+     */
+    protected boolean extractPackageFiles() {
+        boolean success = true;
+
+        final List<String> packageFiles = new ArrayList<>();
+        synchronized (this) {
+            for (String relativePath : states.keySet()) {
+                if (relativePath.equals("package.json") || relativePath.endsWith("/package.json")) {
+                    packageFiles.add(relativePath);
+                }
+            }
+        }
+        for (String relativePath : packageFiles) {
+            success &= extractFile(relativePath);
+        }
+        return success;
+    }
+
+    /** Extracts the script at {@code mainPath} and the scripts it requires by relative paths on the calling thread. */
+    protected boolean extractScriptWithDependencies(String mainPath) {
+        final String mainRelativePath = getRelativePath(mainPath);
+        if (mainRelativePath == null) return true;
+
+        boolean success = true;
+
+        final Set<String> visitedPaths = new HashSet<>();
+        final Deque<String> pendingScripts = new ArrayDeque<>();
+        visitedPaths.add(mainRelativePath);
+        pendingScripts.push(mainRelativePath);
+
+        while (!pendingScripts.isEmpty()) {
+            final String relativePath = pendingScripts.pop();
+            success &= extractFile(relativePath);
+
+            if (relativePath.endsWith(".json")) continue;
+
+            final String scriptPath = FileOperations.CombinePath(destinationPath, relativePath);
+            final String script;
+            try {
+                script = FileOperations.ReadFileFromPath(scriptPath);
+            } catch (IOException e) {
+                continue;
+            }
+
+            final String scriptDir = relativePath.contains("/") ? relativePath.substring(0, relativePath.lastIndexOf('/')) : "";
+            final Matcher matcher = RELATIVE_SPECIFIER_PATTERN.matcher(script);
+            while (matcher.find()) {
+                final String specifier = matcher.group(1);
+                final String dependencyPath = resolve(normalizePath(scriptDir.isEmpty() ? specifier : scriptDir + "/" + specifier));
+                if (dependencyPath != null && visitedPaths.add(dependencyPath)) {
+                    pendingScripts.push(dependencyPath);
+                }
+            }
+        }
+
+        return success;
+    }
+
+    // Returns the path of the file a relative specifier refers to, as far as it can be resolved without the Node.js loader.
+    private String resolve(String relativePath) {
+        if (relativePath == null) return null;
+
+        for (String suffix : RESOLVE_SUFFIXES) {
+            final String candidatePath = relativePath + suffix;
+            synchronized (this) {
+                if (states.containsKey(candidatePath)) return candidatePath;
+            }
+            if (new File(destinationPath, candidatePath).isFile()) return candidatePath;
+        }
+        return null;
+    }
+
+    /** Starts extracting the remaining files in the background. */
+    protected synchronized void start() {
+        if (startTime != 0) return;
+        startTime = System.nanoTime();
+        runningThreads = threadCount;
+
+        for (int i = 0; i < threadCount; i++) {
+            final Thread thread = new Thread(this::extractQueuedFiles, "NodeJS-Extraction");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+    }
+
+    private void extractQueuedFiles() {
+        while (true) {
+            final String relativePath;
+            synchronized (this) {
+                relativePath = queue.poll();
+            }
+            if (relativePath == null) break;
+            extractFile(relativePath);
+        }
+
+        final AssetExtractor.Result result;
+        synchronized (this) {
+            if (--runningThreads > 0) return;
+
+            final long duration = System.nanoTime() - startTime;
+            result = new AssetExtractor.Result(!isFailed, fileCount, byteCount, 0, duration, duration);
+        }
+
+        // The extraction only counts as complete once the listener has returned.
+        completionListener.onComplete(result);
+
+        synchronized (this) {
+            isComplete = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Extracts the pending files whose paths start with one of the {@code pathPrefixes} on the calling thread,
+     * or waits for them if they are being extracted by another thread.
+     * Returns {@code false} if the extraction has already been completed before.
+     */
+    protected boolean materialize(String[] pathPrefixes) {
+        final List<String> relativePaths = new ArrayList<>();
+        synchronized (this) {
+            if (isComplete) return false;
+
+            for (String pathPrefix : pathPrefixes) {
+                final String relativePrefix = getRelativePath(pathPrefix);
+                if (relativePrefix == null) continue;
+
+                final Map<String, Integer> matchingStates = states.subMap(relativePrefix, relativePrefix + Character.MAX_VALUE);
+                for (Map.Entry<String, Integer> entry : matchingStates.entrySet()) {
+                    if (entry.getValue() != STATE_EXTRACTED) {
+                        relativePaths.add(entry.getKey());
+                    }
+                }
+            }
+        }
+
+        for (String relativePath : relativePaths) {
+            extractFile(relativePath);
+        }
+        return true;
+    }
+
+    /** Blocks until all files have been extracted, returns {@code false} if the extraction has not been started. */
+    protected synchronized boolean awaitCompletion() {
+        if (startTime == 0) return false;
+
+        try {
+            while (!isComplete) wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    // Returns false if the file could not be extracted, files are extracted only once.
+    private boolean extractFile(String relativePath) {
+        synchronized (this) {
+            try {
+                Integer state = states.get(relativePath);
+                while (state != null && state == STATE_EXTRACTING) {
+                    wait();
+                    state = states.get(relativePath);
+                }
+                if (state == null || state == STATE_EXTRACTED) return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+
+            states.put(relativePath, STATE_EXTRACTING);
+        }
+
+        final String assetPath = FileOperations.CombinePath(assetDir, relativePath);
+        final String filePath = FileOperations.CombinePath(destinationPath, relativePath);
+        final long size = assetExtractor.extractFile(assetPath, filePath);
+
+        synchronized (this) {
+            states.put(relativePath, STATE_EXTRACTED);
+            if (size >= 0) {
+                fileCount++;
+                byteCount += size;
+            } else {
+                isFailed = true;
+            }
+            notifyAll();
+        }
+
+        return size >= 0;
+    }
+
+    // Returns the path relative to the destination directory, or null if the path is outside of it.
+    private String getRelativePath(String path) {
+        final String normalizedPath = normalizePath(path);
+        final String normalizedDestinationPath = normalizePath(destinationPath);
+        if (normalizedPath == null || normalizedDestinationPath == null) return null;
+
+        if (!normalizedPath.startsWith(normalizedDestinationPath + "/")) return null;
+        return normalizedPath.substring(normalizedDestinationPath.length() + 1);
+    }
+
+    // Resolves '.' and '..' segments, returns null if the path leaves its root.
+    private static String normalizePath(String path) {
+        final Deque<String> segments = new ArrayDeque<>();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) continue;
+
+            if (segment.equals("..")) {
+                if (segments.isEmpty()) return null;
+                segments.removeLast();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+
+        final StringBuilder normalizedPath = new StringBuilder();
+        for (String segment : segments) {
+            if (normalizedPath.length() > 0 || path.startsWith("/")) {
+                normalizedPath.append('/');
+            }
+            normalizedPath.append(segment);
+        }
+        return normalizedPath.toString();
+    }
+}
@@ -94,34 +94,40 @@ public class FileOperations {
         return success;
     }
 
-    public static boolean CopyAssetDir(AssetManager assetManager, String assetPath, String destinationPath) {
-        try {
-            final String[] files = assetManager.list(assetPath);
-            if (files == null) return false;
-
-            boolean success = true;
-
-            if (files.length == 0) {
-                success = CopyAsset(assetManager, assetPath, destinationPath);
-            } else {
-                CreateDir(destinationPath);
+    /**
+     * Deletes a file of a directory tree and all of its parent directories
+     * that became empty, up to the root directory of the tree.
+     */
+    public static boolean DeleteFile(String rootPath, String relativePath) {
+        final File root = new File(rootPath);
+        File file = new File(root, relativePath);
+
+        if (file.exists() && !file.delete()) return false;
+
+        file = file.getParentFile();
+        while (file != null && !file.equals(root)) {
+            final String[] files = file.list();
+            if (files == null || files.length > 0 || !file.delete()) break;
+            file = file.getParentFile();
+        }
 
-                for (String file : files) {
-                    success &= CopyAssetDir(assetManager, CombinePath(assetPath, file), CombinePath(destinationPath, file));
-                }
-            }
+        return true;
+    }
 
-            return success;
-        } catch (IOException e) {
-            Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to copy assets from '" + assetPath + "'.", e);
-            return false;
-        }
+    public static boolean CopyAssetDir(AssetManager assetManager, String assetPath, String destinationPath) {
+        final AssetExtractor extractor = new AssetExtractor(assetManager);
+        return extractor.extractDir(assetPath, destinationPath).success;
     }
 
     public static boolean CopyAsset(AssetManager assetManager, String assetPath, String destinationPath) {
         try {
             final File destinationFile = new File(destinationPath);
 
+            final File destinationDir = destinationFile.getParentFile();
+            if (destinationDir != null) {
+                CreateDir(destinationDir.getPath());
+            }
+
             //noinspection ResultOfMethodCallIgnored
             destinationFile.createNewFile();
 
@@ -142,11 +148,18 @@ public class FileOperations {
     }
 
     public static void CopyStream(InputStream in, OutputStream out) throws IOException {
-        byte[] buffer = new byte[1024];
+        CopyStream(in, out, new byte[64 * 1024]);
+    }
+
+    public static long CopyStream(InputStream in, OutputStream out, byte[] buffer) throws IOException {
+        long totalSize = 0;
 
         int size;
         while ((size = in.read(buffer)) != -1) {
             out.write(buffer, 0, size);
+            totalSize += size;
         }
+
+        return totalSize;
     }
 }
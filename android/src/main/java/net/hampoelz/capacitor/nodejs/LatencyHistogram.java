@@ -0,0 +1,88 @@
+package net.hampoelz.capacitor.nodejs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies with logarithmic buckets.
+ *
+ * <p>Bucket 0 counts latencies below one microsecond, bucket {@code i} counts latencies from 2^(i-1)
+ * up to 2^i microseconds and the last bucket counts everything above. The native histograms of the
+ * message queues use the same layout.
+ */
+public class LatencyHistogram {
+
+    public static final int BUCKET_COUNT = 32;
+
+    public static class Snapshot {
+
+        public final long count;
+        /** Sum of the latencies in microseconds. */
+        public final long sum;
+        /** Highest latency in microseconds. */
+        public final long max;
+        private final long[] buckets;
+
+        protected Snapshot(long count, long sum, long max, long[] buckets) {
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+            this.buckets = buckets;
+        }
+
+        /** Average latency in microseconds. */
+        public long getAverage() {
+            return count > 0 ? sum / count : 0;
+        }
+
+        /** Returns the upper bound in microseconds of the bucket containing the percentile, capped at the maximum. */
+        public long getPercentile(double percentile) {
+            if (count == 0) return 0;
+
+            final double rank = percentile / 100.0 * count;
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && buckets[i] > 0) {
+                    final long upperBound = i + 1 < buckets.length ? 1L << i : max;
+                    return Math.min(upperBound, max);
+                }
+            }
+            return max;
+        }
+    }
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long latency, TimeUnit unit) {
+        final long micros = Math.max(0, unit.toMicros(latency));
+
+        buckets.incrementAndGet(bucketOf(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+
+        long currentMax = max.get();
+        while (micros > currentMax && !max.compareAndSet(currentMax, micros)) {
+            currentMax = max.get();
+        }
+    }
+
+    /** The counters are read one by one, so a snapshot taken while recording may be off by a few latencies. */
+    public Snapshot getSnapshot() {
+        final long[] bucketCounts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketCounts[i] = buckets.get(i);
+        }
+
+        return new Snapshot(count.get(), sum.get(), max.get(), bucketCounts);
+    }
+
+    private static int bucketOf(long micros) {
+        final int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+}
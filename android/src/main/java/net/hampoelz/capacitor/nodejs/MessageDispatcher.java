@@ -0,0 +1,216 @@
+package net.hampoelz.capacitor.nodejs;
+
+import com.getcapacitor.Logger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers the messages received from the Node.js process to the Capacitor listeners on a dedicated thread,
+ * in the order they have been received.
+ *
+ * <p>Events configured for coalescing keep only their latest payload while waiting for delivery. They are
+ * delivered at the position of the first pending message of the same event.
+ *
+ * <p>At most {@link #MAX_PENDING_MESSAGES} messages wait for delivery. Once that many are pending, the receiving
+ * thread waits up to {@link #FULL_QUEUE_TIMEOUT} milliseconds for a delivery to complete, so that the native queue
+ * of messages from the Node.js process fills up and applies its overflow policy. Messages that still do not fit
+ * are dropped and counted.
+ */
+public class MessageDispatcher {
+
+    protected static final int MAX_PENDING_MESSAGES = 10000;
+    protected static final long FULL_QUEUE_TIMEOUT = 1000;
+
+    public static class Stats {
+
+        public final long receivedMessages;
+        public final long deliveredMessages;
+        public final long coalescedMessages;
+        public final int pendingMessages;
+        public final int maxPendingMessages;
+        public final long droppedMessages;
+        /** Time in nanoseconds messages have waited for delivery on average. */
+        public final long averageDelay;
+        /** Time in nanoseconds the longest waiting message has waited for delivery. */
+        public final long maxDelay;
+
+        protected Stats(
+            long receivedMessages,
+            long deliveredMessages,
+            long coalescedMessages,
+            int pendingMessages,
+            int maxPendingMessages,
+            long droppedMessages,
+            long averageDelay,
+            long maxDelay
+        ) {
+            this.receivedMessages = receivedMessages;
+            this.deliveredMessages = deliveredMessages;
+            this.coalescedMessages = coalescedMessages;
+            this.pendingMessages = pendingMessages;
+            this.maxPendingMessages = maxPendingMessages;
+            this.droppedMessages = droppedMessages;
+            this.averageDelay = averageDelay;
+            this.maxDelay = maxDelay;
+        }
+    }
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        1,
+        1,
+        0,
+        TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(MAX_PENDING_MESSAGES),
+        runnable -> {
+            final Thread thread = new Thread(runnable, "NodeJS-Listeners");
+            thread.setDaemon(true);
+            return thread;
+        },
+        (runnable, executor) -> waitForQueue((Delivery) runnable, executor)
+    );
+
+    private volatile Set<String> coalescedEvents = Collections.emptySet();
+    private final Map<String, Delivery> pendingCoalescedDeliveries = new HashMap<>();
+
+    private final AtomicLong receivedMessages = new AtomicLong();
+    private final AtomicLong deliveredMessages = new AtomicLong();
+    private final AtomicLong coalescedMessages = new AtomicLong();
+    private final AtomicInteger pendingMessages = new AtomicInteger();
+    private final AtomicInteger maxPendingMessages = new AtomicInteger();
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final AtomicLong totalDelay = new AtomicLong();
+    private final AtomicLong maxDelay = new AtomicLong();
+
+    /** Sets the names of the events that only keep their latest payload while waiting for delivery. */
+    public void setCoalescedEvents(String[] eventNames) {
+        coalescedEvents = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(eventNames)));
+    }
+
+    /** Queues the {@code task} delivering a message of the event {@code eventName}. */
+    public void dispatch(String eventName, Runnable task) {
+        receivedMessages.incrementAndGet();
+
+        if (!coalescedEvents.contains(eventName)) {
+            execute(new Delivery(null, task));
+            return;
+        }
+
+        final Delivery delivery;
+        synchronized (pendingCoalescedDeliveries) {
+            final Delivery pendingDelivery = pendingCoalescedDeliveries.get(eventName);
+            if (pendingDelivery != null) {
+                pendingDelivery.task = task;
+                coalescedMessages.incrementAndGet();
+                return;
+            }
+
+            delivery = new Delivery(eventName, task);
+            pendingCoalescedDeliveries.put(eventName, delivery);
+        }
+
+        execute(delivery);
+    }
+
+    public Stats getStats() {
+        final long delivered = deliveredMessages.get();
+        final long averageDelay = delivered > 0 ? totalDelay.get() / delivered : 0;
+
+        return new Stats(
+            receivedMessages.get(),
+            delivered,
+            coalescedMessages.get(),
+            pendingMessages.get(),
+            maxPendingMessages.get(),
+            droppedMessages.get(),
+            averageDelay,
+            maxDelay.get()
+        );
+    }
+
+    private void execute(Delivery delivery) {
+        final int pending = pendingMessages.incrementAndGet();
+
+        int maxPending = maxPendingMessages.get();
+        while (pending > maxPending && !maxPendingMessages.compareAndSet(maxPending, pending)) {
+            maxPending = maxPendingMessages.get();
+        }
+
+        executor.execute(delivery);
+    }
+
+    // Called on the receiving thread by the executor, whose queue is full.
+    private void waitForQueue(Delivery delivery, ThreadPoolExecutor executor) {
+        try {
+            if (executor.getQueue().offer(delivery, FULL_QUEUE_TIMEOUT, TimeUnit.MILLISECONDS)) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (delivery.coalescingKey != null) {
+            synchronized (pendingCoalescedDeliveries) {
+                // Later messages of the event must not be coalesced into the dropped delivery.
+                if (pendingCoalescedDeliveries.get(delivery.coalescingKey) == delivery) {
+                    pendingCoalescedDeliveries.remove(delivery.coalescingKey);
+                }
+            }
+        }
+
+        pendingMessages.decrementAndGet();
+        if (droppedMessages.getAndIncrement() == 0) {
+            Logger.warn(CapacitorNodeJSPlugin.LOGGER_TAG, "Dropping messages from the Node.js process, the listeners can't keep up.");
+        }
+    }
+
+    private class Delivery implements Runnable {
+
+        private final String coalescingKey;
+        private final long queuedTime = System.nanoTime();
+        // Guarded by pendingCoalescedDeliveries for coalesced events.
+        private Runnable task;
+
+        private Delivery(String coalescingKey, Runnable task) {
+            this.coalescingKey = coalescingKey;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            final Runnable currentTask;
+            if (coalescingKey != null) {
+                synchronized (pendingCoalescedDeliveries) {
+                    pendingCoalescedDeliveries.remove(coalescingKey);
+                    currentTask = task;
+                }
+            } else {
+                currentTask = task;
+            }
+
+            pendingMessages.decrementAndGet();
+
+            final long delay = System.nanoTime() - queuedTime;
+            totalDelay.addAndGet(delay);
+
+            long currentMaxDelay = maxDelay.get();
+            while (delay > currentMaxDelay && !maxDelay.compareAndSet(currentMaxDelay, delay)) {
+                currentMaxDelay = maxDelay.get();
+            }
+
+            try {
+                currentTask.run();
+            } catch (RuntimeException e) {
+                Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to deliver a message from the Node.js process.", e);
+            }
+
+            deliveredMessages.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package net.hampoelz.capacitor.nodejs;
+
+import com.getcapacitor.Logger;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.json.JSONArray;
+
+/**
+ * Listeners of Android components for the messages of the Node.js process.
+ *
+ * <p>Unlike the Capacitor listeners, they receive the messages without passing them through the WebView, so
+ * the arguments are not serialized again and the messages are also received while the WebView is not running.
+ */
+public class NodeEventListeners {
+
+    /** Receives the messages sent by the Node.js process via {@code channel.send(...)}. */
+    public interface MessageListener {
+        /** Called on the thread delivering the messages, {@code args} must not be modified. */
+        void onMessage(String eventName, JSONArray args);
+    }
+
+    /** Receives the messages sent by the Node.js process via {@code channel.sendBinary(...)}. */
+    public interface BinaryMessageListener {
+        /** Called on the thread delivering the messages with a read-only buffer of the received bytes. */
+        void onBinaryMessage(String eventName, ByteBuffer data);
+    }
+
+    // Guarded by this, the lists are copied on write so that listeners are notified without holding the lock.
+    private final Map<String, List<MessageListener>> messageListeners = new HashMap<>();
+    private final Map<String, List<BinaryMessageListener>> binaryMessageListeners = new HashMap<>();
+
+    /** Returns {@code true} if {@code eventName} had no listeners before. */
+    protected synchronized boolean addMessageListener(String eventName, MessageListener listener) {
+        final boolean hadListeners = hasListeners(eventName);
+
+        List<MessageListener> listeners = messageListeners.get(eventName);
+        if (listeners == null) {
+            listeners = new CopyOnWriteArrayList<>();
+            messageListeners.put(eventName, listeners);
+        }
+        listeners.add(listener);
+
+        return !hadListeners;
+    }
+
+    /** Returns {@code true} if {@code eventName} had no listeners before. */
+    protected synchronized boolean addBinaryMessageListener(String eventName, BinaryMessageListener listener) {
+        final boolean hadListeners = hasListeners(eventName);
+
+        List<BinaryMessageListener> listeners = binaryMessageListeners.get(eventName);
+        if (listeners == null) {
+            listeners = new CopyOnWriteArrayList<>();
+            binaryMessageListeners.put(eventName, listeners);
+        }
+        listeners.add(listener);
+
+        return !hadListeners;
+    }
+
+    /** Returns {@code true} if {@code eventName} has no listeners anymore. */
+    protected synchronized boolean removeMessageListener(String eventName, MessageListener listener) {
+        final List<MessageListener> listeners = messageListeners.get(eventName);
+        if (listeners == null || !listeners.remove(listener)) return false;
+
+        if (listeners.isEmpty()) {
+            messageListeners.remove(eventName);
+        }
+        return !hasListeners(eventName);
+    }
+
+    /** Returns {@code true} if {@code eventName} has no listeners anymore. */
+    protected synchronized boolean removeBinaryMessageListener(String eventName, BinaryMessageListener listener) {
+        final List<BinaryMessageListener> listeners = binaryMessageListeners.get(eventName);
+        if (listeners == null || !listeners.remove(listener)) return false;
+
+        if (listeners.isEmpty()) {
+            binaryMessageListeners.remove(eventName);
+        }
+        return !hasListeners(eventName);
+    }
+
+    protected synchronized boolean hasListeners(String eventName) {
+        return messageListeners.containsKey(eventName) || binaryMessageListeners.containsKey(eventName);
+    }
+
+    /** Returns the names of the events that have at least one listener. */
+    protected synchronized Set<String> getEventNames() {
+        final Set<String> eventNames = new HashSet<>(messageListeners.keySet());
+        eventNames.addAll(binaryMessageListeners.keySet());
+        return eventNames;
+    }
+
+    protected void notifyMessage(String eventName, JSONArray args) {
+        final List<MessageListener> listeners;
+        synchronized (this) {
+            listeners = messageListeners.get(eventName);
+        }
+        if (listeners == null) return;
+
+        for (MessageListener listener : listeners) {
+            try {
+                listener.onMessage(eventName, args);
+            } catch (RuntimeException e) {
+                Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "A listener of the event '" + eventName + "' failed.", e);
+            }
+        }
+    }
+
+    protected void notifyBinaryMessage(String eventName, ByteBuffer data) {
+        final List<BinaryMessageListener> listeners;
+        synchronized (this) {
+            listeners = binaryMessageListeners.get(eventName);
+        }
+        if (listeners == null) return;
+
+        for (BinaryMessageListener listener : listeners) {
+            try {
+                listener.onBinaryMessage(eventName, data.asReadOnlyBuffer());
+            } catch (RuntimeException e) {
+                Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "A listener of the event '" + eventName + "' failed.", e);
+            }
+        }
+    }
+}
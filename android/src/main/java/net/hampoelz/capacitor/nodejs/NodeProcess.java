@@ -3,6 +3,8 @@ package net.hampoelz.capacitor.nodejs;
 import android.system.ErrnoException;
 import android.system.Os;
 import com.getcapacitor.Logger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -12,32 +14,103 @@ public class NodeProcess {
         System.loadLibrary("node");
     }
 
-    private native int nativeStart(String[] arguments, String[][] environmentVariables, boolean redirectOutputToLogcat);
+    private native int nativeStart(String[] arguments, String[][] environmentVariables, int outputMode);
 
-    private native void nativeSend(String channelName, String message);
+    private native boolean nativeStop();
+
+    private native boolean nativeSend(String channelName, String message);
+
+    private native int nativeSendBatch(String channelName, String[] messages);
+
+    private native void nativeSetOutputLimits(int bufferSize, int rateLimit);
+
+    private native void nativeSetMaxMessagesPerTick(int count);
+
+    private native void nativeSetMessageQueueOptions(int capacity, int overflowPolicy);
+
+    private native void nativeSetReceiveQueueOptions(int capacity, int overflowPolicy);
+
+    private native long[] nativeGetReceiveQueueStats();
+
+    private native void nativeSetChannelPriority(String channelName, int priority);
+
+    private native boolean nativeIsChannelRegistered(String channelName);
+
+    private native void nativeNotifyMemoryPressure(int level);
+
+    private native void nativeSetChannelBackgroundDelivery(String channelName, boolean enabled);
+
+    private native void nativeSetBackgroundState(int state);
+
+    private native void nativeSetBackgroundTickInterval(int milliseconds);
+
+    private native boolean nativeSendBinary(String channelName, String eventName, ByteBuffer data, int offset, int length);
+
+    private native long[] nativeGetChannelStats(String channelName);
+
+    private native ByteBuffer nativeCreateSharedMemory(int slotSize, int slotCount);
+
+    private native int nativeGetSharedMemorySlotSize();
+
+    private native int nativeAcquireSharedMemorySlot();
+
+    private native boolean nativeReleaseSharedMemorySlot(int slot);
 
     /** @noinspection unused*/
-    private void nativeReceive(String channelName, String message) {
-        receiveCallback.receive(channelName, message);
+    private void nativeReceive(String channelName, String message, long sentTime) {
+        receiveCallback.receive(channelName, message, sentTime);
+    }
+
+    /** @noinspection unused*/
+    private void nativeReceiveBinary(String channelName, String eventName, ByteBuffer data, long sentTime) {
+        receiveCallback.receiveBinary(channelName, eventName, data.asReadOnlyBuffer(), sentTime);
+    }
+
+    /** @noinspection unused*/
+    private void nativeReceiveOutput(byte[][] messages, int[] levels, long[] times, long droppedLines) {
+        final OutputLine[] lines = new OutputLine[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            lines[i] = new OutputLine(levels[i], new String(messages[i], StandardCharsets.UTF_8), times[i]);
+        }
+        receiveCallback.receiveOutput(lines, droppedLines);
+    }
+
+    /** @noinspection unused*/
+    private boolean nativeMaterialize(String[] pathPrefixes) {
+        final FileMaterializer materializer = fileMaterializer;
+        return materializer != null && materializer.materialize(pathPrefixes);
     }
 
     private final ReceiveCallback receiveCallback;
 
+    private volatile FileMaterializer fileMaterializer;
+
+    private volatile int outputMode = OUTPUT_MODE_LOGCAT;
+
     protected NodeProcess(ReceiveCallback receiveCallback) {
         this.receiveCallback = receiveCallback;
     }
 
-    protected void start(String modulePath, String[] parameter, Map<String, String> env, String cachePath) {
+    protected void setFileMaterializer(FileMaterializer fileMaterializer) {
+        this.fileMaterializer = fileMaterializer;
+    }
+
+    /**
+     * Runs the Node.js process on the calling thread until it exits or is stopped, returns its exit code.
+     * The {@code options} of Node.js are only applied on the first start of the process.
+     */
+    protected int start(String modulePath, String[] options, String[] parameter, Map<String, String> env, String cachePath) {
         try {
             Os.setenv("TMPDIR", cachePath, true);
         } catch (ErrnoException e) {
             Logger.error(CapacitorNodeJSPlugin.LOGGER_TAG, "Failed to set the environment variable for the Node.js cache directory.", e);
         }
 
-        final String[] arguments = new String[parameter.length + 2];
-        System.arraycopy(parameter, 0, arguments, 2, parameter.length);
+        final String[] arguments = new String[options.length + parameter.length + 2];
         arguments[0] = "node";
-        arguments[1] = modulePath;
+        System.arraycopy(options, 0, arguments, 1, options.length);
+        arguments[options.length + 1] = modulePath;
+        System.arraycopy(parameter, 0, arguments, options.length + 2, parameter.length);
 
         final String[][] environmentVariables = new String[env.size()][2];
 
@@ -48,14 +121,260 @@ public class NodeProcess {
             envCount++;
         }
 
-        nativeStart(arguments, environmentVariables, true);
+        return nativeStart(arguments, environmentVariables, outputMode);
+    }
+
+    protected static final int OUTPUT_MODE_NONE = 0;
+    protected static final int OUTPUT_MODE_LOGCAT = 1;
+    protected static final int OUTPUT_MODE_EVENTS = 2;
+
+    protected static final int OUTPUT_LEVEL_INFO = 0;
+    protected static final int OUTPUT_LEVEL_WARN = 1;
+    protected static final int OUTPUT_LEVEL_ERROR = 2;
+
+    protected static final int DEFAULT_OUTPUT_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Sets where the output of the Node.js process is written to, a combination of the {@code OUTPUT_MODE_*} flags.
+     * The mode is applied on the next start of the process, the limits right away.
+     * The output is buffered in up to {@code bufferSize} bytes, which must be positive, otherwise the buffer keeps
+     * its size. The output is limited to {@code rateLimit} lines per second, or not limited if {@code rateLimit} is 0.
+     */
+    protected void setOutputOptions(int mode, int bufferSize, int rateLimit) {
+        outputMode = mode;
+        nativeSetOutputLimits(bufferSize, rateLimit);
+    }
+
+    /** Stops the running Node.js process, returns {@code false} if it is not running. */
+    protected boolean stop() {
+        return nativeStop();
     }
 
+    /**
+     * Called on the native dispatcher thread, in the order the messages have been sent by the Node.js process.
+     * The {@code sentTime} is the time the message has been sent by the Node.js process, as of {@link System#nanoTime()}.
+     */
     protected interface ReceiveCallback {
-        void receive(String channelName, String message);
+        void receive(String channelName, String message, long sentTime);
+
+        /** The {@code data} wraps native memory of the dispatcher and is only valid until this method returns. */
+        void receiveBinary(String channelName, String eventName, ByteBuffer data, long sentTime);
+
+        /**
+         * Called on the native output thread with the lines written to stdout and stderr since the last call.
+         * The {@code droppedLines} have been dropped, as the output buffer was full or the rate limit was exceeded.
+         */
+        void receiveOutput(OutputLine[] lines, long droppedLines);
+    }
+
+    /** A line written to stdout or stderr by the Node.js process. */
+    protected static class OutputLine {
+
+        /** One of the {@code OUTPUT_LEVEL_*} values, stdout is info and stderr is error except for warnings of Node.js. */
+        protected final int level;
+        protected final String message;
+        /** Time the line has been written, in milliseconds since the epoch. */
+        protected final long time;
+
+        private OutputLine(int level, String message, long time) {
+            this.level = level;
+            this.message = message;
+            this.time = time;
+        }
+    }
+
+    /** Called on the threads of the Node.js process, which are blocked until the files have been materialized. */
+    protected interface FileMaterializer {
+        /**
+         * Extracts the files of the Node.js project whose paths start with one of the {@code pathPrefixes}.
+         * Returns {@code false} if no extraction is in progress anymore.
+         */
+        boolean materialize(String[] pathPrefixes);
     }
 
-    protected void send(String channelName, String message) {
-        nativeSend(channelName, message);
+    /** Statistics of the native message queue of a channel. */
+    protected static class ChannelStats {
+
+        protected final long queuedMessages;
+        /** Bytes occupied by the queued messages. */
+        protected final long queuedBytes;
+        protected final long maxQueuedMessages;
+        /** Size of the message queue in bytes. */
+        protected final long capacity;
+        protected final long deliveredMessages;
+        protected final long droppedMessages;
+        protected final long rejectedMessages;
+        /** Time from queueing a message until the listener of the Node.js process has been invoked with it. */
+        protected final LatencyHistogram.Snapshot latency;
+
+        // The values are laid out in this order, followed by the count, sum and maximum of the latencies and the buckets.
+        private ChannelStats(long[] values) {
+            queuedMessages = values[0];
+            queuedBytes = values[1];
+            maxQueuedMessages = values[2];
+            capacity = values[3];
+            deliveredMessages = values[4];
+            droppedMessages = values[5];
+            rejectedMessages = values[6];
+
+            final long[] buckets = new long[LatencyHistogram.BUCKET_COUNT];
+            System.arraycopy(values, 10, buckets, 0, buckets.length);
+            latency = new LatencyHistogram.Snapshot(values[7], values[8], values[9], buckets);
+        }
+    }
+
+    /** Returns the statistics of the message queue of the channel, or {@code null} if the channel does not exist yet. */
+    protected ChannelStats getChannelStats(String channelName) {
+        final long[] values = nativeGetChannelStats(channelName);
+        return values != null ? new ChannelStats(values) : null;
+    }
+
+    /** Returns {@code false} if the message has been rejected because the message queue of the channel is full. */
+    protected boolean send(String channelName, String message) {
+        return nativeSend(channelName, message);
+    }
+
+    /** Returns the number of queued messages, which stops at the first message rejected by a full message queue. */
+    protected int sendBatch(String channelName, String[] messages) {
+        return nativeSendBatch(channelName, messages);
+    }
+
+    /** Limits the number of messages delivered per channel and iteration of the Node.js event loop, 0 for no limit. */
+    protected void setMaxMessagesPerTick(int count) {
+        nativeSetMaxMessagesPerTick(count);
+    }
+
+    protected static final int OVERFLOW_POLICY_BLOCK = 0;
+    protected static final int OVERFLOW_POLICY_DROP_OLDEST = 1;
+    protected static final int OVERFLOW_POLICY_REJECT = 2;
+
+    /**
+     * Sets the size in bytes and the overflow policy of the message queues of channels,
+     * which only affects channels that are created afterwards.
+     */
+    protected void setMessageQueueOptions(int capacity, int overflowPolicy) {
+        nativeSetMessageQueueOptions(capacity, overflowPolicy);
+    }
+
+    /**
+     * Sets the size in bytes and the overflow policy of the queue of messages from the Node.js process waiting for
+     * the native dispatcher thread. With the block policy, the Node.js process waits for the Java listeners instead.
+     */
+    protected void setReceiveQueueOptions(int capacity, int overflowPolicy) {
+        nativeSetReceiveQueueOptions(capacity, overflowPolicy);
+    }
+
+    /** Statistics of the queue of messages from the Node.js process waiting for the native dispatcher thread. */
+    protected static class ReceiveQueueStats {
+
+        protected final long queuedMessages;
+        /** Bytes of the queued messages. */
+        protected final long queuedBytes;
+        protected final long maxQueuedMessages;
+        /** Size of the queue in bytes. */
+        protected final long capacity;
+        protected final long droppedMessages;
+        protected final long rejectedMessages;
+
+        // The values are laid out in this order.
+        private ReceiveQueueStats(long[] values) {
+            queuedMessages = values[0];
+            queuedBytes = values[1];
+            maxQueuedMessages = values[2];
+            capacity = values[3];
+            droppedMessages = values[4];
+            rejectedMessages = values[5];
+        }
+    }
+
+    protected ReceiveQueueStats getReceiveQueueStats() {
+        return new ReceiveQueueStats(nativeGetReceiveQueueStats());
+    }
+
+    /**
+     * Sets the priority of a channel and of the channels of the same name of the worker threads. Pending messages
+     * of channels with a higher priority are delivered first, the default priority is 0.
+     */
+    protected void setChannelPriority(String channelName, int priority) {
+        nativeSetChannelPriority(channelName, priority);
+    }
+
+    /** Returns whether the Node.js process listens to the channel, messages sent to other channels are never delivered. */
+    protected boolean isChannelRegistered(String channelName) {
+        return nativeIsChannelRegistered(channelName);
+    }
+
+    /**
+     * Sets whether the messages of a channel and of the channels of the same name of the worker threads are
+     * delivered while the app is in the background. Messages of other channels are kept in their queues then.
+     */
+    protected void setChannelBackgroundDelivery(String channelName, boolean enabled) {
+        nativeSetChannelBackgroundDelivery(channelName, enabled);
+    }
+
+    protected static final int BACKGROUND_STATE_FOREGROUND = 0;
+    protected static final int BACKGROUND_STATE_THROTTLED = 1;
+    protected static final int BACKGROUND_STATE_SUSPENDED = 2;
+
+    /**
+     * Throttles or suspends the event loops of the Node.js process and its worker threads, one of the
+     * {@code BACKGROUND_STATE_*} values. Stopping the process resets the state to the foreground.
+     */
+    protected void setBackgroundState(int state) {
+        nativeSetBackgroundState(state);
+    }
+
+    /** Sets the minimum time between two iterations of a throttled event loop, 0 for no limit. */
+    protected void setBackgroundTickInterval(int milliseconds) {
+        nativeSetBackgroundTickInterval(milliseconds);
+    }
+
+    // The levels of v8::MemoryPressureLevel.
+    protected static final int MEMORY_PRESSURE_NONE = 0;
+    protected static final int MEMORY_PRESSURE_MODERATE = 1;
+    protected static final int MEMORY_PRESSURE_CRITICAL = 2;
+
+    /**
+     * Notifies the isolates of the Node.js process and its worker threads of the memory pressure, one of the
+     * {@code MEMORY_PRESSURE_*} levels. V8 collects garbage and releases memory on their threads, critical
+     * pressure makes it reduce the heap as much as possible.
+     */
+    protected void notifyMemoryPressure(int level) {
+        nativeNotifyMemoryPressure(level);
+    }
+
+    /**
+     * Creates the region of memory shared with the Node.js process, or returns the existing one.
+     * Returns {@code null} if the region could not be created.
+     */
+    protected SharedMemory createSharedMemory(int slotSize, int slotCount) {
+        final ByteBuffer region = nativeCreateSharedMemory(slotSize, slotCount);
+        if (region == null) return null;
+
+        // The slot size is aligned by the native code.
+        return new SharedMemory(this, region, nativeGetSharedMemorySlotSize());
+    }
+
+    protected int acquireSharedMemorySlot() {
+        return nativeAcquireSharedMemorySlot();
+    }
+
+    protected boolean releaseSharedMemorySlot(int slot) {
+        return nativeReleaseSharedMemorySlot(slot);
+    }
+
+    /**
+     * Sends the remaining bytes of {@code data} without changing its position.
+     * Returns {@code false} if the message has been rejected because the message queue of the channel is full.
+     */
+    protected boolean sendBinary(String channelName, String eventName, ByteBuffer data) {
+        if (!data.isDirect()) {
+            final ByteBuffer directData = ByteBuffer.allocateDirect(data.remaining());
+            directData.put(data.duplicate());
+            directData.flip();
+            data = directData;
+        }
+
+        return nativeSendBinary(channelName, eventName, data, data.position(), data.remaining());
     }
 }
@@ -0,0 +1,118 @@
+package net.hampoelz.capacitor.nodejs;
+
+import com.getcapacitor.PluginCall;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the invocations of handlers of the Node.js process that wait for their result, by invocation id.
+ *
+ * <p>The number of pending invocations is bounded, so that a Node.js process that stops replying
+ * cannot make the table grow without limit. Invocations with a timeout are removed once it expires.
+ */
+public class PendingInvocations {
+
+    protected interface TimeoutCallback {
+        void onTimeout(String invokeId, PluginCall call);
+    }
+
+    private static class Invocation {
+
+        private final PluginCall call;
+        private ScheduledFuture<?> timeout;
+
+        private Invocation(PluginCall call) {
+            this.call = call;
+        }
+    }
+
+    private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        final Thread thread = new Thread(runnable, "NodeJS-Invocations");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, Invocation> invocations = new HashMap<>();
+    private final TimeoutCallback timeoutCallback;
+    private int maxPendingInvocations = 1000;
+
+    protected PendingInvocations(TimeoutCallback timeoutCallback) {
+        this.timeoutCallback = timeoutCallback;
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    protected synchronized void setMaxPendingInvocations(int count) {
+        maxPendingInvocations = count;
+    }
+
+    /**
+     * Adds an invocation that times out after {@code timeout} milliseconds, or never if the timeout is 0.
+     *
+     * @throws IllegalStateException if the table is full or an invocation with the same id is already pending.
+     */
+    protected synchronized void add(String invokeId, PluginCall call, long timeout) {
+        if (invocations.containsKey(invokeId)) {
+            throw new IllegalStateException("An invocation with the id '" + invokeId + "' is already pending.");
+        }
+
+        if (invocations.size() >= maxPendingInvocations) {
+            throw new IllegalStateException("Too many invocations are waiting for the Node.js process.");
+        }
+
+        final Invocation invocation = new Invocation(call);
+        if (timeout > 0) {
+            invocation.timeout = timer.schedule(
+                () -> {
+                    if (removeInvocation(invokeId, invocation)) {
+                        timeoutCallback.onTimeout(invokeId, call);
+                    }
+                },
+                timeout,
+                TimeUnit.MILLISECONDS
+            );
+        }
+
+        invocations.put(invokeId, invocation);
+    }
+
+    /** Removes the invocation and returns its call, or {@code null} if it is not pending anymore. */
+    protected synchronized PluginCall remove(String invokeId) {
+        final Invocation invocation = invocations.remove(invokeId);
+        if (invocation == null) return null;
+
+        if (invocation.timeout != null) {
+            invocation.timeout.cancel(false);
+        }
+        return invocation.call;
+    }
+
+    /** Removes all invocations and returns their calls, e.g. when the Node.js process has stopped. */
+    protected synchronized List<PluginCall> removeAll() {
+        final List<PluginCall> calls = new ArrayList<>();
+        for (Invocation invocation : invocations.values()) {
+            if (invocation.timeout != null) {
+                invocation.timeout.cancel(false);
+            }
+            calls.add(invocation.call);
+        }
+
+        invocations.clear();
+        return calls;
+    }
+
+    protected synchronized int size() {
+        return invocations.size();
+    }
+
+    private synchronized boolean removeInvocation(String invokeId, Invocation invocation) {
+        if (invocations.get(invokeId) != invocation) return false;
+
+        invocations.remove(invokeId);
+        return true;
+    }
+}
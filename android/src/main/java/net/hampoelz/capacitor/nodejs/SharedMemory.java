@@ -0,0 +1,58 @@
+package net.hampoelz.capacitor.nodejs;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A region of memory shared with the Node.js process, to exchange bulk data such as camera frames without copying it.
+ *
+ * <p>The region is divided into slots of equal size. A slot is acquired, filled and handed over to the Node.js process
+ * by sending its index in a channel message, for example with
+ * {@link CapacitorNodeJSPlugin#sendSharedMemorySlot(String, int, int)}. The receiver releases the slot once it is done
+ * with its content. Slots handed over by the Node.js process are released the same way.
+ */
+public class SharedMemory {
+
+    private final NodeProcess nodeProcess;
+    private final ByteBuffer region;
+    private final int slotSize;
+
+    protected SharedMemory(NodeProcess nodeProcess, ByteBuffer region, int slotSize) {
+        this.nodeProcess = nodeProcess;
+        this.region = region;
+        this.slotSize = slotSize;
+    }
+
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    public int getSlotCount() {
+        return region.capacity() / slotSize;
+    }
+
+    /** Returns the index of a free slot, which is then owned by the caller, or -1 if all slots are in use. */
+    public int acquire() {
+        return nodeProcess.acquireSharedMemorySlot();
+    }
+
+    /** Returns {@code false} if the slot is not acquired. */
+    public boolean release(int slot) {
+        return nodeProcess.releaseSharedMemorySlot(slot);
+    }
+
+    /**
+     * Returns a view of the content of the slot, which is only to be accessed while the slot is owned.
+     *
+     * @throws IndexOutOfBoundsException if the slot does not exist.
+     */
+    public ByteBuffer getSlot(int slot) {
+        if (slot < 0 || slot >= getSlotCount()) {
+            throw new IndexOutOfBoundsException("The shared memory has no slot " + slot + ".");
+        }
+
+        final ByteBuffer buffer = region.duplicate();
+        buffer.limit((slot + 1) * slotSize);
+        buffer.position(slot * slotSize);
+        return buffer.slice();
+    }
+}
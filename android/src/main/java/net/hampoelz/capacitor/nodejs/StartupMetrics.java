@@ -0,0 +1,108 @@
+package net.hampoelz.capacitor.nodejs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records monotonic timestamps of the phases of a startup of the Node.js engine,
+ * from the start request until the Node.js process reports to be ready.
+ */
+public class StartupMetrics {
+
+    protected static final String PHASE_EXTRACTION = "extraction";
+    protected static final String PHASE_PACKAGE_JSON = "packageJson";
+    protected static final String PHASE_STARTUP_FILES = "startupFiles";
+    protected static final String PHASE_ENVIRONMENT = "environment";
+    protected static final String PHASE_ENGINE = "engine";
+
+    public static class Phase {
+
+        /** Time in nanoseconds from the start request to the beginning of the phase. */
+        public final long startTime;
+        /** Time in nanoseconds spent in the phase. */
+        public final long duration;
+
+        protected Phase(long startTime, long duration) {
+            this.startTime = startTime;
+            this.duration = duration;
+        }
+    }
+
+    private final long startTime = System.nanoTime();
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+
+    private String currentPhase;
+    private long currentPhaseStartTime;
+
+    private final boolean isWarmStart;
+    private boolean isColdStart = false;
+    private int extractedFiles = 0;
+    private long extractedBytes = 0;
+    private long readyTime = -1;
+
+    /** A warm start restarts the engine in a process where it has already been running before. */
+    protected StartupMetrics(boolean isWarmStart) {
+        this.isWarmStart = isWarmStart;
+    }
+
+    /** Ends the current phase and begins the phase {@code name}. */
+    protected synchronized void beginPhase(String name) {
+        endPhase();
+        currentPhase = name;
+        currentPhaseStartTime = System.nanoTime();
+    }
+
+    protected synchronized void endPhase() {
+        if (currentPhase == null) return;
+
+        final long now = System.nanoTime();
+        phases.put(currentPhase, new Phase(currentPhaseStartTime - startTime, now - currentPhaseStartTime));
+        currentPhase = null;
+    }
+
+    /** Adds the files extracted from the APK, which makes this a cold start. */
+    protected synchronized void addExtractedFiles(int fileCount, long byteCount) {
+        isColdStart = true;
+        extractedFiles += fileCount;
+        extractedBytes += byteCount;
+    }
+
+    /** Ends the last phase, returns {@code false} if the startup has already been completed before. */
+    protected synchronized boolean setReady() {
+        if (readyTime >= 0) return false;
+
+        endPhase();
+        readyTime = System.nanoTime() - startTime;
+        return true;
+    }
+
+    public synchronized boolean isReady() {
+        return readyTime >= 0;
+    }
+
+    /** Time in nanoseconds from the start request until the Node.js process has been ready, -1 if not ready yet. */
+    public synchronized long getReadyTime() {
+        return readyTime;
+    }
+
+    /** Returns the completed phases in the order they have been completed. */
+    public synchronized Map<String, Phase> getPhases() {
+        return new LinkedHashMap<>(phases);
+    }
+
+    public boolean isWarmStart() {
+        return isWarmStart;
+    }
+
+    public synchronized boolean isColdStart() {
+        return isColdStart;
+    }
+
+    public synchronized int getExtractedFiles() {
+        return extractedFiles;
+    }
+
+    public synchronized long getExtractedBytes() {
+        return extractedBytes;
+    }
+}
@@ -0,0 +1,151 @@
+package net.hampoelz.capacitor.nodejs;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Routes messages to the worker threads of the Node.js process, which the {@code bridge} module starts
+ * next to the main thread. Each worker has its own channels, named by the channel and the id of the worker.
+ *
+ * <p>Messages of the configured events are spread over the workers either round-robin or to the worker
+ * with the fewest messages waiting in the queue of its channel. A worker busy with a CPU-heavy handler
+ * does not take messages from its queue, so the least-loaded scheduling routes around it. Once all workers
+ * have exited, the messages are handled by the main thread again.
+ */
+public class WorkerScheduler {
+
+    protected static final String SCHEDULING_ROUND_ROBIN = "round-robin";
+    protected static final String SCHEDULING_LEAST_LOADED = "least-loaded";
+
+    protected static final char WORKER_SEPARATOR = '@';
+
+    protected interface LoadProbe {
+        /** Returns the number of messages waiting in the queue of the channel. */
+        long getQueuedMessages(String channelName);
+    }
+
+    private final LoadProbe loadProbe;
+
+    private volatile int workerCount = 0;
+    private volatile boolean isLeastLoaded = false;
+    private volatile Set<String> workerEvents = Collections.emptySet();
+
+    private static final int WORKER_STARTING = 0;
+    private static final int WORKER_READY = 1;
+    private static final int WORKER_EXITED = 2;
+
+    private int[] workerStates = new int[0];
+    private int nextWorker = 0;
+
+    protected WorkerScheduler(LoadProbe loadProbe) {
+        this.loadProbe = loadProbe;
+    }
+
+    protected synchronized void setOptions(int count, String scheduling, String[] eventNames) {
+        workerCount = Math.max(count, 0);
+        isLeastLoaded = SCHEDULING_LEAST_LOADED.equals(scheduling);
+        workerEvents = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(eventNames)));
+        workerStates = new int[workerCount];
+    }
+
+    protected int getWorkerCount() {
+        return workerCount;
+    }
+
+    /** Returns whether a worker with the id exists, worker ids start at 1. */
+    protected boolean isWorker(int workerId) {
+        return workerId >= 1 && workerId <= workerCount;
+    }
+
+    protected synchronized void setReady(int workerId) {
+        if (!isWorker(workerId)) return;
+        workerStates[workerId - 1] = WORKER_READY;
+    }
+
+    protected synchronized void setExited(int workerId) {
+        if (!isWorker(workerId)) return;
+        workerStates[workerId - 1] = WORKER_EXITED;
+    }
+
+    protected synchronized boolean hasExited(int workerId) {
+        return isWorker(workerId) && workerStates[workerId - 1] == WORKER_EXITED;
+    }
+
+    /** Marks all workers as starting, as the Node.js process has stopped and starts them again with the next start. */
+    protected synchronized void reset() {
+        Arrays.fill(workerStates, WORKER_STARTING);
+    }
+
+    /**
+     * Returns the id of the worker the next message of {@code eventName} is routed to,
+     * or 0 if the event is handled by the main thread.
+     */
+    protected int selectWorker(String channelName, String eventName) {
+        if (workerCount == 0 || !workerEvents.contains(eventName)) return 0;
+
+        final int candidateState;
+        final int[] states;
+        final int start;
+        synchronized (this) {
+            // Until a worker is ready, messages wait in the queues of the workers that are still starting.
+            if (hasWorkerIn(WORKER_READY)) candidateState = WORKER_READY;
+            else if (hasWorkerIn(WORKER_STARTING)) candidateState = WORKER_STARTING;
+            else return 0;
+
+            states = workerStates.clone();
+            start = nextWorker;
+            nextWorker = (nextWorker + 1) % workerCount;
+        }
+
+        int selectedWorker = 0;
+        long selectedLoad = Long.MAX_VALUE;
+        for (int i = 0; i < workerCount; i++) {
+            final int index = (start + i) % workerCount;
+            if (states[index] != candidateState) continue;
+
+            if (!isLeastLoaded) return index + 1;
+
+            final long load = loadProbe.getQueuedMessages(getChannelName(channelName, index + 1));
+            if (load < selectedLoad) {
+                selectedWorker = index + 1;
+                selectedLoad = load;
+            }
+        }
+
+        return selectedWorker;
+    }
+
+    private boolean hasWorkerIn(int state) {
+        for (int workerState : workerStates) {
+            if (workerState == state) return true;
+        }
+        return false;
+    }
+
+    /** Returns the name of the channel of a worker, the main thread has the worker id 0. */
+    protected static String getChannelName(String channelName, int workerId) {
+        if (workerId == 0) return channelName;
+        return channelName + WORKER_SEPARATOR + workerId;
+    }
+
+    /** Returns the id of the worker of a channel, or 0 for a channel of the main thread. */
+    protected static int getWorkerId(String channelName) {
+        final int separatorIndex = channelName.lastIndexOf(WORKER_SEPARATOR);
+        if (separatorIndex < 0) return 0;
+
+        try {
+            return Integer.parseInt(channelName.substring(separatorIndex + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** Returns the name of a channel without the id of its worker. */
+    protected static String getBaseChannelName(String channelName) {
+        final int separatorIndex = channelName.lastIndexOf(WORKER_SEPARATOR);
+        if (separatorIndex < 0) return channelName;
+        return channelName.substring(0, separatorIndex);
+    }
+}
@@ -0,0 +1,228 @@
+#include <chrono>
+#include <cstdint>
+#include <cstdlib>
+#include <string>
+#include <thread>
+#include <vector>
+
+#include "message-ring.h"
+#include "native-test.h"
+
+using namespace std::chrono_literals;
+
+namespace
+{
+
+PushResult pushText(MessageRing& ring, const std::string& text)
+{
+  return ring.push(false, nullptr, 0, text.data(), text.size());
+}
+
+// A message of about 100 bytes that starts with its number.
+std::string numberedMessage(int number)
+{
+  std::string message = std::to_string(number) + ":";
+  message.resize(100, 'x');
+  return message;
+}
+
+int messageNumber(const RingMessage& message)
+{
+  return std::atoi(std::string(message.data, message.length).c_str());
+}
+
+// Consumes all messages and returns their numbers.
+std::vector<int> consumeNumbers(MessageRing& ring)
+{
+  std::vector<int> numbers;
+  ring.consume(0, [&](const RingMessage& message) {
+    numbers.push_back(messageNumber(message));
+    if (message.external)
+      free(message.data);
+  });
+  return numbers;
+}
+
+// Pushes numbered messages until the ring is full, returns the number of queued messages.
+int fill(MessageRing& ring)
+{
+  int count = 0;
+  while (pushText(ring, numberedMessage(count)) != PushResult::Rejected)
+    count++;
+  return count;
+}
+
+} // namespace
+
+NATIVE_TEST(rejectPolicyRejectsNewMessagesWhenFull)
+{
+  MessageRing ring(4096, OverflowPolicy::Reject, false, 1000ms);
+
+  const int queued = fill(ring);
+  CHECK(queued > 0);
+  CHECK(ring.size() == (size_t)queued);
+  CHECK(ring.rejectedCount() == 1);
+  CHECK(ring.droppedCount() == 0);
+
+  const std::vector<int> numbers = consumeNumbers(ring);
+  CHECK((int)numbers.size() == queued);
+  for (int i = 0; i < (int)numbers.size(); i++)
+    CHECK(numbers[i] == i);
+
+  CHECK(ring.empty());
+  CHECK(pushText(ring, numberedMessage(0)) == PushResult::Queued);
+}
+
+NATIVE_TEST(dropOldestPolicyKeepsTheNewestMessages)
+{
+  MessageRing ring(4096, OverflowPolicy::DropOldest, false, 1000ms);
+
+  const int total = 200;
+  bool hasDropped = false;
+  for (int i = 0; i < total; i++)
+  {
+    const PushResult result = pushText(ring, numberedMessage(i));
+    CHECK(result != PushResult::Rejected);
+    hasDropped |= result == PushResult::QueuedAfterDrop;
+  }
+  CHECK(hasDropped);
+
+  const std::vector<int> numbers = consumeNumbers(ring);
+  CHECK(!numbers.empty());
+  CHECK(numbers.size() + ring.droppedCount() == (size_t)total);
+
+  // The remaining messages are the newest ones in their order.
+  for (size_t i = 0; i < numbers.size(); i++)
+    CHECK(numbers[i] == total - (int)numbers.size() + (int)i);
+}
+
+NATIVE_TEST(blockPolicyRejectsAfterTheTimeoutWithoutConsumer)
+{
+  MessageRing ring(4096, OverflowPolicy::Block, false, 50ms);
+  const int queued = fill(ring);
+
+  // fill() has already waited once, the next push waits for the timeout again.
+  const auto start = std::chrono::steady_clock::now();
+  CHECK(pushText(ring, numberedMessage(queued)) == PushResult::Rejected);
+  CHECK(std::chrono::steady_clock::now() - start >= 40ms);
+  CHECK(ring.rejectedCount() == 2);
+}
+
+NATIVE_TEST(blockPolicyWaitsForTheConsumer)
+{
+  MessageRing ring(4096, OverflowPolicy::Block, true, 5000ms);
+
+  // Fill the ring as far as it is possible without waiting.
+  int queued = 0;
+  while (ring.usedBytes() + 256 < ring.capacity())
+    CHECK(pushText(ring, numberedMessage(queued++)) == PushResult::Queued);
+
+  std::vector<int> numbers;
+  std::thread consumer([&] {
+    std::this_thread::sleep_for(20ms);
+    numbers = consumeNumbers(ring);
+  });
+
+  for (int i = 0; i < 4; i++)
+    CHECK(pushText(ring, numberedMessage(queued++)) == PushResult::Queued);
+  consumer.join();
+
+  const std::vector<int> remaining = consumeNumbers(ring);
+  numbers.insert(numbers.end(), remaining.begin(), remaining.end());
+
+  CHECK((int)numbers.size() == queued);
+  for (int i = 0; i < (int)numbers.size(); i++)
+    CHECK(numbers[i] == i);
+  CHECK(ring.rejectedCount() == 0);
+}
+
+NATIVE_TEST(blockPolicyDoesNotWaitWhileTheConsumerIsPaused)
+{
+  MessageRing ring(4096, OverflowPolicy::Block, true, 5000ms);
+  ring.setConsumerPaused(true);
+
+  const auto start = std::chrono::steady_clock::now();
+  const int queued = fill(ring);
+  CHECK(queued > 0);
+  CHECK(std::chrono::steady_clock::now() - start < 1000ms);
+
+  ring.setConsumerPaused(false);
+  CHECK((int)consumeNumbers(ring).size() == queued);
+}
+
+NATIVE_TEST(largeMessagesAreStoredOutsideTheRing)
+{
+  MessageRing ring(4096, OverflowPolicy::Reject, false, 1000ms);
+
+  const std::string large(3000, 'y');
+  CHECK(ring.push(true, "event", 5, large.data(), large.size()) == PushResult::Queued);
+  CHECK(ring.usedBytes() < large.size());
+
+  bool delivered = false;
+  ring.consume(0, [&](const RingMessage& message) {
+    delivered = true;
+    CHECK(message.binary);
+    CHECK(message.external);
+    CHECK(std::string(message.eventName, message.eventNameLength) == "event");
+    CHECK(std::string(message.data, message.length) == large);
+    free(message.data);
+  });
+  CHECK(delivered);
+}
+
+NATIVE_TEST(messagesOfConcurrentProducersKeepTheirOrder)
+{
+  MessageRing ring(8192, OverflowPolicy::Block, true, 5000ms);
+
+  const int producerCount = 4;
+  const int messageCount = 5000;
+  std::vector<std::thread> producers;
+  for (int producer = 0; producer < producerCount; producer++)
+  {
+    producers.emplace_back([&ring, producer] {
+      for (int i = 0; i < messageCount; i++)
+      {
+        // Every third message is large enough to be stored outside the ring.
+        std::string message = std::to_string(producer * messageCount + i) + ":";
+        message.resize(i % 3 == 0 ? 600 : 40, 'z');
+        CHECK(pushText(ring, message) == PushResult::Queued);
+      }
+    });
+  }
+
+  std::vector<int> lastNumbers(producerCount, -1);
+  int received = 0;
+  while (received < producerCount * messageCount)
+  {
+    ring.consume(0, [&](const RingMessage& message) {
+      const int number = messageNumber(message);
+      const int producer = number / messageCount;
+      CHECK(number % messageCount == lastNumbers[producer] + 1);
+      lastNumbers[producer] = number % messageCount;
+      received++;
+      if (message.external)
+        free(message.data);
+    });
+  }
+
+  for (std::thread& producer : producers)
+    producer.join();
+  CHECK(ring.empty());
+  CHECK(ring.consumedCount() == (uint64_t)(producerCount * messageCount));
+}
+
+NATIVE_TEST(ringWithoutBufferRejectsAllMessages)
+{
+  // No buffer of this size can be allocated.
+  MessageRing ring(SIZE_MAX / 2, OverflowPolicy::Block, true, 1000ms);
+
+  CHECK(!ring.isAllocated());
+  CHECK(pushText(ring, numberedMessage(0)) == PushResult::Rejected);
+  CHECK(ring.rejectedCount() == 1);
+  CHECK(ring.empty());
+}
+
+int main()
+{
+  return runNativeTests();
+}
@@ -0,0 +1,67 @@
+/*
+ * A minimal test harness for the header-only parts of the native library, which run on the development machine.
+ */
+
+#ifndef ANDROID_NATIVE_TEST_H
+#define ANDROID_NATIVE_TEST_H
+
+#include <atomic>
+#include <cstdio>
+#include <functional>
+#include <vector>
+
+struct NativeTest
+{
+  const char* name;
+  std::function<void()> run;
+};
+
+inline std::vector<NativeTest>& nativeTests()
+{
+  static std::vector<NativeTest> tests;
+  return tests;
+}
+
+// Checks may fail on other threads of a test.
+inline std::atomic<int>& nativeTestFailures()
+{
+  static std::atomic<int> failures(0);
+  return failures;
+}
+
+struct NativeTestRegistration
+{
+  NativeTestRegistration(const char* name, std::function<void()> run)
+  {
+    nativeTests().push_back({ name, std::move(run) });
+  }
+};
+
+#define NATIVE_TEST(name)                                              \
+  void name();                                                         \
+  static NativeTestRegistration name##Registration(#name, name);       \
+  void name()
+
+// Records a failure and continues with the next check of the test.
+#define CHECK(condition)                                                                  \
+  do                                                                                      \
+  {                                                                                       \
+    if (!(condition))                                                                     \
+    {                                                                                     \
+      std::fprintf(stderr, "%s:%d: check failed: %s\n", __FILE__, __LINE__, #condition); \
+      nativeTestFailures()++;                                                             \
+    }                                                                                     \
+  } while (0)
+
+inline int runNativeTests()
+{
+  for (const NativeTest& test : nativeTests())
+  {
+    const int failures = nativeTestFailures();
+    test.run();
+    std::printf("%s %s\n", nativeTestFailures() == failures ? "PASSED" : "FAILED", test.name);
+  }
+  return nativeTestFailures() == 0 ? 0 : 1;
+}
+
+#endif //ANDROID_NATIVE_TEST_H
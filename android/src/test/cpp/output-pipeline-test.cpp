@@ -0,0 +1,189 @@
+#include <chrono>
+#include <string>
+#include <thread>
+#include <vector>
+
+#include "native-test.h"
+#include "output-pipeline.h"
+
+using namespace std::chrono_literals;
+
+namespace
+{
+
+void append(LineAssembler& assembler, const std::string& chunk, std::vector<std::string>& lines)
+{
+  assembler.append(chunk.data(), chunk.size(), lines);
+}
+
+std::vector<OutputLine> outputLines(int count, size_t length)
+{
+  std::vector<OutputLine> lines(count);
+  for (int i = 0; i < count; i++)
+  {
+    lines[i].message = std::to_string(i) + ":";
+    lines[i].message.resize(length, 'x');
+  }
+  return lines;
+}
+
+} // namespace
+
+NATIVE_TEST(assemblerSplitsChunksIntoLines)
+{
+  LineAssembler assembler;
+  std::vector<std::string> lines;
+
+  append(assembler, "first\nsec", lines);
+  CHECK(lines.size() == 1);
+  CHECK(lines[0] == "first");
+  CHECK(assembler.hasPending());
+
+  append(assembler, "ond\n\nthird\n", lines);
+  CHECK(lines.size() == 4);
+  CHECK(lines[1] == "second");
+  CHECK(lines[2].empty());
+  CHECK(lines[3] == "third");
+  CHECK(!assembler.hasPending());
+}
+
+NATIVE_TEST(assemblerSplitsLongLines)
+{
+  LineAssembler assembler;
+  std::vector<std::string> lines;
+
+  append(assembler, std::string(LineAssembler::kMaxLineLength * 2 + 10, 'a') + "\n", lines);
+
+  CHECK(lines.size() == 3);
+  CHECK(lines[0].size() == LineAssembler::kMaxLineLength);
+  CHECK(lines[1].size() == LineAssembler::kMaxLineLength);
+  CHECK(lines[2].size() == 10);
+}
+
+NATIVE_TEST(assemblerFlushesAnIncompleteLine)
+{
+  LineAssembler assembler;
+  std::vector<std::string> lines;
+
+  assembler.flush(lines);
+  CHECK(lines.empty());
+
+  append(assembler, "prompt> ", lines);
+  CHECK(lines.empty());
+
+  assembler.flush(lines);
+  CHECK(lines.size() == 1);
+  CHECK(lines[0] == "prompt> ");
+  CHECK(!assembler.hasPending());
+}
+
+NATIVE_TEST(rateLimiterWithoutRateAllowsAllLines)
+{
+  RateLimiter limiter;
+  limiter.setRate(0);
+
+  for (int i = 0; i < 10000; i++)
+    CHECK(limiter.tryAcquire());
+}
+
+NATIVE_TEST(rateLimiterAllowsBurstsOfOneSecond)
+{
+  RateLimiter limiter;
+  limiter.setRate(10);
+
+  for (int i = 0; i < 10; i++)
+    CHECK(limiter.tryAcquire());
+  CHECK(!limiter.tryAcquire());
+
+  // At least two lines worth of tokens are refilled.
+  std::this_thread::sleep_for(250ms);
+  CHECK(limiter.tryAcquire());
+  CHECK(limiter.tryAcquire());
+}
+
+NATIVE_TEST(pipelineDropsTheOldestLinesWhenFull)
+{
+  OutputPipeline pipeline;
+  pipeline.setLimits(1000, 0);
+
+  std::vector<OutputLine> lines = outputLines(50, 100);
+  pipeline.push(lines);
+  CHECK(lines.empty());
+
+  std::vector<OutputLine> taken;
+  const uint64_t dropped = pipeline.take(taken);
+
+  CHECK(taken.size() == 10);
+  CHECK(dropped == 40);
+  CHECK(taken.front().message.rfind("40:", 0) == 0);
+  CHECK(taken.back().message.rfind("49:", 0) == 0);
+}
+
+NATIVE_TEST(pipelineKeepsTheNewestLineLargerThanTheBuffer)
+{
+  OutputPipeline pipeline;
+  pipeline.setLimits(10, 0);
+
+  std::vector<OutputLine> lines = outputLines(2, 100);
+  pipeline.push(lines);
+
+  std::vector<OutputLine> taken;
+  CHECK(pipeline.take(taken) == 1);
+  CHECK(taken.size() == 1);
+  CHECK(taken[0].message.rfind("1:", 0) == 0);
+}
+
+NATIVE_TEST(pipelineKeepsItsBufferSizeWithoutCapacity)
+{
+  OutputPipeline pipeline;
+  pipeline.setLimits(1000, 0);
+  pipeline.setLimits(0, 0);
+
+  std::vector<OutputLine> lines = outputLines(5, 100);
+  pipeline.push(lines);
+
+  std::vector<OutputLine> taken;
+  CHECK(pipeline.take(taken) == 0);
+  CHECK(taken.size() == 5);
+}
+
+NATIVE_TEST(pipelineCountsLinesDroppedByTheRateLimit)
+{
+  OutputPipeline pipeline;
+  pipeline.setLimits(256 * 1024, 5);
+
+  std::vector<OutputLine> lines = outputLines(8, 10);
+  pipeline.push(lines);
+
+  std::vector<OutputLine> taken;
+  CHECK(pipeline.take(taken) == 3);
+  CHECK(taken.size() == 5);
+
+  // The count is reset by every call.
+  lines = outputLines(1, 10);
+  pipeline.push(lines);
+  CHECK(pipeline.take(taken) == 1);
+  CHECK(taken.empty());
+}
+
+NATIVE_TEST(pipelineConsumerWaitsForLines)
+{
+  OutputPipeline pipeline;
+  pipeline.setLimits(256 * 1024, 0);
+
+  std::thread producer([&pipeline] {
+    std::this_thread::sleep_for(20ms);
+    std::vector<OutputLine> lines = outputLines(3, 10);
+    pipeline.push(lines);
+  });
+
+  std::vector<OutputLine> taken;
+  CHECK(pipeline.take(taken) == 0);
+  CHECK(taken.size() == 3);
+  producer.join();
+}
+
+int main()
+{
+  return runNativeTests();
+}
@@ -0,0 +1,210 @@
+package net.hampoelz.capacitor.nodejs;
+
+import static org.junit.Assert.*;
+
+import com.getcapacitor.JSArray;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class ChannelStreamsTest {
+
+    /** Records the messages and chunks instead of sending them to the Node.js process. */
+    private static class RecordingTransport implements ChannelStreams.Transport {
+
+        private final List<String> messages = new ArrayList<>();
+        private final List<Integer> chunkSizes = new ArrayList<>();
+        private boolean failChunks = false;
+
+        @Override
+        public boolean sendMessage(String eventName, JSArray args) {
+            messages.add(eventName);
+            return true;
+        }
+
+        @Override
+        public boolean sendChunk(String streamId, ByteBuffer chunk) {
+            if (failChunks) return false;
+
+            chunkSizes.add(chunk.remaining());
+            return true;
+        }
+
+        private long sentBytes() {
+            long bytes = 0;
+            for (int size : chunkSizes) {
+                bytes += size;
+            }
+            return bytes;
+        }
+    }
+
+    private final RecordingTransport transport = new RecordingTransport();
+    private final ChannelStreams streams = new ChannelStreams(transport);
+
+    @Test
+    public void writeWithinTheWindowIsSentInChunks() {
+        final String streamId = streams.open("upload", new JSArray());
+        assertNotNull(streamId);
+        assertEquals("streamOpen", transport.messages.get(0));
+
+        final RecordingPluginCall call = new RecordingPluginCall();
+        streams.write(call, streamId, new byte[ChannelStreams.CHUNK_SIZE * 2 + 10]);
+
+        assertTrue(call.isResolved());
+        assertEquals(3, transport.chunkSizes.size());
+        assertEquals(ChannelStreams.CHUNK_SIZE, (int) transport.chunkSizes.get(0));
+        assertEquals(ChannelStreams.CHUNK_SIZE, (int) transport.chunkSizes.get(1));
+        assertEquals(10, (int) transport.chunkSizes.get(2));
+    }
+
+    @Test
+    public void writeLargerThanTheWindowWaitsForCredit() {
+        final String streamId = streams.open("upload", new JSArray());
+        final RecordingPluginCall call = new RecordingPluginCall();
+        final int length = ChannelStreams.WINDOW_SIZE + ChannelStreams.CHUNK_SIZE + 100;
+
+        streams.write(call, streamId, new byte[length]);
+
+        assertFalse(call.isCompleted());
+        assertEquals(ChannelStreams.WINDOW_SIZE, transport.sentBytes());
+        for (int size : transport.chunkSizes) {
+            assertTrue(size <= ChannelStreams.CHUNK_SIZE);
+        }
+
+        // A credit smaller than a chunk is used up by a smaller chunk.
+        streams.acknowledge(streamId, 100);
+        assertFalse(call.isCompleted());
+        assertEquals(ChannelStreams.WINDOW_SIZE + 100, transport.sentBytes());
+
+        streams.acknowledge(streamId, ChannelStreams.WINDOW_SIZE);
+        assertTrue(call.isResolved());
+        assertEquals(length, transport.sentBytes());
+    }
+
+    @Test
+    public void creditLeftOverIsUsedByTheNextWrite() {
+        final String streamId = streams.open("upload", new JSArray());
+
+        final RecordingPluginCall first = new RecordingPluginCall();
+        streams.write(first, streamId, new byte[ChannelStreams.WINDOW_SIZE - 10]);
+        assertTrue(first.isResolved());
+
+        final RecordingPluginCall second = new RecordingPluginCall();
+        streams.write(second, streamId, new byte[20]);
+        assertFalse(second.isCompleted());
+        assertEquals(ChannelStreams.WINDOW_SIZE, transport.sentBytes());
+
+        streams.acknowledge(streamId, ChannelStreams.WINDOW_SIZE - 10);
+        assertTrue(second.isResolved());
+        assertEquals(ChannelStreams.WINDOW_SIZE + 10, transport.sentBytes());
+    }
+
+    @Test
+    public void invalidAcknowledgementsDoNotGrantCredit() {
+        final String streamId = streams.open("upload", new JSArray());
+        final RecordingPluginCall call = new RecordingPluginCall();
+        streams.write(call, streamId, new byte[ChannelStreams.WINDOW_SIZE + 1]);
+
+        streams.acknowledge(streamId, 0);
+        streams.acknowledge(streamId, -ChannelStreams.WINDOW_SIZE);
+        streams.acknowledge("stream:unknown", ChannelStreams.WINDOW_SIZE);
+
+        assertFalse(call.isCompleted());
+        assertEquals(ChannelStreams.WINDOW_SIZE, transport.sentBytes());
+    }
+
+    @Test
+    public void secondWriteIsRejectedWhileOneIsPending() {
+        final String streamId = streams.open("upload", new JSArray());
+        final RecordingPluginCall first = new RecordingPluginCall();
+        streams.write(first, streamId, new byte[ChannelStreams.WINDOW_SIZE + 1]);
+
+        final RecordingPluginCall second = new RecordingPluginCall();
+        streams.write(second, streamId, new byte[1]);
+        assertTrue(second.isRejected());
+
+        final RecordingPluginCall end = new RecordingPluginCall();
+        streams.end(end, streamId);
+        assertTrue(end.isRejected());
+        assertFalse(first.isCompleted());
+    }
+
+    @Test
+    public void failedChunkAbortsTheStream() {
+        final String streamId = streams.open("upload", new JSArray());
+        transport.failChunks = true;
+
+        final RecordingPluginCall call = new RecordingPluginCall();
+        streams.write(call, streamId, new byte[10]);
+
+        assertTrue(call.isRejected());
+        assertEquals("CANCELLED", call.getRejectCode());
+        assertTrue(transport.messages.contains("streamAbort"));
+
+        final RecordingPluginCall next = new RecordingPluginCall();
+        streams.write(next, streamId, new byte[10]);
+        assertTrue(next.isRejected());
+    }
+
+    @Test
+    public void cancelRejectsThePendingWrite() {
+        final String streamId = streams.open("upload", new JSArray());
+        final RecordingPluginCall call = new RecordingPluginCall();
+        streams.write(call, streamId, new byte[ChannelStreams.WINDOW_SIZE + 1]);
+
+        streams.cancel(streamId, null);
+
+        assertTrue(call.isRejected());
+        assertEquals("CANCELLED", call.getRejectCode());
+        assertFalse(transport.messages.contains("streamAbort"));
+
+        // Credit for a closed stream is ignored.
+        streams.acknowledge(streamId, ChannelStreams.WINDOW_SIZE);
+        assertEquals(ChannelStreams.WINDOW_SIZE, transport.sentBytes());
+    }
+
+    @Test
+    public void abortRejectsThePendingWriteAndNotifiesTheReceiver() {
+        final String streamId = streams.open("upload", new JSArray());
+        final RecordingPluginCall call = new RecordingPluginCall();
+        streams.write(call, streamId, new byte[ChannelStreams.WINDOW_SIZE + 1]);
+
+        assertTrue(streams.abort(streamId, "reason"));
+        assertTrue(call.isRejected());
+        assertTrue(transport.messages.contains("streamAbort"));
+        assertFalse(streams.abort(streamId, "reason"));
+    }
+
+    @Test
+    public void closeAllRejectsPendingWritesAndReturnsIncomingStreams() {
+        final String streamId = streams.open("upload", new JSArray());
+        final RecordingPluginCall call = new RecordingPluginCall();
+        streams.write(call, streamId, new byte[ChannelStreams.WINDOW_SIZE + 1]);
+        streams.opened("stream:node:1");
+
+        final List<String> incoming = streams.closeAll("The Node.js process has stopped.");
+
+        assertTrue(call.isRejected());
+        assertEquals("The Node.js process has stopped.", call.getRejectMessage());
+        assertEquals(1, incoming.size());
+        assertEquals("stream:node:1", incoming.get(0));
+        assertFalse(streams.isOpen("stream:node:1"));
+        assertEquals(1, transport.messages.size());
+    }
+
+    @Test
+    public void endClosesTheStream() {
+        final String streamId = streams.open("upload", new JSArray());
+
+        final RecordingPluginCall end = new RecordingPluginCall();
+        streams.end(end, streamId);
+        assertTrue(end.isResolved());
+        assertTrue(transport.messages.contains("streamEnd"));
+
+        final RecordingPluginCall write = new RecordingPluginCall();
+        streams.write(write, streamId, new byte[1]);
+        assertTrue(write.isRejected());
+    }
+}
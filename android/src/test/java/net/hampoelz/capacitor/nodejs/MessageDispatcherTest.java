@@ -0,0 +1,107 @@
+package net.hampoelz.capacitor.nodejs;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class MessageDispatcherTest {
+
+    private final MessageDispatcher dispatcher = new MessageDispatcher();
+    private final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+
+    private Runnable deliver(String message) {
+        return () -> delivered.add(message);
+    }
+
+    private void awaitDeliveries() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        dispatcher.dispatch("done", done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void messagesAreDeliveredInOrder() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            dispatcher.dispatch("event", deliver("message" + i));
+        }
+        awaitDeliveries();
+
+        assertEquals(100, delivered.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("message" + i, delivered.get(i));
+        }
+        assertEquals(101, dispatcher.getStats().deliveredMessages);
+    }
+
+    @Test
+    public void coalescedEventsOnlyDeliverTheLatestPayload() throws Exception {
+        dispatcher.setCoalescedEvents(new String[] { "progress" });
+
+        final CountDownLatch blocked = new CountDownLatch(1);
+        dispatcher.dispatch("block", () -> awaitQuietly(blocked));
+        dispatcher.dispatch("progress", deliver("progress1"));
+        dispatcher.dispatch("event", deliver("event"));
+        dispatcher.dispatch("progress", deliver("progress2"));
+        blocked.countDown();
+        awaitDeliveries();
+
+        assertEquals(2, delivered.size());
+        assertEquals("progress2", delivered.get(0));
+        assertEquals("event", delivered.get(1));
+        assertEquals(1, dispatcher.getStats().coalescedMessages);
+    }
+
+    @Test
+    public void messagesAreDroppedOnceTheQueueStaysFull() throws Exception {
+        dispatcher.setCoalescedEvents(new String[] { "progress" });
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        dispatcher.dispatch("block", () -> {
+            started.countDown();
+            awaitQuietly(blocked);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < MessageDispatcher.MAX_PENDING_MESSAGES; i++) {
+            dispatcher.dispatch("event", deliver("message" + i));
+        }
+
+        // The queue is full, so the receiving thread waits for the timeout before the message is dropped.
+        final long start = System.nanoTime();
+        dispatcher.dispatch("progress", deliver("dropped"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= MessageDispatcher.FULL_QUEUE_TIMEOUT / 2);
+
+        MessageDispatcher.Stats stats = dispatcher.getStats();
+        assertEquals(1, stats.droppedMessages);
+        assertEquals(MessageDispatcher.MAX_PENDING_MESSAGES, stats.pendingMessages);
+
+        blocked.countDown();
+        awaitDeliveries();
+
+        // A later message of a coalesced event is not coalesced into the dropped one.
+        dispatcher.dispatch("progress", deliver("progress"));
+        awaitDeliveries();
+
+        assertFalse(delivered.contains("dropped"));
+        assertEquals("progress", delivered.get(delivered.size() - 1));
+        assertEquals(MessageDispatcher.MAX_PENDING_MESSAGES + 1, delivered.size());
+
+        stats = dispatcher.getStats();
+        assertEquals(1, stats.droppedMessages);
+        assertEquals(0, stats.pendingMessages);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
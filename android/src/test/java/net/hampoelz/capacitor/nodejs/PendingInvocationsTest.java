@@ -0,0 +1,122 @@
+package net.hampoelz.capacitor.nodejs;
+
+import static org.junit.Assert.*;
+
+import com.getcapacitor.PluginCall;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+public class PendingInvocationsTest {
+
+    @Test
+    public void removeReturnsTheCallOnce() {
+        final PendingInvocations invocations = new PendingInvocations((invokeId, call) -> fail("Unexpected timeout."));
+        final PluginCall call = new RecordingPluginCall();
+
+        invocations.add("1", call, 0);
+        assertEquals(1, invocations.size());
+
+        assertSame(call, invocations.remove("1"));
+        assertNull(invocations.remove("1"));
+        assertEquals(0, invocations.size());
+    }
+
+    @Test
+    public void expiredInvocationIsRemovedAndReported() throws Exception {
+        final CountDownLatch timedOut = new CountDownLatch(1);
+        final AtomicReference<String> timedOutId = new AtomicReference<>();
+        final AtomicReference<PluginCall> timedOutCall = new AtomicReference<>();
+        final PendingInvocations invocations = new PendingInvocations((invokeId, call) -> {
+            timedOutId.set(invokeId);
+            timedOutCall.set(call);
+            timedOut.countDown();
+        });
+        final PluginCall call = new RecordingPluginCall();
+
+        invocations.add("1", call, 20);
+
+        assertTrue(timedOut.await(5, TimeUnit.SECONDS));
+        assertEquals("1", timedOutId.get());
+        assertSame(call, timedOutCall.get());
+        assertEquals(0, invocations.size());
+        assertNull(invocations.remove("1"));
+    }
+
+    @Test
+    public void removedInvocationDoesNotTimeOut() throws Exception {
+        final CountDownLatch timedOut = new CountDownLatch(1);
+        final PendingInvocations invocations = new PendingInvocations((invokeId, call) -> timedOut.countDown());
+
+        invocations.add("1", new RecordingPluginCall(), 50);
+        assertNotNull(invocations.remove("1"));
+
+        assertFalse(timedOut.await(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void invocationWithTheIdOfARemovedOneKeepsItsOwnTimeout() throws Exception {
+        final CountDownLatch timedOut = new CountDownLatch(1);
+        final AtomicReference<PluginCall> timedOutCall = new AtomicReference<>();
+        final PendingInvocations invocations = new PendingInvocations((invokeId, call) -> {
+            timedOutCall.set(call);
+            timedOut.countDown();
+        });
+        final PluginCall first = new RecordingPluginCall();
+        final PluginCall second = new RecordingPluginCall();
+
+        invocations.add("1", first, 50);
+        invocations.remove("1");
+        invocations.add("1", second, 0);
+
+        assertFalse(timedOut.await(200, TimeUnit.MILLISECONDS));
+        assertSame(second, invocations.remove("1"));
+        assertNull(timedOutCall.get());
+    }
+
+    @Test
+    public void removeAllReturnsAllCallsAndCancelsTheirTimeouts() throws Exception {
+        final CountDownLatch timedOut = new CountDownLatch(1);
+        final PendingInvocations invocations = new PendingInvocations((invokeId, call) -> timedOut.countDown());
+        final PluginCall first = new RecordingPluginCall();
+        final PluginCall second = new RecordingPluginCall();
+
+        invocations.add("1", first, 50);
+        invocations.add("2", second, 0);
+
+        final List<PluginCall> calls = invocations.removeAll();
+        assertEquals(2, calls.size());
+        assertTrue(calls.contains(first));
+        assertTrue(calls.contains(second));
+        assertEquals(0, invocations.size());
+
+        assertFalse(timedOut.await(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void duplicateIdIsRejected() {
+        final PendingInvocations invocations = new PendingInvocations((invokeId, call) -> {});
+        final PluginCall call = new RecordingPluginCall();
+
+        invocations.add("1", call, 0);
+        assertThrows(IllegalStateException.class, () -> invocations.add("1", new RecordingPluginCall(), 0));
+        assertSame(call, invocations.remove("1"));
+    }
+
+    @Test
+    public void numberOfPendingInvocationsIsBounded() {
+        final PendingInvocations invocations = new PendingInvocations((invokeId, call) -> {});
+        invocations.setMaxPendingInvocations(2);
+
+        invocations.add("1", new RecordingPluginCall(), 0);
+        invocations.add("2", new RecordingPluginCall(), 0);
+        assertThrows(IllegalStateException.class, () -> invocations.add("3", new RecordingPluginCall(), 0));
+        assertEquals(2, invocations.size());
+
+        invocations.remove("1");
+        invocations.add("3", new RecordingPluginCall(), 0);
+        assertEquals(2, invocations.size());
+    }
+}
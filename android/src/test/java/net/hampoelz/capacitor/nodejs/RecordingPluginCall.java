@@ -0,0 +1,69 @@
+package net.hampoelz.capacitor.nodejs;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A plugin call without a bridge, which records how it was completed.
+ */
+class RecordingPluginCall extends PluginCall {
+
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private volatile boolean resolved;
+    private volatile JSObject resolvedData;
+    private volatile String rejectMessage;
+    private volatile String rejectCode;
+
+    RecordingPluginCall() {
+        super(null, "CapacitorNodeJS", "test", "test", new JSObject());
+    }
+
+    @Override
+    public void resolve(JSObject data) {
+        resolved = true;
+        resolvedData = data;
+        completed.countDown();
+    }
+
+    @Override
+    public void resolve() {
+        resolve(null);
+    }
+
+    @Override
+    public void reject(String msg, String code, Exception ex, JSObject data) {
+        rejectMessage = msg;
+        rejectCode = code;
+        completed.countDown();
+    }
+
+    boolean isCompleted() {
+        return completed.getCount() == 0;
+    }
+
+    boolean awaitCompletion(long timeout) throws InterruptedException {
+        return completed.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    boolean isResolved() {
+        return resolved;
+    }
+
+    boolean isRejected() {
+        return rejectMessage != null;
+    }
+
+    JSObject getResolvedData() {
+        return resolvedData;
+    }
+
+    String getRejectMessage() {
+        return rejectMessage;
+    }
+
+    String getRejectCode() {
+        return rejectCode;
+    }
+}
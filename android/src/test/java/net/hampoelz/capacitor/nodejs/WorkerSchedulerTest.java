@@ -0,0 +1,162 @@
+package net.hampoelz.capacitor.nodejs;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class WorkerSchedulerTest {
+
+    private final Map<String, Long> queuedMessages = new HashMap<>();
+    private final WorkerScheduler scheduler = new WorkerScheduler(channelName -> {
+        final Long count = queuedMessages.get(channelName);
+        return count != null ? count : 0;
+    });
+
+    private int[] selectWorkers(int count) {
+        final int[] workerIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            workerIds[i] = scheduler.selectWorker("APP_CHANNEL", "compute");
+        }
+        return workerIds;
+    }
+
+    @Test
+    public void eventsAreHandledByTheMainThreadWithoutWorkers() {
+        scheduler.setOptions(0, WorkerScheduler.SCHEDULING_ROUND_ROBIN, new String[] { "compute" });
+
+        assertEquals(0, scheduler.selectWorker("APP_CHANNEL", "compute"));
+    }
+
+    @Test
+    public void otherEventsAreHandledByTheMainThread() {
+        scheduler.setOptions(2, WorkerScheduler.SCHEDULING_ROUND_ROBIN, new String[] { "compute" });
+        scheduler.setReady(1);
+        scheduler.setReady(2);
+
+        assertEquals(0, scheduler.selectWorker("APP_CHANNEL", "render"));
+    }
+
+    @Test
+    public void roundRobinCyclesThroughTheReadyWorkers() {
+        scheduler.setOptions(3, WorkerScheduler.SCHEDULING_ROUND_ROBIN, new String[] { "compute" });
+        scheduler.setReady(1);
+        scheduler.setReady(2);
+        scheduler.setReady(3);
+
+        assertArrayEquals(new int[] { 1, 2, 3, 1, 2, 3 }, selectWorkers(6));
+    }
+
+    @Test
+    public void messagesAreRoutedToStartingWorkersUntilOneIsReady() {
+        scheduler.setOptions(2, WorkerScheduler.SCHEDULING_ROUND_ROBIN, new String[] { "compute" });
+
+        assertArrayEquals(new int[] { 1, 2, 1, 2 }, selectWorkers(4));
+
+        scheduler.setReady(2);
+        assertArrayEquals(new int[] { 2, 2, 2 }, selectWorkers(3));
+    }
+
+    @Test
+    public void exitedWorkersAreSkipped() {
+        scheduler.setOptions(3, WorkerScheduler.SCHEDULING_ROUND_ROBIN, new String[] { "compute" });
+        scheduler.setReady(1);
+        scheduler.setReady(2);
+        scheduler.setReady(3);
+        scheduler.setExited(2);
+
+        assertTrue(scheduler.hasExited(2));
+        for (int workerId : selectWorkers(6)) {
+            assertNotEquals(2, workerId);
+            assertNotEquals(0, workerId);
+        }
+    }
+
+    @Test
+    public void startingWorkersAreUsedOnceTheReadyOnesHaveExited() {
+        scheduler.setOptions(2, WorkerScheduler.SCHEDULING_ROUND_ROBIN, new String[] { "compute" });
+        scheduler.setReady(1);
+        scheduler.setExited(1);
+
+        assertArrayEquals(new int[] { 2, 2 }, selectWorkers(2));
+    }
+
+    @Test
+    public void mainThreadHandlesTheEventsOnceAllWorkersHaveExited() {
+        scheduler.setOptions(2, WorkerScheduler.SCHEDULING_LEAST_LOADED, new String[] { "compute" });
+        scheduler.setReady(1);
+        scheduler.setExited(1);
+        scheduler.setExited(2);
+
+        assertArrayEquals(new int[] { 0, 0, 0 }, selectWorkers(3));
+    }
+
+    @Test
+    public void resetMarksAllWorkersAsStarting() {
+        scheduler.setOptions(2, WorkerScheduler.SCHEDULING_ROUND_ROBIN, new String[] { "compute" });
+        scheduler.setExited(1);
+        scheduler.setExited(2);
+
+        scheduler.reset();
+
+        assertFalse(scheduler.hasExited(1));
+        assertFalse(scheduler.hasExited(2));
+        assertArrayEquals(new int[] { 1, 2 }, selectWorkers(2));
+    }
+
+    @Test
+    public void leastLoadedSelectsTheWorkerWithTheFewestQueuedMessages() {
+        scheduler.setOptions(3, WorkerScheduler.SCHEDULING_LEAST_LOADED, new String[] { "compute" });
+        scheduler.setReady(1);
+        scheduler.setReady(2);
+        scheduler.setReady(3);
+        queuedMessages.put("APP_CHANNEL@1", 10L);
+        queuedMessages.put("APP_CHANNEL@2", 2L);
+        queuedMessages.put("APP_CHANNEL@3", 5L);
+
+        assertArrayEquals(new int[] { 2, 2, 2 }, selectWorkers(3));
+
+        // A busy worker that does not take messages from its queue is routed around.
+        queuedMessages.put("APP_CHANNEL@2", 20L);
+        assertEquals(3, scheduler.selectWorker("APP_CHANNEL", "compute"));
+    }
+
+    @Test
+    public void leastLoadedIgnoresExitedWorkers() {
+        scheduler.setOptions(2, WorkerScheduler.SCHEDULING_LEAST_LOADED, new String[] { "compute" });
+        scheduler.setReady(1);
+        scheduler.setReady(2);
+        scheduler.setExited(1);
+        queuedMessages.put("APP_CHANNEL@2", 100L);
+
+        assertArrayEquals(new int[] { 2, 2 }, selectWorkers(2));
+    }
+
+    @Test
+    public void unknownWorkerIdsAreIgnored() {
+        scheduler.setOptions(2, WorkerScheduler.SCHEDULING_ROUND_ROBIN, new String[] { "compute" });
+        scheduler.setReady(0);
+        scheduler.setExited(3);
+
+        assertFalse(scheduler.isWorker(0));
+        assertTrue(scheduler.isWorker(2));
+        assertFalse(scheduler.isWorker(3));
+        assertFalse(scheduler.hasExited(3));
+    }
+
+    @Test
+    public void channelNamesContainTheWorkerId() {
+        assertEquals("APP_CHANNEL", WorkerScheduler.getChannelName("APP_CHANNEL", 0));
+        assertEquals("APP_CHANNEL@2", WorkerScheduler.getChannelName("APP_CHANNEL", 2));
+
+        assertEquals(2, WorkerScheduler.getWorkerId("APP_CHANNEL@2"));
+        assertEquals(0, WorkerScheduler.getWorkerId("APP_CHANNEL"));
+        assertEquals(0, WorkerScheduler.getWorkerId("user@name"));
+        assertEquals(3, WorkerScheduler.getWorkerId("user@name@3"));
+
+        assertEquals("APP_CHANNEL", WorkerScheduler.getBaseChannelName("APP_CHANNEL@2"));
+        assertEquals("APP_CHANNEL", WorkerScheduler.getBaseChannelName("APP_CHANNEL"));
+        assertEquals("user@name", WorkerScheduler.getBaseChannelName("user@name@3"));
+    }
+}
@@ -43,6 +43,15 @@ function generateOutputConfig() {
   return outputConfig;
 }
 
+// Preloaded scripts are loaded via `--require`, which only loads CommonJS modules.
+function generatePreloadOutputConfig(preloadName) {
+  return destinations.map((destination) => ({
+    file: join(destination, 'dist', `${preloadName}.cjs`),
+    format: 'cjs',
+    sourcemap: 'inline',
+  }));
+}
+
 function generateCopyTargets() {
   const targets = [];
 
@@ -67,9 +76,19 @@ export default [
   {
     input: 'bridge/build/bridge/src/index.js',
     output: generateOutputConfig(),
-    external: ['events', 'process'],
+    external: ['events', 'process', 'stream', 'worker_threads'],
     plugins: [copy({ targets: generateCopyTargets() })],
   },
+  {
+    input: 'bridge/build/bridge/src/code-cache.js',
+    output: generatePreloadOutputConfig('code-cache'),
+    external: ['crypto', 'fs', 'fs/promises', 'module', 'path', 'process', 'vm'],
+  },
+  {
+    input: 'bridge/build/bridge/src/deferred-extraction.js',
+    output: generatePreloadOutputConfig('deferred-extraction'),
+    external: ['module', 'path', 'process'],
+  },
   {
     input: 'bridge/build/bridge/src/index.d.ts',
     output: [
@@ -78,7 +97,7 @@ export default [
         format: 'esm',
       },
     ],
-    external: ['events'],
+    external: ['events', 'stream'],
     plugins: [
       dts(),
       copy({
@@ -1,8 +1,23 @@
 import { EventEmitter } from 'events';
 import process from 'process';
+import { Readable, Writable } from 'stream';
+import { getHeapStatistics } from 'v8';
+import { Worker, isMainThread, workerData } from 'worker_threads';
 
-import type { NativeBridge, NativeBridgePayloadData, NativeBridgeCallback, Platform } from './definitions';
-import { ChannelMessageCodec } from './utils';
+import type {
+  BridgeStats,
+  NativeBridge,
+  NativeBridgePayloadData,
+  NativeBridgeBinaryPayloadData,
+  NativeBridgeEncodedBinaryPayloadData,
+  NativeBridgeCallback,
+  NativeBridgeBinaryCallback,
+  NativeBridgeChannelStats,
+  NativeBridgeSharedMemory,
+  Platform,
+  SharedMemorySlotHandle,
+} from './definitions';
+import { ChannelMessageCodec, ChannelStatsCounter, ChannelStreamLimits } from './utils';
 
 class NativeMobileBridge implements NativeBridge {
   private mobileBridge = (process as any)._linkedBinding('nativeBridge');
@@ -11,10 +26,42 @@ class NativeMobileBridge implements NativeBridge {
     this.mobileBridge.emit(args.channelName, args.channelMessage);
   }
 
-  registerChannel(channelName: string, callback: NativeBridgeCallback): void {
-    this.mobileBridge.registerChannel(channelName, (channelName: string, channelMessage: string) => {
-      callback({ channelName, channelMessage });
-    });
+  emitBinary(args: NativeBridgeBinaryPayloadData): void {
+    this.mobileBridge.emitBinary(args.channelName, args.eventName, args.data);
+  }
+
+  registerChannel(channelName: string, callback: NativeBridgeCallback, binaryCallback: NativeBridgeBinaryCallback): void {
+    this.mobileBridge.registerChannel(
+      channelName,
+      (channelName: string, channelMessage: string, channelData?: ArrayBuffer) => {
+        if (channelData === undefined) {
+          callback({ channelName, channelMessage });
+        } else {
+          // Binary messages are delivered as the event name followed by the payload.
+          binaryCallback({ channelName, eventName: channelMessage, data: new Uint8Array(channelData) });
+        }
+      },
+    );
+  }
+
+  setChannelPriority(channelName: string, priority: number): void {
+    this.mobileBridge.setChannelPriority(channelName, priority);
+  }
+
+  getChannelStats(channelName: string): NativeBridgeChannelStats | undefined {
+    return this.mobileBridge.getChannelStats(channelName);
+  }
+
+  getSharedMemory(): NativeBridgeSharedMemory | undefined {
+    return this.mobileBridge.getSharedMemory();
+  }
+
+  acquireSharedMemorySlot(): number {
+    return this.mobileBridge.acquireSharedMemorySlot();
+  }
+
+  releaseSharedMemorySlot(slot: number): boolean {
+    return this.mobileBridge.releaseSharedMemorySlot(slot);
   }
 }
 
@@ -27,13 +74,55 @@ class NativeDesktopBridge implements NativeBridge {
     process.send(args);
   }
 
-  registerChannel(channelName: string, callback: NativeBridgeCallback): void {
-    process.on('message', (args: NativeBridgePayloadData) => {
-      if (args.channelName === channelName) {
+  emitBinary(args: NativeBridgeBinaryPayloadData): void {
+    if (!process.send) {
+      throw new Error('No IPC channel has been established between the Node.js process and the Capacitor layer.');
+    }
+
+    const binaryMessage = Buffer.from(args.data.buffer, args.data.byteOffset, args.data.byteLength).toString('base64');
+    const encodedArgs: NativeBridgeEncodedBinaryPayloadData = {
+      channelName: args.channelName,
+      eventName: args.eventName,
+      binaryMessage,
+    };
+
+    process.send(encodedArgs);
+  }
+
+  registerChannel(channelName: string, callback: NativeBridgeCallback, binaryCallback: NativeBridgeBinaryCallback): void {
+    process.on('message', (args: NativeBridgePayloadData | NativeBridgeEncodedBinaryPayloadData) => {
+      if (args.channelName !== channelName) return;
+
+      if ('binaryMessage' in args) {
+        const data = new Uint8Array(Buffer.from(args.binaryMessage, 'base64'));
+        binaryCallback({ channelName, eventName: args.eventName, data });
+      } else {
         callback(args);
       }
     });
   }
+
+  setChannelPriority(): void {
+    // Messages are delivered by the IPC channel of the child process in the order they have been sent.
+  }
+
+  getChannelStats(): NativeBridgeChannelStats | undefined {
+    // Messages are delivered by the IPC channel of the child process, without a queue of the bridge.
+    return undefined;
+  }
+
+  getSharedMemory(): NativeBridgeSharedMemory | undefined {
+    // The Node.js process does not share the memory of the Capacitor layer.
+    return undefined;
+  }
+
+  acquireSharedMemorySlot(): number {
+    return -1;
+  }
+
+  releaseSharedMemorySlot(): boolean {
+    return false;
+  }
 }
 
 const platform = process.platform as Platform;
@@ -41,19 +130,63 @@ const isMobilePlatform = platform === 'android' || platform === 'ios';
 
 const nativeBridge: NativeBridge = isMobilePlatform ? new NativeMobileBridge() : new NativeDesktopBridge();
 
+// Key of the worker id in the data of the worker threads started by the bridge.
+const WORKER_ID_KEY = 'capacitorNodeJSWorkerId';
+
+// The id of this thread if it is a worker started by the bridge, the main thread has no worker id.
+const workerId: number | undefined = isMainThread ? undefined : workerData?.[WORKER_ID_KEY];
+
+/**
+ * Returns the name of a channel of this thread, the channels of worker threads are suffixed with their id.
+ */
+function withWorkerId(channelName: string): string {
+  return workerId === undefined ? channelName : `${channelName}@${workerId}`;
+}
+
+// The protocol used to encode messages to the Capacitor layer, as negotiated during the `ready` handshake.
+let channelProtocol = 1;
+
+const channelStats = new ChannelStatsCounter();
+
+// Names of the events the Capacitor layer listens to, or null as long as they are unknown.
+let subscribedEvents: Set<string> | null = null;
+
+/**
+ * A function registered via `channel.handle(...)`, whose return value is the result of the invocation.
+ */
+type InvokeHandler = (...args: any[]) => any;
+
+/**
+ * A function registered via `channel.handleStream(...)`, which is called with each stream opened by the Capacitor layer.
+ */
+type StreamHandler = (stream: Readable, ...args: any[]) => void;
+
 class Channel extends EventEmitter {
   private channelName: string;
+  private skipsUnsubscribedEvents: boolean;
+  private handlers = new Map<string, InvokeHandler>();
+  private streamHandlers = new Map<string, StreamHandler>();
 
-  constructor(channelName: string) {
+  constructor(channelName: string, skipsUnsubscribedEvents = false) {
     super();
     this.channelName = channelName;
+    this.skipsUnsubscribedEvents = skipsUnsubscribedEvents;
 
     const self = this;
-    nativeBridge.registerChannel(channelName, (args) => {
-      const channelMessage = args.channelMessage;
-      const payload = ChannelMessageCodec.deserialize(channelMessage);
-      self.emitWrapper(payload.eventName, ...payload.args);
-    });
+    nativeBridge.registerChannel(
+      channelName,
+      (args) => {
+        const channelMessage = args.channelMessage;
+        const payload = ChannelMessageCodec.deserialize(channelMessage);
+        channelStats.recordReceived(channelName, payload.eventName, channelMessage.length);
+        self.emitWrapper(payload.eventName, ...payload.args);
+      },
+      (args) => {
+        const data = Buffer.from(args.data.buffer, args.data.byteOffset, args.data.byteLength);
+        channelStats.recordReceived(channelName, args.eventName, data.byteLength);
+        self.emitWrapper(args.eventName, data);
+      },
+    );
   }
 
   /**
@@ -68,10 +201,13 @@ class Channel extends EventEmitter {
       throw new Error("Required parameter 'eventName' was not specified");
     }
 
+    // Nobody would receive the message, so it is not even serialized.
+    if (!this.isSubscribed(eventName)) return;
+
     const payload = { eventName, args };
 
     const channelName = this.channelName;
-    const channelMessage = ChannelMessageCodec.serialize(payload);
+    const channelMessage = ChannelMessageCodec.serialize(payload, channelProtocol);
 
     const channelPayload = {
       channelName,
@@ -79,6 +215,155 @@ class Channel extends EventEmitter {
     };
 
     nativeBridge.emit(channelPayload);
+    channelStats.recordSent(channelName, eventName, channelMessage.length);
+  }
+
+  /**
+   * Sends raw bytes to the Capacitor layer via eventName.
+   * On mobile platforms the data is passed to the native layer without being serialized.
+   *
+   * @param eventName The name of the event being send to.
+   * @param data The bytes to send.
+   */
+  sendBinary(eventName: string, data: ArrayBuffer | ArrayBufferView) {
+    if (eventName === undefined || eventName === '') {
+      throw new Error("Required parameter 'eventName' was not specified");
+    }
+
+    if (!this.isSubscribed(eventName)) return;
+
+    const bytes = ArrayBuffer.isView(data)
+      ? new Uint8Array(data.buffer, data.byteOffset, data.byteLength)
+      : new Uint8Array(data);
+
+    const channelPayload = {
+      channelName: this.channelName,
+      eventName,
+      data: bytes,
+    };
+
+    nativeBridge.emitBinary(channelPayload);
+    channelStats.recordSent(this.channelName, eventName, bytes.byteLength);
+  }
+
+  /**
+   * Returns whether the Capacitor layer listens to `eventName`. Messages of events without listeners are skipped
+   * by `send(...)` and `sendBinary(...)`, so expensive payloads only need to be built for subscribed events.
+   * As long as the listeners are unknown, such as on Electron, every event is subscribed.
+   *
+   * @param eventName The name of the event.
+   */
+  isSubscribed(eventName: string): boolean {
+    return !this.skipsUnsubscribedEvents || subscribedEvents === null || subscribedEvents.has(eventName);
+  }
+
+  /**
+   * Handles invocations of `eventName` by `NodeJS.invoke(...)` of the Capacitor layer.
+   * The value returned by `handler(args...)`, or the value its returned promise resolves with, is the result
+   * of the invocation. An error thrown by the handler rejects the invocation.
+   *
+   * Only one handler can be registered per event. Invocations are only handled by the default channel of the main
+   * thread, other channels throw an error.
+   *
+   * @param eventName The name of the event being handled.
+   * @param handler The function invoked with the received arguments.
+   */
+  handle(eventName: string, handler: InvokeHandler) {
+    if (eventName === undefined || eventName === '') {
+      throw new Error("Required parameter 'eventName' was not specified");
+    }
+
+    // The Capacitor layer sends all invocations to the main thread, which looks up the handlers of its default channel.
+    if (this !== eventChannel || workerId !== undefined) {
+      throw new Error('Invocations are only handled by the default channel of the main thread');
+    }
+
+    if (this.handlers.has(eventName)) {
+      throw new Error(`A handler for the event '${eventName}' has already been registered`);
+    }
+
+    this.handlers.set(eventName, handler);
+  }
+
+  /**
+   * Removes the handler of `eventName` registered via `channel.handle(...)`.
+   *
+   * @param eventName The name of the event the handler will be removed from.
+   */
+  removeHandler(eventName: string) {
+    this.handlers.delete(eventName);
+  }
+
+  getHandler(eventName: string): InvokeHandler | undefined {
+    return this.handlers.get(eventName);
+  }
+
+  /**
+   * Opens a stream of bytes to the Capacitor layer via `eventName`, along with arguments.
+   * The data is sent in chunks and the stream only accepts more data once the Capacitor layer has consumed
+   * the previous chunks, so that large payloads can be sent with bounded memory.
+   *
+   * Streams can only be opened by the main thread, workers throw an error.
+   *
+   * @param eventName The name of the event being send to.
+   * @param args The Array of arguments to send when opening the stream.
+   */
+  createWriteStream(eventName: string, ...args: any[]): Writable {
+    if (eventName === undefined || eventName === '') {
+      throw new Error("Required parameter 'eventName' was not specified");
+    }
+
+    // The Capacitor layer only receives streams on the app channel of the main thread.
+    if (workerId !== undefined) {
+      throw new Error('Streams can only be opened by the main thread');
+    }
+
+    const streamId = `stream:node:${++streamCount}`;
+    const stream = new ChannelWriteStream(streamId);
+    outgoingStreams.set(streamId, stream);
+
+    appChannel.send('streamOpen', streamId, eventName, args);
+    return stream;
+  }
+
+  /**
+   * Handles streams opened by the Capacitor layer via `eventName`.
+   * `handler(stream, args...)` is called with a `Readable` of the received bytes for each opened stream.
+   *
+   * Only one stream handler can be registered per event. Streams are only handled by the default channel of the
+   * main thread, other channels throw an error.
+   *
+   * @param eventName The name of the event being handled.
+   * @param handler The function called with each opened stream.
+   */
+  handleStream(eventName: string, handler: StreamHandler) {
+    if (eventName === undefined || eventName === '') {
+      throw new Error("Required parameter 'eventName' was not specified");
+    }
+
+    // The Capacitor layer opens all streams on the main thread, which looks up the handlers of its default channel.
+    if (this !== eventChannel || workerId !== undefined) {
+      throw new Error('Streams are only handled by the default channel of the main thread');
+    }
+
+    if (this.streamHandlers.has(eventName)) {
+      throw new Error(`A stream handler for the event '${eventName}' has already been registered`);
+    }
+
+    this.streamHandlers.set(eventName, handler);
+  }
+
+  /**
+   * Removes the stream handler of `eventName` registered via `channel.handleStream(...)`.
+   *
+   * @param eventName The name of the event the stream handler will be removed from.
+   */
+  removeStreamHandler(eventName: string) {
+    this.streamHandlers.delete(eventName);
+  }
+
+  getStreamHandler(eventName: string): StreamHandler | undefined {
+    return this.streamHandlers.get(eventName);
   }
 
   emitWrapper(eventName: string, ...args: any[]) {
@@ -127,13 +412,277 @@ class Channel extends EventEmitter {
   }
 }
 
-const appChannel = new Channel('APP_CHANNEL');
+const appChannel = new Channel(withWorkerId('APP_CHANNEL'));
+
+appChannel.on('protocol', (protocol: number) => {
+  channelProtocol = ChannelMessageCodec.negotiate([protocol]);
+});
+
+// Sent by the Capacitor layer whenever listeners are added or removed.
+appChannel.on('subscriptions', (eventNames: string[]) => {
+  subscribedEvents = new Set(eventNames);
+});
 
 /**
  * Provides a few methods to send messages from the Node.js process to the Capacitor layer,
  * and to receive replies from the Capacitor layer.
  */
-const eventChannel = new Channel('EVENT_CHANNEL');
+const eventChannel = new Channel(withWorkerId('EVENT_CHANNEL'), true);
+
+// Channels created via `createChannel(...)` by their name.
+const userChannels = new Map<string, Channel>();
+
+/**
+ * Options of a channel created via `createChannel(...)`.
+ */
+interface ChannelOptions {
+  /**
+   * Pending messages of channels with a higher priority are delivered to the Node.js process first, so that
+   * latency-sensitive messages are not stuck behind bulk data. The default channel has priority `0`.
+   * Only available on Android.
+   */
+  priority?: number;
+}
+
+/**
+ * Returns the channel `name`, which is created on the first call. Its messages are delivered to the same listeners of
+ * the Capacitor layer as the messages of the default channel, but are queued separately. The Capacitor layer sends
+ * messages via the channel with the `channel` option of `send(...)`.
+ *
+ * @param name The name of the channel, which must not contain `@`.
+ * @param options The priority of the channel, which also applies to the channels of the same name of the workers.
+ */
+function createChannel(name: string, options?: ChannelOptions): Channel {
+  if (name === undefined || name === '' || name.includes('@')) {
+    throw new Error(`The channel name '${name}' is not valid`);
+  }
+
+  // The Capacitor layer routes messages of channels named like this to the listeners of their event.
+  const channelName = `EVENT_CHANNEL:${name}`;
+
+  if (options?.priority !== undefined) {
+    if (!Number.isInteger(options.priority)) {
+      throw new Error('The priority of a channel must be an integer');
+    }
+    nativeBridge.setChannelPriority(channelName, options.priority);
+  }
+
+  let channel = userChannels.get(name);
+  if (channel === undefined) {
+    channel = new Channel(withWorkerId(channelName), true);
+    userChannels.set(name, channel);
+  }
+  return channel;
+}
+
+// Ids of the invocations whose result is still awaited by the Capacitor layer.
+const activeInvocations = new Set<string>();
+
+appChannel.on('invoke', async (invokeId: string, eventName: string, args?: any[]) => {
+  activeInvocations.add(invokeId);
+
+  let error: unknown = undefined;
+  let result: any = null;
+  try {
+    const handler = eventChannel.getHandler(eventName);
+    if (handler === undefined) {
+      throw new Error(`No handler registered for event '${eventName}'`);
+    }
+
+    result = (await handler(...(args ?? []))) ?? null;
+  } catch (e) {
+    error = e ?? new Error(`The handler of event '${eventName}' failed`);
+  }
+
+  // The invocation has timed out or been cancelled in the meantime, nobody waits for the result anymore.
+  if (!activeInvocations.delete(invokeId)) return;
+
+  if (error !== undefined) {
+    const { name, message } = error instanceof Error ? error : { name: 'Error', message: String(error) };
+    appChannel.send('invokeResult', invokeId, { name, message }, null);
+  } else {
+    appChannel.send('invokeResult', invokeId, null, result);
+  }
+});
+
+appChannel.on('cancelInvoke', (invokeId: string) => {
+  activeInvocations.delete(invokeId);
+});
+
+// The Capacitor layer requests the heap statistics of the main thread by a correlation id.
+appChannel.on('getHeapStatistics', (requestId: string) => {
+  const stats = getHeapStatistics();
+  appChannel.send('heapStatistics', requestId, {
+    totalHeapSize: stats.total_heap_size,
+    totalHeapSizeExecutable: stats.total_heap_size_executable,
+    totalPhysicalSize: stats.total_physical_size,
+    totalAvailableSize: stats.total_available_size,
+    usedHeapSize: stats.used_heap_size,
+    heapSizeLimit: stats.heap_size_limit,
+    mallocedMemory: stats.malloced_memory,
+    peakMallocedMemory: stats.peak_malloced_memory,
+    externalMemory: stats.external_memory,
+    numberOfNativeContexts: stats.number_of_native_contexts,
+    numberOfDetachedContexts: stats.number_of_detached_contexts,
+  });
+});
+
+let streamCount = 0;
+
+// Streams are closed by removing them from these maps, so that they are only closed once.
+const incomingStreams = new Map<string, ChannelReadStream>();
+const outgoingStreams = new Map<string, ChannelWriteStream>();
+
+/**
+ * A stream of bytes opened by the Capacitor layer. Consumed chunks are acknowledged,
+ * which allows the Capacitor layer to send more.
+ */
+class ChannelReadStream extends Readable {
+  private streamId: string;
+  private unacknowledgedBytes = 0;
+
+  constructor(streamId: string) {
+    super({ highWaterMark: ChannelStreamLimits.WINDOW_SIZE });
+    this.streamId = streamId;
+  }
+
+  receive(chunk: Buffer) {
+    this.unacknowledgedBytes += chunk.byteLength;
+    this.push(chunk);
+  }
+
+  override _read() {
+    // Called whenever the buffer of the stream has room again.
+    if (this.unacknowledgedBytes === 0) return;
+
+    appChannel.send('streamAck', this.streamId, this.unacknowledgedBytes);
+    this.unacknowledgedBytes = 0;
+  }
+
+  override _destroy(error: Error | null, callback: (error?: Error | null) => void) {
+    appChannel.removeAllListeners(this.streamId);
+
+    // The stream is still open if it has been destroyed by its consumer.
+    if (incomingStreams.delete(this.streamId)) {
+      appChannel.send('streamCancel', this.streamId, error?.message ?? 'The stream has been destroyed');
+    }
+
+    callback(error);
+  }
+}
+
+/**
+ * A stream of bytes to the Capacitor layer, which only sends as much data as the Capacitor layer has granted credit for.
+ */
+class ChannelWriteStream extends Writable {
+  private streamId: string;
+  private credit = ChannelStreamLimits.WINDOW_SIZE;
+  private waitingForCredit?: () => void;
+
+  constructor(streamId: string) {
+    super({ highWaterMark: ChannelStreamLimits.CHUNK_SIZE });
+    this.streamId = streamId;
+  }
+
+  acknowledge(bytes: number) {
+    this.credit += bytes;
+
+    const waitingForCredit = this.waitingForCredit;
+    this.waitingForCredit = undefined;
+    waitingForCredit?.();
+  }
+
+  override _write(chunk: Buffer, _encoding: BufferEncoding, callback: (error?: Error | null) => void) {
+    this.writeChunks(chunk, 0, callback);
+  }
+
+  override _final(callback: (error?: Error | null) => void) {
+    if (outgoingStreams.delete(this.streamId)) {
+      appChannel.send('streamEnd', this.streamId);
+    }
+    callback();
+  }
+
+  override _destroy(error: Error | null, callback: (error?: Error | null) => void) {
+    this.waitingForCredit = undefined;
+
+    // The stream is still open if it has been destroyed before being ended.
+    if (outgoingStreams.delete(this.streamId)) {
+      appChannel.send('streamAbort', this.streamId, error?.message ?? 'The stream has been destroyed');
+    }
+
+    callback(error);
+  }
+
+  private writeChunks(chunk: Buffer, offset: number, callback: (error?: Error | null) => void) {
+    while (offset < chunk.byteLength) {
+      if (this.credit <= 0) {
+        this.waitingForCredit = () => this.writeChunks(chunk, offset, callback);
+        return;
+      }
+
+      const length = Math.min(ChannelStreamLimits.CHUNK_SIZE, this.credit, chunk.byteLength - offset);
+      try {
+        appChannel.sendBinary(this.streamId, chunk.subarray(offset, offset + length));
+      } catch (error) {
+        callback(error as Error);
+        return;
+      }
+
+      offset += length;
+      this.credit -= length;
+    }
+
+    callback();
+  }
+}
+
+appChannel.on('streamOpen', (streamId: string, eventName: string, args?: any[]) => {
+  const handler = eventChannel.getStreamHandler(eventName);
+  if (handler === undefined) {
+    appChannel.send('streamCancel', streamId, `No stream handler registered for event '${eventName}'`);
+    return;
+  }
+
+  const stream = new ChannelReadStream(streamId);
+  incomingStreams.set(streamId, stream);
+  appChannel.on(streamId, (chunk: Buffer) => stream.receive(chunk));
+
+  try {
+    handler(stream, ...(args ?? []));
+  } catch (error) {
+    stream.destroy(error as Error);
+  }
+});
+
+appChannel.on('streamEnd', (streamId: string) => {
+  const stream = incomingStreams.get(streamId);
+  if (stream === undefined) return;
+
+  incomingStreams.delete(streamId);
+  appChannel.removeAllListeners(streamId);
+  stream.push(null);
+});
+
+appChannel.on('streamAbort', (streamId: string, message?: string) => {
+  const stream = incomingStreams.get(streamId);
+  if (stream === undefined) return;
+
+  incomingStreams.delete(streamId);
+  stream.destroy(new Error(message ?? 'The stream has been aborted by the Capacitor layer'));
+});
+
+appChannel.on('streamAck', (streamId: string, bytes: number) => {
+  outgoingStreams.get(streamId)?.acknowledge(bytes);
+});
+
+appChannel.on('streamCancel', (streamId: string, message?: string) => {
+  const stream = outgoingStreams.get(streamId);
+  if (stream === undefined) return;
+
+  outgoingStreams.delete(streamId);
+  stream.destroy(new Error(message ?? 'The stream has been cancelled by the Capacitor layer'));
+});
 
 /**
  * Emitted when the application gains focus.
@@ -149,6 +698,84 @@ function onPause(listener: () => void): void {
   appChannel.on('pause', listener);
 }
 
+/**
+ * Emitted when the system asks the application to release memory, with the trim level of Android,
+ * e.g. `running-low`, `ui-hidden`, `background` or `complete`.
+ *
+ * The V8 heap is notified of the memory pressure by the native layer, listeners can release caches of their own.
+ */
+function onTrimMemory(listener: (level: string) => void): void {
+  appChannel.on('trimMemory', listener);
+}
+
+/**
+ * Provides the slots of a region of memory shared with the native layer, to exchange bulk data such as
+ * camera frames without copying it. A slot is acquired, filled and handed over by sending its handle
+ * `{ slot, length }` in a channel message, the receiver releases the slot once it is done with its content.
+ *
+ * Only available on Android, if enabled via the `sharedMemorySlotCount` plugin configuration.
+ */
+class SharedMemory {
+  private region?: NativeBridgeSharedMemory | null;
+
+  private getRegion(): NativeBridgeSharedMemory | undefined {
+    // The region is created by the native layer before the Node.js process is started.
+    if (this.region === undefined) {
+      this.region = nativeBridge.getSharedMemory() ?? null;
+    }
+    return this.region ?? undefined;
+  }
+
+  /**
+   * Whether the shared memory is available.
+   */
+  get available(): boolean {
+    return this.getRegion() !== undefined;
+  }
+
+  /**
+   * Size in bytes of a slot, or `0` if the shared memory is not available.
+   */
+  get slotSize(): number {
+    return this.getRegion()?.slotSize ?? 0;
+  }
+
+  /**
+   * Acquires a free slot, which is then owned by the caller. Returns `-1` if all slots are in use.
+   */
+  acquire(): number {
+    return nativeBridge.acquireSharedMemorySlot();
+  }
+
+  /**
+   * Releases an owned slot. Returns `false` if the slot is not acquired.
+   */
+  release(slot: number | SharedMemorySlotHandle): boolean {
+    return nativeBridge.releaseSharedMemorySlot(typeof slot === 'number' ? slot : slot.slot);
+  }
+
+  /**
+   * Returns a view of the content of a slot, which is only to be accessed while the slot is owned.
+   * If a handle is passed, the view is limited to its length.
+   */
+  getSlot(slot: number | SharedMemorySlotHandle): Buffer {
+    const region = this.getRegion();
+    if (region === undefined) {
+      throw new Error('The shared memory is not available.');
+    }
+
+    const index = typeof slot === 'number' ? slot : slot.slot;
+    if (!Number.isInteger(index) || index < 0 || index >= region.slotCount) {
+      throw new Error(`The shared memory has no slot ${index}.`);
+    }
+
+    const length = typeof slot === 'number' ? region.slotSize : Math.min(Math.max(slot.length, 0), region.slotSize);
+    return Buffer.from(region.buffer, index * region.slotSize, length);
+  }
+}
+
+const sharedMemory = new SharedMemory();
+
 /**
  * Returns a path for a per-user application data directory on each platform,
  * where data can be read and written.
@@ -161,4 +788,80 @@ function getDataPath(): string {
   return path;
 }
 
-export { ChannelMessageCodec, appChannel, eventChannel, onResume, onPause, getDataPath };
+/**
+ * Returns the number and size of the messages exchanged with the Capacitor layer per channel and event.
+ * On mobile platforms, the statistics also contain the queue of messages waiting for delivery to the
+ * Node.js process and how long messages take from being sent until the listeners have been invoked.
+ */
+function getStats(): BridgeStats {
+  const channels = channelStats.getStats();
+
+  const channelNames = [withWorkerId('APP_CHANNEL'), withWorkerId('EVENT_CHANNEL')];
+  for (const name of userChannels.keys()) {
+    channelNames.push(withWorkerId(`EVENT_CHANNEL:${name}`));
+  }
+
+  for (const channelName of channelNames) {
+    const nativeStats = nativeBridge.getChannelStats(channelName);
+    if (nativeStats === undefined) continue;
+
+    const stats = channels[channelName] ?? {
+      sentMessages: 0,
+      sentBytes: 0,
+      receivedMessages: 0,
+      receivedBytes: 0,
+      events: {},
+    };
+    stats.queue = nativeStats.queue;
+    stats.receiveLatency = nativeStats.latency;
+    channels[channelName] = stats;
+  }
+
+  return { channels };
+}
+
+/**
+ * Returns the id of this thread if it is a worker thread started by the bridge, or `undefined` for the main thread.
+ * Worker ids start at `1`.
+ */
+function getWorkerId(): number | undefined {
+  return workerId;
+}
+
+/**
+ * Starts the worker threads configured via the `workerCount` and `workerScript` plugin configurations on Android.
+ * Each worker runs the configured script and has its own channels to the Capacitor layer.
+ */
+function startWorkers(): void {
+  const workerCount = parseInt(process.env['CAPACITOR_NODEJS_WORKERS'] ?? '', 10);
+  const workerScript = process.env['CAPACITOR_NODEJS_WORKER_SCRIPT'];
+  if (workerId !== undefined || !workerScript || !(workerCount > 0)) return;
+
+  for (let id = 1; id <= workerCount; id++) {
+    const worker = new Worker(workerScript, { workerData: { [WORKER_ID_KEY]: id } });
+
+    worker.on('error', (error) => {
+      console.error(`The worker ${id} has failed:`, error);
+    });
+
+    // The Capacitor layer stops routing messages to the worker.
+    worker.on('exit', (exitCode) => {
+      appChannel.send('workerExit', id, exitCode);
+    });
+  }
+}
+
+export {
+  ChannelMessageCodec,
+  appChannel,
+  eventChannel,
+  createChannel,
+  onResume,
+  onPause,
+  onTrimMemory,
+  getDataPath,
+  getStats,
+  getWorkerId,
+  startWorkers,
+  sharedMemory,
+};
@@ -0,0 +1,116 @@
+/**
+ * Persists the code compiled by V8 for the CommonJS modules of the Node.js project, so that later starts
+ * of the engine do not parse and compile the modules again.
+ *
+ * Preloaded via `--require` before the main script if the `codeCache` plugin configuration is enabled.
+ * The cache of a module is named after the hash of its path and content, so changed modules never use
+ * an outdated cache. Missing or rejected caches are created in the background once the module has run,
+ * which also covers its functions compiled lazily in the meantime.
+ */
+
+import { createHash } from 'crypto';
+import { existsSync, mkdirSync, readFileSync } from 'fs';
+import { rename, writeFile } from 'fs/promises';
+import Module from 'module';
+import { dirname, join } from 'path';
+import { Script } from 'vm';
+
+// Delay after the last compiled module until the caches are written.
+const WRITE_DELAY = 1000;
+
+const cacheDir = process.env['CAPACITOR_NODEJS_CODE_CACHE'];
+
+const pendingScripts = new Map<string, Script>();
+let writeTimer: ReturnType<typeof setTimeout> | undefined;
+
+function getCachePath(filename: string, content: string): string {
+  const hash = createHash('sha1').update(filename).update('\0').update(content).digest('hex');
+  return join(cacheDir as string, `${hash}.cache`);
+}
+
+function readCache(cachePath: string): Buffer | undefined {
+  try {
+    return existsSync(cachePath) ? readFileSync(cachePath) : undefined;
+  } catch {
+    return undefined;
+  }
+}
+
+async function writeCaches(): Promise<void> {
+  writeTimer = undefined;
+
+  const scripts = [...pendingScripts];
+  pendingScripts.clear();
+
+  for (const [cachePath, script] of scripts) {
+    try {
+      // Written to a temporary file first, so that a concurrent start never reads a partial cache.
+      const temporaryPath = `${cachePath}.${process.pid}.tmp`;
+      await writeFile(temporaryPath, script.createCachedData());
+      await rename(temporaryPath, cachePath);
+    } catch {
+      // The module is compiled again on the next start.
+    }
+  }
+}
+
+function scheduleWrite(cachePath: string, script: Script): void {
+  pendingScripts.set(cachePath, script);
+
+  if (writeTimer !== undefined) clearTimeout(writeTimer);
+  writeTimer = setTimeout(() => void writeCaches(), WRITE_DELAY);
+  // Writing the caches does not keep the Node.js process alive.
+  writeTimer.unref();
+}
+
+/**
+ * Compiles the module like `Module.prototype._compile`, but with a script whose compiled code is cached.
+ */
+function compile(this: any, content: string, filename: string): any {
+  const module = this;
+  const cachePath = getCachePath(filename, content);
+  const cachedData = readCache(cachePath);
+
+  // A hashbang is only valid at the very beginning of a script, not inside the module wrapper.
+  const source = content.startsWith('#!') ? content.replace(/^#!.*/, '') : content;
+
+  const script = new Script((Module as any).wrap(source), { filename, cachedData });
+  if (cachedData === undefined || script.cachedDataRejected) {
+    scheduleWrite(cachePath, script);
+  }
+
+  const compiledWrapper = script.runInThisContext({ displayErrors: true });
+
+  function require(id: string): any {
+    return module.require(id);
+  }
+  require.resolve = (request: string, options?: { paths?: string[] }) =>
+    (Module as any)._resolveFilename(request, module, false, options);
+  require.resolve.paths = (request: string) => (Module as any)._resolveLookupPaths(request, module);
+  require.main = process.mainModule;
+  require.extensions = (Module as any)._extensions;
+  require.cache = (Module as any)._cache;
+
+  return compiledWrapper.call(module.exports, module.exports, require, module, filename, dirname(filename));
+}
+
+function install(): void {
+  if (!cacheDir) return;
+
+  try {
+    mkdirSync(cacheDir, { recursive: true });
+  } catch {
+    return;
+  }
+
+  const originalCompile = (Module.prototype as any)._compile;
+  (Module.prototype as any)._compile = function (content: string, filename: string): any {
+    // Scripts only support dynamic imports with a callback of the vm module, so such modules are compiled as usual.
+    if (content.includes('import(')) {
+      return originalCompile.call(this, content, filename);
+    }
+    return compile.call(this, content, filename);
+  };
+}
+
+install();
@@ -0,0 +1,53 @@
+/**
+ * Materializes files of the Node.js project that are still being extracted from the APK when they are required.
+ *
+ * Preloaded via `--require` before the main script if the `extractionMode` plugin configuration is set to `deferred`.
+ * If a module can not be resolved while the extraction is in progress, the files at the paths it could be
+ * resolved from are extracted right away, which blocks the thread briefly, and the module is resolved again.
+ */
+
+import Module from 'module';
+import { dirname, isAbsolute, join, resolve } from 'path';
+import process from 'process';
+
+interface NativeExtractionBridge {
+  /** Returns false if the files of the Node.js project are not being extracted anymore. */
+  materializeFiles(pathPrefixes: string[]): boolean;
+}
+
+let isExtracting = true;
+
+/**
+ * Returns the paths the request could be resolved from, files below these paths are materialized.
+ */
+function getCandidatePaths(request: string, parent: any): string[] {
+  if (isAbsolute(request)) return [request];
+
+  if (request === '.' || request === '..' || request.startsWith('./') || request.startsWith('../')) {
+    const parentDir = parent?.filename ? dirname(parent.filename) : process.cwd();
+    return [resolve(parentDir, request)];
+  }
+
+  const lookupPaths: string[] | null = (Module as any)._resolveLookupPaths(request, parent);
+  return (lookupPaths ?? []).map((lookupPath) => join(lookupPath, request));
+}
+
+function install(): void {
+  if (!process.env['CAPACITOR_NODEJS_DEFERRED_EXTRACTION']) return;
+
+  const nativeBridge: NativeExtractionBridge = (process as any)._linkedBinding('nativeBridge');
+
+  const originalResolveFilename = (Module as any)._resolveFilename;
+  (Module as any)._resolveFilename = function (request: string, parent: any, ...args: any[]): string {
+    try {
+      return originalResolveFilename.call(this, request, parent, ...args);
+    } catch (error) {
+      if (!isExtracting || (error as any)?.code !== 'MODULE_NOT_FOUND') throw error;
+
+      isExtracting = nativeBridge.materializeFiles(getCandidatePaths(request, parent));
+      return originalResolveFilename.call(this, request, parent, ...args);
+    }
+  };
+}
+
+install();
@@ -1,6 +1,18 @@
+import type { ChannelStats, LatencyStats, QueueStats } from '../../src/definitions';
+
 export interface NativeBridge {
   emit: (args: NativeBridgePayloadData) => void;
-  registerChannel: (channelName: string, callback: NativeBridgeCallback) => void;
+  emitBinary: (args: NativeBridgeBinaryPayloadData) => void;
+  registerChannel: (
+    channelName: string,
+    callback: NativeBridgeCallback,
+    binaryCallback: NativeBridgeBinaryCallback,
+  ) => void;
+  setChannelPriority: (channelName: string, priority: number) => void;
+  getChannelStats: (channelName: string) => NativeBridgeChannelStats | undefined;
+  getSharedMemory: () => NativeBridgeSharedMemory | undefined;
+  acquireSharedMemorySlot: () => number;
+  releaseSharedMemorySlot: (slot: number) => boolean;
 }
 
 export interface NativeBridgePayloadData {
@@ -8,8 +20,68 @@ export interface NativeBridgePayloadData {
   channelMessage: string;
 }
 
+export interface NativeBridgeBinaryPayloadData {
+  channelName: string;
+  eventName: string;
+  data: Uint8Array;
+}
+
 export type NativeBridgeCallback = (args: NativeBridgePayloadData) => void;
 
+export type NativeBridgeBinaryCallback = (args: NativeBridgeBinaryPayloadData) => void;
+
+/**
+ * A binary message as exchanged with the Capacitor layer over the IPC channel of the Electron platform,
+ * where the payload is encoded with base64.
+ */
+export interface NativeBridgeEncodedBinaryPayloadData {
+  channelName: string;
+  eventName: string;
+  binaryMessage: string;
+}
+
+/**
+ * Statistics of the native message queue of a channel, which delivers the messages of the Capacitor layer.
+ */
+export interface NativeBridgeChannelStats {
+  queue: QueueStats;
+  latency: LatencyStats;
+}
+
+/**
+ * The region of memory shared with the native layer, which is divided into `slotCount` slots of `slotSize` bytes.
+ */
+export interface NativeBridgeSharedMemory {
+  buffer: ArrayBuffer;
+  slotSize: number;
+  slotCount: number;
+}
+
+/**
+ * A slot of the memory shared with the native layer, as handed over in channel messages.
+ */
+export interface SharedMemorySlotHandle {
+  /**
+   * The index of the slot.
+   */
+  slot: number;
+
+  /**
+   * Number of bytes of the slot in use.
+   */
+  length: number;
+}
+
+/**
+ * Statistics of the bridge as seen from the Node.js process.
+ */
+export interface BridgeStats {
+  /**
+   * Statistics of the channels to the Capacitor layer by channel name.
+   */
+  channels: { [channelName: string]: ChannelStats };
+}
+
 export interface NativeBridgeChannelMessageData {
   eventName: string;
   eventMessage: string;
@@ -1,5 +1,23 @@
-import { appChannel, eventChannel, onResume, onPause, getDataPath } from './bridge';
+import {
+  appChannel,
+  eventChannel,
+  createChannel,
+  onResume,
+  onPause,
+  onTrimMemory,
+  getDataPath,
+  getStats,
+  getWorkerId,
+  startWorkers,
+  sharedMemory,
+} from './bridge';
+import { ChannelMessageCodec } from './utils';
 
-appChannel.send('ready');
+// Announces the supported message protocols, the Capacitor layer replies with the `protocol` to use.
+appChannel.send('ready', { protocols: ChannelMessageCodec.SUPPORTED_PROTOCOLS });
 
-export { eventChannel as channel, onResume, onPause, getDataPath };
+// Workers are started right away, without waiting for the reply. Each worker loads its own bridge module and
+// announces itself with its own `ready` message, which the Capacitor layer answers on the app channel of the worker.
+startWorkers();
+
+export { eventChannel as channel, createChannel, onResume, onPause, onTrimMemory, getDataPath, getStats, getWorkerId, sharedMemory };
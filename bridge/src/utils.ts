@@ -1,14 +1,47 @@
-import type { ChannelPayloadData as EventPayloadData } from '../../src/definitions';
+import type {
+  ChannelPayloadData as EventPayloadData,
+  ChannelStats,
+  MessageStats,
+} from '../../src/definitions';
 
 import type { NativeBridgeChannelMessageData } from './definitions';
 
+/**
+ * Encodes and decodes the messages exchanged with the Capacitor layer.
+ *
+ * Protocol 1 wraps the JSON serialized arguments as a string into another JSON object.
+ * Protocol 2 prefixes the JSON serialized arguments with the length of the event name and the event name,
+ * e.g. `5:hello["world"]`, so that every message is serialized and parsed only once.
+ *
+ * Both sides start with protocol 1 and switch to the negotiated protocol after the `ready` handshake.
+ * Decoding does not depend on the negotiated protocol, as protocol 1 messages always start with `{`.
+ */
 export class ChannelMessageCodec {
-  static serialize(payload: EventPayloadData): string {
+  static readonly SUPPORTED_PROTOCOLS = [1, 2];
+
+  /**
+   * Returns the highest protocol supported by both sides, or protocol 1 if the other side does not announce any.
+   */
+  static negotiate(protocols?: number[]): number {
+    let protocol = 1;
+    for (const supportedProtocol of ChannelMessageCodec.SUPPORTED_PROTOCOLS) {
+      if (protocols?.includes(supportedProtocol) && supportedProtocol > protocol) {
+        protocol = supportedProtocol;
+      }
+    }
+    return protocol;
+  }
+
+  static serialize(payload: EventPayloadData, protocol = 1): string {
     const eventName = payload.eventName;
     const args = payload.args;
 
     const eventMessage = JSON.stringify(args);
 
+    if (protocol >= 2) {
+      return eventName.length + ':' + eventName + eventMessage;
+    }
+
     const data: NativeBridgeChannelMessageData = {
       eventName,
       eventMessage,
@@ -19,10 +52,24 @@ export class ChannelMessageCodec {
   }
 
   static deserialize(channelMessage: string): EventPayloadData {
-    const data: NativeBridgeChannelMessageData = JSON.parse(channelMessage);
+    let eventName: string;
+    let eventMessage: string;
+
+    if (channelMessage.startsWith('{')) {
+      const data: NativeBridgeChannelMessageData = JSON.parse(channelMessage);
+      eventName = data.eventName;
+      eventMessage = data.eventMessage;
+    } else {
+      const separatorIndex = channelMessage.indexOf(':');
+      const eventNameLength = parseInt(channelMessage.substring(0, separatorIndex), 10);
+      if (separatorIndex < 0 || isNaN(eventNameLength)) {
+        throw new Error('Unsupported channel message format.');
+      }
 
-    const eventName = data.eventName;
-    const eventMessage = data.eventMessage;
+      const eventNameEnd = separatorIndex + 1 + eventNameLength;
+      eventName = channelMessage.substring(separatorIndex + 1, eventNameEnd);
+      eventMessage = channelMessage.substring(eventNameEnd);
+    }
 
     let args = [];
     if (eventMessage) {
@@ -37,3 +84,94 @@ export class ChannelMessageCodec {
     return payload;
   }
 }
+
+interface ChannelCounters {
+  stats: MessageStats;
+  events: Map<string, MessageStats>;
+}
+
+/**
+ * Counts the messages and bytes exchanged over the channels of the bridge, per channel and event.
+ * Text messages are measured by the length of their serialized form.
+ */
+export class ChannelStatsCounter {
+  // Events beyond this number are only counted for their channel, to bound the memory of the counters.
+  static readonly MAX_EVENTS_PER_CHANNEL = 256;
+
+  private channels = new Map<string, ChannelCounters>();
+
+  recordSent(channelName: string, eventName: string, bytes: number): void {
+    const channel = this.getChannel(channelName);
+    channel.stats.sentMessages++;
+    channel.stats.sentBytes += bytes;
+
+    const event = this.getEvent(channel, eventName);
+    if (event !== undefined) {
+      event.sentMessages++;
+      event.sentBytes += bytes;
+    }
+  }
+
+  recordReceived(channelName: string, eventName: string, bytes: number): void {
+    const channel = this.getChannel(channelName);
+    channel.stats.receivedMessages++;
+    channel.stats.receivedBytes += bytes;
+
+    const event = this.getEvent(channel, eventName);
+    if (event !== undefined) {
+      event.receivedMessages++;
+      event.receivedBytes += bytes;
+    }
+  }
+
+  /**
+   * Returns a copy of the current counters by channel name.
+   */
+  getStats(): { [channelName: string]: ChannelStats } {
+    const channels: { [channelName: string]: ChannelStats } = {};
+
+    for (const [channelName, channel] of this.channels) {
+      const events: { [eventName: string]: MessageStats } = {};
+      for (const [eventName, stats] of channel.events) {
+        events[eventName] = { ...stats };
+      }
+
+      channels[channelName] = { ...channel.stats, events };
+    }
+
+    return channels;
+  }
+
+  private getChannel(channelName: string): ChannelCounters {
+    let channel = this.channels.get(channelName);
+    if (channel === undefined) {
+      channel = { stats: ChannelStatsCounter.createStats(), events: new Map() };
+      this.channels.set(channelName, channel);
+    }
+    return channel;
+  }
+
+  private getEvent(channel: ChannelCounters, eventName: string): MessageStats | undefined {
+    let event = channel.events.get(eventName);
+    if (event === undefined && channel.events.size < ChannelStatsCounter.MAX_EVENTS_PER_CHANNEL) {
+      event = ChannelStatsCounter.createStats();
+      channel.events.set(eventName, event);
+    }
+    return event;
+  }
+
+  private static createStats(): MessageStats {
+    return { sentMessages: 0, sentBytes: 0, receivedMessages: 0, receivedBytes: 0 };
+  }
+}
+
+/**
+ * Limits of the streams between the Capacitor layer and the Node.js process.
+ *
+ * Chunks of a stream are sent as binary messages of the app channel named by the id of the stream. A sender may
+ * only have `WINDOW_SIZE` bytes in flight that have not been acknowledged by the receiver with a `streamAck` message.
+ */
+export class ChannelStreamLimits {
+  static readonly CHUNK_SIZE = 64 * 1024;
+  static readonly WINDOW_SIZE = 16 * ChannelStreamLimits.CHUNK_SIZE;
+}
@@ -4,9 +4,19 @@ import { app } from 'electron';
 import { existsSync } from 'fs';
 import { join as joinPath } from 'path';
 
-import type { NativeBridgePayloadData } from '../../bridge/src/definitions';
-import { ChannelMessageCodec } from '../../bridge/src/utils';
-import type { ChannelPayloadData, NodeEnv } from '../../src/definitions';
+import type {
+  NativeBridgePayloadData,
+  NativeBridgeEncodedBinaryPayloadData,
+} from '../../bridge/src/definitions';
+import { ChannelMessageCodec, ChannelStatsCounter, ChannelStreamLimits } from '../../bridge/src/utils';
+import type {
+  ChannelPayloadData,
+  ChannelStats,
+  HeapStatistics,
+  NodeEnv,
+  StartupMetrics,
+  StartupPhases,
+} from '../../src/definitions';
 
 import { CapacitorNodeJS } from './index';
 import { joinEnv } from './utils';
@@ -24,6 +34,14 @@ class EngineStatus {
     return this.isEngineStarted;
   }
 
+  /**
+   * Resets the status once the engine has stopped, so that it can be started again.
+   */
+  public setStopped(): void {
+    this.isEngineStarted = false;
+    this.isEngineReady = false;
+  }
+
   public setReady(): void {
     this.isEngineReady = true;
 
@@ -47,13 +65,115 @@ class EngineStatus {
   }
 }
 
+class StartupTimer {
+  private warmStart: boolean;
+  private startTime = performance.now();
+  private phases: StartupPhases = {};
+  private currentPhase?: keyof StartupPhases;
+  private currentPhaseStartTime = 0;
+  private readyTime?: number;
+
+  constructor(warmStart: boolean) {
+    this.warmStart = warmStart;
+  }
+
+  public beginPhase(name: keyof StartupPhases): void {
+    this.endPhase();
+    this.currentPhase = name;
+    this.currentPhaseStartTime = performance.now();
+  }
+
+  public endPhase(): void {
+    if (this.currentPhase === undefined) return;
+
+    this.phases[this.currentPhase] = {
+      startTime: this.currentPhaseStartTime - this.startTime,
+      duration: performance.now() - this.currentPhaseStartTime,
+    };
+    this.currentPhase = undefined;
+  }
+
+  /**
+   * Ends the last phase, returns `false` if the startup has already been completed before.
+   */
+  public setReady(): boolean {
+    if (this.readyTime !== undefined) return false;
+
+    this.endPhase();
+    this.readyTime = performance.now() - this.startTime;
+    return true;
+  }
+
+  public getMetrics(): StartupMetrics | undefined {
+    if (this.readyTime === undefined) return undefined;
+
+    // The Node.js project is loaded directly from the app bundle.
+    return {
+      coldStart: false,
+      warmStart: this.warmStart,
+      extractedFiles: 0,
+      extractedBytes: 0,
+      readyTime: this.readyTime,
+      phases: { ...this.phases },
+    };
+  }
+}
+
+class InvocationError extends Error {
+  public code?: string;
+  public data?: { name?: string };
+
+  constructor(message: string, code?: string, data?: { name?: string }) {
+    super(message);
+    this.code = code;
+    this.data = data;
+  }
+}
+
+interface PendingInvocation {
+  resolve: (result: any) => void;
+  reject: (error: Error) => void;
+  timer?: ReturnType<typeof setTimeout>;
+}
+
+/**
+ * A stream from the web page to the Node.js process.
+ */
+interface OutgoingStream {
+  credit: number;
+  pendingWrite?: {
+    data: Buffer;
+    offset: number;
+    resolve: () => void;
+    reject: (error: Error) => void;
+  };
+}
+
 export class CapacitorNodeJSImplementation {
   private nodeProcess?: ChildProcess;
   private eventNotifier: CapacitorNodeJS['PluginEventNotifier'];
   private engineStatus = new EngineStatus();
+  private channelProtocol = 1;
+  private startupTimer?: StartupTimer;
+  private channelStats = new ChannelStatsCounter();
+  private pendingInvocations = new Map<string, PendingInvocation>();
+  private maxPendingInvocations = 1000;
+  private heapStatisticsRequestCount = 0;
+  private heapStatisticsRequests = new Map<string, PendingInvocation>();
+  private streamCount = 0;
+  private outgoingStreams = new Map<string, OutgoingStream>();
+  // Streams from the Node.js process to the web page, whose credits are granted by the web page itself.
+  private incomingStreams = new Set<string>();
+  // Starts the engine again with the options of its last start.
+  private restartAction?: () => Promise<void>;
+  private hasEngineRun = false;
 
   constructor(eventNotifier: CapacitorNodeJS['PluginEventNotifier']) {
     this.eventNotifier = eventNotifier;
+
+    app.on('quit', () => {
+      this.nodeProcess?.kill();
+    });
   }
 
   public async startEngine(projectDir: string, mainFile?: string, args?: string[], env?: NodeEnv): Promise<void> {
@@ -61,6 +181,8 @@ export class CapacitorNodeJSImplementation {
       throw new Error('The Node.js engine has already been started.');
     }
     this.engineStatus.setStarted();
+    this.startupTimer = new StartupTimer(this.hasEngineRun);
+    this.restartAction = () => this.startEngine(projectDir, mainFile, args, env);
 
     const projectPath = joinPath(app.getAppPath(), 'app', projectDir);
     const modulesPath = joinPath(__dirname, '..', 'assets', 'builtin_modules');
@@ -70,6 +192,7 @@ export class CapacitorNodeJSImplementation {
       throw new Error('Unable to access the Node.js project. (No such directory)');
     }
 
+    this.startupTimer.beginPhase('packageJson');
     const projectPackageJsonPath = joinPath(projectPath, 'package.json');
 
     let projectMainFile = 'index.js';
@@ -94,6 +217,7 @@ export class CapacitorNodeJSImplementation {
       throw new Error('Unable to access main script of the Node.js project. (No such file)');
     }
 
+    this.startupTimer.beginPhase('environment');
     const modulesPaths = joinEnv(projectPath, modulesPath);
 
     const nodeEnv = {
@@ -107,17 +231,78 @@ export class CapacitorNodeJSImplementation {
       serialization: 'json',
     };
 
-    this.nodeProcess = fork(projectMainPath, args, nodeOptions);
+    // The engine phase lasts until the Node.js process reports to be ready.
+    this.startupTimer.beginPhase('engine');
+    this.hasEngineRun = true;
+    const nodeProcess = fork(projectMainPath, args, nodeOptions);
+    this.nodeProcess = nodeProcess;
+
+    nodeProcess.on('exit', () => {
+      if (this.nodeProcess === nodeProcess) {
+        this.engineStopped();
+      }
+    });
 
-    this.nodeProcess.on('message', (args: NativeBridgePayloadData) => {
-      this.receiveMessage(args.channelName, args.channelMessage);
+    this.nodeProcess.on('message', (args: NativeBridgePayloadData | NativeBridgeEncodedBinaryPayloadData) => {
+      if ('binaryMessage' in args) {
+        this.receiveBinaryMessage(args.channelName, args.eventName, args.binaryMessage);
+      } else {
+        this.receiveMessage(args.channelName, args.channelMessage);
+      }
     });
+  }
 
-    app.on('quit', () => {
-      this.nodeProcess?.kill();
+  /**
+   * Stops the Node.js process and resolves once it has exited.
+   */
+  public stopEngine(): Promise<void> {
+    const nodeProcess = this.nodeProcess;
+    if (!this.engineStatus.isStarted() || nodeProcess === undefined) {
+      return Promise.reject(new Error('The Node.js engine has not been started yet.'));
+    }
+
+    return new Promise<void>((resolve) => {
+      nodeProcess.once('exit', () => resolve());
+      nodeProcess.kill();
     });
   }
 
+  /**
+   * Stops the Node.js process and starts it again with the options of its last start.
+   */
+  public async restartEngine(): Promise<void> {
+    const restart = this.restartAction;
+    await this.stopEngine();
+    await restart?.();
+  }
+
+  private engineStopped(): void {
+    this.nodeProcess = undefined;
+    this.channelProtocol = 1;
+
+    for (const invokeId of [...this.pendingInvocations.keys()]) {
+      this.removeInvocation(invokeId)?.reject(new InvocationError('The Node.js engine has been stopped.', 'CANCELLED'));
+    }
+
+    for (const request of this.heapStatisticsRequests.values()) {
+      clearTimeout(request.timer);
+      request.reject(new InvocationError('The Node.js engine has been stopped.', 'CANCELLED'));
+    }
+    this.heapStatisticsRequests.clear();
+
+    for (const stream of this.outgoingStreams.values()) {
+      stream.pendingWrite?.reject(new Error('The Node.js engine has been stopped.'));
+    }
+    this.outgoingStreams.clear();
+
+    for (const streamId of this.incomingStreams) {
+      this.eventNotifier.streamAbort(streamId, 'The Node.js engine has been stopped.');
+    }
+    this.incomingStreams.clear();
+
+    this.engineStatus.setStopped();
+  }
+
   public resolveWhenReady(): Promise<void> {
     return new Promise<void>((resolve, reject) => {
       if (!this.engineStatus.isStarted()) {
@@ -128,6 +313,56 @@ export class CapacitorNodeJSImplementation {
     });
   }
 
+  public getStartupMetrics(): StartupMetrics {
+    if (!this.engineStatus.isStarted()) {
+      throw new Error('The Node.js engine has not been started yet.');
+    }
+
+    const metrics = this.startupTimer?.getMetrics();
+    if (metrics === undefined) {
+      throw new Error('The Node.js engine is not ready yet.');
+    }
+
+    return metrics;
+  }
+
+  /**
+   * Requests the statistics of the V8 heap of the main thread from the Node.js process.
+   */
+  public getHeapStatistics(timeout: number): Promise<HeapStatistics> {
+    const requestId = `heap:${++this.heapStatisticsRequestCount}`;
+
+    return new Promise<HeapStatistics>((resolve, reject) => {
+      const request: PendingInvocation = { resolve, reject };
+      request.timer = setTimeout(() => {
+        this.heapStatisticsRequests.delete(requestId);
+        reject(new InvocationError('The Node.js process did not report its heap statistics in time.', 'TIMEOUT'));
+      }, timeout);
+
+      this.heapStatisticsRequests.set(requestId, request);
+
+      try {
+        this.sendMessage(CapacitorNodeJS.CHANNEL_NAME_APP, { eventName: 'getHeapStatistics', args: [requestId] });
+      } catch (error) {
+        clearTimeout(request.timer);
+        this.heapStatisticsRequests.delete(requestId);
+        reject(error);
+      }
+    });
+  }
+
+  /**
+   * Resolves the pending request with the heap statistics sent by the Node.js process as `[requestId, stats]`.
+   */
+  private completeHeapStatistics(requestId: string, stats: HeapStatistics): void {
+    const request = this.heapStatisticsRequests.get(requestId);
+    if (request === undefined) return;
+
+    clearTimeout(request.timer);
+    this.heapStatisticsRequests.delete(requestId);
+    request.resolve(stats);
+  }
+
   public sendMessage(channelName: string, payload: ChannelPayloadData): void {
     if (!this.engineStatus.isStarted()) {
       throw new Error('The Node.js engine has not been started yet.');
@@ -138,7 +373,7 @@ export class CapacitorNodeJSImplementation {
     }
 
     if (this.nodeProcess === undefined || !payload.eventName || !payload.args) return;
-    const channelMessage = ChannelMessageCodec.serialize(payload);
+    const channelMessage = ChannelMessageCodec.serialize(payload, this.channelProtocol);
 
     const channelData: NativeBridgePayloadData = {
       channelName,
@@ -146,6 +381,226 @@ export class CapacitorNodeJSImplementation {
     };
 
     this.nodeProcess.send(channelData);
+    this.channelStats.recordSent(channelName, payload.eventName, channelMessage.length);
+  }
+
+  public setMaxPendingInvocations(count: number): void {
+    this.maxPendingInvocations = count;
+  }
+
+  public invoke(invokeId: string, eventName: string, args: any[], timeout: number): Promise<any> {
+    if (this.pendingInvocations.has(invokeId)) {
+      throw new Error(`An invocation with the id '${invokeId}' is already pending.`);
+    }
+
+    if (this.pendingInvocations.size >= this.maxPendingInvocations) {
+      throw new Error('Too many invocations are waiting for the Node.js process.');
+    }
+
+    return new Promise<any>((resolve, reject) => {
+      const invocation: PendingInvocation = { resolve, reject };
+      if (timeout > 0) {
+        invocation.timer = setTimeout(() => {
+          this.pendingInvocations.delete(invokeId);
+          this.sendCancelInvoke(invokeId);
+          reject(new InvocationError('The invocation timed out.', 'TIMEOUT'));
+        }, timeout);
+      }
+
+      this.pendingInvocations.set(invokeId, invocation);
+
+      // All invocations are multiplexed over the app channel and matched by their id.
+      try {
+        this.sendMessage(CapacitorNodeJS.CHANNEL_NAME_APP, { eventName: 'invoke', args: [invokeId, eventName, args] });
+      } catch (error) {
+        this.removeInvocation(invokeId);
+        reject(error);
+      }
+    });
+  }
+
+  public cancelInvoke(invokeId: string): void {
+    const invocation = this.removeInvocation(invokeId);
+    if (invocation === undefined) return;
+
+    this.sendCancelInvoke(invokeId);
+    invocation.reject(new InvocationError('The invocation has been cancelled.', 'CANCELLED'));
+  }
+
+  private removeInvocation(invokeId: string): PendingInvocation | undefined {
+    const invocation = this.pendingInvocations.get(invokeId);
+    if (invocation === undefined) return undefined;
+
+    clearTimeout(invocation.timer);
+    this.pendingInvocations.delete(invokeId);
+    return invocation;
+  }
+
+  /**
+   * Tells the Node.js process that the result of the invocation is not needed anymore.
+   */
+  private sendCancelInvoke(invokeId: string): void {
+    try {
+      this.sendMessage(CapacitorNodeJS.CHANNEL_NAME_APP, { eventName: 'cancelInvoke', args: [invokeId] });
+    } catch {
+      // The Node.js process has not been started, it does not know the invocation either.
+    }
+  }
+
+  /**
+   * Settles the pending invocation with the result sent by the Node.js process as `[invokeId, error, result]`.
+   */
+  private completeInvocation(invokeId: string, error: { name?: string; message?: string } | null, result: any): void {
+    // The invocation may have timed out or been cancelled in the meantime.
+    const invocation = this.removeInvocation(invokeId);
+    if (invocation === undefined) return;
+
+    if (error) {
+      invocation.reject(
+        new InvocationError(error.message ?? 'The handler of the Node.js process failed.', 'HANDLER_ERROR', {
+          name: error.name ?? 'Error',
+        }),
+      );
+    } else {
+      invocation.resolve(result);
+    }
+  }
+
+  public openStream(eventName: string, args: any[]): string {
+    const streamId = `stream:${++this.streamCount}`;
+
+    this.sendMessage(CapacitorNodeJS.CHANNEL_NAME_APP, { eventName: 'streamOpen', args: [streamId, eventName, args] });
+    this.outgoingStreams.set(streamId, { credit: ChannelStreamLimits.WINDOW_SIZE });
+    return streamId;
+  }
+
+  /**
+   * Sends the data as far as the credit allows, resolves once all of it has been sent.
+   */
+  public writeStream(streamId: string, data: Buffer): Promise<void> {
+    const stream = this.outgoingStreams.get(streamId);
+    if (stream === undefined) {
+      throw new Error(`The stream '${streamId}' is not open.`);
+    }
+
+    if (stream.pendingWrite !== undefined) {
+      throw new Error(`A write to the stream '${streamId}' is already pending.`);
+    }
+
+    return new Promise<void>((resolve, reject) => {
+      stream.pendingWrite = { data, offset: 0, resolve, reject };
+      this.flushStream(streamId, stream);
+    });
+  }
+
+  public endStream(streamId: string): void {
+    const stream = this.outgoingStreams.get(streamId);
+    if (stream === undefined) {
+      throw new Error(`The stream '${streamId}' is not open.`);
+    }
+
+    if (stream.pendingWrite !== undefined) {
+      throw new Error(`A write to the stream '${streamId}' is still pending.`);
+    }
+
+    this.outgoingStreams.delete(streamId);
+    this.sendMessage(CapacitorNodeJS.CHANNEL_NAME_APP, { eventName: 'streamEnd', args: [streamId] });
+  }
+
+  /**
+   * Aborts a stream in either direction.
+   */
+  public abortStream(streamId: string, reason?: string): void {
+    const stream = this.outgoingStreams.get(streamId);
+    if (stream !== undefined) {
+      this.outgoingStreams.delete(streamId);
+      this.sendMessage(CapacitorNodeJS.CHANNEL_NAME_APP, { eventName: 'streamAbort', args: [streamId, reason] });
+      stream.pendingWrite?.reject(new InvocationError('The stream has been aborted.', 'CANCELLED'));
+      stream.pendingWrite = undefined;
+    } else if (this.incomingStreams.delete(streamId)) {
+      this.sendMessage(CapacitorNodeJS.CHANNEL_NAME_APP, { eventName: 'streamCancel', args: [streamId, reason] });
+    } else {
+      throw new Error(`The stream '${streamId}' is not open.`);
+    }
+  }
+
+  public ackStream(streamId: string, bytes: number): void {
+    // Only streams from the Node.js process are acknowledged by the web page.
+    if (!this.incomingStreams.has(streamId) || bytes <= 0) return;
+
+    this.sendMessage(CapacitorNodeJS.CHANNEL_NAME_APP, { eventName: 'streamAck', args: [streamId, bytes] });
+  }
+
+  private flushStream(streamId: string, stream: OutgoingStream): void {
+    const write = stream.pendingWrite;
+    if (write === undefined) return;
+
+    while (write.offset < write.data.byteLength && stream.credit > 0) {
+      const length = Math.min(ChannelStreamLimits.CHUNK_SIZE, stream.credit, write.data.byteLength - write.offset);
+      this.sendBinaryMessage(CapacitorNodeJS.CHANNEL_NAME_APP, streamId, write.data.subarray(write.offset, write.offset + length));
+
+      write.offset += length;
+      stream.credit -= length;
+    }
+
+    if (write.offset < write.data.byteLength) return;
+
+    stream.pendingWrite = undefined;
+    write.resolve();
+  }
+
+  /**
+   * Handles the control messages of streams, which are sent as `[streamId, ...]`.
+   */
+  private receiveStreamMessage(eventName: string, args: any[]): void {
+    const streamId: string = args[0];
+
+    if (eventName === 'streamOpen') {
+      this.incomingStreams.add(streamId);
+      if (!this.eventNotifier.streamOpen(streamId, args[1], args[2] ?? [])) {
+        this.abortStream(streamId, `No stream handler registered for event '${args[1]}'`);
+      }
+    } else if (eventName === 'streamEnd') {
+      if (this.incomingStreams.delete(streamId)) {
+        this.eventNotifier.streamEnd(streamId);
+      }
+    } else if (eventName === 'streamAbort') {
+      if (this.incomingStreams.delete(streamId)) {
+        this.eventNotifier.streamAbort(streamId, args[1] ?? 'The stream has been aborted by the Node.js process.');
+      }
+    } else if (eventName === 'streamAck') {
+      const stream = this.outgoingStreams.get(streamId);
+      if (stream === undefined || !(args[1] > 0)) return;
+
+      stream.credit += args[1];
+      this.flushStream(streamId, stream);
+    } else if (eventName === 'streamCancel') {
+      const stream = this.outgoingStreams.get(streamId);
+      if (stream === undefined) return;
+
+      this.outgoingStreams.delete(streamId);
+      stream.pendingWrite?.reject(
+        new InvocationError(args[1] ?? 'The stream has been cancelled by the Node.js process.', 'CANCELLED'),
+      );
+      stream.pendingWrite = undefined;
+    }
+  }
+
+  private sendBinaryMessage(channelName: string, eventName: string, data: Buffer): void {
+    if (this.nodeProcess === undefined) return;
+
+    const channelData: NativeBridgeEncodedBinaryPayloadData = {
+      channelName,
+      eventName,
+      binaryMessage: data.toString('base64'),
+    };
+
+    this.nodeProcess.send(channelData);
+    this.channelStats.recordSent(channelName, eventName, data.byteLength);
+  }
+
+  public getChannelStats(): { [channelName: string]: ChannelStats } {
+    return this.channelStats.getStats();
   }
 
   private receiveMessage(channelName: string, channelMessage: string): void {
@@ -154,10 +609,56 @@ export class CapacitorNodeJSImplementation {
     const eventName = payload.eventName;
     const args = payload.args;
 
+    this.channelStats.recordReceived(channelName, eventName, channelMessage.length);
+
     if (channelName === CapacitorNodeJS.CHANNEL_NAME_APP && eventName === 'ready') {
+      this.negotiateProtocol(args[0]?.protocols);
       this.engineStatus.setReady();
-    } else if (channelName === CapacitorNodeJS.CHANNEL_NAME_EVENT) {
+
+      if (this.startupTimer?.setReady()) {
+        const metrics = this.startupTimer.getMetrics();
+        if (metrics !== undefined) {
+          this.eventNotifier.startupMetrics(metrics);
+        }
+      }
+    } else if (channelName === CapacitorNodeJS.CHANNEL_NAME_APP && eventName === 'invokeResult') {
+      this.completeInvocation(args[0], args[1], args[2]);
+    } else if (channelName === CapacitorNodeJS.CHANNEL_NAME_APP && eventName === 'heapStatistics') {
+      this.completeHeapStatistics(args[0], args[1]);
+    } else if (channelName === CapacitorNodeJS.CHANNEL_NAME_APP && eventName.startsWith('stream')) {
+      this.receiveStreamMessage(eventName, args);
+    } else if (this.isEventChannel(channelName)) {
       this.eventNotifier.channelReceive(eventName, args);
     }
   }
+
+  /** Returns whether messages of the channel, the default one or one created via `createChannel(...)`, are delivered to the listeners of their event. */
+  private isEventChannel(channelName: string): boolean {
+    return channelName === CapacitorNodeJS.CHANNEL_NAME_EVENT || channelName.startsWith(`${CapacitorNodeJS.CHANNEL_NAME_EVENT}:`);
+  }
+
+  private negotiateProtocol(protocols?: number[]): void {
+    const protocol = ChannelMessageCodec.negotiate(protocols);
+    if (protocol === 1 || this.nodeProcess === undefined) return;
+
+    // The reply is still encoded with protocol 1, the Node.js process decodes both.
+    const channelData: NativeBridgePayloadData = {
+      channelName: CapacitorNodeJS.CHANNEL_NAME_APP,
+      channelMessage: ChannelMessageCodec.serialize({ eventName: 'protocol', args: [protocol] }),
+    };
+
+    this.nodeProcess.send(channelData);
+    this.channelProtocol = protocol;
+  }
+
+  private receiveBinaryMessage(channelName: string, eventName: string, binaryMessage: string): void {
+    this.channelStats.recordReceived(channelName, eventName, Buffer.byteLength(binaryMessage, 'base64'));
+
+    if (this.isEventChannel(channelName)) {
+      this.eventNotifier.channelReceiveBinary(eventName, binaryMessage);
+    } else if (channelName === CapacitorNodeJS.CHANNEL_NAME_APP && this.incomingStreams.has(eventName)) {
+      // Binary messages of the app channel are the chunks of the stream they are named after.
+      this.eventNotifier.streamData(eventName, binaryMessage);
+    }
+  }
 }
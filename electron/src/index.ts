@@ -3,13 +3,23 @@ import { EventEmitter } from 'events';
 import { existsSync } from 'fs';
 import { join } from 'path';
 
-import type { StartOptions, ChannelCallbackData, ChannelPayloadData } from '../../src/definitions';
+import type {
+  BridgeStats,
+  StartOptions,
+  StartupMetrics,
+  ChannelCallbackData,
+  ChannelPayloadData,
+  ChannelBatchPayloadData,
+  HeapStatistics,
+  InvokeOptions,
+} from '../../src/definitions';
 
 import { CapacitorNodeJSImplementation } from './implementation';
 
 class PluginSettings {
   nodeDir = 'nodejs';
   startMode = 'auto';
+  maxPendingInvocations = 1000;
 }
 
 export class CapacitorNodeJS extends EventEmitter {
@@ -18,6 +28,7 @@ export class CapacitorNodeJS extends EventEmitter {
 
   //private config?: Record<string, any>;
   private implementation: CapacitorNodeJSImplementation;
+  private deliveredMessages = 0;
 
   constructor(/*config?: Record<string, any>*/) {
     super();
@@ -42,6 +53,8 @@ export class CapacitorNodeJS extends EventEmitter {
     });
 
     this.readPluginSettings().then((pluginSettings) => {
+      this.implementation.setMaxPendingInvocations(pluginSettings.maxPendingInvocations);
+
       if (pluginSettings.startMode === 'auto') {
         this.implementation.startEngine(pluginSettings.nodeDir);
       }
@@ -69,6 +82,7 @@ export class CapacitorNodeJS extends EventEmitter {
     const settings = new PluginSettings();
     settings.nodeDir = config?.nodeDir || settings.nodeDir;
     settings.startMode = config?.startMode || settings.startMode;
+    settings.maxPendingInvocations = config?.maxPendingInvocations ?? settings.maxPendingInvocations;
 
     return settings;
   }
@@ -91,6 +105,14 @@ export class CapacitorNodeJS extends EventEmitter {
     this.implementation.startEngine(projectDir, nodeMain, nodeArgs, nodeEnv);
   }
 
+  async stop(): Promise<void> {
+    return this.implementation.stopEngine();
+  }
+
+  async restart(): Promise<void> {
+    return this.implementation.restartEngine();
+  }
+
   async send(args: ChannelPayloadData): Promise<void> {
     const eventName = args.eventName;
     if (eventName === undefined || eventName === '') {
@@ -101,13 +123,133 @@ export class CapacitorNodeJS extends EventEmitter {
       args.args = [];
     }
 
-    this.implementation.sendMessage(CapacitorNodeJS.CHANNEL_NAME_EVENT, args);
+    if (args.channel !== undefined && (args.channel === '' || args.channel.includes('@'))) {
+      throw new Error(`The channel name '${args.channel}' is not valid.`);
+    }
+
+    // Messages of user-defined channels are delivered to the listeners of the channel created via `createChannel(...)`.
+    const channelName =
+      args.channel === undefined ? CapacitorNodeJS.CHANNEL_NAME_EVENT : `${CapacitorNodeJS.CHANNEL_NAME_EVENT}:${args.channel}`;
+    this.implementation.sendMessage(channelName, { eventName, args: args.args });
+  }
+
+  async sendBatch(args: ChannelBatchPayloadData): Promise<void> {
+    const messages = args.messages ?? [];
+
+    for (const message of messages) {
+      if (message.eventName === undefined || message.eventName === '') {
+        throw new Error("Required parameter 'eventName' was not specified");
+      }
+    }
+
+    for (const message of messages) {
+      this.implementation.sendMessage(CapacitorNodeJS.CHANNEL_NAME_EVENT, {
+        eventName: message.eventName,
+        args: message.args ?? [],
+      });
+    }
+  }
+
+  async invoke(args: Omit<InvokeOptions, 'signal'> & { invokeId: string }): Promise<{ result: any }> {
+    if (args.invokeId === undefined || args.invokeId === '') {
+      throw new Error("Required parameter 'invokeId' was not specified");
+    }
+
+    if (args.eventName === undefined || args.eventName === '') {
+      throw new Error("Required parameter 'eventName' was not specified");
+    }
+
+    const timeout = args.timeout ?? 30000;
+    if (timeout < 0) {
+      throw new Error("Parameter 'timeout' must not be negative");
+    }
+
+    const result = await this.implementation.invoke(args.invokeId, args.eventName, args.args ?? [], timeout);
+    return { result };
+  }
+
+  async cancelInvoke(args: { invokeId: string }): Promise<void> {
+    if (args.invokeId === undefined || args.invokeId === '') {
+      throw new Error("Required parameter 'invokeId' was not specified");
+    }
+
+    this.implementation.cancelInvoke(args.invokeId);
+  }
+
+  async openStream(args: { eventName: string; args?: any[] }): Promise<{ streamId: string }> {
+    if (args.eventName === undefined || args.eventName === '') {
+      throw new Error("Required parameter 'eventName' was not specified");
+    }
+
+    const streamId = this.implementation.openStream(args.eventName, args.args ?? []);
+    return { streamId };
+  }
+
+  async writeStream(args: { streamId: string; data: string }): Promise<void> {
+    if (args.streamId === undefined || args.streamId === '') {
+      throw new Error("Required parameter 'streamId' was not specified");
+    }
+
+    if (args.data === undefined) {
+      throw new Error("Required parameter 'data' was not specified");
+    }
+
+    await this.implementation.writeStream(args.streamId, Buffer.from(args.data, 'base64'));
+  }
+
+  async endStream(args: { streamId: string }): Promise<void> {
+    if (args.streamId === undefined || args.streamId === '') {
+      throw new Error("Required parameter 'streamId' was not specified");
+    }
+
+    this.implementation.endStream(args.streamId);
+  }
+
+  async abortStream(args: { streamId: string; reason?: string }): Promise<void> {
+    if (args.streamId === undefined || args.streamId === '') {
+      throw new Error("Required parameter 'streamId' was not specified");
+    }
+
+    this.implementation.abortStream(args.streamId, args.reason);
+  }
+
+  async ackStream(args: { streamId: string; bytes: number }): Promise<void> {
+    if (args.streamId === undefined || args.streamId === '') {
+      throw new Error("Required parameter 'streamId' was not specified");
+    }
+
+    this.implementation.ackStream(args.streamId, args.bytes ?? 0);
   }
 
   async whenReady(): Promise<void> {
     return this.implementation.resolveWhenReady();
   }
 
+  async getBridgeStats(): Promise<BridgeStats> {
+    // Messages are delivered to the listeners as soon as they are received.
+    return {
+      dispatch: {
+        receivedMessages: this.deliveredMessages,
+        deliveredMessages: this.deliveredMessages,
+        coalescedMessages: 0,
+        pendingMessages: 0,
+        maxPendingMessages: 0,
+        droppedMessages: 0,
+        averageDelay: 0,
+        maxDelay: 0,
+      },
+      channels: this.implementation.getChannelStats(),
+    };
+  }
+
+  async getStartupMetrics(): Promise<StartupMetrics> {
+    return this.implementation.getStartupMetrics();
+  }
+
+  async getHeapStatistics(): Promise<HeapStatistics> {
+    return this.implementation.getHeapStatistics(30000);
+  }
+
   // removeAllListeners() function is missing (https://github.com/capacitor-community/electron/pull/185)
 
   //---------------------------------------------------------------------------------------
@@ -122,6 +264,40 @@ export class CapacitorNodeJS extends EventEmitter {
     channelReceive: (eventName: string, payloadArray: any[]): void => {
       this.notifyChannelListeners(eventName, payloadArray);
     },
+
+    channelReceiveBinary: (eventName: string, payloadData: string): void => {
+      this.notifyChannelListeners(eventName, [], payloadData);
+    },
+
+    // Streams ------------------------------------------------------------------------------
+
+    /**
+     * Returns `false` if nobody listens for streams, which are then cancelled right away.
+     */
+    streamOpen: (streamId: string, eventName: string, args: any[]): boolean => {
+      if (this.listenerCount('streamOpen') === 0) return false;
+
+      this.emit('streamOpen', { streamId, eventName, args });
+      return true;
+    },
+
+    streamData: (streamId: string, data: string): void => {
+      this.emit('streamData', { streamId, data });
+    },
+
+    streamEnd: (streamId: string): void => {
+      this.emit('streamEnd', { streamId });
+    },
+
+    streamAbort: (streamId: string, message: string): void => {
+      this.emit('streamAbort', { streamId, message });
+    },
+
+    // Engine -------------------------------------------------------------------------------
+
+    startupMetrics: (metrics: StartupMetrics): void => {
+      this.emit('startupMetrics', metrics);
+    },
   };
 
   //---------------------------------------------------------------------------------------
@@ -130,8 +306,13 @@ export class CapacitorNodeJS extends EventEmitter {
   //#region PluginListeners
   //---------------------------------------------------------------------------------------
 
-  private notifyChannelListeners(eventName: string, payloadArray: any[]): void {
+  private notifyChannelListeners(eventName: string, payloadArray: any[], payloadData?: string): void {
+    this.deliveredMessages++;
+
     const args: ChannelCallbackData = { args: payloadArray };
+    if (payloadData !== undefined) {
+      args.data = payloadData;
+    }
     this.emit(eventName, args);
   }
 
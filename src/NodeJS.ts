@@ -1,8 +1,21 @@
 import type { PluginListenerHandle } from '@capacitor/core';
 import { Capacitor } from '@capacitor/core';
 
-import type { ChannelPayloadData, ChannelCallbackData, ChannelListenerCallback, StartOptions } from './definitions';
+import type {
+  BridgeStats,
+  ChannelPayloadData,
+  ChannelBatchPayloadData,
+  ChannelCallbackData,
+  ChannelListenerCallback,
+  HeapStatistics,
+  InvokeOptions,
+  StartOptions,
+  StartupMetrics,
+  StreamHandler,
+  StreamOptions,
+} from './definitions';
 import { CapacitorNodeJS } from './implementation';
+import type { NativeStreamEventData } from './implementation';
 
 export interface NodeJSInterface {
   /**
@@ -14,6 +27,26 @@ export interface NodeJSInterface {
    */
   start(options?: StartOptions): Promise<void>;
 
+  /**
+   * Stops the Node.js engine. Calling `process.exit()` in the Node.js process stops the engine as well.
+   *
+   * Pending invocations and open streams are rejected. On Android, the engine can be started again in the same process
+   * via `start()` in the `'manual'` startup mode or via `restart()`.
+   *
+   * @since 1.0.0
+   */
+  stop(): Promise<void>;
+
+  /**
+   * Stops the Node.js engine and starts it again with the options of its last start.
+   *
+   * Restarts reuse the process-wide initialization of Node.js and skip the extraction of an unchanged project,
+   * use `whenReady()` to wait until the restarted Node.js process is ready.
+   *
+   * @since 1.0.0
+   */
+  restart(): Promise<void>;
+
   /**
    * Sends a message to the Node.js process.
    *
@@ -21,6 +54,55 @@ export interface NodeJSInterface {
    */
   send(args: ChannelPayloadData): Promise<void>;
 
+  /**
+   * Sends several messages to the Node.js process at once.
+   * The messages are queued together and delivered in batches by the Node.js event loop.
+   *
+   * @since 1.0.0
+   */
+  sendBatch(args: ChannelBatchPayloadData): Promise<void>;
+
+  /**
+   * Invokes the handler registered for `eventName` by the Node.js process via `channel.handle(...)`
+   * and resolves with the value returned by the handler.
+   *
+   * The promise is rejected with the code `HANDLER_ERROR` and the message of the error thrown by the handler,
+   * whose name, such as `TypeError`, is available as `data.name` of the rejection. It is rejected with the code
+   * `TIMEOUT` if the handler has not returned within the `timeout`, or with the code `CANCELLED` if the `signal`
+   * has been aborted.
+   *
+   * @since 1.0.0
+   */
+  invoke(options: InvokeOptions): Promise<any>;
+
+  /**
+   * Opens a stream of bytes to the stream handler registered for `eventName` by the Node.js process
+   * via `channel.handleStream(...)`.
+   *
+   * The data is sent in chunks, writes to the returned stream only complete once the Node.js process
+   * has granted credit for them, so that large payloads can be sent with bounded memory.
+   *
+   * @since 1.0.0
+   */
+  createWriteStream(options: StreamOptions): Promise<WritableStream<Uint8Array>>;
+
+  /**
+   * Handles streams opened by the Node.js process via `channel.createWriteStream(eventName, ...)`.
+   * Streams of events without a handler are cancelled.
+   *
+   * Only one stream handler can be registered per event.
+   *
+   * @since 1.0.0
+   */
+  handleStream(eventName: string, handler: StreamHandler): Promise<void>;
+
+  /**
+   * Removes the stream handler of `eventName` registered via `handleStream(...)`.
+   *
+   * @since 1.0.0
+   */
+  removeStreamHandler(eventName: string): Promise<void>;
+
   /**
    * Resolves when the Node.js process is initialized.
    *
@@ -28,6 +110,34 @@ export interface NodeJSInterface {
    */
   whenReady(): Promise<void>;
 
+  /**
+   * Returns statistics of the message bridge, such as the number of messages waiting for delivery
+   * to the listeners and how long they have been waiting.
+   *
+   * @since 1.0.0
+   */
+  getBridgeStats(): Promise<BridgeStats>;
+
+  /**
+   * Returns the timings of the startup of the Node.js engine, such as the time spent extracting the Node.js project.
+   *
+   * The metrics are also emitted once as `startupMetrics` event when the Node.js process is ready.
+   *
+   * **Note:** This method rejects until the Node.js process is ready.
+   *
+   * @since 1.0.0
+   */
+  getStartupMetrics(): Promise<StartupMetrics>;
+
+  /**
+   * Returns the statistics of the V8 heap of the main thread of the Node.js process.
+   *
+   * **Note:** This method rejects until the Node.js process is ready.
+   *
+   * @since 1.0.0
+   */
+  getHeapStatistics(): Promise<HeapStatistics>;
+
   /**
    * Listens to `eventName` and calls `listenerFunc(data)` when a new message arrives from the Node.js process.
    *
@@ -56,6 +166,103 @@ export interface NodeJSInterface {
   removeAllListeners(eventName?: string): Promise<void>;
 }
 
+// Ids of invocations have to be unique across reloads of the web page, as the native layer outlives it.
+const invokeIdPrefix = `${Date.now().toString(36)}${Math.random().toString(36).slice(2, 8)}`;
+let invokeCount = 0;
+
+// Writes to a stream are sent in pieces of this size, which are split into chunks by the native layer.
+const STREAM_WRITE_SIZE = 256 * 1024;
+// Bytes buffered by a stream from the Node.js process before it stops granting credit, matches the window of the sender.
+const STREAM_WINDOW_SIZE = 1024 * 1024;
+
+const streamHandlers = new Map<string, StreamHandler>();
+const readableStreams = new Map<
+  string,
+  { controller: ReadableStreamDefaultController<Uint8Array>; unacknowledgedBytes: number }
+>();
+let streamListeners: Promise<PluginListenerHandle[]> | undefined;
+
+function registerStreamListeners(): Promise<PluginListenerHandle[]> {
+  streamListeners ??= Promise.all([
+    CapacitorNodeJS.addListener('streamOpen', openReadableStream),
+    CapacitorNodeJS.addListener('streamData', ({ streamId, data }: NativeStreamEventData) => {
+      const stream = readableStreams.get(streamId);
+      if (stream === undefined || data === undefined) return;
+
+      const chunk = decodeBase64(data);
+      stream.unacknowledgedBytes += chunk.byteLength;
+      stream.controller.enqueue(chunk);
+    }),
+    CapacitorNodeJS.addListener('streamEnd', ({ streamId }: NativeStreamEventData) => {
+      const stream = readableStreams.get(streamId);
+      if (stream === undefined) return;
+
+      readableStreams.delete(streamId);
+      stream.controller.close();
+    }),
+    CapacitorNodeJS.addListener('streamAbort', ({ streamId, message }: NativeStreamEventData) => {
+      const stream = readableStreams.get(streamId);
+      if (stream === undefined) return;
+
+      readableStreams.delete(streamId);
+      stream.controller.error(new Error(message ?? 'The stream has been aborted by the Node.js process'));
+    }),
+  ]);
+  return streamListeners;
+}
+
+function openReadableStream({ streamId, eventName, args }: NativeStreamEventData): void {
+  const handler = eventName !== undefined ? streamHandlers.get(eventName) : undefined;
+  if (handler === undefined) {
+    const reason = `No stream handler registered for event '${eventName}'`;
+    CapacitorNodeJS.abortStream({ streamId, reason }).catch(() => undefined);
+    return;
+  }
+
+  const stream = new ReadableStream<Uint8Array>(
+    {
+      start(controller) {
+        readableStreams.set(streamId, { controller, unacknowledgedBytes: 0 });
+      },
+      pull() {
+        // Called whenever the queue of the stream has room again.
+        const stream = readableStreams.get(streamId);
+        if (stream === undefined || stream.unacknowledgedBytes === 0) return;
+
+        CapacitorNodeJS.ackStream({ streamId, bytes: stream.unacknowledgedBytes }).catch(() => undefined);
+        stream.unacknowledgedBytes = 0;
+      },
+      cancel(reason) {
+        if (!readableStreams.delete(streamId)) return;
+
+        CapacitorNodeJS.abortStream({ streamId, reason: String(reason ?? 'The stream has been cancelled') }).catch(
+          () => undefined,
+        );
+      },
+    },
+    { highWaterMark: STREAM_WINDOW_SIZE, size: (chunk) => chunk?.byteLength ?? 0 },
+  );
+
+  handler({ stream, args: args ?? [] });
+}
+
+function encodeBase64(bytes: Uint8Array): string {
+  let binary = '';
+  for (let offset = 0; offset < bytes.byteLength; offset += 0x8000) {
+    binary += String.fromCharCode(...bytes.subarray(offset, offset + 0x8000));
+  }
+  return btoa(binary);
+}
+
+function decodeBase64(data: string): Uint8Array {
+  const binary = atob(data);
+  const bytes = new Uint8Array(binary.length);
+  for (let i = 0; i < binary.length; i++) {
+    bytes[i] = binary.charCodeAt(i);
+  }
+  return bytes;
+}
+
 class NodeJSPlugin implements NodeJSInterface {
   private readonly listenerList: {
     eventName: string;
@@ -66,14 +273,92 @@ class NodeJSPlugin implements NodeJSInterface {
     return CapacitorNodeJS.start(args);
   }
 
+  stop(): Promise<void> {
+    return CapacitorNodeJS.stop();
+  }
+
+  restart(): Promise<void> {
+    return CapacitorNodeJS.restart();
+  }
+
   send(args: ChannelPayloadData): Promise<void> {
     return CapacitorNodeJS.send(args);
   }
 
+  sendBatch(args: ChannelBatchPayloadData): Promise<void> {
+    return CapacitorNodeJS.sendBatch(args);
+  }
+
+  async invoke(options: InvokeOptions): Promise<any> {
+    const { signal, ...args } = options;
+    const invokeId = `${invokeIdPrefix}-${++invokeCount}`;
+
+    if (signal?.aborted) {
+      throw Object.assign(new Error('The invocation has been cancelled.'), { code: 'CANCELLED' });
+    }
+
+    const onAbort = () => {
+      CapacitorNodeJS.cancelInvoke({ invokeId }).catch(() => undefined);
+    };
+    signal?.addEventListener('abort', onAbort);
+
+    try {
+      const { result } = await CapacitorNodeJS.invoke({ ...args, invokeId });
+      return result;
+    } finally {
+      signal?.removeEventListener('abort', onAbort);
+    }
+  }
+
+  async createWriteStream(options: StreamOptions): Promise<WritableStream<Uint8Array>> {
+    const { streamId } = await CapacitorNodeJS.openStream({ eventName: options.eventName, args: options.args ?? [] });
+
+    return new WritableStream<Uint8Array>({
+      async write(chunk) {
+        // Large chunks are split, so that no single message over the bridge exceeds the limit.
+        for (let offset = 0; offset < chunk.byteLength; offset += STREAM_WRITE_SIZE) {
+          const data = encodeBase64(chunk.subarray(offset, offset + STREAM_WRITE_SIZE));
+          await CapacitorNodeJS.writeStream({ streamId, data });
+        }
+      },
+      close() {
+        return CapacitorNodeJS.endStream({ streamId });
+      },
+      abort(reason) {
+        return CapacitorNodeJS.abortStream({ streamId, reason: String(reason ?? 'The stream has been aborted') });
+      },
+    });
+  }
+
+  async handleStream(eventName: string, handler: StreamHandler): Promise<void> {
+    if (streamHandlers.has(eventName)) {
+      throw new Error(`A stream handler for the event '${eventName}' has already been registered`);
+    }
+
+    streamHandlers.set(eventName, handler);
+    await registerStreamListeners();
+  }
+
+  async removeStreamHandler(eventName: string): Promise<void> {
+    streamHandlers.delete(eventName);
+  }
+
   whenReady(): Promise<void> {
     return CapacitorNodeJS.whenReady();
   }
 
+  getBridgeStats(): Promise<BridgeStats> {
+    return CapacitorNodeJS.getBridgeStats();
+  }
+
+  getStartupMetrics(): Promise<StartupMetrics> {
+    return CapacitorNodeJS.getStartupMetrics();
+  }
+
+  getHeapStatistics(): Promise<HeapStatistics> {
+    return CapacitorNodeJS.getHeapStatistics();
+  }
+
   addListener(
     eventName: string,
     listenerFunc: ChannelListenerCallback,
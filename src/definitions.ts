@@ -27,6 +27,347 @@ declare module '@capacitor/cli' {
        * @example "manual"
        */
       startMode?: 'auto' | 'manual';
+
+      /**
+       * How the Node.js project is bundled with the Android application.
+       *
+       * The following values are accepted:
+       * **`files`**: Every file of the Node.js project is bundled as a separate asset.
+       * **`archive`**: The Node.js project and the builtin modules are packed into a single uncompressed archive at build time,
+       * which is memory-mapped at runtime. Recommended for projects with a large number of files.
+       *
+       * @since 1.0.0
+       * @default "files"
+       * @example "archive"
+       */
+      assetMode?: 'files' | 'archive';
+
+      /**
+       * When the Node.js project is extracted from the app bundle after it has been installed or updated.
+       *
+       * The following values are accepted:
+       * **`blocking`**: All files are extracted before the Node.js engine starts.
+       * **`deferred`**: Only the `package.json` files, the main script and the scripts it imports by relative paths are extracted
+       * before the engine starts, the remaining files are extracted in the background. Modules required before they have been
+       * extracted are extracted on demand. Files read directly via `fs` and ES modules imported by package names may not exist yet.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default "blocking"
+       * @example "deferred"
+       */
+      extractionMode?: 'blocking' | 'deferred';
+
+      /**
+       * Maximum number of messages delivered to the Node.js process per channel and iteration of its event loop.
+       * Pending messages are delivered in batches, this limit keeps a burst of messages from starving other events.
+       * Set to `0` to deliver all pending messages at once.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default 1000
+       * @example 100
+       */
+      maxMessagesPerTick?: number;
+
+      /**
+       * Size in bytes of the preallocated message queue of each channel to the Node.js process.
+       * Small messages are stored inline in the queue, larger ones are stored separately and only referenced.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default 262144
+       * @example 1048576
+       */
+      messageQueueSize?: number;
+
+      /**
+       * What happens when a message is sent while the message queue of the channel is full.
+       *
+       * The following values are accepted:
+       * **`block`**: The sender waits up to one second for the Node.js process to catch up, the message is rejected afterwards.
+       * **`dropOldest`**: The oldest queued messages are discarded to make room for the new message.
+       * **`reject`**: The new message is rejected, the promise returned by `send(...)` or `sendBatch(...)` is rejected.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default "block"
+       * @example "dropOldest"
+       */
+      messageQueueOverflow?: 'block' | 'dropOldest' | 'reject';
+
+      /**
+       * Size in bytes of the queue of messages from the Node.js process waiting for delivery to the listeners
+       * of the Capacitor layer and of the native Java code.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default 1048576
+       * @example 4194304
+       */
+      receiveQueueSize?: number;
+
+      /**
+       * What happens when the Node.js process sends a message while the queue of messages from it is full,
+       * because the listeners can't keep up.
+       *
+       * The following values are accepted:
+       * **`block`**: The Node.js process waits up to one second for the listeners to catch up, the message is dropped afterwards.
+       * **`dropOldest`**: The oldest queued messages are discarded to make room for the new message.
+       * **`reject`**: The new message is discarded.
+       *
+       * Discarded messages are counted in the `dispatch.queue` statistics of `getBridgeStats()`.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default "block"
+       * @example "dropOldest"
+       */
+      receiveQueueOverflow?: 'block' | 'dropOldest' | 'reject';
+
+      /**
+       * Names of high-frequency events, such as progress updates, of which only the latest message is delivered
+       * to the listeners if several messages are waiting for delivery.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default []
+       * @example ["progress"]
+       */
+      coalescedEvents?: string[];
+
+      /**
+       * Maximum number of invocations started via `NodeJS.invoke(...)` that may wait for their result at the same time.
+       * Further invocations are rejected until pending ones have been settled.
+       *
+       * @since 1.0.0
+       * @default 1000
+       * @example 100
+       */
+      maxPendingInvocations?: number;
+
+      /**
+       * Size in bytes of a slot of the memory shared between the native layer and the Node.js process.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default 1048576
+       * @example 8294400
+       */
+      sharedMemorySlotSize?: number;
+
+      /**
+       * Number of slots of the memory shared between the native layer and the Node.js process,
+       * which is used to exchange bulk data such as camera frames without copying it.
+       * The memory is only allocated once a slot is written to. Set to `0` to disable the shared memory.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default 0
+       * @example 4
+       */
+      sharedMemorySlotCount?: number;
+
+      /**
+       * Number of worker threads the `bridge` module starts next to the main thread of the Node.js process.
+       * Each worker runs the `workerScript` and has its own channels, so that CPU-heavy handlers do not block
+       * the other events. Set to `0` to disable the workers.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default 0
+       * @example 4
+       */
+      workerCount?: number;
+
+      /**
+       * The script run by the worker threads, relative to the root of the Node.js project folder.
+       * The id of a worker is available via `getWorkerId()` of the `bridge` module.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @example "worker.js"
+       */
+      workerScript?: string;
+
+      /**
+       * How messages of the `workerEvents` are spread over the worker threads.
+       *
+       * The following values are accepted:
+       * **`round-robin`**: The workers receive the messages in turn.
+       * **`least-loaded`**: A message is routed to the worker with the fewest messages waiting in its queue.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default "round-robin"
+       * @example "least-loaded"
+       */
+      workerScheduling?: 'round-robin' | 'least-loaded';
+
+      /**
+       * Names of the events whose messages sent via `NodeJS.send(...)` or `NodeJS.sendBatch(...)` are routed to the
+       * worker threads instead of the main thread, unless a `workerId` is specified. Once all workers have exited,
+       * the messages are routed to the main thread again.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default []
+       * @example ["resizeImage", "hash"]
+       */
+      workerEvents?: string[];
+
+      /**
+       * Persist the code compiled by V8 for the CommonJS modules of the Node.js project in the cache
+       * directory of the app, so that later starts of the engine skip parsing and compiling them.
+       * The cache is rebuilt in the background after the modules or the app have been updated.
+       * ES modules and modules using dynamic `import()` are compiled as usual.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default false
+       * @example true
+       */
+      codeCache?: boolean;
+
+      /**
+       * Where the output written to stdout and stderr by the Node.js process goes.
+       *
+       * The following values are accepted:
+       * **`logcat`**: The output is written to logcat.
+       * **`event`**: The output is emitted in batches as `processOutput` event with the `ProcessOutputData`.
+       * **`all`**: The output is written to logcat and emitted as event.
+       * **`none`**: The output is discarded.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default "logcat"
+       * @example "all"
+       */
+      outputMode?: 'logcat' | 'event' | 'all' | 'none';
+
+      /**
+       * Size in bytes of the buffer for the output of the Node.js process. If the output is written faster than it can be
+       * passed on, the oldest lines are dropped and the Node.js process is never blocked.
+       * The size must be positive, the default size is used otherwise.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default 262144
+       * @example 1048576
+       */
+      outputBufferSize?: number;
+
+      /**
+       * Maximum number of lines of output passed on per second, further lines are dropped. Set to `0` to disable the limit.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default 1000
+       * @example 100
+       */
+      outputRateLimit?: number;
+
+      /**
+       * Priorities of the channels created via `createChannel(...)` of the `bridge` module by channel name.
+       * Pending messages of channels with a higher priority are delivered to the Node.js process first, so that
+       * latency-sensitive messages are not stuck behind bulk data. The default channel has priority `0`, internal
+       * messages like `pause` and `resume` have priority `1`.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default {}
+       * @example { "control": 10, "bulk": -1 }
+       */
+      channels?: { [channel: string]: number };
+
+      /**
+       * Maximum size in megabytes of the old generation of the V8 heap of the Node.js process, which is passed
+       * to Node.js as `--max-old-space-size`. Set to `0` to keep the limit chosen by V8.
+       *
+       * The limit only applies to the first start of the engine in the app process, restarts keep the previous limit.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default 0
+       * @example 256
+       */
+      maxOldSpaceSize?: number;
+
+      /**
+       * What happens to the Node.js process while the app is in the background.
+       *
+       * - `none`: The Node.js process keeps running as in the foreground.
+       * - `throttle`: The event loops of the Node.js process and its workers iterate at most once per
+       *   `backgroundTickInterval`, so that timers fire in batches. Messages of the channels that are not listed in
+       *   `backgroundChannels` are kept in their message queues and delivered in batches once the app is resumed.
+       * - `suspend`: Like `throttle`, but the event loops are suspended completely once the app has been in the
+       *   background for `backgroundGracePeriod`.
+       *
+       * The `pause` and `resume` events of the `bridge` module are always delivered.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default "none"
+       * @example "throttle"
+       */
+      backgroundMode?: 'none' | 'throttle' | 'suspend';
+
+      /**
+       * Minimum time in milliseconds between two iterations of the event loops while they are throttled in the
+       * background. Set to `0` to only hold back the messages of the channels.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default 1000
+       * @example 5000
+       */
+      backgroundTickInterval?: number;
+
+      /**
+       * Time in milliseconds the app has to be in the background before the event loops are suspended with the
+       * `suspend` mode.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default 30000
+       * @example 60000
+       */
+      backgroundGracePeriod?: number;
+
+      /**
+       * Names of the channels created via `createChannel(...)` of the `bridge` module whose messages are still
+       * delivered while the Node.js process is throttled in the background. Messages of the other channels are
+       * kept in their message queues, so the `messageQueueOverflow` policy applies if a queue fills up.
+       *
+       * Only available on Android.
+       *
+       * @since 1.0.0
+       * @default []
+       * @example ["sync"]
+       */
+      backgroundChannels?: string[];
     };
   }
 }
@@ -96,6 +437,40 @@ export interface ChannelPayloadData {
    * @since 1.0.0
    */
   args: any[];
+
+  /**
+   * The id of the worker thread the message is sent to, `0` for the main thread of the Node.js process.
+   * Defaults to the scheduling of the `workerEvents`.
+   *
+   * Only available on Android.
+   *
+   * @since 1.0.0
+   */
+  workerId?: number;
+
+  /**
+   * The name of a channel created via `createChannel(...)` of the `bridge` module, whose listeners receive the message.
+   * Messages of channels with a higher priority are delivered first on Android. Defaults to the default channel.
+   *
+   * On Android, the message is rejected if the main thread or the worker it is routed to has not created the channel yet.
+   *
+   * Not supported by `sendBatch(...)`.
+   *
+   * @since 1.0.0
+   */
+  channel?: string;
+}
+
+/**
+ * The payload data to send several messages to the Node.js process at once.
+ */
+export interface ChannelBatchPayloadData {
+  /**
+   * The messages to send, in the order they are delivered.
+   *
+   * @since 1.0.0
+   */
+  messages: ChannelPayloadData[];
 }
 
 /**
@@ -113,4 +488,636 @@ export interface ChannelCallbackData {
    * @since 1.0.0
    */
   args: any[];
+
+  /**
+   * The received bytes encoded with base64, if the message was sent via `channel.sendBinary()`.
+   *
+   * @since 1.0.0
+   */
+  data?: string;
+}
+
+/**
+ * The options to invoke the handler of `eventName` registered by the Node.js process via `channel.handle(...)`.
+ */
+export interface InvokeOptions {
+  /**
+   * The name of the event whose handler is invoked.
+   *
+   * @since 1.0.0
+   */
+  eventName: string;
+
+  /**
+   * The array of arguments passed to the handler.
+   * Arguments will be serialized with JSON.
+   *
+   * @since 1.0.0
+   */
+  args?: any[];
+
+  /**
+   * Time in milliseconds after which the invocation is rejected with the code `TIMEOUT`,
+   * if the handler has not returned yet. Set to `0` to wait without a time limit.
+   *
+   * @since 1.0.0
+   * @default 30000
+   */
+  timeout?: number;
+
+  /**
+   * A signal to cancel the invocation, which is then rejected with the code `CANCELLED`.
+   *
+   * @since 1.0.0
+   */
+  signal?: AbortSignal;
+}
+
+/**
+ * The options to open a stream of bytes to the handler of `eventName` registered by the Node.js process
+ * via `channel.handleStream(...)`.
+ */
+export interface StreamOptions {
+  /**
+   * The name of the event being send to.
+   *
+   * @since 1.0.0
+   */
+  eventName: string;
+
+  /**
+   * The array of arguments passed to the stream handler along with the stream.
+   * Arguments will be serialized with JSON.
+   *
+   * @since 1.0.0
+   */
+  args?: any[];
+}
+
+/**
+ * The callback function to be called when the Node.js process opens a stream via `channel.createWriteStream(...)`.
+ */
+export type StreamHandler = (data: StreamCallbackData) => void;
+
+/**
+ * The callback data object when the Node.js process opens a stream.
+ */
+export interface StreamCallbackData {
+  /**
+   * The received bytes. Chunks are only acknowledged to the Node.js process once they have been read,
+   * which keeps the Node.js process from sending more data than the stream can buffer.
+   *
+   * @since 1.0.0
+   */
+  stream: ReadableStream<Uint8Array>;
+
+  /**
+   * The received array of arguments.
+   *
+   * @since 1.0.0
+   */
+  args: any[];
+}
+
+/**
+ * Statistics of the message bridge between the web page and the Node.js process.
+ */
+export interface BridgeStats {
+  /**
+   * Statistics of the delivery of messages from the Node.js process to the listeners.
+   *
+   * @since 1.0.0
+   */
+  dispatch: DispatchStats;
+
+  /**
+   * Statistics of the channels to the Node.js process by channel name.
+   *
+   * @since 1.0.0
+   */
+  channels: { [channelName: string]: ChannelStats };
+}
+
+/**
+ * Statistics of the delivery of messages from the Node.js process to the listeners.
+ */
+export interface DispatchStats {
+  /**
+   * Number of messages received from the Node.js process.
+   *
+   * @since 1.0.0
+   */
+  receivedMessages: number;
+
+  /**
+   * Number of messages delivered to the listeners.
+   *
+   * @since 1.0.0
+   */
+  deliveredMessages: number;
+
+  /**
+   * Number of messages replaced by a newer message of the same event before being delivered.
+   *
+   * @since 1.0.0
+   */
+  coalescedMessages: number;
+
+  /**
+   * Number of messages currently waiting for delivery.
+   *
+   * @since 1.0.0
+   */
+  pendingMessages: number;
+
+  /**
+   * Highest number of messages that have been waiting for delivery at the same time.
+   *
+   * @since 1.0.0
+   */
+  maxPendingMessages: number;
+
+  /**
+   * Number of messages dropped because 10000 messages were already waiting for delivery.
+   *
+   * @since 1.0.0
+   */
+  droppedMessages: number;
+
+  /**
+   * Time in milliseconds messages have waited for delivery on average.
+   *
+   * @since 1.0.0
+   */
+  averageDelay: number;
+
+  /**
+   * Time in milliseconds the longest waiting message has waited for delivery.
+   *
+   * @since 1.0.0
+   */
+  maxDelay: number;
+
+  /**
+   * Statistics of the queue of messages from the Node.js process that have not been received by the listeners yet.
+   *
+   * **Note:** Only available on Android.
+   *
+   * @since 1.0.0
+   */
+  queue?: ReceiveQueueStats;
+}
+
+/**
+ * Statistics of the queue of messages from the Node.js process that have not been received by the listeners yet.
+ */
+export interface ReceiveQueueStats {
+  /**
+   * Number of messages currently waiting in the queue.
+   *
+   * @since 1.0.0
+   */
+  queuedMessages: number;
+
+  /**
+   * Bytes of the messages currently waiting in the queue.
+   *
+   * @since 1.0.0
+   */
+  queuedBytes: number;
+
+  /**
+   * Highest number of messages that have been waiting in the queue at the same time.
+   *
+   * @since 1.0.0
+   */
+  maxQueuedMessages: number;
+
+  /**
+   * Size of the queue in bytes.
+   *
+   * @since 1.0.0
+   */
+  capacity: number;
+
+  /**
+   * Number of messages dropped to make room for newer messages.
+   *
+   * @since 1.0.0
+   */
+  droppedMessages: number;
+
+  /**
+   * Number of messages dropped because the queue was full.
+   *
+   * @since 1.0.0
+   */
+  rejectedMessages: number;
+}
+
+/**
+ * Number and size of the messages exchanged over the bridge.
+ * Text messages are measured by the length of their serialized form.
+ */
+export interface MessageStats {
+  /**
+   * Number of messages sent to the other side of the bridge.
+   *
+   * @since 1.0.0
+   */
+  sentMessages: number;
+
+  /**
+   * Size in bytes of the messages sent to the other side of the bridge.
+   *
+   * @since 1.0.0
+   */
+  sentBytes: number;
+
+  /**
+   * Number of messages received from the other side of the bridge.
+   *
+   * @since 1.0.0
+   */
+  receivedMessages: number;
+
+  /**
+   * Size in bytes of the messages received from the other side of the bridge.
+   *
+   * @since 1.0.0
+   */
+  receivedBytes: number;
+}
+
+/**
+ * Statistics of a channel of the bridge.
+ */
+export interface ChannelStats extends MessageStats {
+  /**
+   * Statistics of the messages of the channel by event name.
+   * Only the first 256 events of a channel are counted separately.
+   *
+   * @since 1.0.0
+   */
+  events: { [eventName: string]: MessageStats };
+
+  /**
+   * Time from a message being sent until the listeners on the other side of the bridge have been invoked with it.
+   *
+   * **Note:** Only available on Android.
+   *
+   * @since 1.0.0
+   */
+  sendLatency?: LatencyStats;
+
+  /**
+   * Time from a message being sent by the other side of the bridge until the listeners have been invoked with it.
+   *
+   * **Note:** Only available on Android.
+   *
+   * @since 1.0.0
+   */
+  receiveLatency?: LatencyStats;
+
+  /**
+   * Statistics of the queue of messages waiting for delivery to the Node.js process.
+   *
+   * **Note:** Only available on Android.
+   *
+   * @since 1.0.0
+   */
+  queue?: QueueStats;
+}
+
+/**
+ * Distribution of the latencies of messages in milliseconds.
+ * Percentiles are rounded up to the next power of two microseconds.
+ */
+export interface LatencyStats {
+  /**
+   * Number of measured messages.
+   *
+   * @since 1.0.0
+   */
+  count: number;
+
+  /**
+   * @since 1.0.0
+   */
+  average: number;
+
+  /**
+   * @since 1.0.0
+   */
+  max: number;
+
+  /**
+   * @since 1.0.0
+   */
+  p50: number;
+
+  /**
+   * @since 1.0.0
+   */
+  p90: number;
+
+  /**
+   * @since 1.0.0
+   */
+  p99: number;
+}
+
+/**
+ * Statistics of the queue of messages waiting for delivery to the Node.js process.
+ */
+export interface QueueStats {
+  /**
+   * Number of messages currently waiting for delivery.
+   *
+   * @since 1.0.0
+   */
+  queuedMessages: number;
+
+  /**
+   * Bytes of the queue currently occupied by waiting messages.
+   *
+   * @since 1.0.0
+   */
+  queuedBytes: number;
+
+  /**
+   * Highest number of messages that have been waiting for delivery at the same time.
+   *
+   * @since 1.0.0
+   */
+  maxQueuedMessages: number;
+
+  /**
+   * Size of the queue in bytes.
+   *
+   * @since 1.0.0
+   */
+  capacity: number;
+
+  /**
+   * Number of messages delivered to the Node.js process.
+   *
+   * @since 1.0.0
+   */
+  deliveredMessages: number;
+
+  /**
+   * Number of messages dropped to make room for newer messages.
+   *
+   * @since 1.0.0
+   */
+  droppedMessages: number;
+
+  /**
+   * Number of messages rejected because the queue was full.
+   *
+   * @since 1.0.0
+   */
+  rejectedMessages: number;
+}
+
+/**
+ * Timings of the startup of the Node.js engine, from the start request until the Node.js process is ready.
+ *
+ * All times are measured with a monotonic clock and given in milliseconds relative to the start request.
+ */
+export interface StartupMetrics {
+  /**
+   * Whether files of the Node.js project had to be extracted from the app bundle before starting the engine.
+   *
+   * @since 1.0.0
+   */
+  coldStart: boolean;
+
+  /**
+   * Whether the engine has been restarted in a process where it has already been running before.
+   * Warm starts reuse the process-wide initialization of Node.js.
+   *
+   * @since 1.0.0
+   */
+  warmStart: boolean;
+
+  /**
+   * Number of extracted files of the Node.js project.
+   * Files extracted in the background are added once their extraction has completed.
+   *
+   * @since 1.0.0
+   */
+  extractedFiles: number;
+
+  /**
+   * Size in bytes of the extracted files of the Node.js project.
+   *
+   * @since 1.0.0
+   */
+  extractedBytes: number;
+
+  /**
+   * Time until the Node.js process has been ready.
+   *
+   * @since 1.0.0
+   */
+  readyTime: number;
+
+  /**
+   * Timings of the single phases of the startup.
+   *
+   * @since 1.0.0
+   */
+  phases: StartupPhases;
+}
+
+/**
+ * Statistics of the V8 heap of the main thread of the Node.js process, as returned by `v8.getHeapStatistics()`.
+ *
+ * All sizes are given in bytes.
+ */
+export interface HeapStatistics {
+  /**
+   * Size of the memory allocated for the heap.
+   *
+   * @since 1.0.0
+   */
+  totalHeapSize: number;
+
+  /**
+   * Size of the memory allocated for executable code in the heap.
+   *
+   * @since 1.0.0
+   */
+  totalHeapSizeExecutable: number;
+
+  /**
+   * Size of the memory of the heap that is actually committed.
+   *
+   * @since 1.0.0
+   */
+  totalPhysicalSize: number;
+
+  /**
+   * Size of the memory still available to the heap.
+   *
+   * @since 1.0.0
+   */
+  totalAvailableSize: number;
+
+  /**
+   * Size of the memory used by objects in the heap.
+   *
+   * @since 1.0.0
+   */
+  usedHeapSize: number;
+
+  /**
+   * Maximum size of the heap.
+   *
+   * @since 1.0.0
+   */
+  heapSizeLimit: number;
+
+  /**
+   * Size of the memory currently allocated by V8 outside of the heap.
+   *
+   * @since 1.0.0
+   */
+  mallocedMemory: number;
+
+  /**
+   * Maximum size of the memory allocated by V8 outside of the heap.
+   *
+   * @since 1.0.0
+   */
+  peakMallocedMemory: number;
+
+  /**
+   * Size of the memory of buffers and other external objects that are kept alive by the heap.
+   *
+   * @since 1.0.0
+   */
+  externalMemory: number;
+
+  /**
+   * Number of active top-level contexts.
+   *
+   * @since 1.0.0
+   */
+  numberOfNativeContexts: number;
+
+  /**
+   * Number of contexts that have been detached but not yet garbage collected, a growing number indicates a leak.
+   *
+   * @since 1.0.0
+   */
+  numberOfDetachedContexts: number;
+}
+
+/**
+ * The output of the Node.js process emitted as `processOutput` event.
+ */
+export interface ProcessOutputData {
+  /**
+   * The lines written since the last event.
+   *
+   * @since 1.0.0
+   */
+  entries: ProcessOutputEntry[];
+
+  /**
+   * Number of lines dropped since the last event, as the output buffer was full or the rate limit was exceeded.
+   *
+   * @since 1.0.0
+   */
+  droppedEntries: number;
+}
+
+/**
+ * A line written to stdout or stderr by the Node.js process.
+ */
+export interface ProcessOutputEntry {
+  /**
+   * Lines written to stdout have the level `info`, lines written to stderr have the level `error`,
+   * except for warnings of Node.js which have the level `warn`.
+   *
+   * @since 1.0.0
+   */
+  level: 'info' | 'warn' | 'error';
+
+  /**
+   * The line without its line break.
+   *
+   * @since 1.0.0
+   */
+  message: string;
+
+  /**
+   * Time the line has been written, in milliseconds since the epoch.
+   *
+   * @since 1.0.0
+   */
+  time: number;
+}
+
+/**
+ * Timings of the phases of the startup of the Node.js engine.
+ * Phases that have not been run on the current platform are missing.
+ */
+export interface StartupPhases {
+  /**
+   * Extraction of the Node.js project from the app bundle, which is skipped if it is up to date.
+   *
+   * @since 1.0.0
+   */
+  extraction?: StartupPhase;
+
+  /**
+   * Reading the main script of the Node.js project from its `package.json` file.
+   *
+   * @since 1.0.0
+   */
+  packageJson?: StartupPhase;
+
+  /**
+   * Extraction of the main script and its dependencies with the `deferred` extraction mode.
+   *
+   * @since 1.0.0
+   */
+  startupFiles?: StartupPhase;
+
+  /**
+   * Setting up the environment variables of the Node.js process.
+   *
+   * @since 1.0.0
+   */
+  environment?: StartupPhase;
+
+  /**
+   * Starting the Node.js engine and running the main script until the `bridge` module is ready.
+   *
+   * @since 1.0.0
+   */
+  engine?: StartupPhase;
+}
+
+/**
+ * Timing of a phase of the startup of the Node.js engine.
+ */
+export interface StartupPhase {
+  /**
+   * Time from the start request until the beginning of the phase.
+   *
+   * @since 1.0.0
+   */
+  startTime: number;
+
+  /**
+   * Time spent in the phase.
+   *
+   * @since 1.0.0
+   */
+  duration: number;
 }
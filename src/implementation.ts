@@ -1,12 +1,39 @@
 import type { PluginListenerHandle } from '@capacitor/core';
 import { registerPlugin } from '@capacitor/core';
 
-import type { ChannelPayloadData, ChannelListenerCallback, StartOptions } from './definitions';
+import type {
+  BridgeStats,
+  ChannelPayloadData,
+  ChannelBatchPayloadData,
+  ChannelListenerCallback,
+  HeapStatistics,
+  InvokeOptions,
+  StartOptions,
+  StartupMetrics,
+} from './definitions';
 
 export interface CapacitorNodeJSPlugin {
   start(args?: StartOptions): Promise<void>;
+  stop(): Promise<void>;
+  restart(): Promise<void>;
   send(args: ChannelPayloadData): Promise<void>;
+  sendBatch(args: ChannelBatchPayloadData): Promise<void>;
+  invoke(args: Omit<InvokeOptions, 'signal'> & { invokeId: string }): Promise<{ result: any }>;
+  cancelInvoke(args: { invokeId: string }): Promise<void>;
+  openStream(args: { eventName: string; args?: any[] }): Promise<{ streamId: string }>;
+  writeStream(args: { streamId: string; data: string }): Promise<void>;
+  endStream(args: { streamId: string }): Promise<void>;
+  abortStream(args: { streamId: string; reason?: string }): Promise<void>;
+  ackStream(args: { streamId: string; bytes: number }): Promise<void>;
   whenReady(): Promise<void>;
+  getBridgeStats(): Promise<BridgeStats>;
+  getStartupMetrics(): Promise<StartupMetrics>;
+  getHeapStatistics(): Promise<HeapStatistics>;
+
+  addListener(
+    eventName: 'streamOpen' | 'streamData' | 'streamEnd' | 'streamAbort',
+    listenerFunc: (data: NativeStreamEventData) => void,
+  ): Promise<PluginListenerHandle>;
 
   addListener(
     eventName: string,
@@ -14,6 +41,17 @@ export interface CapacitorNodeJSPlugin {
   ): Promise<PluginListenerHandle>;
 }
 
+/**
+ * An event of a stream opened by the Node.js process. The data of a chunk is encoded with base64.
+ */
+export interface NativeStreamEventData {
+  streamId: string;
+  eventName?: string;
+  args?: any[];
+  data?: string;
+  message?: string;
+}
+
 const CapacitorNodeJS = registerPlugin<CapacitorNodeJSPlugin>('CapacitorNodeJS', {
   web: () => import('./web').then((m) => new m.CapacitorNodeJSWeb()),
   electron: () => (window as any).CapacitorCustomPlatform.plugins.CapacitorNodeJS,
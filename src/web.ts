@@ -1,6 +1,7 @@
 import { WebPlugin } from '@capacitor/core';
 import type { CapacitorException } from '@capacitor/core';
 
+import type { BridgeStats, HeapStatistics, StartupMetrics } from './definitions';
 import type { CapacitorNodeJSPlugin } from './implementation';
 
 export class CapacitorNodeJSWeb extends WebPlugin implements CapacitorNodeJSPlugin {
@@ -12,11 +13,63 @@ export class CapacitorNodeJSWeb extends WebPlugin implements CapacitorNodeJSPlug
     throw this.unavailableNodeJS();
   }
 
+  stop(): Promise<void> {
+    throw this.unavailableNodeJS();
+  }
+
+  restart(): Promise<void> {
+    throw this.unavailableNodeJS();
+  }
+
   send(): Promise<void> {
     throw this.unavailableNodeJS();
   }
 
+  sendBatch(): Promise<void> {
+    throw this.unavailableNodeJS();
+  }
+
+  invoke(): Promise<{ result: any }> {
+    throw this.unavailableNodeJS();
+  }
+
+  cancelInvoke(): Promise<void> {
+    throw this.unavailableNodeJS();
+  }
+
+  openStream(): Promise<{ streamId: string }> {
+    throw this.unavailableNodeJS();
+  }
+
+  writeStream(): Promise<void> {
+    throw this.unavailableNodeJS();
+  }
+
+  endStream(): Promise<void> {
+    throw this.unavailableNodeJS();
+  }
+
+  abortStream(): Promise<void> {
+    throw this.unavailableNodeJS();
+  }
+
+  ackStream(): Promise<void> {
+    throw this.unavailableNodeJS();
+  }
+
   whenReady(): Promise<void> {
     throw this.unavailableNodeJS();
   }
+
+  getBridgeStats(): Promise<BridgeStats> {
+    throw this.unavailableNodeJS();
+  }
+
+  getStartupMetrics(): Promise<StartupMetrics> {
+    throw this.unavailableNodeJS();
+  }
+
+  getHeapStatistics(): Promise<HeapStatistics> {
+    throw this.unavailableNodeJS();
+  }
 }